@@ -0,0 +1,183 @@
+package dev.denniszhang.gen_ai_orchestrator.benchmark;
+
+import dev.denniszhang.gen_ai_orchestrator.core.service.ContextEngine;
+import dev.denniszhang.gen_ai_orchestrator.core.service.MessageFactory;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.ConversationTurns;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.OrchestratorAgentImpl;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.TokenCounter;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.ToolRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.model.tool.DefaultToolCallingManager;
+import org.springframework.ai.tool.ToolCallback;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code concurrency} conversations answered at once by {@link OrchestratorAgentImpl}, against a model
+ * that streams on a single event-loop thread, as a shared HTTP client does, and a context engine with
+ * blocking latency (JDBC and embedding round trips). The blocking steps run on the thread that delivered
+ * the last signal ({@code immediate}, i.e. the event loop once the model has streamed) or on virtual
+ * threads ({@code virtual}). The score is the time until all conversations of a round are answered.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class AgentSchedulingBenchmark {
+
+    @Param({"immediate", "virtual"})
+    public String blockingScheduler;
+
+    @Param({"10", "50", "100", "200"})
+    public int concurrency;
+
+    private Scheduler eventLoop;
+    private Scheduler virtualThreads;
+    private OrchestratorAgentImpl agent;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.eventLoop = Schedulers.newSingle("event-loop");
+        this.virtualThreads = Schedulers.fromExecutorService(Executors.newVirtualThreadPerTaskExecutor(), "agent-blocking");
+        this.agent = new OrchestratorAgentImpl(new StreamingChatModel(this.eventLoop), new BlockingContextEngine(),
+                new PlainMessageFactory(), new ToolRegistry(() -> new ToolCallback[0]), DefaultToolCallingManager.builder().build(),
+                "virtual".equals(this.blockingScheduler) ? this.virtualThreads : Schedulers.immediate(),
+                new ConversationTurns(ConversationTurns.BusyPolicy.QUEUE),
+                Optional.empty(), Optional.empty(), Optional.empty(), new SimpleMeterRegistry(), ObservationRegistry.NOOP, new TokenCounter());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.eventLoop.dispose();
+        this.virtualThreads.dispose();
+    }
+
+    @Benchmark
+    public Long conversations() {
+        return Flux.range(0, this.concurrency)
+                // Each request arrives on its own servlet thread
+                .flatMap(i -> this.agent.stream("conv-" + i, "question " + i)
+                        .subscribeOn(Schedulers.boundedElastic()), this.concurrency)
+                .count()
+                .block(Duration.ofMinutes(2));
+    }
+
+    /**
+     * Streams five chunks 10 ms apart, emitted on the shared event loop.
+     */
+    private record StreamingChatModel(Scheduler eventLoop) implements ChatModel {
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Flux<ChatResponse> stream(Prompt prompt) {
+            return Flux.range(0, 5)
+                    .delayElements(Duration.ofMillis(10), this.eventLoop)
+                    .map(i -> ChatResponse.builder()
+                            .generations(List.of(new Generation(AssistantMessage.builder()
+                                    .content("token " + i + " ")
+                                    .properties(Map.of("reasoningContent", ""))
+                                    .build())))
+                            .build());
+        }
+    }
+
+    private static final class BlockingContextEngine implements ContextEngine {
+        @Override
+        public List<Message> getMessages(String conversationID) {
+            sleep(5);
+            return List.of();
+        }
+
+        @Override
+        public List<Message> addUserMessage(String conversationId, String message) {
+            sleep(20);
+            return List.of();
+        }
+
+        @Override
+        public void addMessage(String conversationId, Message message) {
+            sleep(10);
+        }
+
+        @Override
+        public void replaceLastMessage(String conversationId, Message message) {
+            sleep(10);
+        }
+
+        @Override
+        public void addCachedAnswer(String conversationId, String message, Message answer) {
+            sleep(10);
+        }
+
+        @Override
+        public void flush(String conversationId) {
+            sleep(10);
+        }
+
+        @Override
+        public void whenFlushed(String conversationId, Runnable action) {
+            action.run();
+        }
+
+        private static void sleep(long millis) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static final class PlainMessageFactory implements MessageFactory {
+        @Override
+        public SystemMessage createSystem(String name) {
+            return SystemMessage.builder().text(name).build();
+        }
+
+        @Override
+        public UserMessage createUser(String message, List<Document> documents) {
+            return UserMessage.builder().text(message).build();
+        }
+
+        @Override
+        public AssistantMessage createAssistant(String message) {
+            return AssistantMessage.builder().content(message).build();
+        }
+    }
+}
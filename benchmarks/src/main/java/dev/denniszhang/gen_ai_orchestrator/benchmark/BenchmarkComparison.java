@@ -0,0 +1,83 @@
+package dev.denniszhang.gen_ai_orchestrator.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH JSON result files (e.g. of two commits) benchmark by benchmark:
+ * <pre>
+ * java -cp target/benchmarks.jar dev.denniszhang.gen_ai_orchestrator.benchmark.BenchmarkComparison base.json head.json
+ * </pre>
+ * Prints the score of both runs and the change in percent, and {@code gc.alloc.rate.norm} when the
+ * runs were made with {@code -prof gc}. A change within the error of either run is marked with {@code ~}.
+ */
+public class BenchmarkComparison {
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: BenchmarkComparison <base.json> <head.json>");
+            System.exit(2);
+        }
+        Map<String, Result> base = read(Path.of(args[0]));
+        Map<String, Result> head = read(Path.of(args[1]));
+
+        System.out.printf("%-80s %14s %14s %9s %12s%n", "Benchmark", "Base", "Head", "Change", "Alloc B/op");
+        for (Map.Entry<String, Result> entry : head.entrySet()) {
+            Result after = entry.getValue();
+            Result before = base.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-80s %14s %14.3f %9s %12s%n", entry.getKey(), "-", after.score(), "new",
+                        allocation(null, after));
+                continue;
+            }
+            double change = (after.score() - before.score()) / before.score() * 100;
+            boolean withinError = Math.abs(after.score() - before.score()) <= Math.max(before.error(), after.error());
+            System.out.printf("%-80s %14.3f %14.3f %+8.1f%%%s %12s%n", entry.getKey(), before.score(), after.score(),
+                    change, withinError ? "~" : " ", allocation(before, after));
+        }
+    }
+
+    private static String allocation(Result before, Result after) {
+        if (after.allocation() == null) {
+            return "-";
+        }
+        if (before == null || before.allocation() == null) {
+            return String.format("%.0f", after.allocation());
+        }
+        return String.format("%.0f->%.0f", before.allocation(), after.allocation());
+    }
+
+    /**
+     * @return the results by benchmark name and parameters, e.g. {@code ChatMemoryBenchmark.process(maxMessages=20)}
+     */
+    private static Map<String, Result> read(Path path) throws IOException {
+        Map<String, Result> results = new TreeMap<>();
+        for (JsonNode run : new ObjectMapper().readTree(path.toFile())) {
+            String benchmark = run.path("benchmark").asText();
+            String name = benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1);
+
+            Map<String, String> params = new LinkedHashMap<>();
+            run.path("params").fields().forEachRemaining(param -> params.put(param.getKey(), param.getValue().asText()));
+            if (!params.isEmpty()) {
+                name += params.toString().replace('{', '(').replace('}', ')');
+            }
+
+            JsonNode primary = run.path("primaryMetric");
+            JsonNode allocation = run.path("secondaryMetrics").path(ALLOCATION);
+            results.put(name, new Result(
+                    primary.path("score").asDouble(),
+                    primary.path("scoreError").asDouble(),
+                    allocation.isMissingNode() ? null : allocation.path("score").asDouble()));
+        }
+        return results;
+    }
+
+    private record Result(double score, double error, Double allocation) {}
+}
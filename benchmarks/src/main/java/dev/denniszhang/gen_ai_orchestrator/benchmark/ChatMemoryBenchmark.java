@@ -0,0 +1,106 @@
+package dev.denniszhang.gen_ai_orchestrator.benchmark;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.InMemoryAppendOnlyChatMemoryRepository;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.InMemoryToolMessageRepository;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.ToolMessageWindowChatMemoryImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The chat memory of one conversation with a full window of {@code maxMessages}, on the in-memory
+ * repositories so only the window bookkeeping is measured:
+ * <ul>
+ *     <li>{@code process}: a turn (question, tool call, tool response, answer) is added and the
+ *     oldest messages evicted, without writing back;</li>
+ *     <li>{@code processAndSave}: the same, then written back, i.e. {@code saveAll} on top of {@code process};</li>
+ *     <li>{@code load}: the window is dropped from the cache and read back ({@code getAll}).</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatMemoryBenchmark {
+    private static final String CONVERSATION_ID = "conv-benchmark";
+
+    @Param({"20", "100"})
+    public int maxMessages;
+
+    private ToolMessageWindowChatMemoryImpl memory;
+    private List<Message> turn;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Flushed explicitly only, so process is measured without a background write in between
+        this.memory = ToolMessageWindowChatMemoryImpl.builder()
+                .chatMemoryRepository(new InMemoryAppendOnlyChatMemoryRepository())
+                .toolMessageRepository(new InMemoryToolMessageRepository())
+                .maxMessages(this.maxMessages)
+                .maxHistoryTokens(1_000_000)
+                .flushInterval(Duration.ofHours(1))
+                .build();
+
+        this.turn = List.of(
+                UserMessage.builder().text("Where is my order 1042? It was due yesterday.").build(),
+                AssistantMessage.builder()
+                        .content("")
+                        .toolCalls(List.of(new AssistantMessage.ToolCall("call-1", "function", "order_status", "{\"orderId\":1042}")))
+                        .build(),
+                ToolResponseMessage.builder()
+                        .responses(List.of(new ToolResponseMessage.ToolResponse("call-1", "order_status",
+                                "{\"orderId\":1042,\"status\":\"in transit\",\"carrier\":\"DHL\",\"eta\":\"tomorrow\"}")))
+                        .build(),
+                AssistantMessage.builder().content("Order 1042 is in transit with DHL and should arrive tomorrow.").build());
+
+        this.memory.add(CONVERSATION_ID, List.of(SystemMessage.builder().text("You are a support agent.").build()));
+        for (int i = 0; i < this.maxMessages / this.turn.size() + 1; i++) {
+            this.memory.add(CONVERSATION_ID, this.turn);
+        }
+        this.memory.flush(CONVERSATION_ID);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.memory.close();
+    }
+
+    @Benchmark
+    public List<Message> process() {
+        return this.memory.addAndGet(CONVERSATION_ID, this.turn);
+    }
+
+    @Benchmark
+    public List<Message> processAndSave() {
+        List<Message> window = this.memory.addAndGet(CONVERSATION_ID, this.turn);
+        this.memory.flush(CONVERSATION_ID);
+        return window;
+    }
+
+    @Benchmark
+    public List<Message> load() {
+        this.memory.evict(CONVERSATION_ID);
+        return this.memory.get(CONVERSATION_ID);
+    }
+}
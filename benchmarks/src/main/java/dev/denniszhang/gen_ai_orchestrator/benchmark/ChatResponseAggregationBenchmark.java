@@ -0,0 +1,83 @@
+package dev.denniszhang.gen_ai_orchestrator.benchmark;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.ChatResponseAccumulator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Relaying and aggregating a streamed answer of {@code chunks} chunks. The stream creates its chunks
+ * on subscription like a model client does, so the previous path pays for its second subscription
+ * and for keeping every chunk until the end.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatResponseAggregationBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int chunks;
+
+    @Benchmark
+    public ChatResponse shareCollectList(Blackhole blackhole) {
+        Flux<ChatResponse> source = stream(this.chunks).share();
+        Mono<ChatResponse> aggregated = source.collectList()
+                .filter(list -> !list.isEmpty())
+                .map(LegacyChunkAggregation::aggregateChunks);
+
+        return source.map(response -> response.getResults().getFirst().getOutput())
+                .doOnNext(blackhole::consume)
+                .then(aggregated)
+                .block();
+    }
+
+    @Benchmark
+    public ChatResponse accumulator(Blackhole blackhole) {
+        var accumulator = new ChatResponseAccumulator();
+        return stream(this.chunks)
+                .doOnNext(accumulator::accept)
+                .map(response -> response.getResult().getOutput())
+                .doOnNext(blackhole::consume)
+                .then(Mono.fromSupplier(accumulator::toChatResponse))
+                .block();
+    }
+
+    private static Flux<ChatResponse> stream(int chunks) {
+        return Flux.range(0, chunks).map(ChatResponseAggregationBenchmark::chunk);
+    }
+
+    private static ChatResponse chunk(int index) {
+        return ChatResponse.builder()
+                .generations(List.of(new Generation(AssistantMessage.builder()
+                        .content("token" + index + " ")
+                        .properties(Map.of("reasoningContent", "", "finishReason", "", "index", index))
+                        .build())))
+                .metadata(ChatResponseMetadata.builder()
+                        .id("chatcmpl-benchmark")
+                        .model("benchmark-model")
+                        .keyValue("created", index)
+                        .build())
+                .build();
+    }
+}
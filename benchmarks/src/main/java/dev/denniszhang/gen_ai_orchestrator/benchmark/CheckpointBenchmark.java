@@ -0,0 +1,240 @@
+package dev.denniszhang.gen_ai_orchestrator.benchmark;
+
+import dev.denniszhang.gen_ai_orchestrator.core.model.AgentEvent;
+import dev.denniszhang.gen_ai_orchestrator.core.service.ContextEngine;
+import dev.denniszhang.gen_ai_orchestrator.core.service.MessageFactory;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.SequencedMessage;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.TurnCheckpoint;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.InMemoryAppendOnlyChatMemoryRepository;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.InMemoryToolMessageRepository;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.InMemoryTurnCheckpointRepository;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.TurnCheckpointRepository;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.ConversationTurns;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.OrchestratorAgentImpl;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.ParallelToolCallingManager;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.TokenCounter;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.ToolMessageWindowChatMemoryImpl;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.ToolRegistry;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.WriteBehindChatMemory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.DefaultToolDefinition;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One turn of {@link OrchestratorAgentImpl} (a tool call, then the answer) on the write-behind chat
+ * memory, without checkpoints ({@code off}) and with them ({@code on}). Every write to the memory's
+ * repositories and to the checkpoint repository takes {@value #WRITE_MILLIS} ms, as a JDBC round trip
+ * does, and the model and the tool answer right away, so the score is the turn's own storage latency.
+ * The turn's checkpoints are saved by the flush that ends it, so {@code on} should cost one checkpoint
+ * write over {@code off}, not a flush per checkpoint.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CheckpointBenchmark {
+    private static final String CONVERSATION_ID = "conv-benchmark";
+    private static final long WRITE_MILLIS = 1;
+
+    @Param({"off", "on"})
+    public String checkpoints;
+
+    private ToolMessageWindowChatMemoryImpl memory;
+    private ParallelToolCallingManager toolCallingManager;
+    private OrchestratorAgentImpl agent;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.memory = ToolMessageWindowChatMemoryImpl.builder()
+                .chatMemoryRepository(new SlowChatMemoryRepository())
+                .toolMessageRepository(new SlowToolMessageRepository())
+                .build();
+        this.toolCallingManager = ParallelToolCallingManager.builder().build();
+        Optional<TurnCheckpointRepository> checkpointRepository = "on".equals(this.checkpoints)
+                ? Optional.of(new SlowTurnCheckpointRepository())
+                : Optional.empty();
+        this.agent = new OrchestratorAgentImpl(new ToolThenAnswerChatModel(), new MemoryContextEngine(this.memory),
+                new PlainMessageFactory(), new ToolRegistry(() -> new ToolCallback[]{new OrderStatusTool()}), this.toolCallingManager,
+                Schedulers.boundedElastic(), new ConversationTurns(ConversationTurns.BusyPolicy.QUEUE),
+                Optional.empty(), Optional.empty(), checkpointRepository, new SimpleMeterRegistry(), ObservationRegistry.NOOP,
+                new TokenCounter());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.toolCallingManager.close();
+        this.memory.close();
+    }
+
+    @Benchmark
+    public AgentEvent turn() {
+        return this.agent.stream(CONVERSATION_ID, "Where is my order 1042?").blockLast(Duration.ofSeconds(10));
+    }
+
+    private static void write() {
+        try {
+            Thread.sleep(WRITE_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Asks for the order status first, and answers once the prompt ends with its result.
+     */
+    private static final class ToolThenAnswerChatModel implements ChatModel {
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Flux<ChatResponse> stream(Prompt prompt) {
+            AssistantMessage output = prompt.getInstructions().getLast() instanceof UserMessage
+                    ? AssistantMessage.builder()
+                            .content("")
+                            .toolCalls(List.of(new AssistantMessage.ToolCall("call-1", "function", "order_status", "{\"orderId\":1042}")))
+                            .build()
+                    : AssistantMessage.builder().content("Order 1042 is in transit and should arrive tomorrow.").build();
+            return Flux.just(new ChatResponse(List.of(new Generation(output))));
+        }
+    }
+
+    private static final class OrderStatusTool implements ToolCallback {
+        @Override
+        public ToolDefinition getToolDefinition() {
+            return DefaultToolDefinition.builder().name("order_status").description("order status").inputSchema("{}").build();
+        }
+
+        @Override
+        public String call(String toolInput) {
+            return "{\"orderId\":1042,\"status\":\"in transit\",\"eta\":\"tomorrow\"}";
+        }
+    }
+
+    /**
+     * The chat memory part of the context engine, without retrieval.
+     */
+    private record MemoryContextEngine(WriteBehindChatMemory memory) implements ContextEngine {
+        @Override
+        public List<Message> getMessages(String conversationID) {
+            return this.memory.get(conversationID);
+        }
+
+        @Override
+        public List<Message> addUserMessage(String conversationId, String message) {
+            return this.memory.addAndGet(conversationId, List.of(UserMessage.builder().text(message).build()));
+        }
+
+        @Override
+        public void addMessage(String conversationId, Message message) {
+            this.memory.add(conversationId, List.of(message));
+        }
+
+        @Override
+        public void replaceLastMessage(String conversationId, Message message) {
+            this.memory.replaceLast(conversationId, message);
+        }
+
+        @Override
+        public void addCachedAnswer(String conversationId, String message, Message answer) {
+            this.memory.add(conversationId, List.of(UserMessage.builder().text(message).build(), answer));
+        }
+
+        @Override
+        public void flush(String conversationId) {
+            this.memory.flush(conversationId);
+        }
+
+        @Override
+        public void whenFlushed(String conversationId, Runnable action) {
+            this.memory.whenFlushed(conversationId, action);
+        }
+    }
+
+    private static final class SlowChatMemoryRepository extends InMemoryAppendOnlyChatMemoryRepository {
+        @Override
+        public void append(String conversationId, List<SequencedMessage> messages) {
+            write();
+            super.append(conversationId, messages);
+        }
+
+        @Override
+        public void deleteRange(String conversationId, long fromSeq, long toSeq) {
+            write();
+            super.deleteRange(conversationId, fromSeq, toSeq);
+        }
+    }
+
+    private static final class SlowToolMessageRepository extends InMemoryToolMessageRepository {
+        @Override
+        public void append(String conversationId, List<SequencedMessage> messages) {
+            write();
+            super.append(conversationId, messages);
+        }
+
+        @Override
+        public void deleteRange(String conversationId, long fromIndex, long toIndex) {
+            write();
+            super.deleteRange(conversationId, fromIndex, toIndex);
+        }
+    }
+
+    private static final class SlowTurnCheckpointRepository extends InMemoryTurnCheckpointRepository {
+        @Override
+        public void save(TurnCheckpoint checkpoint) {
+            write();
+            super.save(checkpoint);
+        }
+    }
+
+    private static final class PlainMessageFactory implements MessageFactory {
+        @Override
+        public SystemMessage createSystem(String name) {
+            return SystemMessage.builder().text(name).build();
+        }
+
+        @Override
+        public UserMessage createUser(String message, List<Document> documents) {
+            return UserMessage.builder().text(message).build();
+        }
+
+        @Override
+        public AssistantMessage createAssistant(String message) {
+            return AssistantMessage.builder().content(message).build();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package dev.denniszhang.gen_ai_orchestrator.benchmark;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.StreamingDocumentReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.reader.tika.TikaDocumentReader;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing and splitting a plain-text upload of {@code kilobytes} KB into chunks of 800 tokens:
+ * {@code TikaDocumentReader} + {@code TokenTextSplitter} (the whole text, then its tokens, held at
+ * once) against {@link StreamingDocumentReader}, which splits while Tika parses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChunkSplittingBenchmark {
+    private static final String[] WORDS = ("the order was shipped from the warehouse and the carrier reported a delay " +
+            "customers can request a refund or a replacement within thirty days of delivery").split(" ");
+
+    @Param({"100", "1000"})
+    public int kilobytes;
+
+    private byte[] content;
+    private StreamingDocumentReader streamingReader;
+    private TokenTextSplitter splitter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder(this.kilobytes * 1024);
+        while (text.length() < this.kilobytes * 1024) {
+            int words = 8 + random.nextInt(16);
+            for (int i = 0; i < words; i++) {
+                text.append(WORDS[random.nextInt(WORDS.length)]).append(i == words - 1 ? ". " : " ");
+            }
+            if (random.nextInt(8) == 0) {
+                text.append("\n\n");
+            }
+        }
+        this.content = text.toString().getBytes(StandardCharsets.UTF_8);
+        this.streamingReader = new StreamingDocumentReader();
+        this.splitter = new TokenTextSplitter();
+    }
+
+    @Benchmark
+    public List<Document> tikaTokenTextSplitter() {
+        return this.splitter.apply(new TikaDocumentReader(resource()).get());
+    }
+
+    @Benchmark
+    public int streamingReader(Blackhole blackhole) {
+        return this.streamingReader.read(resource(), blackhole::consume);
+    }
+
+    private Resource resource() {
+        return new ByteArrayResource(this.content) {
+            @Override
+            public String getFilename() {
+                return "upload.txt";
+            }
+        };
+    }
+}
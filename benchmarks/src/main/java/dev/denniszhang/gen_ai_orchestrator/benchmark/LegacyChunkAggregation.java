@@ -0,0 +1,74 @@
+package dev.denniszhang.gen_ai_orchestrator.benchmark;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Baseline: the chunk aggregation {@code OrchestratorAgentImpl} used before
+ * {@code ChatResponseAccumulator}, kept verbatim for comparison.
+ */
+final class LegacyChunkAggregation {
+
+    private LegacyChunkAggregation() {
+    }
+
+    static ChatResponse aggregateChunks(List<ChatResponse> chunks) {
+        if (chunks == null || chunks.isEmpty()) {
+            return null;
+        }
+
+        var fullContent = new StringBuilder();
+        var fullReasoning = new StringBuilder();
+        List<AssistantMessage.ToolCall> accumulatedToolCalls = new ArrayList<>();
+        ChatResponseMetadata lastMetadata = null;
+
+        for (var chunk : chunks) {
+            String content = chunk.getResult().getOutput().getText();
+            if (content != null) {
+                fullContent.append(content);
+            }
+
+            String reasoning = (String) chunk.getResult().getOutput().getMetadata().get("reasoningContent");
+            if (!reasoning.isEmpty()) {
+                fullReasoning.append(reasoning);
+            }
+
+            var toolCalls = chunk.getResult().getOutput().getToolCalls();
+            if (!toolCalls.isEmpty()) {
+                accumulatedToolCalls.addAll(toolCalls);
+            }
+
+            lastMetadata = chunk.getMetadata();
+        }
+
+        var aggregateMetaData = lastMetadata.entrySet().stream()
+                .collect(Collectors.toMap(
+                        Map.Entry::getKey,
+                        Map.Entry::getValue
+                ));
+        aggregateMetaData.put("reasoningContent", fullReasoning.toString());
+
+        if (!accumulatedToolCalls.isEmpty() && fullReasoning.isEmpty()) {
+            aggregateMetaData.put("reasoningContent", fullContent.toString());
+            fullContent.setLength(0);
+        }
+
+        var aggregatedMessage = AssistantMessage.builder()
+                .toolCalls(accumulatedToolCalls)
+                .properties(aggregateMetaData)
+                .content(fullContent.toString())
+                .build();
+
+        return ChatResponse.builder()
+                .generations(List.of(new Generation(aggregatedMessage)))
+                .metadata(lastMetadata)
+                .build();
+    }
+}
@@ -0,0 +1,62 @@
+package dev.denniszhang.gen_ai_orchestrator.benchmark;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.MessageFactoryImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering the StringTemplate prompts: the system prompt, and a user prompt carrying {@code documents}
+ * retrieved chunks of about 800 tokens each, the size the ingestion splits documents into.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageFactoryBenchmark {
+
+    @Param({"0", "5", "20"})
+    public int documents;
+
+    private MessageFactoryImpl messageFactory;
+    private List<Document> knowledge;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.messageFactory = new MessageFactoryImpl();
+        this.knowledge = new ArrayList<>(this.documents);
+        String chunk = "The refund is issued to the original payment method within five business days. ".repeat(50);
+        for (int i = 0; i < this.documents; i++) {
+            this.knowledge.add(Document.builder().id("chunk-" + i).text(chunk).metadata(Map.of("source", "faq.pdf")).build());
+        }
+    }
+
+    @Benchmark
+    public SystemMessage systemPrompt() {
+        return this.messageFactory.createSystem("orchestratorAgent");
+    }
+
+    @Benchmark
+    public UserMessage userPrompt() {
+        return this.messageFactory.createUser("How long does a refund take?", this.knowledge);
+    }
+}
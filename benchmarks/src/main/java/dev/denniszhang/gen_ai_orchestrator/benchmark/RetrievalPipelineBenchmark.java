@@ -0,0 +1,202 @@
+package dev.denniszhang.gen_ai_orchestrator.benchmark;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.EmbeddedDocument;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.DeduplicationStage;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.MaximalMarginalRelevanceStage;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.ReciprocalRankFusion;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.RetrievalPipeline;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.TokenBudgetStage;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.TokenCounter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * The retrieval stages, and the whole pipeline, over a fixture corpus of {@code corpusSize} synthetic
+ * chunks held in memory. The retrievers score the corpus in memory (term overlap for full text,
+ * hashed bag-of-words vectors for similarity), so the numbers show what fusion and the stages add on
+ * top of the database round trips, not the round trips themselves. A tenth of the chunks are
+ * near-copies of others, as repeated boilerplate in real uploads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RetrievalPipelineBenchmark {
+    private static final int DIMENSIONS = 256;
+    private static final int TOP_K = 20;
+    private static final String[] VOCABULARY = ("refund invoice order shipping delivery account password reset " +
+            "subscription plan upgrade downgrade cancel payment card bank transfer tax receipt address warehouse " +
+            "return label carrier tracking delay damage warranty repair replacement discount coupon loyalty points").split(" ");
+
+    @Param({"1000", "10000"})
+    public int corpusSize;
+
+    private List<EmbeddedDocument> corpus;
+    private String query;
+    private List<EmbeddedDocument> vectorRanking;
+    private List<EmbeddedDocument> fullTextRanking;
+    private List<EmbeddedDocument> fused;
+
+    private ReciprocalRankFusion fusion;
+    private DeduplicationStage deduplication;
+    private MaximalMarginalRelevanceStage mmr;
+    private TokenBudgetStage budget;
+    private RetrievalPipeline pipeline;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        this.corpus = new ArrayList<>(this.corpusSize);
+        for (int i = 0; i < this.corpusSize; i++) {
+            String text = i % 10 == 9
+                    ? this.corpus.get(random.nextInt(i)).document().getText().toUpperCase()
+                    : sentence(random, 60);
+            this.corpus.add(new EmbeddedDocument(
+                    Document.builder().id("chunk-" + i).text(text).metadata(Map.of()).build(),
+                    embed(text)));
+        }
+        this.query = "how long does a refund to my card take after a return";
+
+        this.vectorRanking = vectorSearch(this.query);
+        this.fullTextRanking = fullTextSearch(this.query);
+
+        TokenCounter tokenCounter = new TokenCounter();
+        this.fusion = new ReciprocalRankFusion();
+        this.deduplication = new DeduplicationStage();
+        this.mmr = new MaximalMarginalRelevanceStage(0.7, 5);
+        this.budget = new TokenBudgetStage(tokenCounter, 3000);
+        this.fused = this.fusion.fuse(List.of(this.vectorRanking, this.fullTextRanking));
+
+        this.pipeline = RetrievalPipeline.builder()
+                .retriever(retriever("vector", this::vectorSearch))
+                .retriever(retriever("full-text", this::fullTextSearch))
+                .fusion(this.fusion)
+                .stage(this.deduplication)
+                .stage(this.mmr)
+                .stage(this.budget)
+                .meterRegistry(new SimpleMeterRegistry())
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.pipeline.close();
+    }
+
+    @Benchmark
+    public List<EmbeddedDocument> fusion() {
+        return this.fusion.fuse(List.of(this.vectorRanking, this.fullTextRanking));
+    }
+
+    @Benchmark
+    public List<EmbeddedDocument> deduplication() {
+        return this.deduplication.apply(this.query, this.fused);
+    }
+
+    @Benchmark
+    public List<EmbeddedDocument> mmr() {
+        return this.mmr.apply(this.query, this.fused);
+    }
+
+    @Benchmark
+    public List<EmbeddedDocument> budget() {
+        return this.budget.apply(this.query, this.fused);
+    }
+
+    @Benchmark
+    public List<Document> pipeline() {
+        return this.pipeline.retrieve(this.query);
+    }
+
+    private List<EmbeddedDocument> vectorSearch(String query) {
+        float[] embedding = embed(query);
+        return this.corpus.stream()
+                .sorted(Comparator.comparingDouble((EmbeddedDocument candidate) -> dot(candidate.embedding(), embedding)).reversed())
+                .limit(TOP_K)
+                .toList();
+    }
+
+    private List<EmbeddedDocument> fullTextSearch(String query) {
+        Set<String> terms = new HashSet<>(Arrays.asList(query.toLowerCase().split("\\W+")));
+        return this.corpus.stream()
+                .filter(candidate -> overlap(candidate, terms) > 0)
+                .sorted(Comparator.comparingLong((EmbeddedDocument candidate) -> overlap(candidate, terms)).reversed())
+                .limit(TOP_K)
+                .toList();
+    }
+
+    private static long overlap(EmbeddedDocument candidate, Set<String> terms) {
+        return Arrays.stream(candidate.document().getText().toLowerCase().split("\\W+")).filter(terms::contains).count();
+    }
+
+    private static RetrievalPipeline.Retriever retriever(String name, Function<String, List<EmbeddedDocument>> search) {
+        return new RetrievalPipeline.Retriever() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public List<EmbeddedDocument> retrieve(String query) {
+                return search.apply(query);
+            }
+        };
+    }
+
+    private static String sentence(Random random, int words) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            builder.append(VOCABULARY[random.nextInt(VOCABULARY.length)]).append(i % 12 == 11 ? ". " : " ");
+        }
+        return builder.toString().strip();
+    }
+
+    /**
+     * Hashed bag of words, normalized; similar enough to an embedding for ranking a synthetic corpus.
+     */
+    private static float[] embed(String text) {
+        float[] vector = new float[DIMENSIONS];
+        for (String word : text.toLowerCase().split("\\W+")) {
+            vector[Math.floorMod(word.hashCode(), DIMENSIONS)] += 1;
+        }
+        double norm = Math.sqrt(dot(vector, vector));
+        for (int i = 0; i < vector.length && norm > 0; i++) {
+            vector[i] /= (float) norm;
+        }
+        return vector;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,196 @@
+package dev.denniszhang.gen_ai_orchestrator.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Drives {@code /api/v1/agent/stream} of a running node (e.g. one started with the {@code loadtest}
+ * profile) with {@code concurrency} conversations at a time, closed loop, until {@code conversations}
+ * conversations of {@code turns} messages each are done:
+ * <pre>
+ * java -cp target/benchmarks.jar dev.denniszhang.gen_ai_orchestrator.benchmark.StreamLoadDriver \
+ *     url=http://localhost:8080 concurrency=100 conversations=1000 turns=2
+ * </pre>
+ * Reports time to first token (the first event with text or about a tool) and turn latency at p50 and
+ * p99, throughput, and, from the node's actuator metrics, bytes allocated, GC pauses and heap in use.
+ */
+public class StreamLoadDriver {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>(Map.of(
+                "url", "http://localhost:8080",
+                "concurrency", "50",
+                "conversations", "500",
+                "turns", "2"));
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2 || !options.containsKey(option[0])) {
+                System.err.println("Usage: StreamLoadDriver [url=...] [concurrency=N] [conversations=N] [turns=N]");
+                System.exit(2);
+            }
+            options.put(option[0], option[1]);
+        }
+        String url = options.get("url");
+        int concurrency = Integer.parseInt(options.get("concurrency"));
+        int conversations = Integer.parseInt(options.get("conversations"));
+        int turns = Integer.parseInt(options.get("turns"));
+
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        String run = Long.toString(System.currentTimeMillis(), 36);
+
+        List<Long> firstTokens = Collections.synchronizedList(new ArrayList<>());
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+
+        Jvm before = Jvm.read(client, url);
+        long start = System.nanoTime();
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int worker = 0; worker < concurrency; worker++) {
+                workers.submit(() -> {
+                    for (int conversation = next.getAndIncrement(); conversation < conversations; conversation = next.getAndIncrement()) {
+                        String conversationId = "load-" + run + "-" + conversation;
+                        for (int turn = 0; turn < turns; turn++) {
+                            try {
+                                Turn result = turn(client, url, conversationId, "Where is my order " + conversation + "? (" + turn + ")");
+                                firstTokens.add(result.firstToken());
+                                latencies.add(result.latency());
+                            } catch (Exception e) {
+                                errors.incrementAndGet();
+                            }
+                        }
+                    }
+                });
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Jvm after = Jvm.read(client, url);
+
+        System.out.printf("conversations %d x %d turns at concurrency %d in %.1f s, %d failed turns%n",
+                conversations, turns, concurrency, seconds, errors.get());
+        System.out.printf("throughput      %10.1f conversations/s %10.1f turns/s%n",
+                conversations / seconds, latencies.size() / seconds);
+        System.out.printf("first token     p50 %8.1f ms   p99 %8.1f ms%n", percentile(firstTokens, 50), percentile(firstTokens, 99));
+        System.out.printf("turn latency    p50 %8.1f ms   p99 %8.1f ms%n", percentile(latencies, 50), percentile(latencies, 99));
+        if (before != null && after != null) {
+            System.out.printf("allocated       %10.1f KB/conversation%n", (after.allocatedBytes() - before.allocatedBytes()) / 1024 / conversations);
+            System.out.printf("gc pauses       %10.2f ms/conversation, %d pauses%n",
+                    (after.gcPauseSeconds() - before.gcPauseSeconds()) * 1000 / conversations,
+                    (long) (after.gcPauses() - before.gcPauses()));
+            System.out.printf("heap in use     %10.1f MB after the run%n", after.heapUsedBytes() / 1024 / 1024);
+        } else {
+            System.out.println("JVM metrics unavailable, is /actuator/metrics exposed?");
+        }
+    }
+
+    private static Turn turn(HttpClient client, String url, String conversationId, String message) throws IOException, InterruptedException {
+        String body = MAPPER.writeValueAsString(Map.of("conversationId", conversationId, "message", message));
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url + "/api/v1/agent/stream"))
+                .header("Content-Type", "application/json")
+                .header("Accept", "text/event-stream")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+
+        long start = System.nanoTime();
+        HttpResponse<Stream<String>> response = client.send(request, HttpResponse.BodyHandlers.ofLines());
+        if (response.statusCode() != 200) {
+            response.body().close();
+            throw new IOException("HTTP " + response.statusCode());
+        }
+
+        long firstToken = -1;
+        try (Stream<String> lines = response.body()) {
+            Iterator<String> iterator = lines.iterator();
+            String event = null;
+            while (iterator.hasNext()) {
+                String line = iterator.next();
+                if (line.startsWith("event:")) {
+                    event = line.substring("event:".length()).trim();
+                } else if (line.startsWith("data:") && firstToken < 0 && isOutput(event, line.substring("data:".length()))) {
+                    firstToken = System.nanoTime() - start;
+                }
+            }
+        }
+        long latency = System.nanoTime() - start;
+        return new Turn(firstToken >= 0 ? firstToken : latency, latency);
+    }
+
+    private static boolean isOutput(String event, String data) throws IOException {
+        if (!"message".equals(event)) {
+            return true;
+        }
+        JsonNode message = MAPPER.readTree(data).path("message");
+        return !message.path("text").asText("").isEmpty() || !message.path("toolCalls").isEmpty();
+    }
+
+    private static double percentile(List<Long> nanos, int percentile) {
+        if (nanos.isEmpty()) {
+            return Double.NaN;
+        }
+        List<Long> sorted = new ArrayList<>(nanos);
+        sorted.sort(Long::compare);
+        int index = Math.min(sorted.size() - 1, (int) Math.ceil(sorted.size() * percentile / 100.0) - 1);
+        return sorted.get(Math.max(index, 0)) / 1e6;
+    }
+
+    private record Turn(long firstToken, long latency) {}
+
+    /**
+     * JVM metrics of the node under load, from its actuator.
+     */
+    private record Jvm(double allocatedBytes, double gcPauses, double gcPauseSeconds, double heapUsedBytes) {
+
+        private static Jvm read(HttpClient client, String url) {
+            try {
+                return new Jvm(
+                        metric(client, url, "jvm.gc.memory.allocated", "", "COUNT"),
+                        metric(client, url, "jvm.gc.pause", "", "COUNT"),
+                        metric(client, url, "jvm.gc.pause", "", "TOTAL_TIME"),
+                        metric(client, url, "jvm.memory.used", "?tag=area:heap", "VALUE"));
+            } catch (IOException | InterruptedException e) {
+                return null;
+            }
+        }
+
+        private static double metric(HttpClient client, String url, String name, String query, String statistic)
+                throws IOException, InterruptedException {
+            HttpResponse<String> response = client.send(
+                    HttpRequest.newBuilder(URI.create(url + "/actuator/metrics/" + name + query)).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() == 404) {
+                // No GC has happened yet
+                return 0;
+            }
+            if (response.statusCode() != 200) {
+                throw new IOException("HTTP " + response.statusCode() + " for " + name);
+            }
+            for (JsonNode measurement : MAPPER.readTree(response.body()).path("measurements")) {
+                if (statistic.equals(measurement.path("statistic").asText())) {
+                    return measurement.path("value").asDouble();
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -1,56 +1,170 @@
 package dev.denniszhang.gen_ai_orchestrator.api.contoller;
 
-import dev.denniszhang.gen_ai_orchestrator.core.service.ContextEngine;
+import dev.denniszhang.gen_ai_orchestrator.core.model.AgentEvent;
+import dev.denniszhang.gen_ai_orchestrator.core.model.AgentRequest;
+import dev.denniszhang.gen_ai_orchestrator.core.model.IngestionJobStatus;
+import dev.denniszhang.gen_ai_orchestrator.core.service.IngestionPipeline;
 import dev.denniszhang.gen_ai_orchestrator.core.service.OrchestratorAgent;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.exception.AdmissionRejectedException;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.exception.ModelUnavailableException;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.LoggedEvent;
 import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.MessageDTO;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.TemporaryFileResource;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.TurnEventLog;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.ai.chat.messages.Message;
-import org.springframework.core.io.InputStreamResource;
-import org.springframework.core.io.Resource;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 
 import java.io.IOException;
-import java.util.Arrays;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Tag(name = "Agentic AI", description = "Endpoints for interacting with the Agentic AI")
 @CrossOrigin
 @RestController
 @RequestMapping("/api/v1/agent")
 class AgentController {
+    static final String TENANT_HEADER = "X-Tenant-Id";
+
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
-    private final ContextEngine contextEngine;
+    private final IngestionPipeline ingestionPipeline;
     private final OrchestratorAgent orchestrator;
+    private final TurnEventLog eventLog;
+    private final Duration heartbeatInterval;
 
-    private AgentController(OrchestratorAgent orchestrator, ContextEngine contextEngine) {
+    private AgentController(
+            OrchestratorAgent orchestrator,
+            IngestionPipeline ingestionPipeline,
+            TurnEventLog eventLog,
+            @Value("${orchestrator.stream.heartbeat-interval:15s}") Duration heartbeatInterval
+    ) {
         this.orchestrator = orchestrator;
-        this.contextEngine = contextEngine;
+        this.ingestionPipeline = ingestionPipeline;
+        this.eventLog = eventLog;
+        this.heartbeatInterval = heartbeatInterval;
+    }
+
+    @Operation(summary = "Streaming Chat", description = "Streams server-sent events as the agent reasons and executes tools: "
+            + "'message' for model output and tool responses, 'tool-started', 'tool-finished' and 'tool-failed' for tool progress, "
+            + "and 'error' if the turn fails after events were sent. Events have ids to reconnect to /resume with as Last-Event-ID. "
+            + "A keepalive comment is sent every heartbeat interval. Naming a tool that doesn't exist is rejected with 400. "
+            + "The tenant, which cached answers are shared within and rate limits apply to, is the " + TENANT_HEADER + " header; "
+            + "it must be set by the gateway that authenticates the caller, never passed through from the client.")
+    @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<AgentEvent>> stream(@RequestBody MessageDTO messageDTO,
+                                                    @RequestHeader(value = TENANT_HEADER, required = false) String tenant) {
+        AgentRequest request = new AgentRequest(messageDTO.conversationId(), messageDTO.message(), tenant, messageDTO.tools());
+        return serverSentEvents(eventLog.record(messageDTO.conversationId(), orchestrator.stream(request)));
     }
 
-    @Operation(summary = "Streaming Chat", description = "Returns a Flux of messages as the agent reasons and executes tools.")
-    @PostMapping("/stream")
-    public Flux<Message> stream(@RequestBody MessageDTO messageDTO) {
-        return orchestrator.stream(messageDTO.conversationId(), messageDTO.message());
+    @Operation(summary = "Resume Chat", description = "Continues the last turn of the conversation from its last checkpoint if it "
+            + "was interrupted before it was answered, streaming the same events as /stream. With Last-Event-ID, the events "
+            + "of the turn after that one are replayed first. Without anything to resume or replay, the stream ends right away.")
+    @PostMapping(value = "/resume/{conversationId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<AgentEvent>> resume(@PathVariable String conversationId,
+                                                    @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return serverSentEvents(eventLog.resume(conversationId, lastEventId, orchestrator.resume(conversationId)));
     }
 
+    @Operation(summary = "Upload Documents", description = "Queues the files for ingestion and returns the job to poll for progress.")
     @PostMapping("/upload")
-    public void upload(@RequestParam MultipartFile[] files) {
-        contextEngine.addResource(
-            (Resource[]) Arrays.stream(files).map(f -> {
-                try {
-                    return new InputStreamResource(f.getInputStream());
-                } catch (IOException e) {
-                    logger.error("File Read Exception.", e);
-                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Files can't be processed.");
-                }
-            }).toArray()
-        );
-    }
-}
\ No newline at end of file
+    public ResponseEntity<IngestionJobStatus> upload(@RequestParam MultipartFile[] files) {
+        List<TemporaryFileResource> resources = new ArrayList<>();
+        for (MultipartFile file : files) {
+            try {
+                // Multipart files are deleted when the request completes, ingestion runs after that
+                Path path = Files.createTempFile("upload-", ".tmp");
+                file.transferTo(path);
+                resources.add(new TemporaryFileResource(path, file.getOriginalFilename()));
+            } catch (IOException e) {
+                logger.error("File Read Exception.", e);
+                release(resources);
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Files can't be processed.");
+            }
+        }
+
+        try {
+            IngestionJobStatus status = ingestionPipeline.submit(resources);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/v1/agent/upload/" + status.jobId()))
+                    .body(status);
+        } catch (RejectedExecutionException e) {
+            release(resources);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Ingestion queue is full, try again later.");
+        }
+    }
+
+    @Operation(summary = "Upload Status", description = "Returns per-file progress and chunk throughput of an ingestion job.")
+    @GetMapping("/upload/{jobId}")
+    public IngestionJobStatus uploadStatus(@PathVariable String jobId) {
+        return ingestionPipeline.getStatus(jobId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Ingestion job not found."));
+    }
+
+    /**
+     * A failure before anything was sent is left to the exception handlers, which answer with its status;
+     * after that the response is committed and the failure is sent as an 'error' event instead.
+     */
+    private Flux<ServerSentEvent<AgentEvent>> serverSentEvents(Flux<LoggedEvent> loggedEvents) {
+        AtomicBoolean committed = new AtomicBoolean();
+        return loggedEvents
+                .map(logged -> ServerSentEvent.<AgentEvent>builder()
+                        .id(logged.id())
+                        .event(logged.event().type())
+                        .data(logged.event())
+                        .build())
+                .publish(events -> Flux.merge(events, heartbeats().takeUntilOther(events.then())))
+                .doOnNext(event -> committed.set(true))
+                .onErrorResume(error -> committed.get(), error -> Flux.just(failure(error)));
+    }
+
+    private ServerSentEvent<AgentEvent> failure(Throwable error) {
+        AgentEvent.TurnFailed failed = switch (error) {
+            case AdmissionRejectedException e -> new AgentEvent.TurnFailed(e.getMessage(), e.getRetryAfterSeconds());
+            case ModelUnavailableException e -> new AgentEvent.TurnFailed(e.getMessage(), e.getRetryAfterSeconds());
+            default -> {
+                logger.error("Turn failed while streaming", error);
+                yield new AgentEvent.TurnFailed("An unexpected error occurred. Please try again later.", null);
+            }
+        };
+        return ServerSentEvent.<AgentEvent>builder()
+                .event(failed.type())
+                .data(failed)
+                .build();
+    }
+
+    /**
+     * Keeps proxies from closing the connection while the agent waits on the model or on tools.
+     */
+    private Flux<ServerSentEvent<AgentEvent>> heartbeats() {
+        return Flux.interval(heartbeatInterval, heartbeatInterval)
+                .map(tick -> ServerSentEvent.<AgentEvent>builder().comment("keepalive").build());
+    }
+
+    private void release(List<TemporaryFileResource> resources) {
+        for (TemporaryFileResource resource : resources) {
+            try {
+                resource.close();
+            } catch (IOException e) {
+                logger.warn("Failed to delete {}", resource.getDescription(), e);
+            }
+        }
+    }
+}
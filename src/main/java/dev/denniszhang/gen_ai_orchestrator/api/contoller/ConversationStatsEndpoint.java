@@ -0,0 +1,25 @@
+package dev.denniszhang.gen_ai_orchestrator.api.contoller;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.ConversationSummary;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.ConversationStats;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+
+/**
+ * {@code /actuator/conversations/{conversationId}}: tokens, iterations and time per stage of a
+ * conversation. Answers 404 for a conversation this instance hasn't seen recently.
+ */
+@Endpoint(id = "conversations")
+public class ConversationStatsEndpoint {
+    private final ConversationStats conversationStats;
+
+    public ConversationStatsEndpoint(ConversationStats conversationStats) {
+        this.conversationStats = conversationStats;
+    }
+
+    @ReadOperation
+    public ConversationSummary conversation(@Selector String conversationId) {
+        return this.conversationStats.get(conversationId).orElse(null);
+    }
+}
@@ -0,0 +1,80 @@
+package dev.denniszhang.gen_ai_orchestrator.core.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import org.springframework.ai.chat.messages.Message;
+
+import java.time.Instant;
+
+/**
+ * Event streamed to the client while the agent reasons and executes tools. {@link #type()} is used as
+ * the server-sent event name.
+ */
+public sealed interface AgentEvent {
+
+    String type();
+
+    /**
+     * A model output chunk, the final answer, or the tool responses of a turn.
+     */
+    record MessageEvent(Message message) implements AgentEvent {
+        @Override
+        public String type() {
+            return "message";
+        }
+    }
+
+    record ToolStarted(
+            String toolCallId,
+            String toolName,
+            String arguments,
+            Instant startedAt
+    ) implements AgentEvent {
+        @Override
+        public String type() {
+            return "tool-started";
+        }
+    }
+
+    record ToolFinished(
+            String toolCallId,
+            String toolName,
+            String result,
+
+            @Schema(description = "Time from the tool starting until it returned")
+            long durationMillis
+    ) implements AgentEvent {
+        @Override
+        public String type() {
+            return "tool-finished";
+        }
+    }
+
+    record ToolFailed(
+            String toolCallId,
+            String toolName,
+            String error,
+
+            @Schema(description = "Time from the tool starting (or being dispatched, on timeout) until it failed")
+            long durationMillis
+    ) implements AgentEvent {
+        @Override
+        public String type() {
+            return "tool-failed";
+        }
+    }
+
+    /**
+     * The turn failed after events were streamed, when the response status can no longer say so.
+     */
+    record TurnFailed(
+            String error,
+
+            @Schema(description = "Seconds to wait before trying again, if the turn was rejected by a limit or the model was unavailable")
+            Long retryAfterSeconds
+    ) implements AgentEvent {
+        @Override
+        public String type() {
+            return "error";
+        }
+    }
+}
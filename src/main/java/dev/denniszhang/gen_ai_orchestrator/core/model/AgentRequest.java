@@ -0,0 +1,17 @@
+package dev.denniszhang.gen_ai_orchestrator.core.model;
+
+import java.util.List;
+
+/**
+ * A user message for the agent to answer.
+ *
+ * @param scope the tenant the message is answered for, within which cached answers are shared and
+ *              admission is limited; {@code null} for none
+ * @param tools names of the tools the agent may use; {@code null} or empty for all
+ */
+public record AgentRequest(
+        String conversationId,
+        String message,
+        String scope,
+        List<String> tools
+) {}
@@ -0,0 +1,21 @@
+package dev.denniszhang.gen_ai_orchestrator.core.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+public record IngestionFileStatus(
+        String filename,
+
+        @Schema(description = "QUEUED, PARSING, EMBEDDING, COMPLETED or FAILED")
+        String state,
+
+        @Schema(description = "Chunks produced so far; final once the file has left the PARSING state")
+        long chunks,
+
+        long chunksEmbedded,
+        long chunksStored,
+
+        @Schema(description = "Chunks not embedded again because identical text is already indexed")
+        long chunksSkipped,
+
+        String error
+) {}
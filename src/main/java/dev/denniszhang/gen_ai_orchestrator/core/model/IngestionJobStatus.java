@@ -0,0 +1,25 @@
+package dev.denniszhang.gen_ai_orchestrator.core.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.Instant;
+import java.util.List;
+
+public record IngestionJobStatus(
+        @Schema(description = "Id of the ingestion job", example = "4f0c2b1e-7a52-4c8e-9a0e-2f1f6f1d9a31")
+        String jobId,
+
+        @Schema(description = "QUEUED, RUNNING, COMPLETED or FAILED")
+        String state,
+
+        Instant submittedAt,
+        Instant completedAt,
+
+        @Schema(description = "Chunks written to the vector store across all files")
+        long chunksStored,
+
+        @Schema(description = "Chunks written per second since the job was submitted")
+        double chunksPerSecond,
+
+        List<IngestionFileStatus> files
+) {}
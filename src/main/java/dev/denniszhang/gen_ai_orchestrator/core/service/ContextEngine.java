@@ -1,13 +1,27 @@
 package dev.denniszhang.gen_ai_orchestrator.core.service;
 
 import org.springframework.ai.chat.messages.Message;
-import org.springframework.core.io.Resource;
 
 import java.util.List;
 
 public interface ContextEngine {
     List<Message> getMessages(String conversationID);
-    void addUserMessage(String conversationId, String message);
+    /**
+     * Adds the message with the knowledge retrieved for it.
+     *
+     * @return the messages of the conversation after the message was added, ready for the prompt
+     */
+    List<Message> addUserMessage(String conversationId, String message);
     void addMessage(String conversationId, Message message);
-    void addResource(Resource[] resources);
+    /**
+     * Replaces the last message of the conversation, such as a partial answer by the one generated again.
+     */
+    void replaceLastMessage(String conversationId, Message message);
+    void addCachedAnswer(String conversationId, String message, Message answer);
+    void flush(String conversationId);
+    /**
+     * Runs the action once the messages added to the conversation so far are stored, without storing
+     * them any earlier; an action still waiting for the conversation is replaced.
+     */
+    void whenFlushed(String conversationId, Runnable action);
 }
@@ -0,0 +1,12 @@
+package dev.denniszhang.gen_ai_orchestrator.core.service;
+
+import dev.denniszhang.gen_ai_orchestrator.core.model.IngestionJobStatus;
+import org.springframework.core.io.Resource;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface IngestionPipeline {
+    IngestionJobStatus submit(List<? extends Resource> resources);
+    Optional<IngestionJobStatus> getStatus(String jobId);
+}
@@ -1,8 +1,21 @@
 package dev.denniszhang.gen_ai_orchestrator.core.service;
 
-import org.springframework.ai.chat.messages.Message;
+import dev.denniszhang.gen_ai_orchestrator.core.model.AgentEvent;
+import dev.denniszhang.gen_ai_orchestrator.core.model.AgentRequest;
 import reactor.core.publisher.Flux;
 
 public interface OrchestratorAgent {
-    Flux<Message> stream(String conversationId, String message);
+    default Flux<AgentEvent> stream(String conversationId, String message) {
+        return stream(new AgentRequest(conversationId, message, null, null));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the request names a tool that doesn't exist
+     */
+    Flux<AgentEvent> stream(AgentRequest request);
+
+    /**
+     * Continues the last turn of the conversation if it was interrupted before it was answered.
+     */
+    Flux<AgentEvent> resume(String conversationId);
 }
@@ -0,0 +1,34 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * @param maxWait longest a request or upstream call waits for its limit before it is rejected
+ * @param maxQueued requests or upstream calls waiting per limiter at most
+ * @param turnTokens tokens a request is estimated at on top of its message
+ * @param tenant the limit of each tenant not listed in {@code tenants}
+ * @param tenants limits by tenant ({@code AgentRequest.scope})
+ * @param upstreams limits by upstream, {@code model} or {@code tools}
+ */
+@ConfigurationProperties("orchestrator.admission")
+public record AdmissionProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("5s") Duration maxWait,
+        @DefaultValue("1000") int maxQueued,
+        @DefaultValue("2000") long turnTokens,
+        @DefaultValue Limit tenant,
+        @DefaultValue Map<String, Limit> tenants,
+        @DefaultValue Map<String, Limit> upstreams
+) {
+    /**
+     * Per minute; 0 is no limit.
+     */
+    public record Limit(
+            @DefaultValue("0") long requestsPerMinute,
+            @DefaultValue("0") long tokensPerMinute
+    ) {}
+}
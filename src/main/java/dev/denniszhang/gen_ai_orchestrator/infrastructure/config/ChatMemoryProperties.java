@@ -0,0 +1,47 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties("orchestrator.chat-memory")
+public record ChatMemoryProperties(
+        @DefaultValue("20") int maxMessages,
+        @DefaultValue("1000") int maxCachedConversations,
+        @DefaultValue("30m") Duration cacheTtl,
+        @DefaultValue("5s") Duration flushInterval,
+        @DefaultValue TokenBudget tokenBudget,
+        @DefaultValue Compaction compaction
+) {
+    /**
+     * Prompt tokens per part of the context window.
+     *
+     * @param system the system message
+     * @param knowledge the retrieved documents of one user message
+     * @param history every message but the system message
+     * @param toolOutput the responses of one tool response message
+     */
+    public record TokenBudget(
+            @DefaultValue("2000") int system,
+            @DefaultValue("3000") int knowledge,
+            @DefaultValue("8000") int history,
+            @DefaultValue("4000") int toolOutput
+    ) {}
+
+    /**
+     * Background summarization of evicted history.
+     *
+     * @param minEvictedTokens evicted tokens a conversation collects before it is summarized
+     * @param maxSummaryTokens target length of the rolling summary
+     * @param maxPendingConversations conversations buffered for summarization at most
+     * @param minInterval pause between two summarization calls
+     */
+    public record Compaction(
+            @DefaultValue("true") boolean enabled,
+            @DefaultValue("1000") int minEvictedTokens,
+            @DefaultValue("500") int maxSummaryTokens,
+            @DefaultValue("1000") int maxPendingConversations,
+            @DefaultValue("1s") Duration minInterval
+    ) {}
+}
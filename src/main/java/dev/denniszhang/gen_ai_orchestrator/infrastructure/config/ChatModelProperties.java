@@ -0,0 +1,52 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * @param resilient whether the chat model is wrapped in a {@code ResilientChatModel}
+ * @param firstTokenTimeout longest a stream may take to emit its first chunk
+ * @param maxAttempts attempts of a model call in total, the first one included
+ * @param secondary an OpenAI-compatible backend to fail over and hedge to; none without a base-url
+ */
+@ConfigurationProperties("orchestrator.chat-model")
+public record ChatModelProperties(
+        @DefaultValue("true") boolean resilient,
+        @DefaultValue("30s") Duration firstTokenTimeout,
+        @DefaultValue("3") int maxAttempts,
+        @DefaultValue("500ms") Duration backoff,
+        @DefaultValue("5s") Duration maxBackoff,
+        @DefaultValue CircuitBreaker circuitBreaker,
+        @DefaultValue Secondary secondary,
+        @DefaultValue Hedge hedge
+) {
+    /**
+     * @param failureThreshold consecutive failures that open a backend's breaker
+     * @param openDuration how long an open breaker rejects calls before it lets a trial call through
+     */
+    public record CircuitBreaker(
+            @DefaultValue("5") int failureThreshold,
+            @DefaultValue("30s") Duration openDuration
+    ) {}
+
+    /**
+     * @param baseUrl e.g. {@code http://localhost:12434/engines}
+     */
+    public record Secondary(
+            String baseUrl,
+            @DefaultValue("none") String apiKey,
+            String model
+    ) {}
+
+    /**
+     * @param percentile of the primary's recent times to first chunk after which a stream is hedged
+     * @param minDelay earliest a stream is hedged
+     */
+    public record Hedge(
+            @DefaultValue("false") boolean enabled,
+            @DefaultValue("0.95") double percentile,
+            @DefaultValue("1s") Duration minDelay
+    ) {}
+}
@@ -0,0 +1,27 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * @param enabled whether turns are checkpointed, so they can be resumed
+ * @param replay the events kept for clients reconnecting with {@code Last-Event-ID}
+ */
+@ConfigurationProperties("orchestrator.checkpoint")
+public record CheckpointProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue Replay replay
+) {
+    /**
+     * @param maxEvents events kept of the last turn of each conversation
+     * @param maxConversations conversations whose events are kept at most
+     * @param retention how long the events are kept after the turn last streamed or was resumed
+     */
+    public record Replay(
+            @DefaultValue("2000") int maxEvents,
+            @DefaultValue("10000") int maxConversations,
+            @DefaultValue("10m") Duration retention
+    ) {}
+}
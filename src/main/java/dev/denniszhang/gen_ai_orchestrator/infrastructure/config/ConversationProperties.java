@@ -0,0 +1,13 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.config;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.ConversationTurns;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * @param busyPolicy what to do with a message for a conversation that is still answering the previous one
+ */
+@ConfigurationProperties("orchestrator.conversation")
+public record ConversationProperties(
+        @DefaultValue("queue") ConversationTurns.BusyPolicy busyPolicy
+) {}
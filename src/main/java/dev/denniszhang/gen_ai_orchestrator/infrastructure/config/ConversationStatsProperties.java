@@ -0,0 +1,16 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * @param maxConversations conversations whose stats are kept at most
+ * @param ttl how long the stats of a conversation are kept after its last turn
+ */
+@ConfigurationProperties("orchestrator.conversation-stats")
+public record ConversationStatsProperties(
+        @DefaultValue("10000") long maxConversations,
+        @DefaultValue("1h") Duration ttl
+) {}
@@ -1,29 +1,370 @@
 package dev.denniszhang.gen_ai_orchestrator.infrastructure.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.observation.ObservationRegistry;
+import dev.denniszhang.gen_ai_orchestrator.api.contoller.ConversationStatsEndpoint;
 import dev.denniszhang.gen_ai_orchestrator.core.service.ContextEngine;
+import dev.denniszhang.gen_ai_orchestrator.core.service.IngestionPipeline;
 import dev.denniszhang.gen_ai_orchestrator.core.service.MessageFactory;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.AppendOnlyChatMemoryRepository;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.JdbcAppendOnlyChatMemoryRepository;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.JdbcToolMessageRepository;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.PgVectorDocumentRepository;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.JdbcTurnCheckpointRepository;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.LegacyChatMemoryMigration;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.ToolMessageRepository;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.TurnCheckpointRepository;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.AdmissionControl;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.ChatMemoryEvictionListener;
 import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.ContextEngineImpl;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.ConversationStats;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.ConversationTurns;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.DeduplicationStage;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.FullTextRetriever;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.IngestionPipelineImpl;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.MaximalMarginalRelevanceStage;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.MemoizingToolCallbackProvider;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.MemoryCompactor;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.ParallelToolCallingManager;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.ReciprocalRankFusion;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.RetrievalPipeline;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.SemanticResponseCache;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.StreamingDocumentReader;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.TokenBudgetStage;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.TokenCounter;
 import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.ToolMessageWindowChatMemoryImpl;
-import org.springframework.ai.chat.memory.ChatMemory;
-import org.springframework.ai.chat.memory.repository.jdbc.JdbcChatMemoryRepository;
-import org.springframework.ai.vectorstore.VectorStore;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.ToolRegistry;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.TurnEventLog;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.VectorRetriever;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.WriteBehindChatMemory;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.mcp.customizer.McpSyncClientCustomizer;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.ai.tool.execution.ToolExecutionExceptionProcessor;
+import org.springframework.ai.tool.observation.ToolCallingObservationConvention;
+import org.springframework.ai.tool.resolution.ToolCallbackResolver;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.init.DataSourceScriptDatabaseInitializer;
+import org.springframework.boot.sql.init.DatabaseInitializationMode;
+import org.springframework.boot.sql.init.DatabaseInitializationSettings;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
 import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.sql.DataSource;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
 
 @Configuration
 @Profile("custom")
+@EnableConfigurationProperties({ChatMemoryProperties.class, IngestionProperties.class, EmbeddingCacheProperties.class, ToolExecutionProperties.class,
+        SchedulingProperties.class, ResponseCacheProperties.class, ToolCacheProperties.class, ToolRegistryProperties.class,
+        RetrievalProperties.class, ConversationProperties.class, AdmissionProperties.class, CheckpointProperties.class,
+        ConversationStatsProperties.class})
 public class CustomReActConfig {
+    @Value("${spring.ai.vectorstore.pgvector.schema-name:public}.${spring.ai.vectorstore.pgvector.table-name:vector_store}")
+    private String vectorStoreTable;
+
+    @Bean
+    @Profile("!loadtest")
+    public DataSourceScriptDatabaseInitializer orchestratorSchemaInitializer(DataSource dataSource) {
+        var settings = new DatabaseInitializationSettings();
+        settings.setSchemaLocations(List.of("classpath:db/orchestrator-schema-postgresql.sql"));
+        settings.setMode(DatabaseInitializationMode.ALWAYS);
+        return new DataSourceScriptDatabaseInitializer(dataSource, settings);
+    }
+
+    @Bean
+    public static BeanPostProcessor embeddingCachePostProcessor(Environment environment, ObjectProvider<JdbcTemplate> jdbcTemplate,
+                                                                ObjectProvider<MeterRegistry> meterRegistry) {
+        return new EmbeddingCachePostProcessor(environment, jdbcTemplate, meterRegistry);
+    }
+
+    @Bean
+    public static BeanPostProcessor resilientChatModelPostProcessor(Environment environment, ObjectProvider<MeterRegistry> meterRegistry) {
+        return new ResilientChatModelPostProcessor(environment, meterRegistry);
+    }
+
+    /**
+     * Moves the history of the Spring AI JDBC chat memory and the tool messages of the vector store into
+     * the chat memory tables during startup, before the repositories reading them are created.
+     */
+    @Bean(initMethod = "migrate")
+    @Profile("!loadtest")
+    public LegacyChatMemoryMigration legacyChatMemoryMigration(DataSourceScriptDatabaseInitializer orchestratorSchemaInitializer,
+                                                               JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                                               ObjectMapper objectMapper) {
+        return new LegacyChatMemoryMigration(jdbcTemplate, transactionTemplate, objectMapper, vectorStoreTable);
+    }
+
+    @Bean
+    @Profile("!loadtest")
+    @DependsOn("legacyChatMemoryMigration")
+    public AppendOnlyChatMemoryRepository chatMemoryRepository(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        return new JdbcAppendOnlyChatMemoryRepository(jdbcTemplate, transactionTemplate);
+    }
+
+    @Bean
+    @Profile("!loadtest")
+    @DependsOn("legacyChatMemoryMigration")
+    public ToolMessageRepository toolMessageRepository(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        return new JdbcToolMessageRepository(jdbcTemplate, objectMapper);
+    }
+
     @Bean
-    public ChatMemory chatMemory(JdbcChatMemoryRepository chatMemoryRepository, VectorStore vectorStore) {
+    public WriteBehindChatMemory chatMemory(AppendOnlyChatMemoryRepository chatMemoryRepository, ToolMessageRepository toolMessageRepository,
+                                 TokenCounter tokenCounter, ObjectProvider<MemoryCompactor> memoryCompactor,
+                                 ObjectProvider<ObservationRegistry> observationRegistry, ChatMemoryProperties properties) {
         return ToolMessageWindowChatMemoryImpl.builder()
                 .chatMemoryRepository(chatMemoryRepository)
-                .vectorStore(vectorStore)
+                .toolMessageRepository(toolMessageRepository)
+                .maxMessages(properties.maxMessages())
+                .tokenCounter(tokenCounter)
+                .maxSystemTokens(properties.tokenBudget().system())
+                .maxHistoryTokens(properties.tokenBudget().history())
+                .maxToolOutputTokens(properties.tokenBudget().toolOutput())
+                .evictionListener(memoryCompactor.getIfAvailable(() -> ChatMemoryEvictionListener.NOOP))
+                .maxConversations(properties.maxCachedConversations())
+                .ttl(properties.cacheTtl())
+                .flushInterval(properties.flushInterval())
+                .observationRegistry(observationRegistry.getIfAvailable(() -> ObservationRegistry.NOOP))
+                .build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "orchestrator.chat-memory.compaction", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public MemoryCompactor memoryCompactor(ChatModel chatModel, TokenCounter tokenCounter, ChatMemoryProperties properties) {
+        ChatMemoryProperties.Compaction compaction = properties.compaction();
+        return new MemoryCompactor(chatModel, tokenCounter, compaction.minEvictedTokens(), compaction.maxSummaryTokens(),
+                compaction.maxPendingConversations(), compaction.minInterval());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "orchestrator.response-cache", name = "enabled", havingValue = "true")
+    public SemanticResponseCache semanticResponseCache(EmbeddingModel embeddingModel, TokenCounter tokenCounter,
+                                                       ObjectProvider<MeterRegistry> meterRegistry, ResponseCacheProperties properties) {
+        return SemanticResponseCache.builder()
+                .embeddingModel(embeddingModel)
+                .tokenCounter(tokenCounter)
+                .similarityThreshold(properties.similarityThreshold())
+                .ttl(properties.ttl())
+                .maxEntries(properties.maxEntries())
+                .readOnlyTools(properties.readOnlyTools())
+                .meterRegistry(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry))
+                .build();
+    }
+
+    /**
+     * The tools the agent offers the model: every provider's tools, memoized as configured and snapshotted.
+     */
+    @Bean(destroyMethod = "close")
+    public ToolRegistry toolRegistry(ObjectProvider<ToolCallbackProvider> toolCallbackProviders,
+                                     ObjectProvider<MeterRegistry> meterRegistry,
+                                     ToolCacheProperties toolCacheProperties,
+                                     ToolRegistryProperties properties) {
+        Map<String, MemoizingToolCallbackProvider.Policy> policies = new HashMap<>();
+        toolCacheProperties.tools().forEach((name, tool) -> policies.put(name, new MemoizingToolCallbackProvider.Policy(tool.ttl(), tool.maxSize())));
+
+        var memoizing = new MemoizingToolCallbackProvider(
+                () -> toolCallbackProviders.orderedStream()
+                        .flatMap(provider -> Arrays.stream(provider.getToolCallbacks()))
+                        .toArray(ToolCallback[]::new),
+                policies,
+                meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+        return new ToolRegistry(memoizing::getToolCallbacks, properties.refreshInterval());
+    }
+
+    /**
+     * Refreshes the tool snapshot when an MCP server announces that its tools changed. The registry is
+     * looked up lazily: it lists tools through the MCP clients this customizer configures.
+     */
+    @Bean
+    public McpSyncClientCustomizer toolRegistryRefresher(ObjectProvider<ToolRegistry> toolRegistry) {
+        return (name, spec) -> spec.toolsChangeConsumer(tools -> toolRegistry.ifAvailable(ToolRegistry::refreshAsync));
+    }
+
+    @Bean
+    public TokenCounter tokenCounter() {
+        return new TokenCounter();
+    }
+
+    @Bean(destroyMethod = "close")
+    public ContextEngine contextEngine(WriteBehindChatMemory chatMemory, MessageFactory messageFactory,
+                                       RetrievalPipeline retrievalPipeline, ObjectProvider<ObservationRegistry> observationRegistry) {
+        return new ContextEngineImpl(chatMemory, messageFactory, retrievalPipeline,
+                observationRegistry.getIfAvailable(() -> ObservationRegistry.NOOP));
+    }
+
+    /**
+     * Sums the observations of each conversation; registered with the observation registry as a handler.
+     */
+    @Bean
+    public ConversationStats conversationStats(ConversationStatsProperties properties) {
+        return new ConversationStats(properties.maxConversations(), properties.ttl());
+    }
+
+    /**
+     * Only created when {@code conversations} is enabled and exposed, as it shows any conversation's stats by id.
+     */
+    @Bean
+    @ConditionalOnAvailableEndpoint(endpoint = ConversationStatsEndpoint.class)
+    public ConversationStatsEndpoint conversationStatsEndpoint(ConversationStats conversationStats) {
+        return new ConversationStatsEndpoint(conversationStats);
+    }
+
+    /**
+     * Hybrid retrieval: full-text and vector search fused by rank, de-duplicated, diversified by MMR and
+     * cut to the knowledge budget.
+     */
+    @Bean(destroyMethod = "close")
+    @Profile("!loadtest")
+    public RetrievalPipeline retrievalPipeline(PgVectorDocumentRepository documentRepository, EmbeddingModel embeddingModel,
+                                               TokenCounter tokenCounter, ObjectProvider<MeterRegistry> meterRegistry,
+                                               RetrievalProperties properties, ChatMemoryProperties chatMemoryProperties) {
+        var builder = RetrievalPipeline.builder()
+                .retriever(new VectorRetriever(documentRepository, embeddingModel,
+                        properties.vector().topK(), properties.vector().minSimilarity()));
+        if (properties.fullText().enabled()) {
+            builder.retriever(new FullTextRetriever(documentRepository, properties.fullText().language(), properties.fullText().topK()));
+        }
+        return builder
+                .fusion(new ReciprocalRankFusion(properties.rrfK()))
+                .stage(new DeduplicationStage())
+                .stage(new MaximalMarginalRelevanceStage(properties.mmrLambda(), properties.maxDocuments()))
+                .stage(new TokenBudgetStage(tokenCounter, chatMemoryProperties.tokenBudget().knowledge()))
+                .timeout(properties.timeout())
+                .meterRegistry(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry))
+                .build();
+    }
+
+    /**
+     * Scheduler for the blocking steps of the ReAct loop (JDBC, pgvector, tool calls).
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler agentBlockingScheduler(SchedulingProperties properties) {
+        if (properties.virtualThreads()) {
+            return Schedulers.fromExecutorService(
+                    Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("agent-blocking-", 0).factory()),
+                    "agent-blocking");
+        }
+        return Schedulers.newBoundedElastic(properties.threadCap(), properties.queuedTaskCap(), "agent-blocking");
+    }
+
+    @Bean
+    public ConversationTurns conversationTurns(ConversationProperties properties) {
+        return new ConversationTurns(properties.busyPolicy());
+    }
+
+    @Bean
+    @Profile("!loadtest")
+    @ConditionalOnProperty(prefix = "orchestrator.checkpoint", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public TurnCheckpointRepository turnCheckpointRepository(JdbcTemplate jdbcTemplate) {
+        return new JdbcTurnCheckpointRepository(jdbcTemplate);
+    }
+
+    @Bean
+    public TurnEventLog turnEventLog(CheckpointProperties properties) {
+        CheckpointProperties.Replay replay = properties.replay();
+        return new TurnEventLog(replay.maxEvents(), replay.maxConversations(), replay.retention());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "orchestrator.admission", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public AdmissionControl admissionControl(TokenCounter tokenCounter, ObjectProvider<MeterRegistry> meterRegistry,
+                                             AdmissionProperties properties) {
+        Map<String, AdmissionControl.Limit> tenantLimits = new HashMap<>();
+        properties.tenants().forEach((tenant, limit) -> tenantLimits.put(tenant, limit(limit)));
+        Map<String, AdmissionControl.Limit> upstreamLimits = new HashMap<>();
+        properties.upstreams().forEach((upstream, limit) -> upstreamLimits.put(upstream, limit(limit)));
+        return AdmissionControl.builder()
+                .tokenCounter(tokenCounter)
+                .turnTokens(properties.turnTokens())
+                .maxWait(properties.maxWait())
+                .maxQueued(properties.maxQueued())
+                .tenantLimit(limit(properties.tenant()))
+                .tenantLimits(tenantLimits)
+                .upstreamLimits(upstreamLimits)
+                .meterRegistry(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry))
+                .build();
+    }
+
+    private static AdmissionControl.Limit limit(AdmissionProperties.Limit limit) {
+        return new AdmissionControl.Limit(limit.requestsPerMinute(), limit.tokensPerMinute());
+    }
+
+    @Bean
+    public ToolCallingManager toolCallingManager(ToolCallbackResolver toolCallbackResolver,
+                                                 ToolExecutionExceptionProcessor toolExecutionExceptionProcessor,
+                                                 ToolExecutionProperties properties,
+                                                 ObjectProvider<ObservationRegistry> observationRegistry,
+                                                 ObjectProvider<ToolCallingObservationConvention> observationConvention) {
+        return ParallelToolCallingManager.builder()
+                .observationRegistry(observationRegistry.getIfAvailable(() -> ObservationRegistry.NOOP))
+                .observationConvention(observationConvention.getIfUnique())
+                .toolCallbackResolver(toolCallbackResolver)
+                .toolExecutionExceptionProcessor(toolExecutionExceptionProcessor)
+                .maxConcurrency(properties.maxConcurrency())
+                .defaultTimeout(properties.defaultTimeout())
+                .timeouts(properties.timeouts())
                 .build();
     }
 
     @Bean
-    public ContextEngine contextEngine(ChatMemory chatMemory, VectorStore vectorStore, MessageFactory messageFactory) {
-        return new ContextEngineImpl(chatMemory, vectorStore, messageFactory);
+    @Profile("!loadtest")
+    public PgVectorDocumentRepository documentRepository(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper,
+                                                         ObjectProvider<ObservationRegistry> observationRegistry,
+                                                         RetrievalProperties retrievalProperties) {
+        // Searches that outlive the retrieval timeout are cancelled by the database
+        return new PgVectorDocumentRepository(jdbcTemplate, objectMapper, vectorStoreTable,
+                observationRegistry.getIfAvailable(() -> ObservationRegistry.NOOP), retrievalProperties.timeout());
+    }
+
+    @Bean
+    @Profile("!loadtest")
+    public ApplicationRunner contentHashIndex(PgVectorDocumentRepository documentRepository) {
+        return args -> documentRepository.createContentHashIndex();
+    }
+
+    @Bean
+    @Profile("!loadtest")
+    @ConditionalOnProperty(prefix = "orchestrator.retrieval.full-text", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public ApplicationRunner fullTextIndex(PgVectorDocumentRepository documentRepository, RetrievalProperties properties) {
+        return args -> documentRepository.createFullTextIndex(properties.fullText().language());
+    }
+
+    @Bean
+    @Profile("!loadtest")
+    public IngestionPipeline ingestionPipeline(EmbeddingModel embeddingModel, PgVectorDocumentRepository documentRepository, IngestionProperties properties,
+                                               ObjectProvider<SemanticResponseCache> responseCache) {
+        var documentReader = new StreamingDocumentReader(
+                800,  // chunkSize: Target ~800 tokens per chunk
+                350,  // minChunkSizeChars: Avoid creating tiny, useless chunks
+                5,    // minChunkLengthToEmbed: Discard artifacts/noise
+                10000 // maxNumChunks: Safety limit
+        );
+        // Cached answers were generated from the knowledge before the new documents
+        SemanticResponseCache cache = responseCache.getIfAvailable();
+        return new IngestionPipelineImpl(embeddingModel, documentRepository, documentReader, properties,
+                cache != null ? cache::knowledgeChanged : () -> {});
     }
 }
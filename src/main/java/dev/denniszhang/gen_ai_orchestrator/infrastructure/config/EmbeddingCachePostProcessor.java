@@ -0,0 +1,56 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.config;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.JdbcEmbeddingCacheRepository;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.CachingEmbeddingModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.StringUtils;
+
+/**
+ * Wraps every {@link EmbeddingModel} bean in a {@link CachingEmbeddingModel}, so the vector store,
+ * the ingestion pipeline and query embedding all share one cache whichever model is configured.
+ */
+public class EmbeddingCachePostProcessor implements BeanPostProcessor {
+    private final Environment environment;
+    private final ObjectProvider<JdbcTemplate> jdbcTemplate;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public EmbeddingCachePostProcessor(Environment environment, ObjectProvider<JdbcTemplate> jdbcTemplate,
+                                       ObjectProvider<MeterRegistry> meterRegistry) {
+        this.environment = environment;
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof EmbeddingModel embeddingModel) || bean instanceof CachingEmbeddingModel) {
+            return bean;
+        }
+
+        // Bound here rather than injected: post-processors are created before configuration properties beans
+        EmbeddingCacheProperties properties = Binder.get(this.environment)
+                .bindOrCreate("orchestrator.embedding-cache", EmbeddingCacheProperties.class);
+        if (!properties.enabled()) {
+            return bean;
+        }
+
+        String model = StringUtils.hasText(properties.model())
+                ? properties.model()
+                : this.environment.getProperty("spring.ai.openai.embedding.options.model", beanName);
+
+        return CachingEmbeddingModel.builder()
+                .delegate(embeddingModel)
+                .model(model)
+                .repository(properties.persistent() ? new JdbcEmbeddingCacheRepository(this.jdbcTemplate.getObject()) : null)
+                .maxSize(properties.maxSize())
+                .meterRegistry(this.meterRegistry.getIfAvailable(() -> Metrics.globalRegistry))
+                .build();
+    }
+}
@@ -0,0 +1,17 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties("orchestrator.ingestion")
+public record IngestionProperties(
+        @DefaultValue("64") int maxQueuedFiles,
+        @DefaultValue("2") int parseWorkers,
+        @DefaultValue("2") int embedWorkers,
+        @DefaultValue("2") int storeWorkers,
+        @DefaultValue("512") int queueCapacity,
+        @DefaultValue("32") int embedBatchSize,
+        @DefaultValue("1h") Duration jobRetention
+) {}
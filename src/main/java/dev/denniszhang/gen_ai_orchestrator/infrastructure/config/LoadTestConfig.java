@@ -0,0 +1,153 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.config;
+
+import dev.denniszhang.gen_ai_orchestrator.core.model.IngestionJobStatus;
+import dev.denniszhang.gen_ai_orchestrator.core.service.IngestionPipeline;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.loadtest.LoadTestChatModel;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.loadtest.LoadTestEmbeddingModel;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.loadtest.LoadTestToolCallbackProvider;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.AppendOnlyChatMemoryRepository;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.InMemoryAppendOnlyChatMemoryRepository;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.InMemoryToolMessageRepository;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.InMemoryTurnCheckpointRepository;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.ToolMessageRepository;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.TurnCheckpointRepository;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.DeduplicationStage;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.MaximalMarginalRelevanceStage;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.RetrievalPipeline;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.TokenBudgetStage;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.TokenCounter;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.VectorStoreRetriever;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.ai.vectorstore.SimpleVectorStore;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.Resource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs the orchestrator without any external service, to find out how many concurrent conversations
+ * one node sustains: the model, the embedding model and the MCP tools are replaced with deterministic
+ * stand-ins of configurable latency ({@code orchestrator.load-test}), chat memory and the vector store
+ * live in memory, and uploads are rejected. Activate together with {@code custom}:
+ * {@code --spring.profiles.active=custom,loadtest}.
+ */
+@Configuration
+@Profile("custom & loadtest")
+@EnableConfigurationProperties(LoadTestProperties.class)
+public class LoadTestConfig {
+    private static final String[] WORDS = ("refund invoice order shipping delivery account password reset subscription " +
+            "plan upgrade cancel payment card transfer receipt address warehouse return label carrier tracking delay " +
+            "damage warranty repair replacement discount coupon").split(" ");
+
+    @Bean
+    @Primary
+    public ChatModel loadTestChatModel(LoadTestProperties properties) {
+        LoadTestProperties.Model model = properties.model();
+        return new LoadTestChatModel(model.firstTokenLatency(), model.tokensPerSecond(), model.answerTokens(),
+                model.toolRounds(), model.toolCallsPerRound());
+    }
+
+    @Bean
+    @Primary
+    public EmbeddingModel loadTestEmbeddingModel(LoadTestProperties properties) {
+        return new LoadTestEmbeddingModel(properties.embedding().latency(), properties.embedding().dimensions());
+    }
+
+    @Bean
+    public ToolCallbackProvider loadTestTools(LoadTestProperties properties) {
+        LoadTestProperties.Tools tools = properties.tools();
+        return new LoadTestToolCallbackProvider(tools.count(), tools.latency(), tools.resultTokens());
+    }
+
+    @Bean
+    public AppendOnlyChatMemoryRepository chatMemoryRepository() {
+        return new InMemoryAppendOnlyChatMemoryRepository();
+    }
+
+    @Bean
+    public ToolMessageRepository toolMessageRepository() {
+        return new InMemoryToolMessageRepository();
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "orchestrator.checkpoint", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public TurnCheckpointRepository turnCheckpointRepository() {
+        return new InMemoryTurnCheckpointRepository();
+    }
+
+    @Bean
+    @Primary
+    public VectorStore vectorStore(EmbeddingModel embeddingModel) {
+        return SimpleVectorStore.builder(embeddingModel).build();
+    }
+
+    /**
+     * Seeds the vector store with fixture chunks of about 100 words.
+     */
+    @Bean
+    public ApplicationRunner loadTestDocuments(VectorStore vectorStore, LoadTestProperties properties) {
+        return args -> {
+            Random random = new Random(42);
+            List<Document> documents = new ArrayList<>(properties.documents());
+            for (int i = 0; i < properties.documents(); i++) {
+                StringBuilder text = new StringBuilder();
+                for (int word = 0; word < 100; word++) {
+                    text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+                }
+                documents.add(Document.builder().id("load-test-" + i).text(text.toString().trim())
+                        .metadata(Map.of("source", "load-test")).build());
+            }
+            vectorStore.add(documents);
+        };
+    }
+
+    /**
+     * The production pipeline minus full-text search, which needs Postgres.
+     */
+    @Bean(destroyMethod = "close")
+    public RetrievalPipeline retrievalPipeline(VectorStore vectorStore, TokenCounter tokenCounter,
+                                               ObjectProvider<MeterRegistry> meterRegistry, RetrievalProperties properties,
+                                               ChatMemoryProperties chatMemoryProperties) {
+        return RetrievalPipeline.builder()
+                .retriever(new VectorStoreRetriever(vectorStore, properties.vector().topK(), properties.vector().minSimilarity()))
+                .stage(new DeduplicationStage())
+                .stage(new MaximalMarginalRelevanceStage(properties.mmrLambda(), properties.maxDocuments()))
+                .stage(new TokenBudgetStage(tokenCounter, chatMemoryProperties.tokenBudget().knowledge()))
+                .timeout(properties.timeout())
+                .meterRegistry(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry))
+                .build();
+    }
+
+    @Bean
+    public IngestionPipeline ingestionPipeline() {
+        return new IngestionPipeline() {
+            @Override
+            public IngestionJobStatus submit(List<? extends Resource> resources) {
+                throw new RejectedExecutionException("Uploads are disabled in the loadtest profile");
+            }
+
+            @Override
+            public Optional<IngestionJobStatus> getStatus(String jobId) {
+                return Optional.empty();
+            }
+        };
+    }
+}
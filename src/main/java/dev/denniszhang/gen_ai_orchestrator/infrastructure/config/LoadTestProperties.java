@@ -0,0 +1,42 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * The stand-ins of the {@code loadtest} profile.
+ *
+ * @param documents fixture chunks the in-memory vector store is seeded with
+ */
+@ConfigurationProperties("orchestrator.load-test")
+public record LoadTestProperties(
+        @DefaultValue Model model,
+        @DefaultValue Embedding embedding,
+        @DefaultValue Tools tools,
+        @DefaultValue("1000") int documents
+) {
+    /**
+     * @param toolRounds model calls of a turn that call tools before one answers
+     * @param toolCallsPerRound tools called at once per round
+     */
+    public record Model(
+            @DefaultValue("300ms") Duration firstTokenLatency,
+            @DefaultValue("50") int tokensPerSecond,
+            @DefaultValue("150") int answerTokens,
+            @DefaultValue("1") int toolRounds,
+            @DefaultValue("2") int toolCallsPerRound
+    ) {}
+
+    public record Embedding(
+            @DefaultValue("20ms") Duration latency,
+            @DefaultValue("768") int dimensions
+    ) {}
+
+    public record Tools(
+            @DefaultValue("4") int count,
+            @DefaultValue("200ms") Duration latency,
+            @DefaultValue("200") int resultTokens
+    ) {}
+}
@@ -0,0 +1,76 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.config;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.ResilientChatModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.openai.OpenAiChatModel;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+/**
+ * Wraps every {@link ChatModel} bean in a {@link ResilientChatModel}, with the configured
+ * {@code orchestrator.chat-model.secondary} as the backend it fails over and hedges to.
+ */
+public class ResilientChatModelPostProcessor implements BeanPostProcessor {
+    private final Environment environment;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public ResilientChatModelPostProcessor(Environment environment, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof ChatModel chatModel) || bean instanceof ResilientChatModel) {
+            return bean;
+        }
+
+        // Bound here rather than injected: post-processors are created before configuration properties beans
+        ChatModelProperties properties = Binder.get(this.environment)
+                .bindOrCreate("orchestrator.chat-model", ChatModelProperties.class);
+        if (!properties.resilient()) {
+            return bean;
+        }
+
+        ResilientChatModel.Builder builder = ResilientChatModel.builder()
+                .primary(chatModel)
+                .firstTokenTimeout(properties.firstTokenTimeout())
+                .maxAttempts(properties.maxAttempts())
+                .backoff(properties.backoff(), properties.maxBackoff())
+                .circuitBreaker(properties.circuitBreaker().failureThreshold(), properties.circuitBreaker().openDuration())
+                .meterRegistry(this.meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+        if (StringUtils.hasText(properties.secondary().baseUrl())) {
+            builder.secondary(openAiCompatible(properties.secondary()));
+            if (properties.hedge().enabled()) {
+                builder.hedge(properties.hedge().percentile(), properties.hedge().minDelay());
+            }
+        }
+        return builder.build();
+    }
+
+    private ChatModel openAiCompatible(ChatModelProperties.Secondary secondary) {
+        Assert.hasText(secondary.model(), "orchestrator.chat-model.secondary.model must be set with a base-url");
+        OpenAiApi api = OpenAiApi.builder()
+                .baseUrl(secondary.baseUrl())
+                .apiKey(secondary.apiKey())
+                .build();
+        return OpenAiChatModel.builder()
+                .openAiApi(api)
+                .defaultOptions(OpenAiChatOptions.builder()
+                        .model(secondary.model())
+                        .temperature(this.environment.getProperty("spring.ai.openai.chat.options.temperature", Double.class))
+                        .build())
+                // Retried by ResilientChatModel
+                .retryTemplate(RetryTemplate.builder().maxAttempts(1).build())
+                .build();
+    }
+}
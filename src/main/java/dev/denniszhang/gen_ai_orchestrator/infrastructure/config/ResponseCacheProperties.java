@@ -0,0 +1,16 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Set;
+
+@ConfigurationProperties("orchestrator.response-cache")
+public record ResponseCacheProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("0.95") double similarityThreshold,
+        @DefaultValue("1h") Duration ttl,
+        @DefaultValue("10000") long maxEntries,
+        @DefaultValue Set<String> readOnlyTools
+) {}
@@ -0,0 +1,37 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Knowledge retrieval for user messages. The token budget of the result is
+ * {@code orchestrator.chat-memory.token-budget.knowledge}.
+ *
+ * @param timeout how long a retriever may take before the pipeline goes on without it and cancels it
+ * @param maxDocuments documents kept after MMR at most
+ */
+@ConfigurationProperties("orchestrator.retrieval")
+public record RetrievalProperties(
+        @DefaultValue Vector vector,
+        @DefaultValue FullText fullText,
+        @DefaultValue("60") int rrfK,
+        @DefaultValue("0.7") double mmrLambda,
+        @DefaultValue("5") int maxDocuments,
+        @DefaultValue("2s") Duration timeout
+) {
+    public record Vector(
+            @DefaultValue("20") int topK,
+            @DefaultValue("0.5") double minSimilarity
+    ) {}
+
+    /**
+     * @param language the Postgres text search configuration of the content
+     */
+    public record FullText(
+            @DefaultValue("true") boolean enabled,
+            @DefaultValue("20") int topK,
+            @DefaultValue("english") String language
+    ) {}
+}
@@ -0,0 +1,11 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties("orchestrator.scheduling")
+public record SchedulingProperties(
+        @DefaultValue("true") boolean virtualThreads,
+        @DefaultValue("200") int threadCap,
+        @DefaultValue("100000") int queuedTaskCap
+) {}
@@ -0,0 +1,20 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * @param tools tools whose results are memoized, by tool name; tools not listed are always called
+ */
+@ConfigurationProperties("orchestrator.tool-cache")
+public record ToolCacheProperties(
+        @DefaultValue Map<String, Tool> tools
+) {
+    public record Tool(
+            @DefaultValue("5m") Duration ttl,
+            @DefaultValue("1000") long maxSize
+    ) {}
+}
@@ -0,0 +1,14 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+@ConfigurationProperties("orchestrator.tool-execution")
+public record ToolExecutionProperties(
+        @DefaultValue("8") int maxConcurrency,
+        @DefaultValue("60s") Duration defaultTimeout,
+        @DefaultValue Map<String, Duration> timeouts
+) {}
@@ -0,0 +1,14 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * @param refreshInterval how often the tool snapshot is refreshed besides MCP list-changed notifications; 0 to disable
+ */
+@ConfigurationProperties("orchestrator.tool-registry")
+public record ToolRegistryProperties(
+        @DefaultValue("10m") Duration refreshInterval
+) {}
@@ -0,0 +1,39 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.exception;
+
+import java.time.Duration;
+
+/**
+ * A request or upstream call was rejected because its rate limit would not admit it in time.
+ */
+public class AdmissionRejectedException extends RuntimeException {
+    private final String limiter;
+    private final Duration retryAfter;
+
+    public AdmissionRejectedException(String limiter, Duration retryAfter) {
+        super("Rate limit of " + limiter + " exceeded, retry after " + retryAfterSeconds(retryAfter) + "s");
+        this.limiter = limiter;
+        this.retryAfter = retryAfter;
+    }
+
+    public String getLimiter() {
+        return this.limiter;
+    }
+
+    /**
+     * @return how long until the limit would admit the call
+     */
+    public Duration getRetryAfter() {
+        return this.retryAfter;
+    }
+
+    /**
+     * @return {@link #getRetryAfter()} in whole seconds, rounded up, as sent in a {@code Retry-After} header
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds(this.retryAfter);
+    }
+
+    private static long retryAfterSeconds(Duration retryAfter) {
+        return Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+    }
+}
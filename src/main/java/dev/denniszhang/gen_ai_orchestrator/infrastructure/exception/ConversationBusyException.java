@@ -0,0 +1,17 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.exception;
+
+/**
+ * A turn was rejected because the conversation already has one in flight.
+ */
+public class ConversationBusyException extends RuntimeException {
+    private final String conversationId;
+
+    public ConversationBusyException(String conversationId) {
+        super("Conversation " + conversationId + " already has a message in progress");
+        this.conversationId = conversationId;
+    }
+
+    public String getConversationId() {
+        return this.conversationId;
+    }
+}
@@ -0,0 +1,33 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.exception;
+
+import java.time.Duration;
+
+/**
+ * No chat model backend takes calls, because the circuit breakers of all of them are open.
+ */
+public class ModelUnavailableException extends RuntimeException {
+    private final Duration retryAfter;
+
+    public ModelUnavailableException(Duration retryAfter) {
+        super("No chat model is available, retry after " + retryAfterSeconds(retryAfter) + "s");
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * @return how long until a backend lets a trial call through
+     */
+    public Duration getRetryAfter() {
+        return this.retryAfter;
+    }
+
+    /**
+     * @return {@link #getRetryAfter()} in whole seconds, rounded up, as sent in a {@code Retry-After} header
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds(this.retryAfter);
+    }
+
+    private static long retryAfterSeconds(Duration retryAfter) {
+        return Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+    }
+}
@@ -0,0 +1,19 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.exception;
+
+import java.util.List;
+
+/**
+ * A request named tools that the agent doesn't offer.
+ */
+public class UnknownToolException extends IllegalArgumentException {
+    private final List<String> toolNames;
+
+    public UnknownToolException(List<String> toolNames) {
+        super("Unknown tools: " + String.join(", ", toolNames));
+        this.toolNames = List.copyOf(toolNames);
+    }
+
+    public List<String> getToolNames() {
+        return this.toolNames;
+    }
+}
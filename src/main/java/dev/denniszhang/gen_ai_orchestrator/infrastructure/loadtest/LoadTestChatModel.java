@@ -0,0 +1,109 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.loadtest;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.service.ChatResponseAccumulator;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Deterministic stand-in for a streaming model. Every call waits {@code firstTokenLatency}, then either
+ * calls tools or streams an answer of {@code answerTokens} one-word chunks at {@code tokensPerSecond}.
+ * <p>
+ * A turn (the calls after a user message) first makes {@code toolRounds} calls that each call
+ * {@code toolCallsPerRound} of the offered tools, round robin, and then answers. Without tools it
+ * answers right away. Chunks are emitted on Reactor's timer threads, as a model client emits them on
+ * its event loop.
+ */
+public class LoadTestChatModel implements ChatModel {
+    private static final String[] WORDS = ("the order left the warehouse on monday and the carrier expects " +
+            "to deliver it within two business days after which a refund can be requested").split(" ");
+
+    private final Duration firstTokenLatency;
+    private final Duration tokenInterval;
+    private final int answerTokens;
+    private final int toolRounds;
+    private final int toolCallsPerRound;
+
+    public LoadTestChatModel(Duration firstTokenLatency, int tokensPerSecond, int answerTokens, int toolRounds,
+                             int toolCallsPerRound) {
+        Assert.isTrue(firstTokenLatency != null && !firstTokenLatency.isNegative(), "firstTokenLatency cannot be negative");
+        Assert.isTrue(tokensPerSecond > 0, "tokensPerSecond must be greater than 0");
+        Assert.isTrue(answerTokens > 0, "answerTokens must be greater than 0");
+        Assert.isTrue(toolRounds >= 0, "toolRounds cannot be negative");
+        Assert.isTrue(toolCallsPerRound > 0, "toolCallsPerRound must be greater than 0");
+
+        this.firstTokenLatency = firstTokenLatency;
+        this.tokenInterval = Duration.ofNanos(1_000_000_000L / tokensPerSecond);
+        this.answerTokens = answerTokens;
+        this.toolRounds = toolRounds;
+        this.toolCallsPerRound = toolCallsPerRound;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        var accumulator = new ChatResponseAccumulator();
+        stream(prompt).doOnNext(accumulator::accept).blockLast();
+        return accumulator.toChatResponse();
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        List<String> tools = toolNames(prompt);
+        int round = toolRoundsOfTurn(prompt.getInstructions());
+        if (round < this.toolRounds && !tools.isEmpty()) {
+            List<AssistantMessage.ToolCall> toolCalls = new ArrayList<>(this.toolCallsPerRound);
+            for (int i = 0; i < this.toolCallsPerRound; i++) {
+                String tool = tools.get((round * this.toolCallsPerRound + i) % tools.size());
+                toolCalls.add(new AssistantMessage.ToolCall("call-" + round + "-" + i, "function", tool,
+                        "{\"query\":\"round " + round + "\"}"));
+            }
+            return Mono.delay(this.firstTokenLatency)
+                    .map(tick -> chunk(AssistantMessage.builder().content("").toolCalls(toolCalls).build()))
+                    .flux();
+        }
+
+        return Mono.delay(this.firstTokenLatency)
+                .thenMany(Flux.interval(Duration.ZERO, this.tokenInterval).take(this.answerTokens))
+                .map(index -> chunk(AssistantMessage.builder()
+                        .content(WORDS[(int) (index % WORDS.length)] + " ")
+                        .build()));
+    }
+
+    private static ChatResponse chunk(AssistantMessage message) {
+        return ChatResponse.builder().generations(List.of(new Generation(message))).build();
+    }
+
+    private static List<String> toolNames(Prompt prompt) {
+        if (!(prompt.getOptions() instanceof ToolCallingChatOptions options)) {
+            return List.of();
+        }
+        return options.getToolCallbacks().stream()
+                .map(callback -> callback.getToolDefinition().name())
+                .toList();
+    }
+
+    /**
+     * @return the model responses with tool calls since the last user message
+     */
+    private static int toolRoundsOfTurn(List<Message> messages) {
+        int rounds = 0;
+        for (int i = messages.size() - 1; i >= 0 && !(messages.get(i) instanceof UserMessage); i--) {
+            if (messages.get(i) instanceof AssistantMessage assistantMessage && assistantMessage.hasToolCalls()) {
+                rounds++;
+            }
+        }
+        return rounds;
+    }
+}
@@ -0,0 +1,76 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.loadtest;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Deterministic stand-in for an embedding model: a text is embedded as its hashed bag of words, so
+ * texts sharing words are similar. Every call blocks for {@code latency}, whatever its batch size, as
+ * one round trip to an embedding server does.
+ */
+public class LoadTestEmbeddingModel implements EmbeddingModel {
+    private final Duration latency;
+    private final int dimensions;
+
+    public LoadTestEmbeddingModel(Duration latency, int dimensions) {
+        Assert.isTrue(latency != null && !latency.isNegative(), "latency cannot be negative");
+        Assert.isTrue(dimensions > 0, "dimensions must be greater than 0");
+        this.latency = latency;
+        this.dimensions = dimensions;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        try {
+            Thread.sleep(this.latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while embedding", e);
+        }
+
+        List<Embedding> embeddings = new ArrayList<>(request.getInstructions().size());
+        for (int i = 0; i < request.getInstructions().size(); i++) {
+            embeddings.add(new Embedding(embed(request.getInstructions().get(i), this.dimensions), i));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getText());
+    }
+
+    @Override
+    public int dimensions() {
+        return this.dimensions;
+    }
+
+    private static float[] embed(String text, int dimensions) {
+        float[] vector = new float[dimensions];
+        for (String word : text.toLowerCase(Locale.ROOT).split("\\W+")) {
+            if (!word.isEmpty()) {
+                int hash = word.hashCode();
+                vector[Math.floorMod(hash, dimensions)] += (hash & 1) == 0 ? 1 : -1;
+            }
+        }
+
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        norm = Math.sqrt(norm);
+        for (int i = 0; i < dimensions && norm > 0; i++) {
+            vector[i] /= (float) norm;
+        }
+        return vector;
+    }
+}
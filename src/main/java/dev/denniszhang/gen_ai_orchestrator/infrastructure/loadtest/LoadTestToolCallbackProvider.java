@@ -0,0 +1,59 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.loadtest;
+
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+
+/**
+ * Stand-in for the MCP tools: {@code count} tools named {@code tool_0}, {@code tool_1}, ... that block
+ * for {@code latency} and return a JSON result of about {@code resultTokens} tokens.
+ */
+public class LoadTestToolCallbackProvider implements ToolCallbackProvider {
+    private static final String INPUT_SCHEMA = """
+            {"type":"object","properties":{"query":{"type":"string"}},"required":["query"]}""";
+
+    private final ToolCallback[] tools;
+
+    public LoadTestToolCallbackProvider(int count, Duration latency, int resultTokens) {
+        Assert.isTrue(count >= 0, "count cannot be negative");
+        Assert.isTrue(latency != null && !latency.isNegative(), "latency cannot be negative");
+        Assert.isTrue(resultTokens > 0, "resultTokens must be greater than 0");
+
+        this.tools = new ToolCallback[count];
+        for (int i = 0; i < count; i++) {
+            String name = "tool_" + i;
+            String result = "{\"tool\":\"" + name + "\",\"result\":\"" + "status ok ".repeat(resultTokens / 2).trim() + "\"}";
+            this.tools[i] = new LoadTestTool(ToolDefinition.builder()
+                    .name(name)
+                    .description("Load-test tool " + i + ", returns a fixed result")
+                    .inputSchema(INPUT_SCHEMA)
+                    .build(), latency, result);
+        }
+    }
+
+    @Override
+    public ToolCallback[] getToolCallbacks() {
+        return this.tools.clone();
+    }
+
+    private record LoadTestTool(ToolDefinition definition, Duration latency, String result) implements ToolCallback {
+        @Override
+        public ToolDefinition getToolDefinition() {
+            return this.definition;
+        }
+
+        @Override
+        public String call(String toolInput) {
+            try {
+                Thread.sleep(this.latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while calling " + this.definition.name(), e);
+            }
+            return this.result;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.Map;
+
+/**
+ * What the requests of one conversation cost so far, as far as this instance saw them.
+ */
+public record ConversationSummary(
+        String conversationId,
+        long requests,
+
+        @Schema(description = "Model calls, one per ReAct iteration")
+        long iterations,
+
+        @Schema(description = "Prompt tokens as reported by the model, estimated when it reports none")
+        long inputTokens,
+
+        @Schema(description = "Completion tokens as reported by the model, estimated when it reports none")
+        long outputTokens,
+
+        @Schema(description = "Time per stage, e.g. agent.model, agent.tool.search, memory.load")
+        Map<String, Stage> stages
+) {
+    public record Stage(
+            long count,
+            double totalMillis,
+            double maxMillis
+    ) {}
+}
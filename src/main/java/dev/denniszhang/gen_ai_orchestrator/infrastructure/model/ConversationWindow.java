@@ -0,0 +1,103 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.model;
+
+import org.springframework.ai.chat.messages.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable snapshot of a conversation's message window together with what has already been persisted.
+ * Every message gets a sequence number when it enters the window; {@code persistedSeq} is the first
+ * sequence number not yet written and {@code removedSeqs} are the persisted messages evicted since the
+ * last write.
+ */
+public record ConversationWindow(
+        List<SequencedMessage> messages,
+        long nextSeq,
+        long persistedSeq,
+        List<Long> removedSeqs
+) {
+    public record SeqRange(long from, long to) {}
+
+    public static ConversationWindow of(List<SequencedMessage> persisted) {
+        long nextSeq = persisted.stream().mapToLong(SequencedMessage::seq).max().orElse(-1) + 1;
+        return new ConversationWindow(List.copyOf(persisted), nextSeq, nextSeq, List.of());
+    }
+
+    public List<Message> getMessages() {
+        return this.messages.stream()
+                .map(SequencedMessage::message)
+                .toList();
+    }
+
+    public ConversationWindow next(List<SequencedMessage> messages, long nextSeq, List<Long> removedSeqs) {
+        List<Long> removed = new ArrayList<>(this.removedSeqs);
+        removedSeqs.stream()
+                .filter(seq -> seq < this.persistedSeq)
+                .forEach(removed::add);
+        return new ConversationWindow(List.copyOf(messages), nextSeq, this.persistedSeq, List.copyOf(removed));
+    }
+
+    public ConversationWindow markPersisted() {
+        return new ConversationWindow(this.messages, this.nextSeq, this.nextSeq, List.of());
+    }
+
+    /**
+     * This window, updated while {@code written} was being persisted, as it stands once that write is
+     * done: what {@code written} held is persisted, and of it, what this window dropped since is removed.
+     */
+    public ConversationWindow afterWriteOf(ConversationWindow written) {
+        Set<Long> writtenRemoved = Set.copyOf(written.removedSeqs());
+        Set<Long> retained = this.messages.stream()
+                .map(SequencedMessage::seq)
+                .collect(Collectors.toSet());
+        List<Long> removed = new ArrayList<>();
+        this.removedSeqs.stream()
+                .filter(seq -> !writtenRemoved.contains(seq))
+                .forEach(removed::add);
+        written.unpersisted().stream()
+                .map(SequencedMessage::seq)
+                .filter(seq -> !retained.contains(seq))
+                .forEach(removed::add);
+        return new ConversationWindow(this.messages, this.nextSeq, written.nextSeq(), List.copyOf(removed));
+    }
+
+    public List<SequencedMessage> unpersisted() {
+        return this.messages.stream()
+                .filter(message -> message.seq() >= this.persistedSeq)
+                .toList();
+    }
+
+    /**
+     * Coalesces the removed sequence numbers into as few inclusive ranges as possible. A range only
+     * stops at a sequence number that is still part of the window.
+     */
+    public List<SeqRange> removedRanges() {
+        if (this.removedSeqs.isEmpty()) {
+            return List.of();
+        }
+        Set<Long> retained = this.messages.stream()
+                .map(SequencedMessage::seq)
+                .collect(Collectors.toSet());
+        List<Long> removed = this.removedSeqs.stream().sorted().toList();
+
+        List<SeqRange> ranges = new ArrayList<>();
+        long from = removed.getFirst();
+        long to = from;
+        for (long seq : removed.subList(1, removed.size())) {
+            boolean crossesRetained = false;
+            for (long between = to + 1; between < seq && !crossesRetained; between++) {
+                crossesRetained = retained.contains(between);
+            }
+            if (crossesRetained) {
+                ranges.add(new SeqRange(from, to));
+                from = seq;
+            }
+            to = seq;
+        }
+        ranges.add(new SeqRange(from, to));
+        return ranges;
+    }
+}
@@ -0,0 +1,8 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.model;
+
+import org.springframework.ai.document.Document;
+
+public record EmbeddedDocument(
+        Document document,
+        float[] embedding
+) {}
@@ -0,0 +1,12 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.model;
+
+import dev.denniszhang.gen_ai_orchestrator.core.model.AgentEvent;
+
+/**
+ * An {@link AgentEvent} with the id it was streamed under, which a client reconnecting sends back as
+ * {@code Last-Event-ID}.
+ */
+public record LoggedEvent(
+        String id,
+        AgentEvent event
+) {}
@@ -2,10 +2,15 @@ package dev.denniszhang.gen_ai_orchestrator.infrastructure.model;
 
 import io.swagger.v3.oas.annotations.media.Schema;
 
+import java.util.List;
+
 public record MessageDTO(
         @Schema(description = "Unique ID for the chat session", example = "session-123")
         String conversationId,
 
         @Schema(description = "The user prompt", example = "What is the current time?")
-        String message) {
+        String message,
+
+        @Schema(description = "Optional names of the tools the agent may use for this message; all tools when empty. Unknown names are rejected with 400", example = "[\"get_current_time\"]")
+        List<String> tools) {
 }
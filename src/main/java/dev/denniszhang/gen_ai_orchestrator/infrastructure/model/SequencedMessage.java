@@ -0,0 +1,8 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.model;
+
+import org.springframework.ai.chat.messages.Message;
+
+public record SequencedMessage(
+        long seq,
+        Message message
+) {}
@@ -0,0 +1,30 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.model;
+
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * File copied out of a request so it can be processed after the request has completed.
+ * Closing the resource deletes the file.
+ */
+public class TemporaryFileResource extends FileSystemResource implements AutoCloseable {
+    private final String filename;
+
+    public TemporaryFileResource(Path path, String filename) {
+        super(path);
+        this.filename = filename;
+    }
+
+    @Override
+    public String getFilename() {
+        return this.filename != null ? this.filename : super.getFilename();
+    }
+
+    @Override
+    public void close() throws IOException {
+        Files.deleteIfExists(getFile().toPath());
+    }
+}
@@ -0,0 +1,25 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.model;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * How far the last turn of a conversation got. Saved once the messages it covers are stored, so a turn
+ * that was interrupted can be continued from its history.
+ *
+ * @param scope the request's scope, for admission of a resumed turn
+ * @param tools the tools the request narrowed the turn to, {@code null} for all of them
+ * @param iteration the next ReAct iteration to run
+ * @param completed whether the turn ended with an answer
+ * @param partialAnswer whether the turn was cancelled while the model was answering, and its last message
+ *                      is the text streamed until then rather than an answer
+ */
+public record TurnCheckpoint(
+        String conversationId,
+        String scope,
+        List<String> tools,
+        int iteration,
+        boolean completed,
+        boolean partialAnswer,
+        Instant updatedAt
+) {}
@@ -0,0 +1,17 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.repository;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.SequencedMessage;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+
+import java.util.List;
+
+/**
+ * {@link ChatMemoryRepository} that stores every message of a conversation under a sequence number,
+ * so a changed window is persisted by appending the new messages and range-deleting the evicted ones
+ * instead of rewriting the whole conversation.
+ */
+public interface AppendOnlyChatMemoryRepository extends ChatMemoryRepository {
+    List<SequencedMessage> findWindow(String conversationId);
+    void append(String conversationId, List<SequencedMessage> messages);
+    void deleteRange(String conversationId, long fromSeq, long toSeq);
+}
@@ -0,0 +1,17 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.repository;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Persistent store of embeddings keyed by (model, content hash), shared across restarts and instances.
+ */
+public interface EmbeddingCacheRepository {
+
+    /**
+     * @return the stored embeddings of the given hashes, keyed by hash; hashes that are not stored are absent
+     */
+    Map<String, float[]> findAll(String model, Collection<String> contentHashes);
+
+    void saveAll(String model, Map<String, float[]> embeddings);
+}
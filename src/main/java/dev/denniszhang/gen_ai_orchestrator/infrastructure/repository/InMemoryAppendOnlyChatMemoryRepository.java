@@ -0,0 +1,76 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.repository;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.SequencedMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+public class InMemoryAppendOnlyChatMemoryRepository implements AppendOnlyChatMemoryRepository {
+    private final Map<String, ConcurrentNavigableMap<Long, Message>> conversations = new ConcurrentHashMap<>();
+
+    @Override
+    public List<String> findConversationIds() {
+        return new ArrayList<>(this.conversations.keySet());
+    }
+
+    @Override
+    public List<Message> findByConversationId(String conversationId) {
+        Assert.hasText(conversationId, "conversationId cannot be null or empty");
+        var messages = this.conversations.get(conversationId);
+        return messages != null ? new ArrayList<>(messages.values()) : List.of();
+    }
+
+    @Override
+    public List<SequencedMessage> findWindow(String conversationId) {
+        Assert.hasText(conversationId, "conversationId cannot be null or empty");
+        var messages = this.conversations.get(conversationId);
+        if (messages == null) {
+            return List.of();
+        }
+        return messages.entrySet().stream()
+                .map(entry -> new SequencedMessage(entry.getKey(), entry.getValue()))
+                .toList();
+    }
+
+    @Override
+    public void saveAll(String conversationId, List<Message> messages) {
+        Assert.hasText(conversationId, "conversationId cannot be null or empty");
+        Assert.notNull(messages, "messages cannot be null");
+
+        var sequenced = new ConcurrentSkipListMap<Long, Message>();
+        for (int i = 0; i < messages.size(); i++) {
+            sequenced.put((long) i, messages.get(i));
+        }
+        this.conversations.put(conversationId, sequenced);
+    }
+
+    @Override
+    public void append(String conversationId, List<SequencedMessage> messages) {
+        Assert.hasText(conversationId, "conversationId cannot be null or empty");
+        Assert.notNull(messages, "messages cannot be null");
+
+        var sequenced = this.conversations.computeIfAbsent(conversationId, id -> new ConcurrentSkipListMap<>());
+        messages.forEach(message -> sequenced.putIfAbsent(message.seq(), message.message()));
+    }
+
+    @Override
+    public void deleteRange(String conversationId, long fromSeq, long toSeq) {
+        Assert.hasText(conversationId, "conversationId cannot be null or empty");
+        var messages = this.conversations.get(conversationId);
+        if (messages != null) {
+            messages.subMap(fromSeq, true, toSeq, true).clear();
+        }
+    }
+
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        Assert.hasText(conversationId, "conversationId cannot be null or empty");
+        this.conversations.remove(conversationId);
+    }
+}
@@ -0,0 +1,51 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.repository;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.SequencedMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.util.Assert;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+public class InMemoryToolMessageRepository implements ToolMessageRepository {
+    private final Map<String, ConcurrentNavigableMap<Long, Message>> conversations = new ConcurrentHashMap<>();
+
+    @Override
+    public List<SequencedMessage> findByConversationId(String conversationId) {
+        Assert.hasText(conversationId, "conversationId cannot be null or empty");
+        var messages = this.conversations.get(conversationId);
+        if (messages == null) {
+            return List.of();
+        }
+        return messages.entrySet().stream()
+                .map(entry -> new SequencedMessage(entry.getKey(), entry.getValue()))
+                .toList();
+    }
+
+    @Override
+    public void append(String conversationId, List<SequencedMessage> messages) {
+        Assert.hasText(conversationId, "conversationId cannot be null or empty");
+        Assert.notNull(messages, "messages cannot be null");
+
+        var sequenced = this.conversations.computeIfAbsent(conversationId, id -> new ConcurrentSkipListMap<>());
+        messages.forEach(message -> sequenced.putIfAbsent(message.seq(), message.message()));
+    }
+
+    @Override
+    public void deleteRange(String conversationId, long fromIndex, long toIndex) {
+        Assert.hasText(conversationId, "conversationId cannot be null or empty");
+        var messages = this.conversations.get(conversationId);
+        if (messages != null) {
+            messages.subMap(fromIndex, true, toIndex, true).clear();
+        }
+    }
+
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        Assert.hasText(conversationId, "conversationId cannot be null or empty");
+        this.conversations.remove(conversationId);
+    }
+}
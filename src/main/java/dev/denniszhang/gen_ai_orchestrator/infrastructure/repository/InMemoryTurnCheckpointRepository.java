@@ -0,0 +1,25 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.repository;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.TurnCheckpoint;
+import org.springframework.util.Assert;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class InMemoryTurnCheckpointRepository implements TurnCheckpointRepository {
+    private final Map<String, TurnCheckpoint> checkpoints = new ConcurrentHashMap<>();
+
+    @Override
+    public Optional<TurnCheckpoint> findByConversationId(String conversationId) {
+        Assert.hasText(conversationId, "conversationId cannot be null or empty");
+        return Optional.ofNullable(this.checkpoints.get(conversationId));
+    }
+
+    @Override
+    public void save(TurnCheckpoint checkpoint) {
+        Assert.notNull(checkpoint, "checkpoint cannot be null");
+        Assert.hasText(checkpoint.conversationId(), "conversationId cannot be null or empty");
+        this.checkpoints.put(checkpoint.conversationId(), checkpoint);
+    }
+}
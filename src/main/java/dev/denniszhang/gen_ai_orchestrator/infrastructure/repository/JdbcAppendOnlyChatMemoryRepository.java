@@ -0,0 +1,119 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.repository;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.SequencedMessage;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Postgres-backed {@link AppendOnlyChatMemoryRepository}. Rows are keyed by (conversation_id, seq), so
+ * appends are plain inserts and trimming is a single index range delete. Inserts ignore rows that
+ * already exist, which keeps a retried flush idempotent.
+ */
+public class JdbcAppendOnlyChatMemoryRepository implements AppendOnlyChatMemoryRepository {
+    private static final String QUERY_CONVERSATION_IDS = "SELECT DISTINCT conversation_id FROM orchestrator_chat_memory";
+    private static final String QUERY_WINDOW = "SELECT seq, content, type FROM orchestrator_chat_memory WHERE conversation_id = ? ORDER BY seq";
+    private static final String INSERT = """
+            INSERT INTO orchestrator_chat_memory (conversation_id, seq, content, type, "timestamp")
+            VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT (conversation_id, seq) DO NOTHING""";
+    private static final String DELETE_RANGE = "DELETE FROM orchestrator_chat_memory WHERE conversation_id = ? AND seq BETWEEN ? AND ?";
+    private static final String DELETE_ALL = "DELETE FROM orchestrator_chat_memory WHERE conversation_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public JdbcAppendOnlyChatMemoryRepository(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        Assert.notNull(jdbcTemplate, "jdbcTemplate cannot be null");
+        Assert.notNull(transactionTemplate, "transactionTemplate cannot be null");
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @Override
+    public List<String> findConversationIds() {
+        return this.jdbcTemplate.queryForList(QUERY_CONVERSATION_IDS, String.class);
+    }
+
+    @Override
+    public List<Message> findByConversationId(String conversationId) {
+        return findWindow(conversationId).stream()
+                .map(SequencedMessage::message)
+                .toList();
+    }
+
+    @Override
+    public List<SequencedMessage> findWindow(String conversationId) {
+        Assert.hasText(conversationId, "conversationId cannot be null or empty");
+        return this.jdbcTemplate.query(QUERY_WINDOW, rowMapper(), conversationId);
+    }
+
+    @Override
+    public void saveAll(String conversationId, List<Message> messages) {
+        Assert.hasText(conversationId, "conversationId cannot be null or empty");
+        Assert.notNull(messages, "messages cannot be null");
+
+        List<SequencedMessage> sequenced = new ArrayList<>();
+        for (int i = 0; i < messages.size(); i++) {
+            sequenced.add(new SequencedMessage(i, messages.get(i)));
+        }
+        this.transactionTemplate.executeWithoutResult(status -> {
+            deleteByConversationId(conversationId);
+            append(conversationId, sequenced);
+        });
+    }
+
+    @Override
+    public void append(String conversationId, List<SequencedMessage> messages) {
+        Assert.hasText(conversationId, "conversationId cannot be null or empty");
+        Assert.notNull(messages, "messages cannot be null");
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        Timestamp timestamp = Timestamp.from(Instant.now());
+        this.jdbcTemplate.batchUpdate(INSERT, messages, messages.size(), (ps, message) -> {
+            ps.setString(1, conversationId);
+            ps.setLong(2, message.seq());
+            ps.setString(3, message.message().getText());
+            ps.setString(4, message.message().getMessageType().name());
+            ps.setTimestamp(5, timestamp);
+        });
+    }
+
+    @Override
+    public void deleteRange(String conversationId, long fromSeq, long toSeq) {
+        Assert.hasText(conversationId, "conversationId cannot be null or empty");
+        this.jdbcTemplate.update(DELETE_RANGE, conversationId, fromSeq, toSeq);
+    }
+
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        Assert.hasText(conversationId, "conversationId cannot be null or empty");
+        this.jdbcTemplate.update(DELETE_ALL, conversationId);
+    }
+
+    private RowMapper<SequencedMessage> rowMapper() {
+        return (rs, rowNum) -> {
+            String content = rs.getString("content");
+            Message message = switch (MessageType.valueOf(rs.getString("type"))) {
+                case SYSTEM -> SystemMessage.builder().text(content).build();
+                case USER -> UserMessage.builder().text(content).build();
+                case ASSISTANT -> AssistantMessage.builder().content(content).build();
+                default -> throw new IllegalStateException("Unsupported chat memory message type: " + rs.getString("type"));
+            };
+            return new SequencedMessage(rs.getLong("seq"), message);
+        };
+    }
+}
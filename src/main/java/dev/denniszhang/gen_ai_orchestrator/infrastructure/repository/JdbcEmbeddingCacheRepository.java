@@ -0,0 +1,63 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.repository;
+
+import com.pgvector.PGvector;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Postgres-backed {@link EmbeddingCacheRepository}. Embeddings are stored as dimensionless pgvector
+ * values so models of different sizes can share the table.
+ */
+public class JdbcEmbeddingCacheRepository implements EmbeddingCacheRepository {
+    private static final String QUERY = """
+            SELECT content_hash, embedding::text FROM orchestrator_embedding_cache
+            WHERE model = ? AND content_hash = ANY(?)""";
+    private static final String INSERT = """
+            INSERT INTO orchestrator_embedding_cache (model, content_hash, embedding)
+            VALUES (?, ?, ?)
+            ON CONFLICT (model, content_hash) DO NOTHING""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JdbcEmbeddingCacheRepository(JdbcTemplate jdbcTemplate) {
+        Assert.notNull(jdbcTemplate, "jdbcTemplate cannot be null");
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public Map<String, float[]> findAll(String model, Collection<String> contentHashes) {
+        Assert.hasText(model, "model cannot be null or empty");
+        Assert.notNull(contentHashes, "contentHashes cannot be null");
+        Map<String, float[]> embeddings = new HashMap<>();
+        if (contentHashes.isEmpty()) {
+            return embeddings;
+        }
+
+        this.jdbcTemplate.query(QUERY,
+                rs -> { embeddings.put(rs.getString(1), new PGvector(rs.getString(2)).toArray()); },
+                model, contentHashes.toArray(String[]::new));
+        return embeddings;
+    }
+
+    @Override
+    public void saveAll(String model, Map<String, float[]> embeddings) {
+        Assert.hasText(model, "model cannot be null or empty");
+        Assert.notNull(embeddings, "embeddings cannot be null");
+        if (embeddings.isEmpty()) {
+            return;
+        }
+
+        List<Map.Entry<String, float[]>> entries = new ArrayList<>(embeddings.entrySet());
+        this.jdbcTemplate.batchUpdate(INSERT, entries, entries.size(), (ps, entry) -> {
+            ps.setString(1, model);
+            ps.setString(2, entry.getKey());
+            ps.setObject(3, new PGvector(entry.getValue()));
+        });
+    }
+}
@@ -0,0 +1,127 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.SequencedMessage;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.util.Assert;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Postgres-backed {@link ToolMessageRepository}. A conversation's tool messages are read with one
+ * ordered primary-key range scan; nothing is embedded.
+ */
+public class JdbcToolMessageRepository implements ToolMessageRepository {
+    private static final String QUERY = """
+            SELECT idx, type, content, payload, metadata FROM orchestrator_tool_message
+            WHERE conversation_id = ? ORDER BY idx""";
+    private static final String INSERT = """
+            INSERT INTO orchestrator_tool_message (conversation_id, idx, type, content, payload, metadata, "timestamp")
+            VALUES (?, ?, ?, ?, ?::jsonb, ?::jsonb, ?)
+            ON CONFLICT (conversation_id, idx) DO NOTHING""";
+    private static final String DELETE_RANGE = "DELETE FROM orchestrator_tool_message WHERE conversation_id = ? AND idx BETWEEN ? AND ?";
+    private static final String DELETE_ALL = "DELETE FROM orchestrator_tool_message WHERE conversation_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public JdbcToolMessageRepository(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        Assert.notNull(jdbcTemplate, "jdbcTemplate cannot be null");
+        Assert.notNull(objectMapper, "objectMapper cannot be null");
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public List<SequencedMessage> findByConversationId(String conversationId) {
+        Assert.hasText(conversationId, "conversationId cannot be null or empty");
+        return this.jdbcTemplate.query(QUERY, rowMapper(), conversationId);
+    }
+
+    @Override
+    public void append(String conversationId, List<SequencedMessage> messages) {
+        Assert.hasText(conversationId, "conversationId cannot be null or empty");
+        Assert.notNull(messages, "messages cannot be null");
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        Timestamp timestamp = Timestamp.from(Instant.now());
+        this.jdbcTemplate.batchUpdate(INSERT, messages, messages.size(), (ps, sequenced) -> {
+            Message message = sequenced.message();
+            Object payload = switch (message) {
+                case AssistantMessage assistantMessage -> assistantMessage.getToolCalls();
+                case ToolResponseMessage toolMessage -> toolMessage.getResponses();
+                default -> throw new IllegalArgumentException("Not a tool message: " + message.getMessageType());
+            };
+
+            ps.setString(1, conversationId);
+            ps.setLong(2, sequenced.seq());
+            ps.setString(3, message.getMessageType().name());
+            ps.setString(4, message.getText() != null ? message.getText() : "");
+            ps.setString(5, toJson(payload));
+            ps.setString(6, toJson(message.getMetadata()));
+            ps.setTimestamp(7, timestamp);
+        });
+    }
+
+    @Override
+    public void deleteRange(String conversationId, long fromIndex, long toIndex) {
+        Assert.hasText(conversationId, "conversationId cannot be null or empty");
+        this.jdbcTemplate.update(DELETE_RANGE, conversationId, fromIndex, toIndex);
+    }
+
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        Assert.hasText(conversationId, "conversationId cannot be null or empty");
+        this.jdbcTemplate.update(DELETE_ALL, conversationId);
+    }
+
+    /**
+     * Maps rows of {@code idx, type, content, payload, metadata}.
+     */
+    RowMapper<SequencedMessage> rowMapper() {
+        return (rs, rowNum) -> {
+            String type = rs.getString("type");
+            Map<String, Object> metadata = fromJson(rs.getString("metadata"), new TypeReference<>() {});
+            Message message = switch (type) {
+                case "ASSISTANT" -> AssistantMessage.builder()
+                        .content(rs.getString("content"))
+                        .toolCalls(fromJson(rs.getString("payload"), new TypeReference<List<AssistantMessage.ToolCall>>() {}))
+                        .properties(metadata)
+                        .build();
+                case "TOOL" -> ToolResponseMessage.builder()
+                        .responses(fromJson(rs.getString("payload"), new TypeReference<List<ToolResponseMessage.ToolResponse>>() {}))
+                        .metadata(metadata)
+                        .build();
+                default -> throw new IllegalStateException("Unsupported tool message type: " + type);
+            };
+            return new SequencedMessage(rs.getLong("idx"), message);
+        };
+    }
+
+    private String toJson(Object value) {
+        try {
+            return this.objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Tool message can't be serialized.", e);
+        }
+    }
+
+    private <T> T fromJson(String json, TypeReference<T> type) {
+        try {
+            return this.objectMapper.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Tool message can't be deserialized.", e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.repository;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.TurnCheckpoint;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.Assert;
+
+import java.sql.Array;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Postgres-backed {@link TurnCheckpointRepository}, one row per conversation.
+ */
+public class JdbcTurnCheckpointRepository implements TurnCheckpointRepository {
+    private static final String QUERY = """
+            SELECT scope, tools, iteration, completed, partial_answer, updated_at FROM orchestrator_turn_checkpoint
+            WHERE conversation_id = ?""";
+    private static final String UPSERT = """
+            INSERT INTO orchestrator_turn_checkpoint (conversation_id, scope, tools, iteration, completed, partial_answer, updated_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (conversation_id) DO UPDATE
+            SET scope = excluded.scope, tools = excluded.tools, iteration = excluded.iteration,
+                completed = excluded.completed, partial_answer = excluded.partial_answer, updated_at = excluded.updated_at""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JdbcTurnCheckpointRepository(JdbcTemplate jdbcTemplate) {
+        Assert.notNull(jdbcTemplate, "jdbcTemplate cannot be null");
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public Optional<TurnCheckpoint> findByConversationId(String conversationId) {
+        Assert.hasText(conversationId, "conversationId cannot be null or empty");
+        return this.jdbcTemplate.query(QUERY, (rs, rowNum) -> {
+            Array tools = rs.getArray("tools");
+            return new TurnCheckpoint(
+                    conversationId,
+                    rs.getString("scope"),
+                    tools != null ? List.of((String[]) tools.getArray()) : null,
+                    rs.getInt("iteration"),
+                    rs.getBoolean("completed"),
+                    rs.getBoolean("partial_answer"),
+                    rs.getTimestamp("updated_at").toInstant());
+        }, conversationId).stream().findFirst();
+    }
+
+    @Override
+    public void save(TurnCheckpoint checkpoint) {
+        Assert.notNull(checkpoint, "checkpoint cannot be null");
+        Assert.hasText(checkpoint.conversationId(), "conversationId cannot be null or empty");
+        Assert.notNull(checkpoint.updatedAt(), "updatedAt cannot be null");
+        this.jdbcTemplate.update(UPSERT,
+                checkpoint.conversationId(),
+                checkpoint.scope(),
+                checkpoint.tools() != null ? checkpoint.tools().toArray(String[]::new) : null,
+                checkpoint.iteration(),
+                checkpoint.completed(),
+                checkpoint.partialAnswer(),
+                Timestamp.from(checkpoint.updatedAt()));
+    }
+}
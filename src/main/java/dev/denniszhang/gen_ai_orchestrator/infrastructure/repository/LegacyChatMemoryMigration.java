@@ -0,0 +1,199 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.SequencedMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Moves the history kept by the Spring AI JDBC chat memory ({@code spring_ai_chat_memory}) and the tool
+ * messages kept as documents in the pgvector table into {@link JdbcAppendOnlyChatMemoryRepository} and
+ * {@link JdbcToolMessageRepository}.
+ * <p>
+ * A conversation's history is rebuilt the way it used to be read: chat messages in timestamp order,
+ * with each tool message put back at its {@code index}. The rebuilt history is numbered from 0, so chat
+ * and tool messages share one sequence. Tool calls without their tool response, and tool responses
+ * without their call (indexes went stale as the old window was trimmed), are dropped, since they would
+ * make the prompt invalid.
+ * <p>
+ * Each conversation moves in one transaction, so an interrupted run is picked up on the next startup;
+ * conversations that already have chat rows in the new table are skipped. Runs as part of context
+ * startup, so it is done before the application takes requests.
+ */
+public class LegacyChatMemoryMigration {
+    static final String LEGACY_CHAT_TABLE = "spring_ai_chat_memory";
+
+    private static final String QUERY_LEGACY_CHAT_CONVERSATION_IDS = "SELECT DISTINCT conversation_id FROM spring_ai_chat_memory";
+    private static final String QUERY_LEGACY_TOOL_CONVERSATION_IDS = """
+            SELECT DISTINCT metadata->>'conversationId' FROM %1$s
+            WHERE metadata->>'conversationId' IS NOT NULL AND metadata->>'messageType' IN ('ASSISTANT', 'TOOL')""";
+    private static final String QUERY_MIGRATED = "SELECT EXISTS (SELECT 1 FROM orchestrator_chat_memory WHERE conversation_id = ?)";
+    private static final String QUERY_LEGACY_MESSAGES = "SELECT content, type FROM spring_ai_chat_memory WHERE conversation_id = ? ORDER BY \"timestamp\"";
+    private static final String QUERY_LEGACY_TOOL_MESSAGES = """
+            SELECT (metadata->>'index')::bigint AS idx,
+                   metadata->>'messageType' AS type,
+                   coalesce(content, '') AS content,
+                   CASE WHEN metadata->>'messageType' = 'ASSISTANT' THEN metadata->'toolCalls' ELSE metadata->'toolResponses' END AS payload,
+                   metadata - 'conversationId' - 'index' - 'toolCalls' - 'toolResponses' AS metadata
+            FROM %1$s
+            WHERE metadata->>'conversationId' = ? AND metadata->>'messageType' IN ('ASSISTANT', 'TOOL')""";
+    private static final String DELETE_LEGACY_MESSAGES = "DELETE FROM spring_ai_chat_memory WHERE conversation_id = ?";
+    private static final String DELETE_LEGACY_TOOL_MESSAGES = """
+            DELETE FROM %1$s
+            WHERE metadata->>'conversationId' = ? AND metadata->>'messageType' IN ('ASSISTANT', 'TOOL')""";
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final String vectorStoreTable;
+    private final AppendOnlyChatMemoryRepository chatMemoryRepository;
+    private final JdbcToolMessageRepository toolMessageRepository;
+
+    public LegacyChatMemoryMigration(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, ObjectMapper objectMapper,
+                                     String vectorStoreTable) {
+        Assert.notNull(jdbcTemplate, "jdbcTemplate cannot be null");
+        Assert.notNull(transactionTemplate, "transactionTemplate cannot be null");
+        Assert.notNull(objectMapper, "objectMapper cannot be null");
+        Assert.hasText(vectorStoreTable, "vectorStoreTable cannot be null or empty");
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.vectorStoreTable = vectorStoreTable;
+        this.chatMemoryRepository = new JdbcAppendOnlyChatMemoryRepository(jdbcTemplate, transactionTemplate);
+        this.toolMessageRepository = new JdbcToolMessageRepository(jdbcTemplate, objectMapper);
+    }
+
+    public void migrate() {
+        boolean legacyChat = tableExists(LEGACY_CHAT_TABLE);
+        boolean legacyTools = tableExists(this.vectorStoreTable);
+
+        Set<String> conversationIds = new LinkedHashSet<>();
+        if (legacyChat) {
+            conversationIds.addAll(this.jdbcTemplate.queryForList(QUERY_LEGACY_CHAT_CONVERSATION_IDS, String.class));
+        }
+        if (legacyTools) {
+            conversationIds.addAll(this.jdbcTemplate.queryForList(QUERY_LEGACY_TOOL_CONVERSATION_IDS.formatted(this.vectorStoreTable), String.class));
+        }
+
+        int conversations = 0;
+        int messages = 0;
+        int dropped = 0;
+        for (String conversationId : conversationIds) {
+            Migrated migrated = this.transactionTemplate.execute(status -> migrate(conversationId, legacyChat, legacyTools));
+            if (migrated != null) {
+                conversations++;
+                messages += migrated.messages();
+                dropped += migrated.dropped();
+            }
+        }
+        if (conversations > 0) {
+            logger.info("Migrated {} messages of {} conversations, dropped {} unmatched tool messages", messages, conversations, dropped);
+        }
+    }
+
+    /**
+     * @return what was moved, {@code null} if the conversation was migrated before
+     */
+    private Migrated migrate(String conversationId, boolean legacyChat, boolean legacyTools) {
+        if (this.jdbcTemplate.queryForObject(QUERY_MIGRATED, Boolean.class, conversationId) == Boolean.TRUE) {
+            return null;
+        }
+
+        List<Message> history = new ArrayList<>();
+        if (legacyChat) {
+            this.jdbcTemplate.query(QUERY_LEGACY_MESSAGES, rs -> {
+                String content = rs.getString("content");
+                switch (MessageType.valueOf(rs.getString("type"))) {
+                    case SYSTEM -> history.add(SystemMessage.builder().text(content).build());
+                    case USER -> history.add(UserMessage.builder().text(content).build());
+                    case ASSISTANT -> history.add(AssistantMessage.builder().content(content).build());
+                    // Tool messages were never kept in this table
+                    default -> {}
+                }
+            }, conversationId);
+        }
+
+        // Tool messages moved by an earlier version of this migration kept their stale indexes too
+        List<SequencedMessage> toolMessages = new ArrayList<>(this.toolMessageRepository.findByConversationId(conversationId));
+        if (legacyTools) {
+            toolMessages.addAll(this.jdbcTemplate.query(QUERY_LEGACY_TOOL_MESSAGES.formatted(this.vectorStoreTable),
+                    this.toolMessageRepository.rowMapper(), conversationId));
+        }
+        toolMessages.sort(Comparator.comparingLong(SequencedMessage::seq));
+        for (SequencedMessage toolMessage : toolMessages) {
+            history.add((int) Math.min(Math.max(toolMessage.seq(), 0), history.size()), toolMessage.message());
+        }
+
+        List<Message> matched = dropUnmatchedToolMessages(history);
+        List<SequencedMessage> chatRows = new ArrayList<>();
+        List<SequencedMessage> toolRows = new ArrayList<>();
+        for (int seq = 0; seq < matched.size(); seq++) {
+            Message message = matched.get(seq);
+            boolean toolMessage = message instanceof ToolResponseMessage
+                    || (message instanceof AssistantMessage assistantMessage && assistantMessage.hasToolCalls());
+            (toolMessage ? toolRows : chatRows).add(new SequencedMessage(seq, message));
+        }
+
+        this.toolMessageRepository.deleteByConversationId(conversationId);
+        this.chatMemoryRepository.append(conversationId, chatRows);
+        this.toolMessageRepository.append(conversationId, toolRows);
+        if (legacyChat) {
+            this.jdbcTemplate.update(DELETE_LEGACY_MESSAGES, conversationId);
+        }
+        if (legacyTools) {
+            this.jdbcTemplate.update(DELETE_LEGACY_TOOL_MESSAGES.formatted(this.vectorStoreTable), conversationId);
+        }
+        return new Migrated(matched.size(), history.size() - matched.size());
+    }
+
+    /**
+     * Keeps a tool call only if the next message answers all of it, and a tool response only after
+     * the call it answers.
+     */
+    static List<Message> dropUnmatchedToolMessages(List<Message> history) {
+        List<Message> matched = new ArrayList<>(history.size());
+        for (int i = 0; i < history.size(); i++) {
+            Message message = history.get(i);
+            if (message instanceof AssistantMessage call && call.hasToolCalls()) {
+                Message next = i + 1 < history.size() ? history.get(i + 1) : null;
+                if (next instanceof ToolResponseMessage response && answers(response, call)) {
+                    matched.add(call);
+                    matched.add(response);
+                    i++;
+                }
+            } else if (!(message instanceof ToolResponseMessage)) {
+                matched.add(message);
+            }
+        }
+        return matched;
+    }
+
+    private static boolean answers(ToolResponseMessage response, AssistantMessage call) {
+        Set<String> answered = response.getResponses().stream()
+                .map(ToolResponseMessage.ToolResponse::id)
+                .collect(Collectors.toSet());
+        return call.getToolCalls().stream().allMatch(toolCall -> answered.contains(toolCall.id()));
+    }
+
+    private boolean tableExists(String table) {
+        return this.jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, table) == Boolean.TRUE;
+    }
+
+    private record Migrated(int messages, int dropped) {}
+}
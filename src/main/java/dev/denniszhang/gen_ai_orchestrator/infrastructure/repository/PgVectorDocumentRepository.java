@@ -0,0 +1,263 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pgvector.PGvector;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.EmbeddedDocument;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.observation.conventions.VectorStoreProvider;
+import org.springframework.ai.observation.conventions.VectorStoreSimilarityMetric;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.observation.DefaultVectorStoreObservationConvention;
+import org.springframework.ai.vectorstore.observation.VectorStoreObservationContext;
+import org.springframework.ai.vectorstore.observation.VectorStoreObservationConvention;
+import org.springframework.ai.vectorstore.observation.VectorStoreObservationDocumentation;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.util.Assert;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Bulk writer for documents that were embedded ahead of time. {@code PgVectorStore.add} always
+ * embeds before inserting, which makes it impossible to run embedding and insertion as separate
+ * stages; this writes into the same table with one batched upsert instead.
+ * <p>
+ * Also searches the table by vector and by full text, returning the stored embeddings along with the
+ * documents so later retrieval stages don't have to embed them again.
+ * <p>
+ * Writes and searches are observed like {@code PgVectorStore} calls ({@code db.vector.client.operation}),
+ * so {@code spring.ai.vectorstore.observations.*} applies to them too.
+ */
+public class PgVectorDocumentRepository {
+    private static final String UPSERT = """
+            INSERT INTO %1$s (id, content, metadata, embedding)
+            VALUES (?, ?, ?::jsonb, ?)
+            ON CONFLICT (id) DO UPDATE SET content = EXCLUDED.content, metadata = EXCLUDED.metadata, embedding = EXCLUDED.embedding""";
+    private static final String QUERY_INDEXED_HASHES = """
+            SELECT DISTINCT metadata->>'contentHash' FROM %1$s
+            WHERE metadata->>'contentHash' = ANY(?)""";
+    private static final String CREATE_CONTENT_HASH_INDEX = """
+            CREATE INDEX IF NOT EXISTS %2$s_content_hash_idx ON %1$s ((metadata->>'contentHash'))""";
+    // Ordered by distance alone so the HNSW index is used; the threshold applies to the nearest rows only
+    private static final String VECTOR_SEARCH = """
+            SELECT * FROM (
+                SELECT id, content, metadata, embedding::text AS embedding, embedding <=> ? AS distance FROM %1$s
+                ORDER BY embedding <=> ? LIMIT ?
+            ) nearest WHERE distance <= ?""";
+    // Terms are OR-ed: a question rarely contains every word of the chunk that answers it
+    private static final String FULL_TEXT_SEARCH = """
+            SELECT id, content, metadata, embedding::text AS embedding, ts_rank_cd(to_tsvector('%2$s', content), query) AS rank
+            FROM %1$s, replace(plainto_tsquery('%2$s', ?)::text, ' & ', ' | ')::tsquery query
+            WHERE to_tsvector('%2$s', content) @@ query
+            ORDER BY rank DESC LIMIT ?""";
+    private static final String CREATE_FULL_TEXT_INDEX = """
+            CREATE INDEX IF NOT EXISTS %2$s_content_fts_idx ON %1$s USING GIN (to_tsvector('%3$s', content))""";
+    private static final TypeReference<Map<String, Object>> METADATA = new TypeReference<>() {};
+    private static final VectorStoreObservationConvention OBSERVATION_CONVENTION = new DefaultVectorStoreObservationConvention();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final String vectorStoreTable;
+    private final String upsert;
+    private final ObservationRegistry observationRegistry;
+    private final int searchTimeoutSeconds;
+
+    public PgVectorDocumentRepository(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, String vectorStoreTable) {
+        this(jdbcTemplate, objectMapper, vectorStoreTable, ObservationRegistry.NOOP);
+    }
+
+    public PgVectorDocumentRepository(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, String vectorStoreTable,
+                                      ObservationRegistry observationRegistry) {
+        this(jdbcTemplate, objectMapper, vectorStoreTable, observationRegistry, Duration.ZERO);
+    }
+
+    /**
+     * @param searchTimeout how long a search may run before the database cancels it, rounded up to
+     *                      whole seconds; zero for no limit
+     */
+    public PgVectorDocumentRepository(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, String vectorStoreTable,
+                                      ObservationRegistry observationRegistry, Duration searchTimeout) {
+        Assert.notNull(jdbcTemplate, "jdbcTemplate cannot be null");
+        Assert.notNull(objectMapper, "objectMapper cannot be null");
+        Assert.hasText(vectorStoreTable, "vectorStoreTable cannot be null or empty");
+        Assert.notNull(observationRegistry, "observationRegistry cannot be null");
+        Assert.isTrue(searchTimeout != null && !searchTimeout.isNegative(), "searchTimeout cannot be negative");
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.vectorStoreTable = vectorStoreTable;
+        this.upsert = UPSERT.formatted(vectorStoreTable);
+        this.observationRegistry = observationRegistry;
+        this.searchTimeoutSeconds = (int) Math.ceilDiv(searchTimeout.toMillis(), 1000);
+    }
+
+    public void saveAll(List<EmbeddedDocument> documents) {
+        Assert.notNull(documents, "documents cannot be null");
+        if (documents.isEmpty()) {
+            return;
+        }
+
+        VectorStoreObservationContext context = observationContext(VectorStoreObservationContext.Operation.ADD)
+                .dimensions(documents.getFirst().embedding().length)
+                .build();
+        observation(() -> context).observe(() ->
+                this.jdbcTemplate.batchUpdate(this.upsert, documents, documents.size(), (ps, embedded) -> {
+                    ps.setObject(1, UUID.fromString(embedded.document().getId()));
+                    ps.setString(2, embedded.document().getText());
+                    ps.setString(3, toJson(embedded.document().getMetadata()));
+                    ps.setObject(4, new PGvector(embedded.embedding()));
+                }));
+    }
+
+    /**
+     * @return the subset of the given content hashes that already belong to a stored chunk
+     */
+    public Set<String> findIndexedHashes(Collection<String> contentHashes) {
+        Assert.notNull(contentHashes, "contentHashes cannot be null");
+        if (contentHashes.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(this.jdbcTemplate.queryForList(QUERY_INDEXED_HASHES.formatted(this.vectorStoreTable), String.class,
+                (Object) contentHashes.toArray(String[]::new)));
+    }
+
+    /**
+     * Indexes the {@code contentHash} metadata key so {@link #findIndexedHashes} stays an index lookup.
+     */
+    public void createContentHashIndex() {
+        this.jdbcTemplate.execute(CREATE_CONTENT_HASH_INDEX.formatted(this.vectorStoreTable, indexPrefix()));
+    }
+
+    /**
+     * @param query the text the embedding is of, for the observation
+     * @return the {@code topK} documents nearest to the embedding by cosine distance with at least
+     * {@code minSimilarity}, nearest first, scored by their similarity
+     */
+    public List<EmbeddedDocument> similaritySearch(String query, float[] embedding, int topK, double minSimilarity) {
+        Assert.notNull(embedding, "embedding cannot be null");
+        PGvector vector = new PGvector(embedding);
+        SearchRequest request = SearchRequest.builder().query(query).topK(topK).similarityThreshold(minSimilarity).build();
+        return search(request, embedding.length, () -> this.jdbcTemplate.query(VECTOR_SEARCH.formatted(this.vectorStoreTable),
+                searchArguments(vector, vector, topK, 1 - minSimilarity),
+                embeddedDocumentMapper(rs -> 1 - rs.getDouble("distance"))));
+    }
+
+    /**
+     * @param language a Postgres text search configuration, e.g. {@code english}
+     * @return the {@code topK} documents matching any term of the query, best {@code ts_rank_cd} first
+     */
+    public List<EmbeddedDocument> fullTextSearch(String query, String language, int topK) {
+        Assert.hasText(query, "query cannot be null or empty");
+        String sql = FULL_TEXT_SEARCH.formatted(this.vectorStoreTable, textSearchConfig(language));
+        SearchRequest request = SearchRequest.builder().query(query).topK(topK).similarityThresholdAll().build();
+        return search(request, null, () -> this.jdbcTemplate.query(sql, searchArguments(query, topK),
+                embeddedDocumentMapper(rs -> rs.getDouble("rank"))));
+    }
+
+    /**
+     * Indexes the text search vector of the content so {@link #fullTextSearch} doesn't scan the table.
+     */
+    public void createFullTextIndex(String language) {
+        this.jdbcTemplate.execute(CREATE_FULL_TEXT_INDEX.formatted(this.vectorStoreTable, indexPrefix(), textSearchConfig(language)));
+    }
+
+    private List<EmbeddedDocument> search(SearchRequest request, Integer dimensions, Supplier<List<EmbeddedDocument>> query) {
+        VectorStoreObservationContext context = observationContext(VectorStoreObservationContext.Operation.QUERY)
+                .queryRequest(request)
+                .dimensions(dimensions)
+                .build();
+        return observation(() -> context).observe(() -> {
+            List<EmbeddedDocument> documents = query.get();
+            context.setQueryResponse(documents.stream().map(EmbeddedDocument::document).toList());
+            return documents;
+        });
+    }
+
+    /**
+     * Binds the arguments of a search and limits how long it runs, so a search its caller gave up on
+     * doesn't keep a connection busy.
+     */
+    private PreparedStatementSetter searchArguments(Object... args) {
+        PreparedStatementSetter arguments = new ArgumentPreparedStatementSetter(args);
+        return ps -> {
+            if (this.searchTimeoutSeconds > 0) {
+                ps.setQueryTimeout(this.searchTimeoutSeconds);
+            }
+            arguments.setValues(ps);
+        };
+    }
+
+    private VectorStoreObservationContext.Builder observationContext(VectorStoreObservationContext.Operation operation) {
+        int dot = this.vectorStoreTable.lastIndexOf('.');
+        return VectorStoreObservationContext.builder(VectorStoreProvider.PG_VECTOR.value(), operation)
+                .collectionName(indexPrefix())
+                .namespace(dot > 0 ? this.vectorStoreTable.substring(0, dot) : null)
+                .similarityMetric(VectorStoreSimilarityMetric.COSINE.value());
+    }
+
+    private Observation observation(Supplier<VectorStoreObservationContext> context) {
+        return VectorStoreObservationDocumentation.AI_VECTOR_STORE.observation(null, OBSERVATION_CONVENTION, context, this.observationRegistry);
+    }
+
+    private RowMapper<EmbeddedDocument> embeddedDocumentMapper(ScoreExtractor score) {
+        return (rs, rowNum) -> {
+            String embedding = rs.getString("embedding");
+            return new EmbeddedDocument(
+                    Document.builder()
+                            .id(rs.getString("id"))
+                            .text(rs.getString("content"))
+                            .metadata(fromJson(rs.getString("metadata")))
+                            .score(score.extract(rs))
+                            .build(),
+                    embedding != null ? new PGvector(embedding).toArray() : null);
+        };
+    }
+
+    private String indexPrefix() {
+        return this.vectorStoreTable.substring(this.vectorStoreTable.lastIndexOf('.') + 1);
+    }
+
+    // The configuration name is part of the SQL (index expressions can't be parameters), so only identifiers pass
+    private static String textSearchConfig(String language) {
+        Assert.isTrue(language != null && language.matches("[a-z_]+"), "language must be a text search configuration name");
+        return language;
+    }
+
+    private Map<String, Object> fromJson(String json) {
+        if (json == null) {
+            return Map.of();
+        }
+        try {
+            return this.objectMapper.readValue(json, METADATA);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Document metadata can't be deserialized.", e);
+        }
+    }
+
+    private String toJson(Object value) {
+        try {
+            return this.objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Document metadata can't be serialized.", e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ScoreExtractor {
+        double extract(ResultSet rs) throws SQLException;
+    }
+}
@@ -0,0 +1,16 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.repository;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.SequencedMessage;
+
+import java.util.List;
+
+/**
+ * Store for the assistant tool-call and tool-response messages of a conversation, keyed by
+ * (conversationId, index) where the index is the message's sequence number in the conversation.
+ */
+public interface ToolMessageRepository {
+    List<SequencedMessage> findByConversationId(String conversationId);
+    void append(String conversationId, List<SequencedMessage> messages);
+    void deleteRange(String conversationId, long fromIndex, long toIndex);
+    void deleteByConversationId(String conversationId);
+}
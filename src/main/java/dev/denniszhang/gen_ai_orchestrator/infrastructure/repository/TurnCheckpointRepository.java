@@ -0,0 +1,13 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.repository;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.TurnCheckpoint;
+
+import java.util.Optional;
+
+/**
+ * Store for the checkpoint of the last turn of each conversation; saving one replaces the previous.
+ */
+public interface TurnCheckpointRepository {
+    Optional<TurnCheckpoint> findByConversationId(String conversationId);
+    void save(TurnCheckpoint checkpoint);
+}
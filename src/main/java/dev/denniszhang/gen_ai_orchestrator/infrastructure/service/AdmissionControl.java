@@ -0,0 +1,329 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.exception.AdmissionRejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Token-bucket limits on requests and estimated tokens, per tenant ({@code AgentRequest.scope}) in front
+ * of the agent and per upstream ({@value #MODEL} calls, {@value #TOOLS} calls) inside it, so a burst is
+ * smoothed out here instead of being throttled by the model provider.
+ * <p>
+ * A caller over a limit is given the time its buckets need to refill and waits for it without holding a
+ * thread. Waiting callers form a queue in arrival order: each one takes its permits up front, so the
+ * next one waits for the refill after it; a caller cancelled while it waits gives its permits back. A
+ * caller that would wait longer than {@code maxWait}, or arrives while {@code maxQueued} callers of the
+ * same limiter are waiting (tenants together count as one), is rejected right away with
+ * {@link AdmissionRejectedException}, which carries when to retry.
+ * <p>
+ * A limit of 0 is no limit. Tenants without a limit of their own share the default one, each with its
+ * own buckets. Callers waiting are gauged in {@code orchestrator.admission.queue}, time waited is timed in
+ * {@code orchestrator.admission.wait} and rejections count in {@code orchestrator.admission.rejected},
+ * all tagged {@code limiter=tenant|model|tools}.
+ */
+public class AdmissionControl {
+    public static final String MODEL = "model";
+    public static final String TOOLS = "tools";
+
+    private static final String TENANT = "tenant";
+    private static final String DEFAULT_TENANT = "default";
+    private static final Duration DEFAULT_MAX_WAIT = Duration.ofSeconds(5);
+    private static final int DEFAULT_MAX_QUEUED = 1000;
+    private static final long DEFAULT_TURN_TOKENS = 2000;
+    private static final String METRIC = "orchestrator.admission";
+
+    /**
+     * @param requestsPerMinute requests admitted per minute, in bursts of up to that many
+     * @param tokensPerMinute estimated tokens admitted per minute, in bursts of up to that many
+     */
+    public record Limit(long requestsPerMinute, long tokensPerMinute) {
+        public static final Limit NONE = new Limit(0, 0);
+
+        public Limit {
+            Assert.isTrue(requestsPerMinute >= 0, "requestsPerMinute cannot be negative");
+            Assert.isTrue(tokensPerMinute >= 0, "tokensPerMinute cannot be negative");
+        }
+    }
+
+    private final TokenCounter tokenCounter;
+    private final long turnTokens;
+    private final long maxWaitNanos;
+    private final int maxQueued;
+    private final Limit tenantLimit;
+    private final Map<String, Limit> tenantLimits;
+    private final Cache<String, Limiter> tenants;
+    private final Meters tenantMeters;
+    private final Map<String, Limiter> upstreams = new HashMap<>();
+    private final LongSupplier nanoTime;
+
+    private AdmissionControl(TokenCounter tokenCounter, long turnTokens, Duration maxWait, int maxQueued, Limit tenantLimit,
+                             Map<String, Limit> tenantLimits, Map<String, Limit> upstreamLimits, MeterRegistry meterRegistry,
+                             LongSupplier nanoTime) {
+        this.tokenCounter = tokenCounter;
+        this.turnTokens = turnTokens;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.maxQueued = maxQueued;
+        this.tenantLimit = tenantLimit;
+        this.tenantLimits = Map.copyOf(tenantLimits);
+        this.nanoTime = nanoTime;
+
+        // Tenants share the meters of one limiter; idle tenants are dropped, their buckets being full again anyway
+        this.tenants = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .build();
+        this.tenantMeters = new Meters(TENANT, meterRegistry);
+        upstreamLimits.forEach((upstream, limit) ->
+                this.upstreams.put(upstream, new Limiter(limit, new Meters(upstream, meterRegistry))));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Admits a request of the tenant, estimated at its message plus {@code turnTokens}.
+     *
+     * @return completes once admitted, or fails with {@link AdmissionRejectedException}
+     */
+    public Mono<Void> admitRequest(String tenant, String message) {
+        String resolvedTenant = StringUtils.hasText(tenant) ? tenant : DEFAULT_TENANT;
+        return Mono.defer(() -> {
+            Limiter limiter = this.tenants.get(resolvedTenant, key ->
+                    new Limiter(this.tenantLimits.getOrDefault(key, this.tenantLimit), this.tenantMeters));
+            return admit(limiter, 1, this.tokenCounter.count(message) + this.turnTokens);
+        });
+    }
+
+    /**
+     * Admits {@code requests} calls to the upstream, estimated at {@code tokens} in total. Upstreams
+     * without a limit are admitted right away.
+     *
+     * @return completes once admitted, or fails with {@link AdmissionRejectedException}
+     */
+    public Mono<Void> admitUpstream(String upstream, long requests, long tokens) {
+        Limiter limiter = this.upstreams.get(upstream);
+        if (limiter == null) {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> admit(limiter, requests, tokens));
+    }
+
+    private Mono<Void> admit(Limiter limiter, long requests, long tokens) {
+        long wait = limiter.reserve(requests, tokens);
+        if (wait == 0) {
+            limiter.meters.wait.record(0, TimeUnit.NANOSECONDS);
+            return Mono.empty();
+        }
+        long start = this.nanoTime.getAsLong();
+        return Mono.delay(Duration.ofNanos(wait))
+                .doFinally(signal -> {
+                    if (signal == SignalType.CANCEL) {
+                        limiter.release(requests, tokens);
+                    }
+                    limiter.meters.queued.decrementAndGet();
+                    limiter.meters.wait.record(this.nanoTime.getAsLong() - start, TimeUnit.NANOSECONDS);
+                })
+                .then();
+    }
+
+    /**
+     * The request and token buckets of one tenant or upstream.
+     */
+    private final class Limiter {
+        private final TokenBucket requests;
+        private final TokenBucket tokens;
+        private final Meters meters;
+
+        private Limiter(Limit limit, Meters meters) {
+            long now = nanoTime.getAsLong();
+            this.requests = limit.requestsPerMinute() > 0 ? new TokenBucket(limit.requestsPerMinute(), now) : null;
+            this.tokens = limit.tokensPerMinute() > 0 ? new TokenBucket(limit.tokensPerMinute(), now) : null;
+            this.meters = meters;
+        }
+
+        /**
+         * Takes the permits if the wait for them is acceptable.
+         *
+         * @return nanoseconds to wait before the permits are available, 0 if they are
+         */
+        private synchronized long reserve(long requestPermits, long tokenPermits) {
+            long now = nanoTime.getAsLong();
+            long wait = Math.max(
+                    this.requests != null ? this.requests.waitFor(requestPermits, now) : 0,
+                    this.tokens != null ? this.tokens.waitFor(tokenPermits, now) : 0);
+            if (wait > maxWaitNanos || (wait > 0 && this.meters.queued.get() >= maxQueued)) {
+                this.meters.rejected.increment();
+                throw new AdmissionRejectedException(this.meters.name, Duration.ofNanos(wait));
+            }
+            if (this.requests != null) {
+                this.requests.take(requestPermits);
+            }
+            if (this.tokens != null) {
+                this.tokens.take(tokenPermits);
+            }
+            if (wait > 0) {
+                this.meters.queued.incrementAndGet();
+            }
+            return wait;
+        }
+
+        /**
+         * Gives back permits taken by a caller that stopped waiting for them.
+         */
+        private synchronized void release(long requestPermits, long tokenPermits) {
+            if (this.requests != null) {
+                this.requests.give(requestPermits);
+            }
+            if (this.tokens != null) {
+                this.tokens.give(tokenPermits);
+            }
+        }
+    }
+
+    /**
+     * A bucket of up to a minute's permits, refilled continuously. Permits may be taken ahead of the
+     * refill; the bucket then goes negative and later callers wait for it to be paid back.
+     */
+    private static final class TokenBucket {
+        private final double capacity;
+        private final double permitsPerNano;
+        private double available;
+        private long refilledAt;
+
+        private TokenBucket(long permitsPerMinute, long now) {
+            this.capacity = permitsPerMinute;
+            this.permitsPerNano = permitsPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+            this.available = permitsPerMinute;
+            this.refilledAt = now;
+        }
+
+        private long waitFor(long permits, long now) {
+            this.available = Math.min(this.capacity, this.available + (now - this.refilledAt) * this.permitsPerNano);
+            this.refilledAt = now;
+            // A request larger than the bucket waits for a full bucket rather than forever
+            double needed = Math.min(permits, this.capacity);
+            return needed <= this.available ? 0 : (long) Math.ceil((needed - this.available) / this.permitsPerNano);
+        }
+
+        private void take(long permits) {
+            this.available -= Math.min(permits, this.capacity);
+        }
+
+        private void give(long permits) {
+            this.available = Math.min(this.capacity, this.available + Math.min(permits, this.capacity));
+        }
+    }
+
+    private static final class Meters {
+        private final String name;
+        private final AtomicInteger queued = new AtomicInteger();
+        private final Timer wait;
+        private final Counter rejected;
+
+        private Meters(String name, MeterRegistry meterRegistry) {
+            this.name = name;
+            Gauge.builder(METRIC + ".queue", this.queued, AtomicInteger::get).tag("limiter", name).register(meterRegistry);
+            this.wait = Timer.builder(METRIC + ".wait").tag("limiter", name).register(meterRegistry);
+            this.rejected = Counter.builder(METRIC + ".rejected").tag("limiter", name).register(meterRegistry);
+        }
+    }
+
+    public static final class Builder {
+        private TokenCounter tokenCounter;
+        private long turnTokens = DEFAULT_TURN_TOKENS;
+        private Duration maxWait = DEFAULT_MAX_WAIT;
+        private int maxQueued = DEFAULT_MAX_QUEUED;
+        private Limit tenantLimit = Limit.NONE;
+        private Map<String, Limit> tenantLimits = Map.of();
+        private Map<String, Limit> upstreamLimits = Map.of();
+        private MeterRegistry meterRegistry = Metrics.globalRegistry;
+        private LongSupplier nanoTime = System::nanoTime;
+
+        private Builder() {
+        }
+
+        public Builder tokenCounter(TokenCounter tokenCounter) {
+            this.tokenCounter = tokenCounter;
+            return this;
+        }
+
+        /**
+         * Tokens a request is estimated at on top of its message: system prompt, history and knowledge.
+         */
+        public Builder turnTokens(long turnTokens) {
+            this.turnTokens = turnTokens;
+            return this;
+        }
+
+        public Builder maxWait(Duration maxWait) {
+            this.maxWait = maxWait;
+            return this;
+        }
+
+        public Builder maxQueued(int maxQueued) {
+            this.maxQueued = maxQueued;
+            return this;
+        }
+
+        /**
+         * The limit of each tenant not listed in {@link #tenantLimits}.
+         */
+        public Builder tenantLimit(Limit tenantLimit) {
+            this.tenantLimit = tenantLimit;
+            return this;
+        }
+
+        public Builder tenantLimits(Map<String, Limit> tenantLimits) {
+            this.tenantLimits = tenantLimits;
+            return this;
+        }
+
+        /**
+         * Limits by upstream, {@value #MODEL} or {@value #TOOLS}.
+         */
+        public Builder upstreamLimits(Map<String, Limit> upstreamLimits) {
+            this.upstreamLimits = upstreamLimits;
+            return this;
+        }
+
+        public Builder meterRegistry(MeterRegistry meterRegistry) {
+            this.meterRegistry = meterRegistry;
+            return this;
+        }
+
+        Builder nanoTime(LongSupplier nanoTime) {
+            this.nanoTime = nanoTime;
+            return this;
+        }
+
+        public AdmissionControl build() {
+            Assert.notNull(this.tokenCounter, "tokenCounter cannot be null");
+            Assert.isTrue(this.turnTokens >= 0, "turnTokens cannot be negative");
+            Assert.isTrue(this.maxWait != null && !this.maxWait.isNegative(), "maxWait cannot be negative");
+            Assert.isTrue(this.maxQueued >= 0, "maxQueued cannot be negative");
+            Assert.notNull(this.tenantLimit, "tenantLimit cannot be null");
+            Assert.notNull(this.tenantLimits, "tenantLimits cannot be null");
+            Assert.notNull(this.upstreamLimits, "upstreamLimits cannot be null");
+            Assert.notNull(this.meterRegistry, "meterRegistry cannot be null");
+            Assert.notNull(this.nanoTime, "nanoTime cannot be null");
+            return new AdmissionControl(this.tokenCounter, this.turnTokens, this.maxWait, this.maxQueued, this.tenantLimit,
+                    this.tenantLimits, this.upstreamLimits, this.meterRegistry, this.nanoTime);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.EmbeddingCacheRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.MetadataMode;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.embedding.EmbeddingResponseMetadata;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link EmbeddingModel} decorator that caches embeddings by (model, SHA-256 of the text).
+ * <p>
+ * Lookups go to a bounded in-memory LRU first and then, if configured, to an
+ * {@link EmbeddingCacheRepository}; only texts missing from both are sent to the delegate, in one
+ * request, with duplicates inside a request embedded once. The persistent tier is best effort: a
+ * failing read or write is logged and treated as a miss.
+ * <p>
+ * Every looked-up text counts once in {@code orchestrator.embedding.cache} tagged with the
+ * {@code tier} that answered ({@code memory}, {@code database}) or {@code result=miss}.
+ */
+public class CachingEmbeddingModel implements EmbeddingModel {
+    private static final int DEFAULT_MAX_SIZE = 10_000;
+    private static final String METRIC = "orchestrator.embedding.cache";
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final EmbeddingModel delegate;
+    private final String model;
+    private final EmbeddingCacheRepository repository;
+    private final Cache<String, float[]> memory;
+
+    private final Counter memoryHits;
+    private final Counter databaseHits;
+    private final Counter misses;
+
+    private CachingEmbeddingModel(EmbeddingModel delegate, String model, EmbeddingCacheRepository repository,
+                                  long maxSize, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.model = model;
+        this.repository = repository;
+        this.memory = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .build();
+
+        this.memoryHits = Counter.builder(METRIC).tag("tier", "memory").tag("result", "hit").register(meterRegistry);
+        this.databaseHits = Counter.builder(METRIC).tag("tier", "database").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder(METRIC).tag("tier", "none").tag("result", "miss").register(meterRegistry);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        String requestModel = resolveModel(request.getOptions());
+        List<String> texts = request.getInstructions();
+        float[][] results = new float[texts.size()][];
+
+        // content hash -> positions in the request that still need an embedding
+        Map<String, List<Integer>> missing = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            String hash = ContentHashes.sha256(texts.get(i));
+            float[] cached = this.memory.getIfPresent(key(requestModel, hash));
+            if (cached != null) {
+                results[i] = cached;
+                this.memoryHits.increment();
+            } else {
+                missing.computeIfAbsent(hash, h -> new ArrayList<>()).add(i);
+            }
+        }
+
+        if (!missing.isEmpty() && this.repository != null) {
+            for (Map.Entry<String, float[]> stored : findStored(requestModel, missing).entrySet()) {
+                this.memory.put(key(requestModel, stored.getKey()), stored.getValue());
+                List<Integer> positions = missing.remove(stored.getKey());
+                positions.forEach(i -> results[i] = stored.getValue());
+                this.databaseHits.increment(positions.size());
+            }
+        }
+
+        EmbeddingResponseMetadata metadata = new EmbeddingResponseMetadata();
+        if (!missing.isEmpty()) {
+            List<String> hashes = new ArrayList<>(missing.keySet());
+            List<String> missingTexts = hashes.stream().map(hash -> texts.get(missing.get(hash).getFirst())).toList();
+            EmbeddingResponse response = this.delegate.call(new EmbeddingRequest(missingTexts, request.getOptions()));
+            metadata = response.getMetadata();
+
+            Map<String, float[]> computed = new LinkedHashMap<>();
+            for (int i = 0; i < hashes.size(); i++) {
+                float[] embedding = response.getResults().get(i).getOutput();
+                computed.put(hashes.get(i), embedding);
+                this.memory.put(key(requestModel, hashes.get(i)), embedding);
+                List<Integer> positions = missing.get(hashes.get(i));
+                positions.forEach(position -> results[position] = embedding);
+                this.misses.increment(positions.size());
+            }
+            saveStored(requestModel, computed);
+        }
+
+        List<Embedding> embeddings = new ArrayList<>(results.length);
+        for (int i = 0; i < results.length; i++) {
+            embeddings.add(new Embedding(results[i], i));
+        }
+        return new EmbeddingResponse(embeddings, metadata);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getFormattedContent(MetadataMode.EMBED));
+    }
+
+    @Override
+    public int dimensions() {
+        return this.delegate.dimensions();
+    }
+
+    private String resolveModel(EmbeddingOptions options) {
+        return options != null && StringUtils.hasText(options.getModel()) ? options.getModel() : this.model;
+    }
+
+    private Map<String, float[]> findStored(String requestModel, Map<String, List<Integer>> missing) {
+        try {
+            return this.repository.findAll(requestModel, missing.keySet());
+        } catch (RuntimeException e) {
+            logger.warn("Embedding cache lookup failed, embedding {} texts", missing.size(), e);
+            return Map.of();
+        }
+    }
+
+    private void saveStored(String requestModel, Map<String, float[]> computed) {
+        if (this.repository == null) {
+            return;
+        }
+        try {
+            this.repository.saveAll(requestModel, computed);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to persist {} embeddings", computed.size(), e);
+        }
+    }
+
+    private static String key(String model, String hash) {
+        return model + ':' + hash;
+    }
+
+    public static final class Builder {
+        private EmbeddingModel delegate;
+        private String model;
+        private EmbeddingCacheRepository repository;
+        private long maxSize = DEFAULT_MAX_SIZE;
+        private MeterRegistry meterRegistry = Metrics.globalRegistry;
+
+        private Builder() {
+        }
+
+        public Builder delegate(EmbeddingModel delegate) {
+            this.delegate = delegate;
+            return this;
+        }
+
+        /**
+         * Model name used in the cache key when a request does not name one.
+         */
+        public Builder model(String model) {
+            this.model = model;
+            return this;
+        }
+
+        /**
+         * Optional persistent tier behind the in-memory cache.
+         */
+        public Builder repository(EmbeddingCacheRepository repository) {
+            this.repository = repository;
+            return this;
+        }
+
+        public Builder maxSize(long maxSize) {
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        public Builder meterRegistry(MeterRegistry meterRegistry) {
+            this.meterRegistry = meterRegistry;
+            return this;
+        }
+
+        public CachingEmbeddingModel build() {
+            Assert.notNull(this.delegate, "delegate cannot be null");
+            Assert.hasText(this.model, "model cannot be null or empty");
+            Assert.isTrue(this.maxSize > 0, "maxSize must be greater than 0");
+            Assert.notNull(this.meterRegistry, "meterRegistry cannot be null");
+            return new CachingEmbeddingModel(this.delegate, this.model, this.repository, this.maxSize, this.meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import org.springframework.ai.chat.messages.Message;
+
+import java.util.List;
+
+/**
+ * Receives the messages {@link ToolMessageWindowChatMemoryImpl} evicts from a conversation window.
+ * Called on the thread that added the messages, after the window was updated, so implementations must
+ * return quickly.
+ */
+@FunctionalInterface
+public interface ChatMemoryEvictionListener {
+    ChatMemoryEvictionListener NOOP = (memory, conversationId, evicted) -> {};
+
+    void onEvicted(ToolMessageWindowChatMemoryImpl memory, String conversationId, List<Message> evicted);
+}
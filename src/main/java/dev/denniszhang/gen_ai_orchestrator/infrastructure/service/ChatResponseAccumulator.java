@@ -0,0 +1,143 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Folds the chunks of a streamed {@link ChatResponse} into one response as they pass through, so a
+ * stream is subscribed once and only the output text (not every chunk) is kept until it ends.
+ * <p>
+ * Tool calls are merged by id: a chunk carrying the id of a call seen before continues that call and
+ * its argument fragment is appended. A chunk without an id continues the previous call unless it names
+ * a tool, which backends that send whole calls without ids do for every call; then it starts a new one.
+ * Name and type are taken from the first chunk that has them.
+ * <p>
+ * Not thread-safe; use one instance per stream.
+ */
+public class ChatResponseAccumulator {
+    public static final String REASONING_CONTENT = "reasoningContent";
+
+    private final StringBuilder content = new StringBuilder();
+    private final StringBuilder reasoning = new StringBuilder();
+    private final Map<String, ToolCallBuilder> toolCalls = new LinkedHashMap<>();
+    private ToolCallBuilder lastToolCall;
+    private int callsWithoutId;
+    private ChatResponseMetadata lastMetadata;
+    private boolean empty = true;
+
+    public void accept(ChatResponse chunk) {
+        this.empty = false;
+        this.lastMetadata = chunk.getMetadata();
+
+        Generation generation = chunk.getResult();
+        if (generation == null || generation.getOutput() == null) {
+            return;
+        }
+        AssistantMessage output = generation.getOutput();
+
+        if (output.getText() != null) {
+            this.content.append(output.getText());
+        }
+        if (output.getMetadata().get(REASONING_CONTENT) instanceof String reasoningDelta) {
+            this.reasoning.append(reasoningDelta);
+        }
+        for (AssistantMessage.ToolCall toolCall : output.getToolCalls()) {
+            mergeToolCall(toolCall);
+        }
+    }
+
+    public boolean isEmpty() {
+        return this.empty;
+    }
+
+    /**
+     * @return the aggregated response, or {@code null} if no chunk was accepted
+     */
+    public ChatResponse toChatResponse() {
+        if (this.empty) {
+            return null;
+        }
+
+        List<AssistantMessage.ToolCall> accumulatedToolCalls = this.toolCalls.values().stream()
+                .map(ToolCallBuilder::build)
+                .toList();
+
+        Map<String, Object> properties = new HashMap<>();
+        if (this.lastMetadata != null) {
+            this.lastMetadata.entrySet().forEach(entry -> properties.put(entry.getKey(), entry.getValue()));
+        }
+
+        // Models that reason in the content channel before calling tools: keep that text as reasoning
+        String text = this.content.toString();
+        if (!accumulatedToolCalls.isEmpty() && this.reasoning.isEmpty()) {
+            properties.put(REASONING_CONTENT, text);
+            text = "";
+        } else {
+            properties.put(REASONING_CONTENT, this.reasoning.toString());
+        }
+
+        AssistantMessage message = AssistantMessage.builder()
+                .toolCalls(accumulatedToolCalls)
+                .properties(properties)
+                .content(text)
+                .build();
+
+        ChatResponse.Builder builder = ChatResponse.builder().generations(List.of(new Generation(message)));
+        if (this.lastMetadata != null) {
+            builder.metadata(this.lastMetadata);
+        }
+        return builder.build();
+    }
+
+    private void mergeToolCall(AssistantMessage.ToolCall delta) {
+        ToolCallBuilder builder;
+        if (StringUtils.hasText(delta.id())) {
+            builder = this.toolCalls.computeIfAbsent(delta.id(), ToolCallBuilder::new);
+        } else if (this.lastToolCall != null && !(StringUtils.hasText(delta.name()) && this.lastToolCall.name != null)) {
+            builder = this.lastToolCall;
+        } else {
+            // Keyed apart from any id, the call itself keeps the empty id it was sent with
+            builder = new ToolCallBuilder("");
+            this.toolCalls.put("\0" + this.callsWithoutId++, builder);
+        }
+        builder.merge(delta);
+        this.lastToolCall = builder;
+    }
+
+    private static final class ToolCallBuilder {
+        private final String id;
+        private final StringBuilder arguments = new StringBuilder();
+        private String type;
+        private String name;
+
+        private ToolCallBuilder(String id) {
+            this.id = id;
+        }
+
+        private void merge(AssistantMessage.ToolCall delta) {
+            if (this.type == null && StringUtils.hasText(delta.type())) {
+                this.type = delta.type();
+            }
+            if (this.name == null && StringUtils.hasText(delta.name())) {
+                this.name = delta.name();
+            }
+            if (delta.arguments() != null) {
+                this.arguments.append(delta.arguments());
+            }
+        }
+
+        private AssistantMessage.ToolCall build() {
+            return new AssistantMessage.ToolCall(this.id, this.type != null ? this.type : "function",
+                    this.name != null ? this.name : "", this.arguments.toString());
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops calls to a backend that keeps failing. Opens after {@code failureThreshold} consecutive
+ * failures; once {@code openDuration} has passed, one trial call is let through (half open), which
+ * closes it again if it succeeds and reopens it if it fails.
+ */
+public class CircuitBreaker {
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier nanoTime;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this(failureThreshold, openDuration, System::nanoTime);
+    }
+
+    CircuitBreaker(int failureThreshold, Duration openDuration, LongSupplier nanoTime) {
+        Assert.isTrue(failureThreshold > 0, "failureThreshold must be greater than 0");
+        Assert.isTrue(openDuration != null && !openDuration.isNegative(), "openDuration cannot be negative");
+        Assert.notNull(nanoTime, "nanoTime cannot be null");
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * @return whether {@link #tryAcquire()} would let a call through now
+     */
+    public synchronized boolean isCallPermitted() {
+        return switch (state()) {
+            case CLOSED -> true;
+            case HALF_OPEN -> !this.trialInFlight;
+            case OPEN -> false;
+        };
+    }
+
+    /**
+     * Lets a call through, if permitted. A call let through must end in {@link #onSuccess()},
+     * {@link #onFailure()} or {@link #release()}.
+     */
+    public synchronized boolean tryAcquire() {
+        State state = state();
+        if (state == State.OPEN || (state == State.HALF_OPEN && this.trialInFlight)) {
+            return false;
+        }
+        if (state == State.HALF_OPEN) {
+            this.trialInFlight = true;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        this.state = State.CLOSED;
+        this.failures = 0;
+        this.trialInFlight = false;
+    }
+
+    public synchronized void onFailure() {
+        this.failures++;
+        if (state() == State.HALF_OPEN || this.failures >= this.failureThreshold) {
+            this.state = State.OPEN;
+            this.openedAt = this.nanoTime.getAsLong();
+        }
+        this.trialInFlight = false;
+    }
+
+    /**
+     * Ends a call that was abandoned before it succeeded or failed, e.g. because another one won.
+     */
+    public synchronized void release() {
+        this.trialInFlight = false;
+    }
+
+    public synchronized State state() {
+        if (this.state == State.OPEN && this.nanoTime.getAsLong() - this.openedAt >= this.openNanos) {
+            this.state = State.HALF_OPEN;
+        }
+        return this.state;
+    }
+
+    /**
+     * @return how long until an open breaker lets a trial call through, zero if it isn't open
+     */
+    public synchronized Duration remainingOpen() {
+        return state() == State.OPEN
+                ? Duration.ofNanos(this.openNanos - (this.nanoTime.getAsLong() - this.openedAt))
+                : Duration.ZERO;
+    }
+}
@@ -0,0 +1,27 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Content hashes used to recognise byte-identical text across requests and uploads.
+ */
+public final class ContentHashes {
+
+    private ContentHashes() {
+    }
+
+    /**
+     * @return the lowercase hex SHA-256 of the UTF-8 encoded text
+     */
+    public static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    }
+}
@@ -2,32 +2,40 @@ package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
 
 import dev.denniszhang.gen_ai_orchestrator.core.service.ContextEngine;
 import dev.denniszhang.gen_ai_orchestrator.core.service.MessageFactory;
-import org.springframework.ai.chat.memory.ChatMemory;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.reader.tika.TikaDocumentReader;
-import org.springframework.ai.transformer.splitter.TokenTextSplitter;
-import org.springframework.ai.vectorstore.SearchRequest;
-import org.springframework.ai.vectorstore.VectorStore;
-import org.springframework.core.io.Resource;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
-public class ContextEngineImpl implements ContextEngine {
-
-    private final ChatMemory chatMemory;
-    private final VectorStore vectorStore;
+/**
+ * Builds the context of the model calls from chat memory and retrieved knowledge. Loading the history,
+ * retrieving knowledge and adding the user message are observed as {@code orchestrator.context.history},
+ * {@code orchestrator.context.knowledge} and {@code orchestrator.context.add}.
+ */
+public class ContextEngineImpl implements ContextEngine, AutoCloseable {
+    private final WriteBehindChatMemory chatMemory;
     private final MessageFactory messageFactory;
+    private final RetrievalPipeline retrievalPipeline;
+    private final ObservationRegistry observationRegistry;
+    private final ExecutorService knowledgeExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("knowledge-", 0).factory());
 
     public ContextEngineImpl(
-            ChatMemory chatMemory,
-            VectorStore vectorStore,
-            MessageFactory messageFactory
+            WriteBehindChatMemory chatMemory,
+            MessageFactory messageFactory,
+            RetrievalPipeline retrievalPipeline,
+            ObservationRegistry observationRegistry
     ) {
         this.chatMemory = chatMemory;
-        this.vectorStore = vectorStore;
         this.messageFactory = messageFactory;
+        this.retrievalPipeline = retrievalPipeline;
+        this.observationRegistry = observationRegistry;
     }
 
     @Override
@@ -35,14 +43,30 @@ public class ContextEngineImpl implements ContextEngine {
         return chatMemory.get(conversationID);
     }
 
+    /**
+     * Retrieves knowledge while the history loads, then adds the system prompt (for a new conversation)
+     * and the user message in one update that also returns the messages for the prompt.
+     */
     @Override
-    public void addUserMessage(String conversationId, String message) {
+    public List<Message> addUserMessage(String conversationId, String message) {
         final String AgentName = "orchestratorAgent";
 
-        if(chatMemory.get(conversationId).isEmpty()) {
-            chatMemory.add(conversationId, messageFactory.createSystem(AgentName));
+        // Retrieval runs on another thread, so its observation needs the parent set explicitly
+        Observation parent = observationRegistry.getCurrentObservation();
+        CompletableFuture<List<Document>> knowledge = CompletableFuture.supplyAsync(
+                () -> observation("context.knowledge", conversationId, parent).observe(() -> getKnowledge(message)),
+                knowledgeExecutor);
+        List<Message> history = observation("context.history", conversationId, parent)
+                .observe(() -> chatMemory.get(conversationId));
+
+        List<Message> newMessages = new ArrayList<>(2);
+        if(history.isEmpty()) {
+            newMessages.add(messageFactory.createSystem(AgentName));
         }
-        chatMemory.add(conversationId, messageFactory.createUser(message, getKnowledge(message)));
+        newMessages.add(messageFactory.createUser(message, join(knowledge)));
+
+        return observation("context.add", conversationId, parent)
+                .observe(() -> chatMemory.addAndGet(conversationId, newMessages));
     }
 
     @Override
@@ -51,26 +75,59 @@ public class ContextEngineImpl implements ContextEngine {
     }
 
     @Override
-    public void addResource(Resource[] resources) {
-        if (resources.length != 0) {
-            Arrays.stream(resources)
-                    .map(resource -> new TokenTextSplitter(
-                            800,  // defaultChunkSize: Target ~800 tokens per chunk
-                            350,  // minChunkSizeChars: Avoid creating tiny, useless chunks
-                            5,    // minChunkLengthToEmbed: Discard artifacts/noise
-                            10000, // maxNumChunks: Safety limit
-                            true   // keepSeparator: Preserve sentence boundaries
-                    ).apply(new TikaDocumentReader(resource).get()))
-                    .forEach(docs -> vectorStore.add(docs));
+    public void replaceLastMessage(String conversationId, Message message) {
+        chatMemory.replaceLast(conversationId, message);
+    }
+
+    @Override
+    public void addCachedAnswer(String conversationId, String message, Message answer) {
+        final String AgentName = "orchestratorAgent";
+
+        if(chatMemory.get(conversationId).isEmpty()) {
+            chatMemory.add(conversationId, messageFactory.createSystem(AgentName));
         }
+        // The answer came from the response cache, no knowledge was retrieved for it
+        chatMemory.add(conversationId, List.of(messageFactory.createUser(message, List.of()), answer));
+    }
+
+    @Override
+    public void flush(String conversationId) {
+        chatMemory.flush(conversationId);
+    }
+
+    @Override
+    public void whenFlushed(String conversationId, Runnable action) {
+        chatMemory.whenFlushed(conversationId, action);
+    }
+
+    /**
+     * Stops the threads knowledge is retrieved on and closes the retrieval pipeline, interrupting
+     * retrievals still running.
+     */
+    @Override
+    public void close() {
+        knowledgeExecutor.shutdownNow();
+        retrievalPipeline.close();
     }
 
     private List<Document> getKnowledge(String message) {
-        return vectorStore.similaritySearch(
-                SearchRequest.builder()
-                        .similarityThreshold(0.8d)
-                        .topK(5)
-                        .query(message)
-                        .build());
+        return retrievalPipeline.retrieve(message);
+    }
+
+    private Observation observation(String stage, String conversationId, Observation parent) {
+        return Observation.createNotStarted(ConversationStats.PREFIX + stage, observationRegistry)
+                .highCardinalityKeyValue(ConversationStats.CONVERSATION_ID, conversationId)
+                .parentObservation(parent);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
     }
 }
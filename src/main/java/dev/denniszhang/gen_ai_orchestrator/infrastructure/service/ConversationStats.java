@@ -0,0 +1,126 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.ConversationSummary;
+import io.micrometer.common.KeyValue;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Collects the {@code orchestrator.*} observations of each conversation into a
+ * {@link ConversationSummary}: requests, iterations, tokens and time per stage. Observations are
+ * attributed by their {@value #CONVERSATION_ID} key; a tool observation counts as
+ * {@code agent.tool.<name>}.
+ * <p>
+ * Summaries are kept in memory for {@code ttl} after the last observation of the conversation, for at
+ * most {@code maxConversations} conversations.
+ */
+public class ConversationStats implements ObservationHandler<Observation.Context> {
+    public static final String PREFIX = "orchestrator.";
+    public static final String CONVERSATION_ID = "conversation.id";
+    public static final String ITERATION = "iteration";
+    public static final String TOOL = "tool";
+    public static final String INPUT_TOKENS = "gen_ai.usage.input_tokens";
+    public static final String OUTPUT_TOKENS = "gen_ai.usage.output_tokens";
+
+    static final String REQUEST = PREFIX + "agent.request";
+    static final String MODEL = PREFIX + "agent.model";
+
+    private static final Object START = new Object();
+
+    private final Cache<String, Stats> conversations;
+
+    public ConversationStats(long maxConversations, Duration ttl) {
+        Assert.isTrue(maxConversations > 0, "maxConversations must be greater than 0");
+        Assert.isTrue(ttl != null && ttl.isPositive(), "ttl must be positive");
+        this.conversations = Caffeine.newBuilder()
+                .maximumSize(maxConversations)
+                .expireAfterAccess(ttl)
+                .build();
+    }
+
+    public Optional<ConversationSummary> get(String conversationId) {
+        Stats stats = this.conversations.getIfPresent(conversationId);
+        return stats == null ? Optional.empty() : Optional.of(stats.summary(conversationId));
+    }
+
+    @Override
+    public boolean supportsContext(Observation.Context context) {
+        return context.getName() != null && context.getName().startsWith(PREFIX);
+    }
+
+    @Override
+    public void onStart(Observation.Context context) {
+        context.put(START, System.nanoTime());
+    }
+
+    @Override
+    public void onStop(Observation.Context context) {
+        KeyValue conversationId = context.getHighCardinalityKeyValue(CONVERSATION_ID);
+        Long start = context.get(START);
+        if (conversationId == null || start == null) {
+            return;
+        }
+
+        String stage = context.getName().substring(PREFIX.length());
+        KeyValue tool = context.getLowCardinalityKeyValue(TOOL);
+        if (tool != null) {
+            stage += "." + tool.getValue();
+        }
+        this.conversations.get(conversationId.getValue(), id -> new Stats())
+                .record(context.getName(), stage, System.nanoTime() - start,
+                        tokens(context, INPUT_TOKENS), tokens(context, OUTPUT_TOKENS));
+    }
+
+    private static long tokens(Observation.Context context, String key) {
+        KeyValue value = context.getHighCardinalityKeyValue(key);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value.getValue());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static final class Stats {
+        private final Map<String, long[]> stages = new TreeMap<>();
+        private long requests;
+        private long iterations;
+        private long inputTokens;
+        private long outputTokens;
+
+        private synchronized void record(String name, String stage, long nanos, long inputTokens, long outputTokens) {
+            if (REQUEST.equals(name)) {
+                this.requests++;
+            }
+            if (MODEL.equals(name)) {
+                this.iterations++;
+            }
+            this.inputTokens += inputTokens;
+            this.outputTokens += outputTokens;
+
+            // count, total and max nanos
+            long[] times = this.stages.computeIfAbsent(stage, key -> new long[3]);
+            times[0]++;
+            times[1] += nanos;
+            times[2] = Math.max(times[2], nanos);
+        }
+
+        private synchronized ConversationSummary summary(String conversationId) {
+            Map<String, ConversationSummary.Stage> summaries = new TreeMap<>();
+            this.stages.forEach((stage, times) -> summaries.put(stage,
+                    new ConversationSummary.Stage(times[0], times[1] / 1e6, times[2] / 1e6)));
+            return new ConversationSummary(conversationId, this.requests, this.iterations, this.inputTokens,
+                    this.outputTokens, summaries);
+        }
+    }
+}
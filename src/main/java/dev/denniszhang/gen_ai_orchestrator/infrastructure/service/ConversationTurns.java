@@ -0,0 +1,83 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.exception.ConversationBusyException;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs the turns of a conversation one at a time, so two requests for the same conversation (a client
+ * retry, a second tab) never interleave their messages in its history. Turns of different
+ * conversations don't wait for each other.
+ * <p>
+ * A turn arriving while its conversation is busy is handled by the {@link BusyPolicy}:
+ * <ul>
+ *     <li>{@code QUEUE}: it starts once the turns before it have ended,</li>
+ *     <li>{@code REJECT}: it fails with {@link ConversationBusyException},</li>
+ *     <li>{@code CANCEL}: the turn before it is cancelled (its stream completes early) and it starts
+ *     once that one has ended.</li>
+ * </ul>
+ * A turn cancelled (or disconnected) while it waits counts as ended only once the turns before it
+ * have ended. Only the last turn of a busy conversation is tracked; the entry is removed when it ends.
+ */
+public class ConversationTurns {
+    public enum BusyPolicy {
+        QUEUE, REJECT, CANCEL
+    }
+
+    private final BusyPolicy busyPolicy;
+    private final Map<String, Turn> lastTurns = new ConcurrentHashMap<>();
+
+    public ConversationTurns(BusyPolicy busyPolicy) {
+        Assert.notNull(busyPolicy, "busyPolicy cannot be null");
+        this.busyPolicy = busyPolicy;
+    }
+
+    /**
+     * @return the turn, subscribed to once the conversation's earlier turns have ended
+     */
+    public <T> Flux<T> serialize(String conversationId, Flux<T> turn) {
+        Assert.hasText(conversationId, "conversationId cannot be null or empty");
+        Assert.notNull(turn, "turn cannot be null");
+
+        return Flux.defer(() -> {
+            Turn current = new Turn();
+            Turn previous = admit(conversationId, current);
+            Mono<Void> before = previous != null ? previous.ended.asMono() : Mono.empty();
+            return before.thenMany(turn)
+                    .takeUntilOther(current.cancelled.asMono())
+                    // Cancelled while it waits, it ends only once the turns before it have
+                    .doFinally(signal -> before.subscribe(null, null, () -> {
+                        this.lastTurns.remove(conversationId, current);
+                        current.ended.tryEmitEmpty();
+                    }));
+        });
+    }
+
+    /**
+     * @return the turn the new one has to wait for, if any
+     */
+    private Turn admit(String conversationId, Turn current) {
+        Turn[] previous = new Turn[1];
+        this.lastTurns.compute(conversationId, (id, last) -> {
+            if (last != null && this.busyPolicy == BusyPolicy.REJECT) {
+                throw new ConversationBusyException(id);
+            }
+            previous[0] = last;
+            return current;
+        });
+        if (previous[0] != null && this.busyPolicy == BusyPolicy.CANCEL) {
+            previous[0].cancelled.tryEmitEmpty();
+        }
+        return previous[0];
+    }
+
+    private static final class Turn {
+        private final Sinks.Empty<Void> ended = Sinks.empty();
+        private final Sinks.Empty<Void> cancelled = Sinks.empty();
+    }
+}
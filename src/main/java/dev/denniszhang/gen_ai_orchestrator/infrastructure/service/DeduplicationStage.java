@@ -0,0 +1,50 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.EmbeddedDocument;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Drops candidates whose text repeats a better-ranked candidate, e.g. the same paragraph ingested
+ * from two files. Texts are compared by their {@code contentHash} metadata when ingestion set it, and
+ * by the hash of the case- and whitespace-normalized text otherwise.
+ */
+public class DeduplicationStage implements RetrievalPipeline.Stage {
+    private static final String CONTENT_HASH = "contentHash";
+
+    @Override
+    public String name() {
+        return "dedup";
+    }
+
+    @Override
+    public List<EmbeddedDocument> apply(String query, List<EmbeddedDocument> candidates) {
+        Set<String> seen = new HashSet<>();
+        List<EmbeddedDocument> unique = new ArrayList<>(candidates.size());
+        for (EmbeddedDocument candidate : candidates) {
+            String contentHash = contentHash(candidate);
+            String normalizedHash = normalizedHash(candidate);
+            if (!seen.contains(contentHash) && !seen.contains(normalizedHash)) {
+                unique.add(candidate);
+            }
+            seen.add(contentHash);
+            seen.add(normalizedHash);
+        }
+        return unique;
+    }
+
+    private static String contentHash(EmbeddedDocument candidate) {
+        return candidate.document().getMetadata().get(CONTENT_HASH) instanceof String hash
+                ? hash
+                : ContentHashes.sha256(candidate.document().getText());
+    }
+
+    private static String normalizedHash(EmbeddedDocument candidate) {
+        String text = candidate.document().getText();
+        return "normalized:" + ContentHashes.sha256(text == null ? "" : text.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,40 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.EmbeddedDocument;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.PgVectorDocumentRepository;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+
+/**
+ * Chunks matching the terms of the query in Postgres full-text search. Finds exact names, codes and
+ * rare words that embeddings blur, and needs no embedding call.
+ */
+public class FullTextRetriever implements RetrievalPipeline.Retriever {
+    private final PgVectorDocumentRepository documentRepository;
+    private final String language;
+    private final int topK;
+
+    public FullTextRetriever(PgVectorDocumentRepository documentRepository, String language, int topK) {
+        Assert.notNull(documentRepository, "documentRepository cannot be null");
+        Assert.hasText(language, "language cannot be null or empty");
+        Assert.isTrue(topK > 0, "topK must be greater than 0");
+        this.documentRepository = documentRepository;
+        this.language = language;
+        this.topK = topK;
+    }
+
+    @Override
+    public String name() {
+        return "full-text";
+    }
+
+    @Override
+    public List<EmbeddedDocument> retrieve(String query) {
+        if (!StringUtils.hasText(query)) {
+            return List.of();
+        }
+        return this.documentRepository.fullTextSearch(query, this.language, this.topK);
+    }
+}
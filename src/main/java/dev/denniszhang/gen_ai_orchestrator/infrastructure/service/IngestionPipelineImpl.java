@@ -0,0 +1,353 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.denniszhang.gen_ai_orchestrator.core.model.IngestionFileStatus;
+import dev.denniszhang.gen_ai_orchestrator.core.model.IngestionJobStatus;
+import dev.denniszhang.gen_ai_orchestrator.core.service.IngestionPipeline;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.config.IngestionProperties;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.EmbeddedDocument;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.PgVectorDocumentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Background document ingestion: parse, embed and store each run as a {@link PipelineStage} with its
+ * own workers and a bounded queue in front of it. A full queue blocks the stage feeding it, and a full
+ * parse queue rejects new uploads.
+ * <p>
+ * Parsing streams chunks from the {@link StreamingDocumentReader} straight into the embed queue, so a
+ * file is never held in memory as a whole: heap use is bounded by the queue capacities, not by the
+ * size of the upload.
+ * <p>
+ * Every chunk carries the SHA-256 of its text as {@code contentHash} metadata; chunks whose hash is
+ * already indexed are skipped before embedding, so re-uploading a document costs no embedding calls.
+ * <p>
+ * {@code onStored} runs after every stored batch, e.g. to drop answers cached from the knowledge before it.
+ */
+public class IngestionPipelineImpl implements IngestionPipeline, AutoCloseable {
+    private static final String CONTENT_HASH = "contentHash";
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final EmbeddingModel embeddingModel;
+    private final PgVectorDocumentRepository documentRepository;
+    private final StreamingDocumentReader documentReader;
+    private final Runnable onStored;
+    private final Cache<String, Job> jobs;
+
+    private final PipelineStage<ParseTask> parseStage;
+    private final PipelineStage<Chunk> embedStage;
+    private final PipelineStage<List<EmbeddedChunk>> storeStage;
+
+    public IngestionPipelineImpl(
+            EmbeddingModel embeddingModel,
+            PgVectorDocumentRepository documentRepository,
+            StreamingDocumentReader documentReader,
+            IngestionProperties properties
+    ) {
+        this(embeddingModel, documentRepository, documentReader, properties, () -> {});
+    }
+
+    public IngestionPipelineImpl(
+            EmbeddingModel embeddingModel,
+            PgVectorDocumentRepository documentRepository,
+            StreamingDocumentReader documentReader,
+            IngestionProperties properties,
+            Runnable onStored
+    ) {
+        this.embeddingModel = embeddingModel;
+        this.documentRepository = documentRepository;
+        this.documentReader = documentReader;
+        this.onStored = onStored;
+        this.jobs = Caffeine.newBuilder()
+                .expireAfterWrite(properties.jobRetention())
+                .build();
+
+        this.storeStage = new PipelineStage<>("ingest-store", properties.storeWorkers(),
+                Math.max(1, properties.queueCapacity() / properties.embedBatchSize()), 1, batches -> batches.forEach(this::store));
+        this.embedStage = new PipelineStage<>("ingest-embed", properties.embedWorkers(),
+                properties.queueCapacity(), properties.embedBatchSize(), this::embed);
+        this.parseStage = new PipelineStage<>("ingest-parse", properties.parseWorkers(),
+                properties.maxQueuedFiles(), 1, tasks -> tasks.forEach(this::parse));
+    }
+
+    @Override
+    public IngestionJobStatus submit(List<? extends Resource> resources) {
+        Assert.notEmpty(resources, "resources cannot be empty");
+
+        Job job = new Job(UUID.randomUUID().toString(), Instant.now());
+        List<ParseTask> tasks = resources.stream()
+                .map(resource -> new ParseTask(job.addFile(resource.getFilename()), resource))
+                .toList();
+        this.jobs.put(job.id, job);
+
+        for (ParseTask task : tasks) {
+            if (!this.parseStage.offer(task)) {
+                task.file.fail("Ingestion queue is full");
+                release(task.resource);
+            }
+        }
+        if (tasks.stream().allMatch(task -> task.file.state == FileState.FAILED)) {
+            this.jobs.invalidate(job.id);
+            throw new RejectedExecutionException("Ingestion queue is full");
+        }
+        return job.toStatus();
+    }
+
+    @Override
+    public Optional<IngestionJobStatus> getStatus(String jobId) {
+        return Optional.ofNullable(this.jobs.getIfPresent(jobId)).map(Job::toStatus);
+    }
+
+    @Override
+    public void close() {
+        this.parseStage.close();
+        this.embedStage.close();
+        this.storeStage.close();
+    }
+
+    private void parse(ParseTask task) {
+        try {
+            task.file.state = FileState.PARSING;
+            this.documentReader.read(task.resource, document -> enqueue(task.file, document));
+            task.file.chunked();
+        } catch (CancellationException e) {
+            task.file.fail(e.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("Failed to parse {}", task.file.filename, e);
+            task.file.fail(e.getMessage());
+        } finally {
+            release(task.resource);
+        }
+    }
+
+    /**
+     * Called by the reader for every chunk; blocks the parser while the embed queue is full. Throwing
+     * stops the parse of a file that already failed further down the pipeline.
+     */
+    private void enqueue(FileProgress file, Document chunk) {
+        if (file.state == FileState.FAILED) {
+            throw new CancellationException(file.error);
+        }
+        try {
+            chunk.getMetadata().put(CONTENT_HASH, ContentHashes.sha256(chunk.getText()));
+            file.chunks.incrementAndGet();
+            this.embedStage.put(new Chunk(file, chunk));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Ingestion was interrupted");
+        }
+    }
+
+    private void embed(List<Chunk> chunks) {
+        List<Chunk> candidates = chunks.stream()
+                .filter(chunk -> chunk.file.state != FileState.FAILED)
+                .toList();
+        if (candidates.isEmpty()) {
+            return;
+        }
+
+        List<Chunk> pending;
+        try {
+            pending = skipIndexed(candidates);
+        } catch (RuntimeException e) {
+            logger.error("Failed to look up indexed chunks", e);
+            candidates.forEach(chunk -> chunk.file.fail(e.getMessage()));
+            return;
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        try {
+            List<float[]> embeddings = this.embeddingModel.embed(pending.stream().map(chunk -> chunk.document.getText()).toList());
+
+            List<EmbeddedChunk> embedded = new ArrayList<>(pending.size());
+            for (int i = 0; i < pending.size(); i++) {
+                embedded.add(new EmbeddedChunk(pending.get(i).file, new EmbeddedDocument(pending.get(i).document, embeddings.get(i))));
+                pending.get(i).file.chunksEmbedded.incrementAndGet();
+            }
+            this.storeStage.put(embedded);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.forEach(chunk -> chunk.file.fail("Ingestion was interrupted"));
+        } catch (RuntimeException e) {
+            logger.error("Failed to embed a batch of {} chunks", pending.size(), e);
+            pending.forEach(chunk -> chunk.file.fail(e.getMessage()));
+        }
+    }
+
+    /**
+     * Marks chunks whose text is already indexed as skipped and returns the rest.
+     */
+    private List<Chunk> skipIndexed(List<Chunk> chunks) {
+        Set<String> indexed = this.documentRepository.findIndexedHashes(
+                chunks.stream().map(Chunk::contentHash).collect(Collectors.toSet()));
+        if (indexed.isEmpty()) {
+            return chunks;
+        }
+
+        List<Chunk> pending = new ArrayList<>(chunks.size());
+        for (Chunk chunk : chunks) {
+            if (indexed.contains(chunk.contentHash())) {
+                chunk.file.skipped();
+            } else {
+                pending.add(chunk);
+            }
+        }
+        return pending;
+    }
+
+    private void store(List<EmbeddedChunk> chunks) {
+        try {
+            this.documentRepository.saveAll(chunks.stream().map(EmbeddedChunk::document).toList());
+            chunks.forEach(chunk -> chunk.file.stored());
+            this.onStored.run();
+        } catch (RuntimeException e) {
+            logger.error("Failed to store a batch of {} chunks", chunks.size(), e);
+            chunks.forEach(chunk -> chunk.file.fail(e.getMessage()));
+        }
+    }
+
+    private void release(Resource resource) {
+        if (resource instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                logger.warn("Failed to release {}", resource.getDescription(), e);
+            }
+        }
+    }
+
+    private enum FileState { QUEUED, PARSING, EMBEDDING, COMPLETED, FAILED }
+
+    private record ParseTask(FileProgress file, Resource resource) {}
+
+    private record Chunk(FileProgress file, Document document) {
+        private String contentHash() {
+            return (String) this.document.getMetadata().get(CONTENT_HASH);
+        }
+    }
+
+    private record EmbeddedChunk(FileProgress file, EmbeddedDocument document) {}
+
+    private static final class Job {
+        private final String id;
+        private final Instant submittedAt;
+        private final List<FileProgress> files = new ArrayList<>();
+        private volatile Instant completedAt;
+
+        private Job(String id, Instant submittedAt) {
+            this.id = id;
+            this.submittedAt = submittedAt;
+        }
+
+        private FileProgress addFile(String filename) {
+            FileProgress file = new FileProgress(this, filename);
+            this.files.add(file);
+            return file;
+        }
+
+        private synchronized void fileFinished() {
+            if (this.completedAt == null && this.files.stream().allMatch(FileProgress::isTerminal)) {
+                this.completedAt = Instant.now();
+            }
+        }
+
+        private IngestionJobStatus toStatus() {
+            long stored = this.files.stream().mapToLong(file -> file.chunksStored.get()).sum();
+            Instant end = this.completedAt != null ? this.completedAt : Instant.now();
+            double seconds = Math.max(Duration.between(this.submittedAt, end).toMillis(), 1) / 1000d;
+
+            String state;
+            if (this.files.stream().allMatch(file -> file.state == FileState.QUEUED)) {
+                state = "QUEUED";
+            } else if (this.completedAt == null) {
+                state = "RUNNING";
+            } else if (this.files.stream().anyMatch(file -> file.state == FileState.FAILED)) {
+                state = "FAILED";
+            } else {
+                state = "COMPLETED";
+            }
+
+            return new IngestionJobStatus(this.id, state, this.submittedAt, this.completedAt, stored, stored / seconds,
+                    this.files.stream().map(FileProgress::toStatus).toList());
+        }
+    }
+
+    private static final class FileProgress {
+        private final Job job;
+        private final String filename;
+        private final AtomicLong chunks = new AtomicLong();
+        private final AtomicLong chunksEmbedded = new AtomicLong();
+        private final AtomicLong chunksStored = new AtomicLong();
+        private final AtomicLong chunksSkipped = new AtomicLong();
+        private volatile FileState state = FileState.QUEUED;
+        private volatile boolean chunked;
+        private volatile String error;
+
+        private FileProgress(Job job, String filename) {
+            this.job = job;
+            this.filename = filename;
+        }
+
+        private boolean isTerminal() {
+            return this.state == FileState.COMPLETED || this.state == FileState.FAILED;
+        }
+
+        private synchronized void chunked() {
+            this.chunked = true;
+            if (this.state == FileState.PARSING) {
+                this.state = FileState.EMBEDDING;
+            }
+            completeIfDone();
+        }
+
+        private synchronized void stored() {
+            this.chunksStored.incrementAndGet();
+            completeIfDone();
+        }
+
+        private synchronized void skipped() {
+            this.chunksSkipped.incrementAndGet();
+            completeIfDone();
+        }
+
+        private synchronized void fail(String error) {
+            if (!isTerminal()) {
+                this.state = FileState.FAILED;
+                this.error = error;
+                this.job.fileFinished();
+            }
+        }
+
+        private void completeIfDone() {
+            if (this.chunked && !isTerminal() && this.chunksStored.get() + this.chunksSkipped.get() == this.chunks.get()) {
+                this.state = FileState.COMPLETED;
+                this.job.fileFinished();
+            }
+        }
+
+        private IngestionFileStatus toStatus() {
+            return new IngestionFileStatus(this.filename, this.state.name(), this.chunks.get(),
+                    this.chunksEmbedded.get(), this.chunksStored.get(), this.chunksSkipped.get(), this.error);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.EmbeddedDocument;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maximal marginal relevance: picks up to {@code maxResults} candidates one at a time, each maximizing
+ * {@code lambda * relevance - (1 - lambda) * similarity to the candidates picked so far}, so chunks
+ * that repeat what is already in the prompt give way to ones that add something.
+ * <p>
+ * Relevance is the candidate's score relative to the best score, so it works on fused rankings where
+ * a full-text hit has no similarity to the query. Similarity is the cosine of the candidate
+ * embeddings; a candidate without an embedding is treated as dissimilar to all others.
+ */
+public class MaximalMarginalRelevanceStage implements RetrievalPipeline.Stage {
+    private final double lambda;
+    private final int maxResults;
+
+    /**
+     * @param lambda 1 ranks by relevance only, 0 by diversity only
+     */
+    public MaximalMarginalRelevanceStage(double lambda, int maxResults) {
+        Assert.isTrue(lambda >= 0 && lambda <= 1, "lambda must be in [0, 1]");
+        Assert.isTrue(maxResults > 0, "maxResults must be greater than 0");
+        this.lambda = lambda;
+        this.maxResults = maxResults;
+    }
+
+    @Override
+    public String name() {
+        return "mmr";
+    }
+
+    @Override
+    public List<EmbeddedDocument> apply(String query, List<EmbeddedDocument> candidates) {
+        int size = candidates.size();
+        if (size <= 1) {
+            return candidates;
+        }
+
+        double[] relevance = relevance(candidates);
+        float[][] embeddings = new float[size][];
+        for (int i = 0; i < size; i++) {
+            embeddings[i] = normalize(candidates.get(i).embedding());
+        }
+
+        // Highest similarity of each remaining candidate to the picked ones, updated as candidates are picked
+        double[] maxSimilarity = new double[size];
+        boolean[] picked = new boolean[size];
+        List<EmbeddedDocument> selected = new ArrayList<>(Math.min(size, this.maxResults));
+        while (selected.size() < this.maxResults && selected.size() < size) {
+            int best = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < size; i++) {
+                if (picked[i]) {
+                    continue;
+                }
+                double score = this.lambda * relevance[i] - (1 - this.lambda) * maxSimilarity[i];
+                if (score > bestScore) {
+                    best = i;
+                    bestScore = score;
+                }
+            }
+
+            picked[best] = true;
+            selected.add(candidates.get(best));
+            for (int i = 0; i < size; i++) {
+                if (!picked[i]) {
+                    maxSimilarity[i] = Math.max(maxSimilarity[i], cosine(embeddings[best], embeddings[i]));
+                }
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Scores relative to the best one; by rank if the candidates aren't scored.
+     */
+    private static double[] relevance(List<EmbeddedDocument> candidates) {
+        double[] relevance = new double[candidates.size()];
+        double max = 0;
+        for (int i = 0; i < relevance.length; i++) {
+            Double score = candidates.get(i).document().getScore();
+            relevance[i] = score != null ? score : 1.0 / (i + 1);
+            max = Math.max(max, relevance[i]);
+        }
+        for (int i = 0; i < relevance.length && max > 0; i++) {
+            relevance[i] /= max;
+        }
+        return relevance;
+    }
+
+    private static float[] normalize(float[] vector) {
+        if (vector == null) {
+            return null;
+        }
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        norm = Math.sqrt(norm);
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = norm == 0 ? 0 : (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        if (a == null || b == null || a.length != b.length) {
+            return 0;
+        }
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
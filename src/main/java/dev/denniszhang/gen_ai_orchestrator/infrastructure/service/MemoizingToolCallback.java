@@ -0,0 +1,87 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.Counter;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+/**
+ * {@link ToolCallback} decorator that remembers results by canonicalised arguments: JSON objects are
+ * compared with their keys sorted and insignificant whitespace removed, so {@code {"a":1, "b":2}} and
+ * {@code {"b":2,"a":1}} share one entry. Only for tools whose result depends on nothing but their
+ * arguments; the {@link ToolContext} is not part of the key.
+ * <p>
+ * Failed calls throw and are not cached. Concurrent misses for the same arguments each call the tool,
+ * so a slow call never blocks another.
+ */
+public class MemoizingToolCallback implements ToolCallback {
+    private static final ObjectMapper CANONICAL_MAPPER = JsonMapper.builder()
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+            .build();
+
+    private final ToolCallback delegate;
+    private final Cache<String, String> results;
+    private final Counter hits;
+    private final Counter misses;
+
+    public MemoizingToolCallback(ToolCallback delegate, Cache<String, String> results, Counter hits, Counter misses) {
+        this.delegate = delegate;
+        this.results = results;
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return this.delegate.getToolDefinition();
+    }
+
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return this.delegate.getToolMetadata();
+    }
+
+    @Override
+    public String call(String toolInput) {
+        return call(toolInput, null);
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        String key = canonicalize(toolInput);
+        String cached = this.results.getIfPresent(key);
+        if (cached != null) {
+            this.hits.increment();
+            return cached;
+        }
+
+        this.misses.increment();
+        String result = toolContext != null ? this.delegate.call(toolInput, toolContext) : this.delegate.call(toolInput);
+        if (result != null) {
+            this.results.put(key, result);
+        }
+        return result;
+    }
+
+    public ToolCallback getDelegate() {
+        return this.delegate;
+    }
+
+    static String canonicalize(String toolInput) {
+        if (toolInput == null || toolInput.isBlank()) {
+            return "{}";
+        }
+        try {
+            return CANONICAL_MAPPER.writeValueAsString(CANONICAL_MAPPER.readValue(toolInput, Object.class));
+        } catch (JsonProcessingException e) {
+            // Not JSON: only identical input shares an entry
+            return toolInput.strip();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * {@link ToolCallbackProvider} that wraps the opted-in tools of a delegate in a
+ * {@link MemoizingToolCallback}. Each opted-in tool has one cache with its own TTL and size that
+ * outlives the callbacks, so results are shared across iterations and conversations however often
+ * the delegate recreates its callbacks.
+ * <p>
+ * Hits and misses count in {@code orchestrator.tool.cache} tagged with the {@code tool} and the
+ * {@code result}.
+ */
+public class MemoizingToolCallbackProvider implements ToolCallbackProvider {
+    private static final String METRIC = "orchestrator.tool.cache";
+
+    private final Supplier<ToolCallback[]> delegate;
+    private final Map<String, ToolResultCache> caches;
+
+    /**
+     * @param delegate supplies the callbacks to wrap; called on every {@link #getToolCallbacks()}
+     * @param policies TTL and size per opted-in tool name
+     */
+    public MemoizingToolCallbackProvider(Supplier<ToolCallback[]> delegate, Map<String, Policy> policies, MeterRegistry meterRegistry) {
+        Assert.notNull(delegate, "delegate cannot be null");
+        Assert.notNull(policies, "policies cannot be null");
+        Assert.notNull(meterRegistry, "meterRegistry cannot be null");
+
+        this.delegate = delegate;
+        this.caches = policies.entrySet().stream().collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, policy -> new ToolResultCache(
+                Caffeine.newBuilder()
+                        .expireAfterWrite(policy.getValue().ttl())
+                        .maximumSize(policy.getValue().maxSize())
+                        .build(),
+                Counter.builder(METRIC).tag("tool", policy.getKey()).tag("result", "hit").register(meterRegistry),
+                Counter.builder(METRIC).tag("tool", policy.getKey()).tag("result", "miss").register(meterRegistry))));
+    }
+
+    @Override
+    public ToolCallback[] getToolCallbacks() {
+        ToolCallback[] callbacks = this.delegate.get();
+        ToolCallback[] wrapped = new ToolCallback[callbacks.length];
+        for (int i = 0; i < callbacks.length; i++) {
+            wrapped[i] = wrap(callbacks[i]);
+        }
+        return wrapped;
+    }
+
+    public ToolCallback wrap(ToolCallback callback) {
+        ToolResultCache cache = this.caches.get(callback.getToolDefinition().name());
+        if (cache == null || callback instanceof MemoizingToolCallback) {
+            return callback;
+        }
+        return new MemoizingToolCallback(callback, cache.results, cache.hits, cache.misses);
+    }
+
+    public record Policy(Duration ttl, long maxSize) {
+        public Policy {
+            Assert.isTrue(ttl != null && ttl.isPositive(), "ttl must be positive");
+            Assert.isTrue(maxSize > 0, "maxSize must be greater than 0");
+        }
+    }
+
+    private record ToolResultCache(Cache<String, String> results, Counter hits, Counter misses) {}
+}
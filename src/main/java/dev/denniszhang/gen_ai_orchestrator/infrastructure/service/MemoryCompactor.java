@@ -0,0 +1,173 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import org.stringtemplate.v4.STGroup;
+import org.stringtemplate.v4.STGroupFile;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Folds the history a {@link ToolMessageWindowChatMemoryImpl} evicts into a rolling summary of the
+ * conversation, so long sessions keep their context without resending it.
+ * <p>
+ * Evicted messages are buffered per conversation. Once a conversation has buffered
+ * {@code minEvictedTokens}, it is queued (at most once) for summarization. A single background thread
+ * takes one conversation from the queue at a time and waits {@code minInterval} between model calls,
+ * so compaction is rate-limited and never runs on a request thread. The existing summary and the
+ * evicted messages are summarized into a new summary that replaces the old one.
+ * <p>
+ * Buffered messages live in memory only; whatever is buffered when the process stops is lost, as it
+ * was before compaction existed.
+ */
+public class MemoryCompactor implements ChatMemoryEvictionListener, AutoCloseable {
+    // Enough of a single tool result to capture its gist without blowing up the summarization prompt
+    private static final int MAX_TOKENS_PER_MESSAGE = 500;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final STGroup templateGroup = new STGroupFile("templates.stg");
+
+    private final ChatModel chatModel;
+    private final TokenCounter tokenCounter;
+    private final int minEvictedTokens;
+    private final int maxSummaryTokens;
+    private final int maxPendingConversations;
+
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final Queue<String> queue = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService scheduler;
+
+    public MemoryCompactor(ChatModel chatModel, TokenCounter tokenCounter, int minEvictedTokens, int maxSummaryTokens,
+                           int maxPendingConversations, Duration minInterval) {
+        Assert.notNull(chatModel, "chatModel cannot be null");
+        Assert.notNull(tokenCounter, "tokenCounter cannot be null");
+        Assert.isTrue(minEvictedTokens > 0, "minEvictedTokens must be greater than 0");
+        Assert.isTrue(maxSummaryTokens > 0, "maxSummaryTokens must be greater than 0");
+        Assert.isTrue(maxPendingConversations > 0, "maxPendingConversations must be greater than 0");
+        Assert.isTrue(minInterval != null && minInterval.isPositive(), "minInterval must be positive");
+
+        this.chatModel = chatModel;
+        this.tokenCounter = tokenCounter;
+        this.minEvictedTokens = minEvictedTokens;
+        this.maxSummaryTokens = maxSummaryTokens;
+        this.maxPendingConversations = maxPendingConversations;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("memory-compactor").daemon().factory());
+        this.scheduler.scheduleWithFixedDelay(this::compactNext,
+                minInterval.toMillis(), minInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void onEvicted(ToolMessageWindowChatMemoryImpl memory, String conversationId, List<Message> evicted) {
+        if (!this.pending.containsKey(conversationId) && this.pending.size() >= this.maxPendingConversations) {
+            logger.debug("Compaction backlog is full, dropping {} evicted messages of {}", evicted.size(), conversationId);
+            return;
+        }
+        int tokens = this.tokenCounter.count(evicted);
+        this.pending.compute(conversationId, (id, current) -> {
+            Pending next = current != null ? current : new Pending(memory);
+            next.messages.addAll(evicted);
+            next.tokens += tokens;
+            if (next.tokens >= this.minEvictedTokens && !next.queued) {
+                next.queued = true;
+                this.queue.offer(id);
+            }
+            return next;
+        });
+    }
+
+    @Override
+    public void close() {
+        this.scheduler.shutdownNow();
+    }
+
+    private void compactNext() {
+        String conversationId = this.queue.poll();
+        if (conversationId == null) {
+            return;
+        }
+        Pending batch = this.pending.remove(conversationId);
+        if (batch == null || batch.messages.isEmpty()) {
+            return;
+        }
+
+        try {
+            String summary = summarize(batch.memory.getSummary(conversationId).orElse(null), batch.messages);
+            if (StringUtils.hasText(summary)) {
+                batch.memory.updateSummary(conversationId, summary);
+                logger.debug("Compacted {} messages of {}", batch.messages.size(), conversationId);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Failed to compact the history of {}, {} evicted messages are dropped",
+                    conversationId, batch.messages.size(), e);
+        }
+    }
+
+    private String summarize(String summary, List<Message> messages) {
+        String prompt = this.templateGroup.getInstanceOf("summarizeHistory")
+                .add("summary", summary)
+                .add("transcript", transcript(messages))
+                // Roughly three words per four tokens
+                .add("maxWords", this.maxSummaryTokens * 3 / 4)
+                .render();
+
+        ChatResponse response = this.chatModel.call(new Prompt(UserMessage.builder().text(prompt).build()));
+        if (response == null || response.getResult() == null || response.getResult().getOutput() == null) {
+            return null;
+        }
+        return response.getResult().getOutput().getText();
+    }
+
+    private String transcript(List<Message> messages) {
+        List<String> lines = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            if (message instanceof AssistantMessage assistantMessage && assistantMessage.hasToolCalls()) {
+                for (AssistantMessage.ToolCall toolCall : assistantMessage.getToolCalls()) {
+                    lines.add("ASSISTANT called " + toolCall.name() + ": " + truncate(toolCall.arguments()));
+                }
+            }
+            else if (message instanceof ToolResponseMessage toolResponseMessage) {
+                for (ToolResponseMessage.ToolResponse response : toolResponseMessage.getResponses()) {
+                    lines.add("TOOL " + response.name() + ": " + truncate(response.responseData()));
+                }
+            }
+            else if (StringUtils.hasText(message.getText())) {
+                lines.add(message.getMessageType().name() + ": " + truncate(message.getText()));
+            }
+        }
+        return String.join("\n", lines);
+    }
+
+    private String truncate(String text) {
+        return this.tokenCounter.truncate(text, MAX_TOKENS_PER_MESSAGE);
+    }
+
+    private static final class Pending {
+        private final ToolMessageWindowChatMemoryImpl memory;
+        private final List<Message> messages = new ArrayList<>();
+        private int tokens;
+        private boolean queued;
+
+        private Pending(ToolMessageWindowChatMemoryImpl memory) {
+            this.memory = memory;
+        }
+    }
+}
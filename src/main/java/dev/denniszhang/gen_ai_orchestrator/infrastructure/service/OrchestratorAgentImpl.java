@@ -1,163 +1,685 @@
 package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
 
+import dev.denniszhang.gen_ai_orchestrator.core.model.AgentEvent;
+import dev.denniszhang.gen_ai_orchestrator.core.model.AgentRequest;
 import dev.denniszhang.gen_ai_orchestrator.core.service.ContextEngine;
 import dev.denniszhang.gen_ai_orchestrator.core.service.MessageFactory;
 import dev.denniszhang.gen_ai_orchestrator.core.service.OrchestratorAgent;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.TurnCheckpoint;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.TurnCheckpointRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.messages.Message;
-import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.metadata.Usage;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.model.Generation;
 import org.springframework.ai.chat.prompt.ChatOptions;
 import org.springframework.ai.chat.prompt.Prompt;
-import org.springframework.ai.model.tool.DefaultToolCallingManager;
 import org.springframework.ai.model.tool.ToolCallingChatOptions;
 import org.springframework.ai.model.tool.ToolCallingManager;
-import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.ToolCallback;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Scheduler;
+import reactor.util.function.Tuples;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.regex.MatchResult;
+import java.util.regex.Pattern;
 
+/**
+ * ReAct loop over a streaming chat model.
+ * <p>
+ * Scheduling: model output is relayed on the threads the chat model emits on and nothing blocking
+ * runs there. Every blocking step (chat memory and vector store access and tool execution) is moved
+ * to {@code blockingScheduler}, so a slow database or tool never stalls the HTTP client threads shared
+ * by all other conversations.
+ * <p>
+ * With a {@link SemanticResponseCache}, the first question of a conversation is looked up before
+ * anything else runs; a hit is replayed word by word instead of running the loop.
+ * <p>
+ * Requests of one conversation run one at a time through {@link ConversationTurns}; requests of
+ * different conversations run in parallel. With an {@link AdmissionControl}, a request is admitted by
+ * its tenant's limit before it is queued there, and each model call and batch of tool calls by the
+ * limit of its upstream.
+ * <p>
+ * Tools come from the {@link ToolRegistry} snapshot, resolved once per request and narrowed to the
+ * request's {@code tools} if it names any, so every iteration offers the model the same definitions.
+ * A request naming a tool that isn't there is rejected before anything is streamed.
+ * <p>
+ * The first prompt is built from the messages {@link ContextEngine#addUserMessage} returns, so the
+ * history is read once before the model is called. Time to first token, from the request to the first
+ * text or tool event, is recorded in {@code orchestrator.agent.ttft} tagged {@code source=model|cache}.
+ * <p>
+ * Observations break a request ({@code orchestrator.agent.request}) down per iteration: building the
+ * prompt ({@code agent.prompt}, including memory and retrieval), the model call until its first output
+ * ({@code agent.model.first-token}) and until it ends ({@code agent.model}, with token usage), and
+ * every tool ({@code agent.tool}, tagged with its name). They are summed per conversation by
+ * {@link ConversationStats}.
+ * <p>
+ * Cancelling the stream (the client disconnecting, or a later turn with the {@code cancel} busy policy)
+ * disposes the model stream, interrupts running tools and skips the iterations left. The history is
+ * left consistent before the turn ends: the text streamed so far is kept as a partial answer, and tool
+ * calls without a result are answered as cancelled, so the next prompt is valid. Model and tool calls cut
+ * short count in {@code orchestrator.agent.cancelled} tagged {@code work=model-call|tool-call}.
+ * <p>
+ * With a {@link TurnCheckpointRepository}, a turn is checkpointed once the question is stored, after
+ * every iteration whose tool responses are stored, when it is cut short while answering, and once it is
+ * answered. A checkpoint is saved when the conversation's memory is next flushed, after the messages it
+ * covers, so it never gets ahead of the stored history and doesn't make the memory write any sooner.
+ * {@link #resume} continues a turn that didn't get that far (a node restarting, a failed model call, a
+ * cancellation) from its history: tool calls left without a response are run again, a partial answer is
+ * generated again, otherwise the next iteration runs. Only the iterations left are paid for.
+ */
 @Service
 @Profile("custom")
 public class OrchestratorAgentImpl implements OrchestratorAgent {
+    private static final Pattern REPLAY_CHUNK = Pattern.compile("\\s*\\S+\\s*");
+    private static final String TTFT_METRIC = "orchestrator.agent.ttft";
+    private static final String CANCELLED_METRIC = "orchestrator.agent.cancelled";
+
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
     private final MessageFactory messageFactory;
-    private final ToolCallbackProvider toolProvider;
+    private final ToolRegistry toolRegistry;
     private final ChatModel chatModel;
     private final ContextEngine contextEngine;
+    private final ToolCallingManager toolCallingManager;
+    private final Scheduler blockingScheduler;
+    private final ConversationTurns conversationTurns;
+    private final SemanticResponseCache responseCache;
+    private final AdmissionControl admissionControl;
+    private final TurnCheckpointRepository checkpoints;
+    private final Timer modelTtft;
+    private final Timer cacheTtft;
+    private final Counter cancelledModelCalls;
+    private final Counter cancelledToolCalls;
+    private final ObservationRegistry observationRegistry;
+    private final TokenCounter tokenCounter;
 
     public OrchestratorAgentImpl(
             ChatModel chatModel,
             ContextEngine contextEngine,
             MessageFactory messageFactory,
-            ToolCallbackProvider toolProvider
+            ToolRegistry toolRegistry,
+            ToolCallingManager toolCallingManager,
+            Scheduler blockingScheduler,
+            ConversationTurns conversationTurns,
+            Optional<SemanticResponseCache> responseCache,
+            Optional<AdmissionControl> admissionControl,
+            Optional<TurnCheckpointRepository> checkpoints,
+            MeterRegistry meterRegistry,
+            ObservationRegistry observationRegistry,
+            TokenCounter tokenCounter
     ) {
         this.chatModel = chatModel;
-        this.toolProvider = toolProvider;
+        this.toolRegistry = toolRegistry;
+        this.toolCallingManager = toolCallingManager;
         this.contextEngine = contextEngine;
         this.messageFactory = messageFactory;
+        this.blockingScheduler = blockingScheduler;
+        this.conversationTurns = conversationTurns;
+        this.responseCache = responseCache.orElse(null);
+        this.admissionControl = admissionControl.orElse(null);
+        this.checkpoints = checkpoints.orElse(null);
+        this.modelTtft = Timer.builder(TTFT_METRIC).tag("source", "model").register(meterRegistry);
+        this.cacheTtft = Timer.builder(TTFT_METRIC).tag("source", "cache").register(meterRegistry);
+        this.cancelledModelCalls = Counter.builder(CANCELLED_METRIC).tag("work", "model-call").register(meterRegistry);
+        this.cancelledToolCalls = Counter.builder(CANCELLED_METRIC).tag("work", "tool-call").register(meterRegistry);
+        this.observationRegistry = observationRegistry;
+        this.tokenCounter = tokenCounter;
     }
 
     @Override
-    public Flux<Message> stream(String conversationId, String message) {
-        contextEngine.addUserMessage(conversationId, message);
-        return recursiveStreamLoop(0, conversationId, contextEngine, DefaultToolCallingManager.builder().build());
+    public Flux<AgentEvent> stream(AgentRequest request) {
+        // Resolved before anything is streamed, so a request naming an unknown tool is rejected as such
+        List<ToolCallback> tools = toolRegistry.getToolCallbacks(request.tools());
+        return Flux.defer(() -> {
+            // Time to first token includes waiting for admission and for an earlier turn of the same conversation
+            long start = System.nanoTime();
+            Flux<AgentEvent> events = conversationTurns.serialize(request.conversationId(), Flux.defer(() -> turn(request, tools, start)));
+            return admissionControl != null
+                    ? admissionControl.admitRequest(request.scope(), request.message()).thenMany(events)
+                    : events;
+        });
     }
 
-    private Flux<Message> recursiveStreamLoop(int iteration, String conversationId, ContextEngine contextEngine, ToolCallingManager toolCallingManager) {
-        if(iteration == 10) {
-            var assistantMessage = messageFactory.createAssistant("Can't generate answer");
-            contextEngine.addMessage(conversationId, assistantMessage);
-            return Flux.just(assistantMessage);
+    /**
+     * Continues the conversation's last turn from its checkpoint, if it has one that isn't completed;
+     * completes without events otherwise.
+     */
+    @Override
+    public Flux<AgentEvent> resume(String conversationId) {
+        if (checkpoints == null) {
+            return Flux.empty();
         }
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            // Read once the conversation's earlier turns have ended, so it's the checkpoint they left
+            return conversationTurns.serialize(conversationId, Mono.fromCallable(() -> checkpoints.findByConversationId(conversationId))
+                    .subscribeOn(blockingScheduler)
+                    .flatMapMany(found -> found
+                            .filter(checkpoint -> !checkpoint.completed())
+                            .map(checkpoint -> {
+                                Flux<AgentEvent> events = Flux.defer(() -> observed(conversationId, observation ->
+                                        timeToFirstToken(continueTurn(checkpoint, observation), modelTtft, start)));
+                                return admissionControl != null
+                                        ? admissionControl.admitRequest(checkpoint.scope(), "").thenMany(events)
+                                        : events;
+                            })
+                            .orElseGet(Flux::empty)));
+        });
+    }
 
-        Prompt promptWithMemory = getPrompt(conversationId, getChatOptions(false));
-        Flux<ChatResponse> source = chatModel.stream(promptWithMemory).share();
+    private Flux<AgentEvent> turn(AgentRequest request, List<ToolCallback> tools, long start) {
+        String conversationId = request.conversationId();
+        String message = request.message();
+        return observed(conversationId, observation -> {
+            if (responseCache == null) {
+                return timeToFirstToken(answer(request, tools, SemanticResponseCache.Recording.NOOP, observation), modelTtft, start);
+            }
+            return Mono.fromCallable(() -> observation.scoped(() -> lookup(conversationId, message, request.scope())))
+                    .subscribeOn(blockingScheduler)
+                    .flatMapMany(lookup -> lookup
+                            .map(found -> found.answer()
+                                    .map(cached -> timeToFirstToken(replay(conversationId, message, cached), cacheTtft, start))
+                                    .orElseGet(() -> timeToFirstToken(answer(request, tools, responseCache.record(found), observation), modelTtft, start)))
+                            .orElseGet(() -> timeToFirstToken(answer(request, tools, SemanticResponseCache.Recording.NOOP, observation), modelTtft, start)));
+        });
+    }
 
-        Mono <ChatResponse> aggregatedResponse = source.collectList()
-                                                        .filter(list -> !list.isEmpty())
-                                                        .map(this::aggregateChunks);
-        Flux<Message> messages = source.map(response -> response.getResults().getFirst().getOutput());
+    /**
+     * Runs the events of a turn within its request observation.
+     */
+    private Flux<AgentEvent> observed(String conversationId, Function<Observation, Flux<AgentEvent>> turn) {
+        Observation observation = Observation.createNotStarted(ConversationStats.REQUEST, observationRegistry)
+                .highCardinalityKeyValue(ConversationStats.CONVERSATION_ID, conversationId)
+                .start();
+        return turn.apply(observation)
+                .doOnError(observation::error)
+                .doFinally(signal -> {
+                    // After the cancellation went through, so what it left in the history is flushed with its checkpoint
+                    if (signal == SignalType.CANCEL) {
+                        blockingScheduler.schedule(() -> contextEngine.flush(conversationId));
+                    }
+                    observation.stop();
+                });
+    }
+
+    private Flux<AgentEvent> answer(AgentRequest request, List<ToolCallback> tools, SemanticResponseCache.Recording recording,
+                                    Observation observation) {
+        String conversationId = request.conversationId();
+        return Mono.fromCallable(() -> {
+                    var turn = new Turn(conversationId, request.scope(), request.tools(), tools, recording, observation);
+                    var messages = observation(ConversationStats.PREFIX + "agent.prompt", turn, 0)
+                            .observe(() -> contextEngine.addUserMessage(conversationId, request.message()));
+                    checkpoint(turn, 0, false);
+                    return Tuples.of(turn, getPrompt(messages, getChatOptions(turn.tools(), false)));
+                })
+                .subscribeOn(blockingScheduler)
+                .flatMapMany(first -> streamIteration(0, first.getT1(), first.getT2(), false, contextEngine, toolCallingManager))
+                .concatWith(flush(conversationId));
+    }
+
+    /**
+     * Picks the turn up where its history ends. The iteration is the checkpoint's, or the number of
+     * assistant messages since the question if the history got further than the last checkpoint.
+     */
+    private Flux<AgentEvent> continueTurn(TurnCheckpoint checkpoint, Observation observation) {
+        String conversationId = checkpoint.conversationId();
+        return Mono.fromCallable(() -> {
+                    var turn = new Turn(conversationId, checkpoint.scope(), checkpoint.tools(),
+                            toolRegistry.getToolCallbacks(checkpoint.tools()), SemanticResponseCache.Recording.NOOP, observation);
+                    return Tuples.of(turn, contextEngine.getMessages(conversationId));
+                })
+                .subscribeOn(blockingScheduler)
+                .flatMapMany(state -> {
+                    Turn turn = state.getT1();
+                    List<Message> messages = state.getT2();
+                    int iterations = iterationsSinceQuestion(messages);
+                    Message last = messages.isEmpty() ? null : messages.getLast();
+                    if (last instanceof AssistantMessage toolCalls && toolCalls.hasToolCalls()) {
+                        // Stopped while the tools ran: they run again, then the iteration after them
+                        int iteration = Math.max(checkpoint.iteration(), iterations - 1);
+                        Prompt prompt = getPrompt(messages, getChatOptions(turn.tools(), false));
+                        ChatResponse response = new ChatResponse(List.of(new Generation(toolCalls)));
+                        return executeToolCalls(turn, iteration, prompt, response, contextEngine, toolCallingManager)
+                                .concatWith(Flux.defer(() -> recursiveStreamLoop(iteration + 1, turn, contextEngine, toolCallingManager)));
+                    }
+                    if (last instanceof AssistantMessage && checkpoint.partialAnswer()) {
+                        // Cut short while answering: answered again, from the prompt the partial answer was streamed
+                        // for, and the partial answer is replaced by the new one
+                        Prompt prompt = getPrompt(messages.subList(0, messages.size() - 1), getChatOptions(turn.tools(), false));
+                        return streamIteration(checkpoint.iteration(), turn, prompt, true, contextEngine, toolCallingManager);
+                    }
+                    if (last instanceof AssistantMessage answer) {
+                        // Answered but not checkpointed as completed
+                        checkpoint(turn, iterations, true);
+                        return Flux.<AgentEvent>just(new AgentEvent.MessageEvent(answer));
+                    }
+                    return recursiveStreamLoop(Math.max(checkpoint.iteration(), iterations), turn, contextEngine, toolCallingManager);
+                })
+                .concatWith(flush(conversationId));
+    }
+
+    private static int iterationsSinceQuestion(List<Message> messages) {
+        int iterations = 0;
+        for (int i = messages.size() - 1; i >= 0 && messages.get(i).getMessageType() != MessageType.USER; i--) {
+            if (messages.get(i) instanceof AssistantMessage) {
+                iterations++;
+            }
+        }
+        return iterations;
+    }
+
+    private void checkpoint(Turn turn, int iteration, boolean completed) {
+        checkpoint(turn, iteration, completed, false);
+    }
+
+    /**
+     * Checkpoints the turn at {@code iteration} once the conversation's memory is flushed, replacing a
+     * checkpoint of the turn still waiting for it. A failing checkpoint only costs the resume of this turn.
+     */
+    private void checkpoint(Turn turn, int iteration, boolean completed, boolean partialAnswer) {
+        if (checkpoints == null) {
+            return;
+        }
+        var checkpoint = new TurnCheckpoint(turn.conversationId(), turn.scope(), turn.toolNames(), iteration, completed,
+                partialAnswer, Instant.now());
+        contextEngine.whenFlushed(turn.conversationId(), () -> {
+            try {
+                checkpoints.save(checkpoint);
+            } catch (RuntimeException e) {
+                logger.warn("Checkpoint of {} at iteration {} failed", turn.conversationId(), iteration, e);
+            }
+        });
+    }
+
+    /**
+     * Records the time from {@code start} to the first event with text or about a tool.
+     */
+    private static Flux<AgentEvent> timeToFirstToken(Flux<AgentEvent> events, Timer timer, long start) {
+        AtomicBoolean recorded = new AtomicBoolean();
+        return events.doOnNext(event -> {
+            if (isOutput(event) && recorded.compareAndSet(false, true)) {
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+
+    private static boolean isOutput(AgentEvent event) {
+        if (!(event instanceof AgentEvent.MessageEvent messageEvent)) {
+            return true;
+        }
+        Message message = messageEvent.message();
+        return StringUtils.hasText(message.getText())
+                || (message instanceof AssistantMessage assistantMessage && assistantMessage.hasToolCalls());
+    }
+
+    /**
+     * Looks the question up if it has a scope and opens the conversation. A failing lookup only costs the cache.
+     */
+    private Optional<SemanticResponseCache.Lookup> lookup(String conversationId, String message, String scope) {
+        if (!StringUtils.hasText(scope)) {
+            return Optional.empty();
+        }
+        try {
+            return contextEngine.getMessages(conversationId).isEmpty()
+                    ? Optional.of(responseCache.lookup(scope, message))
+                    : Optional.empty();
+        } catch (RuntimeException e) {
+            logger.warn("Response cache lookup failed for {}", conversationId, e);
+            return Optional.empty();
+        }
+    }
+
+    private Flux<AgentEvent> replay(String conversationId, String message, String cachedAnswer) {
+        var answer = messageFactory.createAssistant(cachedAnswer);
+        return Mono.fromRunnable(() -> contextEngine.addCachedAnswer(conversationId, message, answer))
+                .subscribeOn(blockingScheduler)
+                .thenMany(Flux.fromStream(() -> REPLAY_CHUNK.matcher(cachedAnswer).results().map(MatchResult::group)))
+                .<AgentEvent>map(chunk -> new AgentEvent.MessageEvent(messageFactory.createAssistant(chunk)))
+                .concatWith(Mono.just(new AgentEvent.MessageEvent(answer)))
+                .concatWith(flush(conversationId));
+    }
+
+    private Mono<AgentEvent> flush(String conversationId) {
+        return Mono.<AgentEvent>fromRunnable(() -> contextEngine.flush(conversationId))
+                .subscribeOn(blockingScheduler);
+    }
+
+    private Flux<AgentEvent> recursiveStreamLoop(int iteration, Turn turn, ContextEngine contextEngine, ToolCallingManager toolCallingManager) {
+        if(iteration >= 10) {
+            return Mono.<AgentEvent>fromCallable(() -> {
+                        var assistantMessage = messageFactory.createAssistant("Can't generate answer");
+                        contextEngine.addMessage(turn.conversationId(), assistantMessage);
+                        checkpoint(turn, iteration, true);
+                        return new AgentEvent.MessageEvent(assistantMessage);
+                    })
+                    .subscribeOn(blockingScheduler)
+                    .flux();
+        }
+
+        return Mono.fromCallable(() -> getPrompt(
+                        observation(ConversationStats.PREFIX + "agent.prompt", turn, iteration)
+                                .observe(() -> contextEngine.getMessages(turn.conversationId())),
+                        getChatOptions(turn.tools(), false)))
+                .subscribeOn(blockingScheduler)
+                .flatMapMany(promptWithMemory -> streamIteration(iteration, turn, promptWithMemory, false, contextEngine, toolCallingManager));
+    }
+
+    /**
+     * @param replacesPartialAnswer whether the last message of the history is a partial answer that the
+     *                              message of this iteration replaces
+     */
+    private Flux<AgentEvent> streamIteration(int iteration, Turn turn, Prompt promptWithMemory, boolean replacesPartialAnswer,
+                                             ContextEngine contextEngine, ToolCallingManager toolCallingManager) {
+        // One subscription to the model: chunks are relayed and folded into the final message as they pass
+        var accumulator = new ChatResponseAccumulator();
+        var modelCall = new ModelCall(turn, iteration, promptWithMemory);
+        // Set by whichever of the answer and a cancellation comes first to write the assistant message
+        var answered = new AtomicBoolean();
+        Flux<ChatResponse> call = Flux.defer(() -> chatModel.stream(promptWithMemory))
+                .doOnSubscribe(subscription -> modelCall.start());
+        Flux<ChatResponse> admitted = admissionControl != null
+                ? admissionControl.admitUpstream(AdmissionControl.MODEL, 1, tokenCounter.count(promptWithMemory.getInstructions())).thenMany(call)
+                : call;
+        Flux<AgentEvent> messages = admitted
+                .doOnNext(response -> {
+                    synchronized (accumulator) {
+                        accumulator.accept(response);
+                    }
+                    modelCall.onChunk(response);
+                })
+                .doOnError(modelCall::fail)
+                .filter(response -> response.getResult() != null)
+                .map(response -> new AgentEvent.MessageEvent(response.getResult().getOutput()));
+        Mono<ChatResponse> aggregatedResponse = Mono.fromSupplier(() -> {
+            ChatResponse response;
+            synchronized (accumulator) {
+                response = accumulator.toChatResponse();
+            }
+            modelCall.stop(response);
+            return response;
+        });
 
         return messages
                 .concatWith(aggregatedResponse
+                    .publishOn(blockingScheduler)
                     .flatMapMany(response -> {
+                        if (!answered.compareAndSet(false, true)) {
+                            return Flux.empty();
+                        }
                         var generations = response.getResults();
                         var message = generations.getFirst().getOutput();
-                        contextEngine.addMessage(conversationId, message);
+                        store(turn.conversationId(), message, replacesPartialAnswer);
+                        turn.recording().onResponse(promptWithMemory, response);
 
                         if(message.hasToolCalls()) {
-                            var toolExecutionResult = toolCallingManager.executeToolCalls(promptWithMemory, response);
-                            var toolMessage = toolExecutionResult.conversationHistory().getLast(); // ToolResponseMessage.builder().build();
-                            contextEngine.addMessage(conversationId, toolMessage);
-
-                            return Flux.just(toolMessage)
-                                    .doOnNext(m -> {
-                                        m.getMetadata().remove("conversationId");
-                                        m.getMetadata().remove("index");
-                                    })
-                                    .concatWith(recursiveStreamLoop(iteration + 1, conversationId, contextEngine, toolCallingManager));
+                            turn.recording().onToolCalls(message);
+                            return executeToolCalls(turn, iteration, promptWithMemory, response, contextEngine, toolCallingManager)
+                                    .concatWith(Flux.defer(() -> recursiveStreamLoop(iteration + 1, turn, contextEngine, toolCallingManager)));
                         }
 
-                        return Mono.just(message);
-                    }));
+                        turn.recording().onAnswer(message);
+                        checkpoint(turn, iteration, true);
+                        return Mono.just(new AgentEvent.MessageEvent(message));
+                    }))
+                .doOnCancel(() -> {
+                    modelCall.cancel();
+                    if (answered.compareAndSet(false, true)) {
+                        keepPartialAnswer(turn, iteration, accumulator, replacesPartialAnswer);
+                    }
+                });
     }
 
-    private Prompt getPrompt(String conversationID, ChatOptions chatOptions){
+    /**
+     * Keeps the text the model streamed before the turn was cancelled, and checkpoints it as a partial
+     * answer so a resume answers again; unfinished tool calls are dropped since they will never get a
+     * result. Replaces the partial answer of an earlier cancellation that this iteration answered again.
+     * Runs on the cancelling thread, so the history is consistent before the next turn of the
+     * conversation starts.
+     */
+    private void keepPartialAnswer(Turn turn, int iteration, ChatResponseAccumulator accumulator, boolean replacesPartialAnswer) {
+        this.cancelledModelCalls.increment();
+        ChatResponse partial;
+        synchronized (accumulator) {
+            partial = accumulator.toChatResponse();
+        }
+        String text = partial != null && partial.getResult() != null ? partial.getResult().getOutput().getText() : null;
+        if (StringUtils.hasText(text)) {
+            store(turn.conversationId(), messageFactory.createAssistant(text), replacesPartialAnswer);
+            checkpoint(turn, iteration, false, true);
+        }
+    }
+
+    private void store(String conversationId, Message message, boolean replacesPartialAnswer) {
+        if (replacesPartialAnswer) {
+            contextEngine.replaceLastMessage(conversationId, message);
+        } else {
+            contextEngine.addMessage(conversationId, message);
+        }
+    }
+
+    /**
+     * Emits an event as each tool starts, finishes or fails, then the tool responses once all are done.
+     * Tools run on the blocking scheduler so the events reach the client while they are running.
+     */
+    private Flux<AgentEvent> executeToolCalls(Turn turn, int iteration, Prompt prompt, ChatResponse response,
+                                              ContextEngine contextEngine, ToolCallingManager toolCallingManager) {
+        String conversationId = turn.conversationId();
+        List<AssistantMessage.ToolCall> toolCalls = response.getResult().getOutput().getToolCalls();
+        // Results by tool call id, and whichever of the tool response and a cancellation comes first writes it
+        Map<String, String> results = new ConcurrentHashMap<>();
+        AtomicBoolean answered = new AtomicBoolean();
+        AtomicReference<Runnable> cancelTools = new AtomicReference<>();
+        Mono<Void> admission = admissionControl != null
+                ? admissionControl.admitUpstream(AdmissionControl.TOOLS, toolCalls.size(), 0)
+                : Mono.empty();
+        return admission.thenMany(Flux.<AgentEvent>create(sink -> {
+            Map<AssistantMessage.ToolCall, Observation> running = new ConcurrentHashMap<>();
+            ToolExecutionListener listener = new ToolExecutionListener() {
+                @Override
+                public void onDispatched(Runnable cancel) {
+                    cancelTools.set(cancel);
+                    if (answered.get()) {
+                        cancel.run();
+                    }
+                }
+
+                @Override
+                public void onToolStarted(AssistantMessage.ToolCall toolCall) {
+                    running.put(toolCall, toolObservation(turn, iteration, toolCall).start());
+                    sink.next(new AgentEvent.ToolStarted(toolCall.id(), toolCall.name(), toolCall.arguments(), Instant.now()));
+                }
+
+                @Override
+                public void onToolFinished(AssistantMessage.ToolCall toolCall, String result, Duration duration) {
+                    results.put(toolCall.id(), result);
+                    Observation observation = running.remove(toolCall);
+                    if (observation != null) {
+                        observation.stop();
+                    }
+                    sink.next(new AgentEvent.ToolFinished(toolCall.id(), toolCall.name(), result, duration.toMillis()));
+                }
+
+                @Override
+                public void onToolFailed(AssistantMessage.ToolCall toolCall, String error, Duration duration) {
+                    // A call that timed out waiting for a permit never started
+                    Observation observation = running.remove(toolCall);
+                    if (observation == null) {
+                        observation = toolObservation(turn, iteration, toolCall).start();
+                    }
+                    observation.error(new IllegalStateException(error));
+                    observation.stop();
+                    sink.next(new AgentEvent.ToolFailed(toolCall.id(), toolCall.name(), error, duration.toMillis()));
+                }
+            };
+
+            ToolExecutionResult toolExecutionResult = toolCallingManager instanceof ParallelToolCallingManager parallel
+                    ? parallel.executeToolCalls(prompt, response, listener)
+                    : toolCallingManager.executeToolCalls(prompt, response);
+            var toolMessage = toolExecutionResult.conversationHistory().getLast();
+            if (answered.compareAndSet(false, true)) {
+                contextEngine.addMessage(conversationId, toolMessage);
+                checkpoint(turn, iteration + 1, false);
+                sink.next(new AgentEvent.MessageEvent(toolMessage));
+            }
+            sink.complete();
+        }).subscribeOn(blockingScheduler))
+                .doOnCancel(() -> {
+                    if (answered.compareAndSet(false, true)) {
+                        // Answered before the interrupts, so a result arriving meanwhile can't change it
+                        answerCancelledTools(conversationId, toolCalls, results);
+                        Runnable cancel = cancelTools.get();
+                        if (cancel != null) {
+                            cancel.run();
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Answers every tool call of the cancelled turn, with its result if it finished, so the assistant
+     * message asking for them is never left without a tool response in the history.
+     */
+    private void answerCancelledTools(String conversationId, List<AssistantMessage.ToolCall> toolCalls, Map<String, String> results) {
+        List<ToolResponseMessage.ToolResponse> responses = new ArrayList<>(toolCalls.size());
+        for (AssistantMessage.ToolCall toolCall : toolCalls) {
+            String result = results.get(toolCall.id());
+            if (result == null) {
+                this.cancelledToolCalls.increment();
+                result = "Tool '%s' was cancelled because the request was cancelled.".formatted(toolCall.name());
+            }
+            responses.add(new ToolResponseMessage.ToolResponse(toolCall.id(), toolCall.name(), result));
+        }
+        contextEngine.addMessage(conversationId, ToolResponseMessage.builder().responses(responses).build());
+    }
+
+    private Prompt getPrompt(List<Message> messages, ChatOptions chatOptions){
         return  Prompt.builder()
-                .messages(contextEngine.getMessages(conversationID))
+                .messages(messages)
                 .chatOptions(chatOptions)
                 .build();
     }
 
-    private ToolCallingChatOptions getChatOptions(boolean toolExecution) {
+    private ToolCallingChatOptions getChatOptions(List<ToolCallback> tools, boolean toolExecution) {
         return ToolCallingChatOptions.builder()
-                .toolCallbacks(toolProvider.getToolCallbacks())
+                .toolCallbacks(tools)
                 .internalToolExecutionEnabled(toolExecution)
                 .build();
     }
 
-    private ChatResponse aggregateChunks(List<ChatResponse> chunks) {
-            if (chunks == null || chunks.isEmpty()) {
-                return null;
-            }
+    private Observation observation(String name, Turn turn, int iteration) {
+        return Observation.createNotStarted(name, observationRegistry)
+                .lowCardinalityKeyValue(ConversationStats.ITERATION, String.valueOf(iteration))
+                .highCardinalityKeyValue(ConversationStats.CONVERSATION_ID, turn.conversationId())
+                .parentObservation(turn.observation());
+    }
 
-            var fullContent = new StringBuilder();
-            var fullReasoning = new StringBuilder();
-            List<AssistantMessage.ToolCall> accumulatedToolCalls = new ArrayList<>();
-            ChatResponseMetadata lastMetadata = null;
+    private Observation toolObservation(Turn turn, int iteration, AssistantMessage.ToolCall toolCall) {
+        return observation(ConversationStats.PREFIX + "agent.tool", turn, iteration)
+                .lowCardinalityKeyValue(ConversationStats.TOOL, toolCall.name());
+    }
 
-            for (var chunk : chunks) {
-                String content = chunk.getResult().getOutput().getText();
-                if (content != null) {
-                    fullContent.append(content);
-                }
+    /**
+     * What stays the same across the iterations of one request.
+     */
+    private record Turn(String conversationId, String scope, List<String> toolNames, List<ToolCallback> tools,
+                        SemanticResponseCache.Recording recording, Observation observation) {}
 
-                String reasoning = (String) chunk.getResult().getOutput().getMetadata().get("reasoningContent");
-                if (!reasoning.isEmpty()) {
-                    fullReasoning.append(reasoning);
-                }
+    /**
+     * The observations of one model call: until the first text or tool call, and until the stream ends.
+     * Stopped once, by whichever of completion, error or cancellation comes first; not at all if the call
+     * never started because it was not admitted.
+     */
+    private final class ModelCall {
+        private final Prompt prompt;
+        private final Observation call;
+        private final Observation firstToken;
+        private final AtomicBoolean firstTokenStopped = new AtomicBoolean();
+        private final AtomicBoolean stopped = new AtomicBoolean();
+        private volatile boolean started;
 
-                var toolCalls = chunk.getResult().getOutput().getToolCalls();
-                if (!toolCalls.isEmpty()) {
-                    accumulatedToolCalls.addAll(toolCalls);
-                }
+        private ModelCall(Turn turn, int iteration, Prompt prompt) {
+            this.prompt = prompt;
+            this.call = observation(ConversationStats.MODEL, turn, iteration);
+            this.firstToken = observation(ConversationStats.MODEL + ".first-token", turn, iteration);
+        }
 
-                lastMetadata = chunk.getMetadata();
-            }
+        private void start() {
+            this.started = true;
+            this.call.start();
+            this.firstToken.start();
+        }
 
-            var aggregateMetaData = lastMetadata.entrySet().stream()
-                    .collect(Collectors.toMap(
-                            Map.Entry::getKey,
-                            Map.Entry::getValue
-                    ));
-            aggregateMetaData.put("reasoningContent", fullReasoning.toString());
+        private void onChunk(ChatResponse chunk) {
+            if (chunk.getResult() != null && isOutput(new AgentEvent.MessageEvent(chunk.getResult().getOutput()))
+                    && this.firstTokenStopped.compareAndSet(false, true)) {
+                this.firstToken.stop();
+            }
+        }
 
-            if(!accumulatedToolCalls.isEmpty() && fullReasoning.isEmpty()) {
-                aggregateMetaData.put("reasoningContent", fullContent.toString());
-                fullContent.setLength(0);
+        private void fail(Throwable error) {
+            if (!this.started || !this.stopped.compareAndSet(false, true)) {
+                return;
             }
+            if (this.firstTokenStopped.compareAndSet(false, true)) {
+                this.firstToken.error(error);
+                this.firstToken.stop();
+            }
+            this.call.error(error);
+            this.call.stop();
+        }
 
-            var aggregatedMessage = AssistantMessage.builder()
-                    .toolCalls(accumulatedToolCalls)
-                    .properties(aggregateMetaData)
-                    .content(fullContent.toString())
-                    .build();
+        private void stop(ChatResponse response) {
+            if (!this.started || !this.stopped.compareAndSet(false, true)) {
+                return;
+            }
+            if (this.firstTokenStopped.compareAndSet(false, true)) {
+                this.firstToken.stop();
+            }
+            if (response != null) {
+                Usage usage = response.getMetadata() != null ? response.getMetadata().getUsage() : null;
+                boolean reported = usage != null && usage.getTotalTokens() != null && usage.getTotalTokens() > 0;
+                long inputTokens = reported && usage.getPromptTokens() != null
+                        ? usage.getPromptTokens()
+                        : tokenCounter.count(this.prompt.getInstructions());
+                long outputTokens = reported && usage.getCompletionTokens() != null
+                        ? usage.getCompletionTokens()
+                        : tokenCounter.count(response.getResult().getOutput());
+                this.call.highCardinalityKeyValue(ConversationStats.INPUT_TOKENS, String.valueOf(inputTokens));
+                this.call.highCardinalityKeyValue(ConversationStats.OUTPUT_TOKENS, String.valueOf(outputTokens));
+            }
+            this.call.stop();
+        }
 
-            return ChatResponse.builder()
-                    .generations(List.of(new Generation (aggregatedMessage)))
-                    .metadata(lastMetadata)
-                    .build();
+        private void cancel() {
+            stop(null);
+        }
     }
 }
@@ -0,0 +1,369 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.DefaultToolCallingManager;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.execution.DefaultToolExecutionExceptionProcessor;
+import org.springframework.ai.tool.execution.ToolExecutionException;
+import org.springframework.ai.tool.execution.ToolExecutionExceptionProcessor;
+import org.springframework.ai.tool.observation.DefaultToolCallingObservationConvention;
+import org.springframework.ai.tool.observation.ToolCallingObservationContext;
+import org.springframework.ai.tool.observation.ToolCallingObservationConvention;
+import org.springframework.ai.tool.observation.ToolCallingObservationDocumentation;
+import org.springframework.ai.tool.resolution.DelegatingToolCallbackResolver;
+import org.springframework.ai.tool.resolution.ToolCallbackResolver;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link ToolCallingManager} that runs the tool calls of one assistant message concurrently, each on
+ * its own virtual thread, so a turn takes as long as its slowest tool rather than the sum of all tools.
+ * <p>
+ * At most {@code maxConcurrency} tools run at once across all conversations; further calls wait for a
+ * permit. Each call has a timeout (per tool name, or the default) that starts when the turn's calls
+ * are dispatched, so it also covers waiting for a permit. A timed-out call is interrupted and answered
+ * with an error text the model can react to. Responses are returned in the order the model issued the
+ * calls.
+ * <p>
+ * Calls cancelled through {@link ToolExecutionListener#onDispatched(Runnable)}, e.g. because the
+ * client went away, are interrupted the same way and answered with an error text.
+ * <p>
+ * {@link #executeToolCalls(Prompt, ChatResponse, ToolExecutionListener)} additionally reports each call
+ * starting, finishing and failing as it happens.
+ * <p>
+ * Tool resolution, {@link ToolExecutionException} handling and the {@code spring.ai.tool} observation of
+ * each call match {@link DefaultToolCallingManager}; the observations are children of the one current
+ * when the calls are dispatched.
+ */
+public class ParallelToolCallingManager implements ToolCallingManager, AutoCloseable {
+    private static final int DEFAULT_MAX_CONCURRENCY = 8;
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(60);
+    private static final ToolCallingObservationConvention DEFAULT_OBSERVATION_CONVENTION = new DefaultToolCallingObservationConvention();
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final ToolCallingManager definitionResolver;
+    private final ToolCallbackResolver toolCallbackResolver;
+    private final ToolExecutionExceptionProcessor toolExecutionExceptionProcessor;
+    private final Duration defaultTimeout;
+    private final Map<String, Duration> timeouts;
+    private final Semaphore permits;
+    private final ObservationRegistry observationRegistry;
+    private final ToolCallingObservationConvention observationConvention;
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("tool-call-", 0).factory());
+
+    private ParallelToolCallingManager(ToolCallbackResolver toolCallbackResolver,
+                                       ToolExecutionExceptionProcessor toolExecutionExceptionProcessor,
+                                       int maxConcurrency, Duration defaultTimeout, Map<String, Duration> timeouts,
+                                       ObservationRegistry observationRegistry, ToolCallingObservationConvention observationConvention) {
+        this.toolCallbackResolver = toolCallbackResolver;
+        this.toolExecutionExceptionProcessor = toolExecutionExceptionProcessor;
+        this.defaultTimeout = defaultTimeout;
+        this.timeouts = Map.copyOf(timeouts);
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.observationRegistry = observationRegistry;
+        this.observationConvention = observationConvention;
+        this.definitionResolver = DefaultToolCallingManager.builder()
+                .toolCallbackResolver(toolCallbackResolver)
+                .toolExecutionExceptionProcessor(toolExecutionExceptionProcessor)
+                .build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public List<ToolDefinition> resolveToolDefinitions(ToolCallingChatOptions chatOptions) {
+        return this.definitionResolver.resolveToolDefinitions(chatOptions);
+    }
+
+    @Override
+    public ToolExecutionResult executeToolCalls(Prompt prompt, ChatResponse chatResponse) {
+        return executeToolCalls(prompt, chatResponse, ToolExecutionListener.NOOP);
+    }
+
+    public ToolExecutionResult executeToolCalls(Prompt prompt, ChatResponse chatResponse, ToolExecutionListener listener) {
+        Assert.notNull(prompt, "prompt cannot be null");
+        Assert.notNull(chatResponse, "chatResponse cannot be null");
+        Assert.notNull(listener, "listener cannot be null");
+
+        AssistantMessage assistantMessage = chatResponse.getResults().stream()
+                .map(Generation::getOutput)
+                .filter(output -> output != null && output.hasToolCalls())
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No tool call requested by the chat model"));
+
+        ToolContext toolContext = buildToolContext(prompt, assistantMessage);
+        List<ToolCallback> toolCallbacks = prompt.getOptions() instanceof ToolCallingChatOptions options
+                ? options.getToolCallbacks()
+                : List.of();
+
+        List<ToolRun> runs = assistantMessage.getToolCalls().stream()
+                .map(toolCall -> new ToolRun(toolCall, resolve(toolCall.name(), toolCallbacks), listener))
+                .toList();
+
+        Observation parent = this.observationRegistry.getCurrentObservation();
+        long dispatchedAt = System.nanoTime();
+        List<Future<String>> results = new ArrayList<>(runs.size());
+        for (ToolRun run : runs) {
+            results.add(this.executor.submit(() -> call(run, toolContext, parent)));
+        }
+        listener.onDispatched(() -> results.forEach(result -> result.cancel(true)));
+
+        List<ToolResponseMessage.ToolResponse> responses = new ArrayList<>(runs.size());
+        try {
+            for (int i = 0; i < runs.size(); i++) {
+                AssistantMessage.ToolCall toolCall = runs.get(i).toolCall;
+                responses.add(new ToolResponseMessage.ToolResponse(toolCall.id(), toolCall.name(),
+                        await(results.get(i), runs.get(i), dispatchedAt)));
+            }
+        } finally {
+            results.forEach(result -> result.cancel(true));
+        }
+
+        boolean returnDirect = runs.stream().allMatch(run -> run.callback.getToolMetadata().returnDirect());
+
+        List<Message> conversationHistory = new ArrayList<>(prompt.copy().getInstructions());
+        conversationHistory.add(assistantMessage);
+        conversationHistory.add(ToolResponseMessage.builder().responses(responses).build());
+
+        return ToolExecutionResult.builder()
+                .conversationHistory(conversationHistory)
+                .returnDirect(returnDirect)
+                .build();
+    }
+
+    @Override
+    public void close() {
+        this.executor.shutdownNow();
+    }
+
+    private ToolCallback resolve(String toolName, List<ToolCallback> toolCallbacks) {
+        ToolCallback callback = toolCallbacks.stream()
+                .filter(candidate -> toolName.equals(candidate.getToolDefinition().name()))
+                .findFirst()
+                .orElseGet(() -> this.toolCallbackResolver.resolve(toolName));
+        if (callback == null) {
+            throw new IllegalStateException("No ToolCallback found for tool name: " + toolName);
+        }
+        return callback;
+    }
+
+    private String call(ToolRun run, ToolContext toolContext, Observation parent) throws InterruptedException {
+        String arguments = StringUtils.hasText(run.toolCall.arguments()) ? run.toolCall.arguments() : "{}";
+        ToolCallingObservationContext observationContext = ToolCallingObservationContext.builder()
+                .toolDefinition(run.callback.getToolDefinition())
+                .toolMetadata(run.callback.getToolMetadata())
+                .toolCallArguments(arguments)
+                .build();
+
+        this.permits.acquire();
+        try {
+            run.started();
+            String result = ToolCallingObservationDocumentation.TOOL_CALL
+                    .observation(this.observationConvention, DEFAULT_OBSERVATION_CONVENTION, () -> observationContext, this.observationRegistry)
+                    .parentObservation(parent)
+                    .observe(() -> {
+                        String toolResult;
+                        try {
+                            toolResult = run.callback.call(arguments, toolContext);
+                        } catch (ToolExecutionException e) {
+                            toolResult = this.toolExecutionExceptionProcessor.process(e);
+                            run.failed(toolResult);
+                        }
+                        observationContext.setToolCallResult(toolResult);
+                        return toolResult;
+                    });
+            run.finished(result);
+            return result;
+        } catch (RuntimeException e) {
+            run.failed(e.getMessage());
+            throw e;
+        } finally {
+            this.permits.release();
+        }
+    }
+
+    private String await(Future<String> result, ToolRun run, long dispatchedAt) {
+        String toolName = run.toolCall.name();
+        Duration timeout = this.timeouts.getOrDefault(toolName, this.defaultTimeout);
+        long remaining = timeout.toNanos() - (System.nanoTime() - dispatchedAt);
+        try {
+            return result.get(Math.max(remaining, 0), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            result.cancel(true);
+            logger.warn("Tool {} timed out after {}", toolName, timeout);
+            String error = "Tool '%s' did not finish within %s and was cancelled.".formatted(toolName, timeout);
+            run.aborted(error, Duration.ofNanos(System.nanoTime() - dispatchedAt));
+            return error;
+        } catch (CancellationException e) {
+            String error = "Tool '%s' was cancelled.".formatted(toolName);
+            run.aborted(error, Duration.ofNanos(System.nanoTime() - dispatchedAt));
+            return error;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for tool " + toolName, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Tool " + toolName + " failed", e.getCause());
+        }
+    }
+
+    private static ToolContext buildToolContext(Prompt prompt, AssistantMessage assistantMessage) {
+        // Like DefaultToolCallingManager: callbacks without tool context support reject a non-empty context
+        if (!(prompt.getOptions() instanceof ToolCallingChatOptions options)
+                || options.getToolContext() == null || options.getToolContext().isEmpty()) {
+            return new ToolContext(Map.of());
+        }
+
+        Map<String, Object> context = new HashMap<>(options.getToolContext());
+        List<Message> history = new ArrayList<>(prompt.copy().getInstructions());
+        history.add(assistantMessage);
+        context.put(ToolContext.TOOL_CALL_HISTORY, history);
+        return new ToolContext(context);
+    }
+
+    /**
+     * One tool call of a turn. Makes sure the listener hears exactly one outcome even when the call
+     * completes while its timeout fires or it is cancelled.
+     */
+    private static final class ToolRun {
+        private final AssistantMessage.ToolCall toolCall;
+        private final ToolCallback callback;
+        private final ToolExecutionListener listener;
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private volatile long startedAt;
+
+        private ToolRun(AssistantMessage.ToolCall toolCall, ToolCallback callback, ToolExecutionListener listener) {
+            this.toolCall = toolCall;
+            this.callback = callback;
+            this.listener = listener;
+        }
+
+        private void started() {
+            this.startedAt = System.nanoTime();
+            this.listener.onToolStarted(this.toolCall);
+        }
+
+        private void finished(String result) {
+            if (this.completed.compareAndSet(false, true)) {
+                this.listener.onToolFinished(this.toolCall, result, Duration.ofNanos(System.nanoTime() - this.startedAt));
+            }
+        }
+
+        private void failed(String error) {
+            if (this.completed.compareAndSet(false, true)) {
+                this.listener.onToolFailed(this.toolCall, error, Duration.ofNanos(System.nanoTime() - this.startedAt));
+            }
+        }
+
+        /**
+         * Timed out or cancelled from outside the call's thread.
+         */
+        private void aborted(String error, Duration sinceDispatch) {
+            if (this.completed.compareAndSet(false, true)) {
+                this.listener.onToolFailed(this.toolCall, error, sinceDispatch);
+            }
+        }
+    }
+
+    public static final class Builder {
+        private ToolCallbackResolver toolCallbackResolver = new DelegatingToolCallbackResolver(List.of());
+        private ToolExecutionExceptionProcessor toolExecutionExceptionProcessor = DefaultToolExecutionExceptionProcessor.builder().build();
+        private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+        private Duration defaultTimeout = DEFAULT_TIMEOUT;
+        private Map<String, Duration> timeouts = Map.of();
+        private ObservationRegistry observationRegistry = ObservationRegistry.NOOP;
+        private ToolCallingObservationConvention observationConvention;
+
+        private Builder() {
+        }
+
+        public Builder toolCallbackResolver(ToolCallbackResolver toolCallbackResolver) {
+            this.toolCallbackResolver = toolCallbackResolver;
+            return this;
+        }
+
+        public Builder toolExecutionExceptionProcessor(ToolExecutionExceptionProcessor toolExecutionExceptionProcessor) {
+            this.toolExecutionExceptionProcessor = toolExecutionExceptionProcessor;
+            return this;
+        }
+
+        /**
+         * Maximum number of tools running at the same time, across all conversations.
+         */
+        public Builder maxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        public Builder defaultTimeout(Duration defaultTimeout) {
+            this.defaultTimeout = defaultTimeout;
+            return this;
+        }
+
+        /**
+         * Timeouts by tool name, overriding the default timeout.
+         */
+        public Builder timeouts(Map<String, Duration> timeouts) {
+            this.timeouts = timeouts;
+            return this;
+        }
+
+        public Builder observationRegistry(ObservationRegistry observationRegistry) {
+            this.observationRegistry = observationRegistry;
+            return this;
+        }
+
+        /**
+         * Replaces the default convention of the tool call observations, {@code null} for the default.
+         */
+        public Builder observationConvention(ToolCallingObservationConvention observationConvention) {
+            this.observationConvention = observationConvention;
+            return this;
+        }
+
+        public ParallelToolCallingManager build() {
+            Assert.notNull(this.toolCallbackResolver, "toolCallbackResolver cannot be null");
+            Assert.notNull(this.toolExecutionExceptionProcessor, "toolExecutionExceptionProcessor cannot be null");
+            Assert.isTrue(this.maxConcurrency > 0, "maxConcurrency must be greater than 0");
+            Assert.isTrue(this.defaultTimeout != null && this.defaultTimeout.isPositive(), "defaultTimeout must be positive");
+            Assert.notNull(this.timeouts, "timeouts cannot be null");
+            Assert.notNull(this.observationRegistry, "observationRegistry cannot be null");
+            return new ParallelToolCallingManager(this.toolCallbackResolver, this.toolExecutionExceptionProcessor,
+                    this.maxConcurrency, this.defaultTimeout, this.timeouts, this.observationRegistry, this.observationConvention);
+        }
+    }
+}
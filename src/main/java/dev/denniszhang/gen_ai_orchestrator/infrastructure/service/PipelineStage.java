@@ -0,0 +1,88 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * One stage of a processing pipeline: a bounded input queue drained by a fixed set of worker threads.
+ * {@link #put} blocks while the queue is full, so a slow stage throttles the stage feeding it.
+ * Workers take up to {@code batchSize} items at a time and hand them to the handler, which is
+ * responsible for its own error handling.
+ */
+public class PipelineStage<T> implements AutoCloseable {
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final String name;
+    private final BlockingQueue<T> queue;
+    private final int batchSize;
+    private final Consumer<List<T>> handler;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    public PipelineStage(String name, int workers, int capacity, int batchSize, Consumer<List<T>> handler) {
+        Assert.hasText(name, "name cannot be null or empty");
+        Assert.isTrue(workers > 0, "workers must be greater than 0");
+        Assert.isTrue(capacity > 0, "capacity must be greater than 0");
+        Assert.isTrue(batchSize > 0, "batchSize must be greater than 0");
+        Assert.notNull(handler, "handler cannot be null");
+
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.handler = handler;
+
+        var factory = Thread.ofPlatform().name(name + "-", 1).daemon().factory();
+        for (int i = 0; i < workers; i++) {
+            Thread worker = factory.newThread(this::run);
+            this.workers.add(worker);
+            worker.start();
+        }
+    }
+
+    public void put(T item) throws InterruptedException {
+        this.queue.put(item);
+    }
+
+    public boolean offer(T item) {
+        return this.queue.offer(item);
+    }
+
+    public int size() {
+        return this.queue.size();
+    }
+
+    @Override
+    public void close() {
+        this.running = false;
+        this.workers.forEach(Thread::interrupt);
+    }
+
+    private void run() {
+        while (this.running) {
+            try {
+                T first = this.queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                List<T> batch = new ArrayList<>(this.batchSize);
+                batch.add(first);
+                this.queue.drainTo(batch, this.batchSize - 1);
+                this.handler.accept(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Unhandled error in pipeline stage {}", this.name, e);
+            }
+        }
+    }
+}
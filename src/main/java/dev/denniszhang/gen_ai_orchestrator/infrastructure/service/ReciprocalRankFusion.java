@@ -0,0 +1,65 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.EmbeddedDocument;
+import org.springframework.util.Assert;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reciprocal-rank fusion: a document scores {@code 1 / (k + rank)} in every ranking it appears in,
+ * summed over the rankings. Only ranks count, so scores of different retrievers (cosine similarity,
+ * {@code ts_rank}) never need to be made comparable. The fused score replaces the document's score;
+ * a single ranking is returned as is.
+ */
+public class ReciprocalRankFusion implements RetrievalPipeline.Fusion {
+    // The constant of the original paper; dampens the lead of the first few ranks
+    private static final int DEFAULT_K = 60;
+
+    private final int k;
+
+    public ReciprocalRankFusion() {
+        this(DEFAULT_K);
+    }
+
+    public ReciprocalRankFusion(int k) {
+        Assert.isTrue(k > 0, "k must be greater than 0");
+        this.k = k;
+    }
+
+    @Override
+    public List<EmbeddedDocument> fuse(List<List<EmbeddedDocument>> rankings) {
+        if (rankings.size() == 1) {
+            // Nothing to fuse; keep the retriever's own scores
+            return rankings.getFirst();
+        }
+        Map<String, Fused> fused = new LinkedHashMap<>();
+        for (List<EmbeddedDocument> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                EmbeddedDocument candidate = ranking.get(rank);
+                Fused entry = fused.computeIfAbsent(candidate.document().getId(), id -> new Fused(candidate));
+                entry.score += 1.0 / (this.k + rank + 1);
+                if (entry.candidate.embedding() == null && candidate.embedding() != null) {
+                    entry.candidate = candidate;
+                }
+            }
+        }
+        return fused.values().stream()
+                .sorted(Comparator.comparingDouble((Fused entry) -> entry.score).reversed())
+                .map(entry -> new EmbeddedDocument(
+                        entry.candidate.document().mutate().score(entry.score).build(),
+                        entry.candidate.embedding()))
+                .toList();
+    }
+
+    private static final class Fused {
+        private EmbeddedDocument candidate;
+        private double score;
+
+        private Fused(EmbeddedDocument candidate) {
+            this.candidate = candidate;
+        }
+    }
+}
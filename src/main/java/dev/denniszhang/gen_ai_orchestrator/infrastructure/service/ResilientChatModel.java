@@ -0,0 +1,319 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.exception.ModelUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * {@link ChatModel} decorator over a primary and an optional secondary backend, e.g. a hosted
+ * provider and a local OpenAI-compatible engine.
+ * <p>
+ * A stream that hasn't emitted its first chunk within {@code firstTokenTimeout} fails instead of hanging.
+ * A call that failed before its first chunk is retried up to {@code maxAttempts} times with jittered
+ * exponential backoff; once a chunk has been passed on, a retry would repeat it, so failures after
+ * that are not retried. Prompts are otherwise free of side effects here: tools run outside the model.
+ * <p>
+ * Each backend has a {@link CircuitBreaker}. Calls go to the first backend whose breaker lets them
+ * through, so the secondary takes over while the primary's is open. With {@code hedge}, a stream also
+ * goes to the secondary once the primary has been waiting for its first chunk longer than
+ * {@code hedgePercentile} of its recent first chunks took (at least {@code minHedgeDelay}); whichever
+ * stream emits first is used and the other is cancelled.
+ * <p>
+ * Breaker states are gauged in {@code orchestrator.model.circuit} tagged {@code backend}
+ * (0 closed, 1 half open, 2 open); retries count in {@code orchestrator.model.retries} and hedged
+ * streams in {@code orchestrator.model.hedges}.
+ */
+public class ResilientChatModel implements ChatModel {
+    public static final String PRIMARY = "primary";
+    public static final String SECONDARY = "secondary";
+
+    private static final Duration DEFAULT_FIRST_TOKEN_TIMEOUT = Duration.ofSeconds(30);
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+    private static final Duration DEFAULT_BACKOFF = Duration.ofMillis(500);
+    private static final Duration DEFAULT_MAX_BACKOFF = Duration.ofSeconds(5);
+    private static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    private static final Duration DEFAULT_OPEN_DURATION = Duration.ofSeconds(30);
+    private static final double DEFAULT_HEDGE_PERCENTILE = 0.95;
+    private static final Duration DEFAULT_MIN_HEDGE_DELAY = Duration.ofSeconds(1);
+    private static final int LATENCY_WINDOW = 256;
+    private static final int MIN_LATENCY_SAMPLES = 20;
+    private static final String METRIC = "orchestrator.model";
+
+    private final List<Backend> backends;
+    private final Duration firstTokenTimeout;
+    private final int maxAttempts;
+    private final Duration backoff;
+    private final Duration maxBackoff;
+    private final boolean hedge;
+    private final double hedgePercentile;
+    private final Duration minHedgeDelay;
+
+    private final Counter retries;
+    private final Counter hedges;
+
+    private ResilientChatModel(List<Backend> backends, Duration firstTokenTimeout, int maxAttempts, Duration backoff,
+                               Duration maxBackoff, boolean hedge, double hedgePercentile, Duration minHedgeDelay,
+                               MeterRegistry meterRegistry) {
+        this.backends = List.copyOf(backends);
+        this.firstTokenTimeout = firstTokenTimeout;
+        this.maxAttempts = maxAttempts;
+        this.backoff = backoff;
+        this.maxBackoff = maxBackoff;
+        this.hedge = hedge;
+        this.hedgePercentile = hedgePercentile;
+        this.minHedgeDelay = minHedgeDelay;
+
+        for (Backend backend : this.backends) {
+            Gauge.builder(METRIC + ".circuit", backend.circuitBreaker(), breaker -> breaker.state().ordinal())
+                    .tag("backend", backend.name())
+                    .register(meterRegistry);
+        }
+        this.retries = Counter.builder(METRIC + ".retries").register(meterRegistry);
+        this.hedges = Counter.builder(METRIC + ".hedges").register(meterRegistry);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        return withRetries(model -> Mono.fromCallable(() -> model.call(prompt))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flux(), false)
+                .blockLast();
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        return withRetries(model -> model.stream(prompt), true);
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return this.backends.getFirst().model().getDefaultOptions();
+    }
+
+    private Flux<ChatResponse> withRetries(Function<ChatModel, Flux<ChatResponse>> request, boolean streaming) {
+        return Flux.defer(() -> {
+            AtomicBoolean started = new AtomicBoolean();
+            return Flux.defer(() -> attempt(request, streaming))
+                    .doOnNext(response -> started.set(true))
+                    .retryWhen(Retry.backoff(this.maxAttempts - 1, this.backoff)
+                            .maxBackoff(this.maxBackoff)
+                            .jitter(0.5)
+                            .filter(error -> !started.get())
+                            .doBeforeRetry(signal -> this.retries.increment())
+                            .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+        });
+    }
+
+    private Flux<ChatResponse> attempt(Function<ChatModel, Flux<ChatResponse>> request, boolean streaming) {
+        List<Backend> available = this.backends.stream()
+                .filter(backend -> backend.circuitBreaker().isCallPermitted())
+                .toList();
+        if (available.isEmpty()) {
+            return Flux.error(new ModelUnavailableException(this.backends.stream()
+                    .map(backend -> backend.circuitBreaker().remainingOpen())
+                    .min(Comparator.naturalOrder())
+                    .orElse(Duration.ZERO)));
+        }
+
+        Backend primary = available.getFirst();
+        Flux<ChatResponse> first = call(primary, request, streaming);
+        if (!streaming || !this.hedge || available.size() < 2) {
+            return first;
+        }
+        Flux<ChatResponse> hedged = Mono.delay(hedgeDelay(primary))
+                .thenMany(Flux.defer(() -> {
+                    this.hedges.increment();
+                    return call(available.get(1), request, true);
+                }));
+        return Flux.firstWithValue(first, hedged);
+    }
+
+    private Flux<ChatResponse> call(Backend backend, Function<ChatModel, Flux<ChatResponse>> request, boolean streaming) {
+        return Flux.defer(() -> {
+            CircuitBreaker breaker = backend.circuitBreaker();
+            if (!breaker.tryAcquire()) {
+                return Flux.error(new ModelUnavailableException(breaker.remainingOpen()));
+            }
+            long start = System.nanoTime();
+            AtomicBoolean started = new AtomicBoolean();
+            Flux<ChatResponse> response = request.apply(backend.model());
+            if (streaming) {
+                response = response
+                        .timeout(Mono.delay(this.firstTokenTimeout), chunk -> Mono.never())
+                        .onErrorMap(TimeoutException.class, e -> new TimeoutException(
+                                "No response from the " + backend.name() + " chat model within " + this.firstTokenTimeout));
+            }
+            return response
+                    .doOnNext(chunk -> {
+                        if (started.compareAndSet(false, true)) {
+                            breaker.onSuccess();
+                            backend.firstChunks().record(System.nanoTime() - start);
+                        }
+                    })
+                    .doOnError(error -> breaker.onFailure())
+                    .doOnComplete(() -> {
+                        if (started.compareAndSet(false, true)) {
+                            breaker.onSuccess();
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (!started.get()) {
+                            breaker.release();
+                        }
+                    });
+        });
+    }
+
+    private Duration hedgeDelay(Backend primary) {
+        long percentile = primary.firstChunks().percentile(this.hedgePercentile);
+        return percentile > this.minHedgeDelay.toNanos() ? Duration.ofNanos(percentile) : this.minHedgeDelay;
+    }
+
+    private record Backend(String name, ChatModel model, CircuitBreaker circuitBreaker, LatencyWindow firstChunks) {}
+
+    /**
+     * The last {@value #LATENCY_WINDOW} times to first chunk of a backend.
+     */
+    private static final class LatencyWindow {
+        private final long[] samples = new long[LATENCY_WINDOW];
+        private int count;
+        private int next;
+
+        private synchronized void record(long nanos) {
+            this.samples[this.next] = nanos;
+            this.next = (this.next + 1) % this.samples.length;
+            this.count = Math.min(this.count + 1, this.samples.length);
+        }
+
+        /**
+         * @return the percentile in nanoseconds, or -1 with fewer than {@value #MIN_LATENCY_SAMPLES} samples
+         */
+        private long percentile(double percentile) {
+            long[] sorted;
+            synchronized (this) {
+                if (this.count < MIN_LATENCY_SAMPLES) {
+                    return -1;
+                }
+                sorted = Arrays.copyOf(this.samples, this.count);
+            }
+            Arrays.sort(sorted);
+            return sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * percentile) - 1)];
+        }
+    }
+
+    public static final class Builder {
+        private ChatModel primary;
+        private ChatModel secondary;
+        private Duration firstTokenTimeout = DEFAULT_FIRST_TOKEN_TIMEOUT;
+        private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+        private Duration backoff = DEFAULT_BACKOFF;
+        private Duration maxBackoff = DEFAULT_MAX_BACKOFF;
+        private int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+        private Duration openDuration = DEFAULT_OPEN_DURATION;
+        private boolean hedge;
+        private double hedgePercentile = DEFAULT_HEDGE_PERCENTILE;
+        private Duration minHedgeDelay = DEFAULT_MIN_HEDGE_DELAY;
+        private MeterRegistry meterRegistry = Metrics.globalRegistry;
+
+        private Builder() {
+        }
+
+        public Builder primary(ChatModel primary) {
+            this.primary = primary;
+            return this;
+        }
+
+        /**
+         * The backend calls fail over to, and hedged streams go to.
+         */
+        public Builder secondary(ChatModel secondary) {
+            this.secondary = secondary;
+            return this;
+        }
+
+        public Builder firstTokenTimeout(Duration firstTokenTimeout) {
+            this.firstTokenTimeout = firstTokenTimeout;
+            return this;
+        }
+
+        /**
+         * Attempts of a call in total, the first one included.
+         */
+        public Builder maxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        public Builder backoff(Duration backoff, Duration maxBackoff) {
+            this.backoff = backoff;
+            this.maxBackoff = maxBackoff;
+            return this;
+        }
+
+        public Builder circuitBreaker(int failureThreshold, Duration openDuration) {
+            this.failureThreshold = failureThreshold;
+            this.openDuration = openDuration;
+            return this;
+        }
+
+        /**
+         * Hedges streams to the secondary after {@code percentile} of the primary's recent times to first
+         * chunk, and after {@code minDelay} at the earliest.
+         */
+        public Builder hedge(double percentile, Duration minDelay) {
+            this.hedge = true;
+            this.hedgePercentile = percentile;
+            this.minHedgeDelay = minDelay;
+            return this;
+        }
+
+        public Builder meterRegistry(MeterRegistry meterRegistry) {
+            this.meterRegistry = meterRegistry;
+            return this;
+        }
+
+        public ResilientChatModel build() {
+            Assert.notNull(this.primary, "primary cannot be null");
+            Assert.isTrue(this.firstTokenTimeout != null && this.firstTokenTimeout.isPositive(), "firstTokenTimeout must be positive");
+            Assert.isTrue(this.maxAttempts > 0, "maxAttempts must be greater than 0");
+            Assert.isTrue(this.backoff != null && this.backoff.isPositive(), "backoff must be positive");
+            Assert.isTrue(this.maxBackoff != null && this.maxBackoff.compareTo(this.backoff) >= 0, "maxBackoff cannot be less than backoff");
+            Assert.isTrue(this.hedgePercentile > 0 && this.hedgePercentile <= 1, "hedgePercentile must be in (0, 1]");
+            Assert.isTrue(this.minHedgeDelay != null && !this.minHedgeDelay.isNegative(), "minHedgeDelay cannot be negative");
+            Assert.isTrue(!this.hedge || this.secondary != null, "hedging needs a secondary");
+            Assert.notNull(this.meterRegistry, "meterRegistry cannot be null");
+
+            List<Backend> backends = new ArrayList<>();
+            backends.add(new Backend(PRIMARY, this.primary, new CircuitBreaker(this.failureThreshold, this.openDuration), new LatencyWindow()));
+            if (this.secondary != null) {
+                backends.add(new Backend(SECONDARY, this.secondary, new CircuitBreaker(this.failureThreshold, this.openDuration), new LatencyWindow()));
+            }
+            return new ResilientChatModel(backends, this.firstTokenTimeout, this.maxAttempts, this.backoff, this.maxBackoff,
+                    this.hedge, this.hedgePercentile, this.minHedgeDelay, this.meterRegistry);
+        }
+    }
+}
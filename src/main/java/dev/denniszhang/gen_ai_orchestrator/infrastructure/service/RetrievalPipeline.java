@@ -0,0 +1,212 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.EmbeddedDocument;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Multi-stage retrieval of the knowledge added to a user message.
+ * <p>
+ * The {@link Retriever}s (e.g. full-text and vector search) run in parallel and their rankings are
+ * merged by the {@link Fusion}. The fused candidates then pass through the {@link Stage}s in order,
+ * e.g. de-duplication, MMR and the token budget. A retriever that fails or exceeds {@code timeout}
+ * contributes nothing instead of failing the request; one that exceeds it is interrupted, so a retriever
+ * that stops on interrupt (or that bounds its own queries by the same timeout) doesn't outlive the request.
+ * <p>
+ * Every retriever, the fusion and every stage is timed in {@code orchestrator.retrieval.stage} tagged
+ * with its {@code stage} name; the whole pipeline in {@code orchestrator.retrieval}.
+ */
+public class RetrievalPipeline implements AutoCloseable {
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(2);
+    private static final String METRIC = "orchestrator.retrieval";
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final List<Retriever> retrievers;
+    private final Fusion fusion;
+    private final List<Stage> stages;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+    private final Duration timeout;
+    private final MeterRegistry meterRegistry;
+    private final Timer total;
+
+    private RetrievalPipeline(List<Retriever> retrievers, Fusion fusion, List<Stage> stages, Executor executor,
+                              ExecutorService ownedExecutor, Duration timeout, MeterRegistry meterRegistry) {
+        this.retrievers = List.copyOf(retrievers);
+        this.fusion = fusion;
+        this.stages = List.copyOf(stages);
+        this.executor = executor;
+        this.ownedExecutor = ownedExecutor;
+        this.timeout = timeout;
+        this.meterRegistry = meterRegistry;
+        this.total = Timer.builder(METRIC).register(meterRegistry);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the documents to add to the message, best first. Blocking.
+     */
+    public List<Document> retrieve(String query) {
+        return this.total.record(() -> {
+            long deadline = System.nanoTime() + this.timeout.toNanos();
+            List<FutureTask<List<EmbeddedDocument>>> tasks = new ArrayList<>(this.retrievers.size());
+            for (Retriever retriever : this.retrievers) {
+                FutureTask<List<EmbeddedDocument>> task = new FutureTask<>(() -> timed(retriever.name(), () -> retriever.retrieve(query)));
+                tasks.add(task);
+                this.executor.execute(task);
+            }
+
+            List<List<EmbeddedDocument>> rankings = new ArrayList<>(tasks.size());
+            for (int i = 0; i < tasks.size(); i++) {
+                String name = this.retrievers.get(i).name();
+                try {
+                    rankings.add(tasks.get(i).get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS));
+                } catch (TimeoutException e) {
+                    tasks.get(i).cancel(true);
+                    logger.warn("Retriever {} timed out after {}", name, this.timeout);
+                } catch (ExecutionException e) {
+                    logger.warn("Retriever {} failed", name, e.getCause());
+                } catch (InterruptedException e) {
+                    tasks.forEach(task -> task.cancel(true));
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while retrieving knowledge", e);
+                }
+            }
+
+            List<EmbeddedDocument> candidates = timed("fusion", () -> this.fusion.fuse(rankings));
+            for (Stage stage : this.stages) {
+                List<EmbeddedDocument> input = candidates;
+                candidates = timed(stage.name(), () -> stage.apply(query, input));
+            }
+            return candidates.stream().map(EmbeddedDocument::document).toList();
+        });
+    }
+
+    /**
+     * Stops the default executor, interrupting the retrievers still running; an executor set on the
+     * builder is left to its owner.
+     */
+    @Override
+    public void close() {
+        if (this.ownedExecutor != null) {
+            this.ownedExecutor.shutdownNow();
+        }
+    }
+
+    private <T> T timed(String stage, Supplier<T> step) {
+        return Timer.builder(METRIC + ".stage")
+                .tag("stage", stage)
+                .register(this.meterRegistry)
+                .record(step);
+    }
+
+    /**
+     * Produces a ranking of candidates for the query, best first. The embedding of a candidate may be
+     * {@code null} if the source doesn't have it.
+     */
+    public interface Retriever {
+        String name();
+
+        List<EmbeddedDocument> retrieve(String query);
+    }
+
+    /**
+     * Merges the rankings of the retrievers into one, best first, with one candidate per document id.
+     */
+    @FunctionalInterface
+    public interface Fusion {
+        List<EmbeddedDocument> fuse(List<List<EmbeddedDocument>> rankings);
+    }
+
+    /**
+     * Filters, reorders or trims the fused candidates.
+     */
+    public interface Stage {
+        String name();
+
+        List<EmbeddedDocument> apply(String query, List<EmbeddedDocument> candidates);
+    }
+
+    public static final class Builder {
+        private final List<Retriever> retrievers = new ArrayList<>();
+        private final List<Stage> stages = new ArrayList<>();
+        private Fusion fusion = new ReciprocalRankFusion();
+        private Executor executor;
+        private Duration timeout = DEFAULT_TIMEOUT;
+        private MeterRegistry meterRegistry = Metrics.globalRegistry;
+
+        private Builder() {
+        }
+
+        public Builder retriever(Retriever retriever) {
+            this.retrievers.add(retriever);
+            return this;
+        }
+
+        public Builder fusion(Fusion fusion) {
+            this.fusion = fusion;
+            return this;
+        }
+
+        /**
+         * Appends a stage; stages run in the order they are added.
+         */
+        public Builder stage(Stage stage) {
+            this.stages.add(stage);
+            return this;
+        }
+
+        /**
+         * Runs the retrievers. Defaults to a virtual thread per retriever, stopped on {@link #close()}.
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public Builder timeout(Duration timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        public Builder meterRegistry(MeterRegistry meterRegistry) {
+            this.meterRegistry = meterRegistry;
+            return this;
+        }
+
+        public RetrievalPipeline build() {
+            Assert.notEmpty(this.retrievers, "at least one retriever is required");
+            Assert.noNullElements(this.retrievers, "retrievers cannot contain null elements");
+            Assert.noNullElements(this.stages, "stages cannot contain null elements");
+            Assert.notNull(this.fusion, "fusion cannot be null");
+            Assert.isTrue(this.timeout != null && this.timeout.isPositive(), "timeout must be positive");
+            Assert.notNull(this.meterRegistry, "meterRegistry cannot be null");
+            ExecutorService ownedExecutor = this.executor == null
+                    ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("retrieval-", 0).factory())
+                    : null;
+            return new RetrievalPipeline(this.retrievers, this.fusion, this.stages,
+                    ownedExecutor != null ? ownedExecutor : this.executor, ownedExecutor, this.timeout, this.meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches final answers by the embedding of the question that led to them, so a near-identical
+ * question in the same scope (e.g. a tenant) is answered without retrieval, model or tool calls.
+ * Questions without a scope are neither looked up nor cached, so answers never cross scopes.
+ * <p>
+ * Only the first question of a conversation is looked up or cached: later questions depend on the
+ * history and can't be answered from a cache keyed by the question alone. An answer is not cached if
+ * any tool outside {@code readOnlyTools} was called on the way, since replaying it would skip that
+ * tool's side effects.
+ * <p>
+ * Answers are only as current as the knowledge they were retrieved from: {@link #knowledgeChanged()}
+ * drops every entry, and an answer whose lookup happened before the last change is not cached.
+ * <p>
+ * Lookups count in {@code orchestrator.response.cache} tagged {@code result=hit|miss}; the tokens the
+ * cached answers cost originally count in {@code orchestrator.response.cache.saved.tokens} on every hit.
+ * Answers left out because of a side-effecting tool count in {@code orchestrator.response.cache.bypassed}.
+ */
+public class SemanticResponseCache {
+    private static final int DEFAULT_MAX_ENTRIES = 10_000;
+    private static final double DEFAULT_SIMILARITY_THRESHOLD = 0.95;
+    private static final Duration DEFAULT_TTL = Duration.ofHours(1);
+    private static final String METRIC = "orchestrator.response.cache";
+
+    private final EmbeddingModel embeddingModel;
+    private final TokenCounter tokenCounter;
+    private final double similarityThreshold;
+    private final Set<String> readOnlyTools;
+    private final Cache<Long, Entry> entries;
+    private final AtomicLong nextId = new AtomicLong();
+    private final AtomicLong knowledgeVersion = new AtomicLong();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter savedTokens;
+    private final Counter bypassed;
+
+    private SemanticResponseCache(EmbeddingModel embeddingModel, TokenCounter tokenCounter, double similarityThreshold,
+                                  Duration ttl, long maxEntries, Set<String> readOnlyTools, MeterRegistry meterRegistry) {
+        this.embeddingModel = embeddingModel;
+        this.tokenCounter = tokenCounter;
+        this.similarityThreshold = similarityThreshold;
+        this.readOnlyTools = Set.copyOf(readOnlyTools);
+        this.entries = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxEntries)
+                .build();
+
+        this.hits = Counter.builder(METRIC).tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder(METRIC).tag("result", "miss").register(meterRegistry);
+        this.savedTokens = Counter.builder(METRIC + ".saved.tokens").register(meterRegistry);
+        this.bypassed = Counter.builder(METRIC + ".bypassed").register(meterRegistry);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Embeds the question and looks for the most similar cached question of the scope. Blocking.
+     */
+    public Lookup lookup(String scope, String question) {
+        Assert.hasText(scope, "scope cannot be null or empty");
+        long version = this.knowledgeVersion.get();
+        float[] embedding = normalize(this.embeddingModel.embed(question));
+
+        Entry best = null;
+        double bestSimilarity = this.similarityThreshold;
+        for (Entry entry : this.entries.asMap().values()) {
+            if (entry.knowledgeVersion != version || !entry.scope.equals(scope) || entry.embedding.length != embedding.length) {
+                continue;
+            }
+            double similarity = dot(entry.embedding, embedding);
+            if (similarity >= bestSimilarity) {
+                best = entry;
+                bestSimilarity = similarity;
+            }
+        }
+
+        if (best == null) {
+            this.misses.increment();
+            return new Lookup(scope, embedding, null, version);
+        }
+        this.hits.increment();
+        this.savedTokens.increment(best.tokens);
+        return new Lookup(scope, embedding, best.answer, version);
+    }
+
+    /**
+     * Tracks the rest of a missed lookup's stream and caches its final answer if it may be replayed.
+     */
+    public Recording record(Lookup lookup) {
+        Assert.isTrue(lookup.answer().isEmpty(), "only a missed lookup can be recorded");
+        return new Recording(this, lookup);
+    }
+
+    /**
+     * Drops every cached answer, e.g. once new documents are stored; answers being recorded for earlier
+     * lookups are not cached either.
+     */
+    public void knowledgeChanged() {
+        this.knowledgeVersion.incrementAndGet();
+        this.entries.invalidateAll();
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = Math.sqrt(dot(vector, vector));
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = norm == 0 ? 0 : (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * @param knowledgeVersion entries of an earlier version are left over from a change that happened
+     *                         while they were being recorded and are ignored
+     */
+    private record Entry(String scope, float[] embedding, String answer, long tokens, long knowledgeVersion) {}
+
+    public static final class Lookup {
+        private final String scope;
+        private final float[] embedding;
+        private final String answer;
+        private final long knowledgeVersion;
+
+        private Lookup(String scope, float[] embedding, String answer, long knowledgeVersion) {
+            this.scope = scope;
+            this.embedding = embedding;
+            this.answer = answer;
+            this.knowledgeVersion = knowledgeVersion;
+        }
+
+        /**
+         * @return the cached answer on a hit
+         */
+        public Optional<String> answer() {
+            return Optional.ofNullable(this.answer);
+        }
+    }
+
+    /**
+     * Collects what a stream cost and whether it called side-effecting tools. Not thread-safe; the
+     * steps of one stream run one after the other.
+     */
+    public static final class Recording {
+        public static final Recording NOOP = new Recording(null, null);
+
+        private final SemanticResponseCache cache;
+        private final Lookup lookup;
+        private long tokens;
+        private boolean sideEffects;
+
+        private Recording(SemanticResponseCache cache, Lookup lookup) {
+            this.cache = cache;
+            this.lookup = lookup;
+        }
+
+        /**
+         * Adds the tokens of one model call, estimated from prompt and output when the model reports no usage.
+         */
+        public void onResponse(Prompt prompt, ChatResponse response) {
+            if (this.cache == null) {
+                return;
+            }
+            Usage usage = response.getMetadata() != null ? response.getMetadata().getUsage() : null;
+            if (usage != null && usage.getTotalTokens() != null && usage.getTotalTokens() > 0) {
+                this.tokens += usage.getTotalTokens();
+            } else {
+                this.tokens += this.cache.tokenCounter.count(prompt.getInstructions())
+                        + this.cache.tokenCounter.count(response.getResult().getOutput());
+            }
+        }
+
+        public void onToolCalls(AssistantMessage message) {
+            if (this.cache == null) {
+                return;
+            }
+            if (message.getToolCalls().stream().anyMatch(toolCall -> !this.cache.readOnlyTools.contains(toolCall.name()))) {
+                this.sideEffects = true;
+            }
+        }
+
+        public void onAnswer(AssistantMessage answer) {
+            if (this.cache == null || !StringUtils.hasText(answer.getText())) {
+                return;
+            }
+            if (this.sideEffects) {
+                this.cache.bypassed.increment();
+                return;
+            }
+            // Knowledge changed while the answer was generated, it may be stale
+            if (this.cache.knowledgeVersion.get() != this.lookup.knowledgeVersion) {
+                return;
+            }
+            this.cache.entries.put(this.cache.nextId.getAndIncrement(), new Entry(this.lookup.scope, this.lookup.embedding,
+                    answer.getText(), this.tokens, this.lookup.knowledgeVersion));
+        }
+    }
+
+    public static final class Builder {
+        private EmbeddingModel embeddingModel;
+        private TokenCounter tokenCounter;
+        private double similarityThreshold = DEFAULT_SIMILARITY_THRESHOLD;
+        private Duration ttl = DEFAULT_TTL;
+        private long maxEntries = DEFAULT_MAX_ENTRIES;
+        private Set<String> readOnlyTools = Set.of();
+        private MeterRegistry meterRegistry = Metrics.globalRegistry;
+
+        private Builder() {
+        }
+
+        public Builder embeddingModel(EmbeddingModel embeddingModel) {
+            this.embeddingModel = embeddingModel;
+            return this;
+        }
+
+        public Builder tokenCounter(TokenCounter tokenCounter) {
+            this.tokenCounter = tokenCounter;
+            return this;
+        }
+
+        public Builder similarityThreshold(double similarityThreshold) {
+            this.similarityThreshold = similarityThreshold;
+            return this;
+        }
+
+        public Builder ttl(Duration ttl) {
+            this.ttl = ttl;
+            return this;
+        }
+
+        public Builder maxEntries(long maxEntries) {
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        /**
+         * Tools without side effects; an answer that needed any other tool is not cached.
+         */
+        public Builder readOnlyTools(Set<String> readOnlyTools) {
+            this.readOnlyTools = readOnlyTools;
+            return this;
+        }
+
+        public Builder meterRegistry(MeterRegistry meterRegistry) {
+            this.meterRegistry = meterRegistry;
+            return this;
+        }
+
+        public SemanticResponseCache build() {
+            Assert.notNull(this.embeddingModel, "embeddingModel cannot be null");
+            Assert.isTrue(this.similarityThreshold > 0 && this.similarityThreshold <= 1, "similarityThreshold must be in (0, 1]");
+            Assert.isTrue(this.ttl != null && this.ttl.isPositive(), "ttl must be positive");
+            Assert.isTrue(this.maxEntries > 0, "maxEntries must be greater than 0");
+            Assert.notNull(this.readOnlyTools, "readOnlyTools cannot be null");
+            Assert.notNull(this.meterRegistry, "meterRegistry cannot be null");
+            if (this.tokenCounter == null) {
+                this.tokenCounter = new TokenCounter();
+            }
+            return new SemanticResponseCache(this.embeddingModel, this.tokenCounter, this.similarityThreshold, this.ttl,
+                    this.maxEntries, this.readOnlyTools, this.meterRegistry);
+        }
+    }
+}
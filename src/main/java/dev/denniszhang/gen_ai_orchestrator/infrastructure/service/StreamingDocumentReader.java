@@ -0,0 +1,307 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+import com.knuddels.jtokkit.api.IntArrayList;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.springframework.ai.document.Document;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Reads a resource with Tika and splits it into token-sized chunks while it is being parsed.
+ * Text arrives through the SAX content handler and each chunk is handed to the consumer as soon as it
+ * is complete, so only the current chunk is buffered no matter how large the document is. Text is
+ * tokenized once, word by word as it arrives. Chunking follows {@code TokenTextSplitter}: cut at the
+ * last word that fits in {@code chunkSize} tokens, preferably at the last sentence boundary past
+ * {@code minChunkSizeChars}.
+ * <p>
+ * A consumer that blocks (e.g. on a full queue) pauses the parser, which gives backpressure all the
+ * way to the file being read.
+ */
+public class StreamingDocumentReader {
+    private static final Set<String> BLOCK_ELEMENTS = Set.of("p", "div", "br", "li", "tr", "h1", "h2", "h3", "h4", "h5", "h6", "title");
+    private static final int MAX_CHARS_PER_TOKEN = 8;
+
+    private final Parser parser = new AutoDetectParser();
+    private final Encoding encoding = Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+
+    private final int chunkSize;
+    private final int minChunkSizeChars;
+    private final int minChunkLengthToEmbed;
+    private final int maxNumChunks;
+
+    public StreamingDocumentReader() {
+        this(800, 350, 5, 10000);
+    }
+
+    /**
+     * @param chunkSize target number of tokens per chunk
+     * @param minChunkSizeChars do not cut at a sentence boundary before this many characters
+     * @param minChunkLengthToEmbed discard chunks shorter than this (artifacts, noise)
+     * @param maxNumChunks stop after this many chunks per resource
+     */
+    public StreamingDocumentReader(int chunkSize, int minChunkSizeChars, int minChunkLengthToEmbed, int maxNumChunks) {
+        Assert.isTrue(chunkSize > 0, "chunkSize must be greater than 0");
+        Assert.isTrue(maxNumChunks > 0, "maxNumChunks must be greater than 0");
+        this.chunkSize = chunkSize;
+        this.minChunkSizeChars = minChunkSizeChars;
+        this.minChunkLengthToEmbed = minChunkLengthToEmbed;
+        this.maxNumChunks = maxNumChunks;
+    }
+
+    /**
+     * Parses the resource and passes every chunk to the consumer in document order.
+     *
+     * @return the number of chunks produced
+     */
+    public int read(Resource resource, Consumer<Document> chunkConsumer) {
+        Assert.notNull(resource, "resource cannot be null");
+        Assert.notNull(chunkConsumer, "chunkConsumer cannot be null");
+
+        Map<String, Object> metadata = new HashMap<>();
+        if (resource.getFilename() != null) {
+            metadata.put("source", resource.getFilename());
+        }
+        ChunkingContentHandler handler = new ChunkingContentHandler(metadata, chunkConsumer);
+
+        try (InputStream stream = resource.isFile()
+                ? TikaInputStream.get(resource.getFile().toPath())
+                : TikaInputStream.get(resource.getInputStream())) {
+            this.parser.parse(stream, handler, new Metadata(), new ParseContext());
+        } catch (ChunkLimitReachedException e) {
+            // maxNumChunks reached, the rest of the document is skipped
+        } catch (IOException e) {
+            throw new UncheckedIOException("Resource can't be read: " + resource.getDescription(), e);
+        } catch (Exception e) {
+            // Some parsers wrap exceptions thrown by the content handler
+            if (e.getCause() instanceof ChunkLimitReachedException) {
+                return handler.chunks;
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Resource can't be parsed: " + resource.getDescription(), e);
+        }
+
+        try {
+            handler.finish();
+        } catch (ChunkLimitReachedException e) {
+            // maxNumChunks reached by the last chunks
+        }
+        return handler.chunks;
+    }
+
+    private static final class ChunkLimitReachedException extends RuntimeException {
+        private ChunkLimitReachedException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * A run of buffered text that tokenizes on its own: a word with the whitespace before it.
+     */
+    private record Segment(int chars, int tokens) {}
+
+    private final class ChunkingContentHandler extends DefaultHandler {
+        private final Map<String, Object> metadata;
+        private final Consumer<Document> chunkConsumer;
+        private final StringBuilder buffer = new StringBuilder();
+        // The buffer up to encodedChars is split into segments, each tokenized once when it is complete
+        private final Deque<Segment> segments = new ArrayDeque<>();
+        private int encodedChars;
+        private int encodedTokens;
+        private int scannedChars;
+        private int chunks;
+
+        private ChunkingContentHandler(Map<String, Object> metadata, Consumer<Document> chunkConsumer) {
+            this.metadata = metadata;
+            this.chunkConsumer = chunkConsumer;
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            this.buffer.append(ch, start, length);
+            encode(false);
+            while (this.encodedTokens >= chunkSize) {
+                emitChunk(false);
+            }
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) {
+            characters(ch, start, length);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if (BLOCK_ELEMENTS.contains(localName)) {
+                this.buffer.append('\n');
+            }
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if ("br".equals(localName)) {
+                this.buffer.append('\n');
+            }
+        }
+
+        private void finish() {
+            encode(true);
+            while (!this.buffer.isEmpty() && this.chunks < maxNumChunks) {
+                emitChunk(true);
+            }
+        }
+
+        /**
+         * Tokenizes the text appended since the last call up to its last word boundary, or all of it if
+         * {@code all} is set. The tokenizer never merges across whitespace followed by a word, so the
+         * segments add up to the token count of the whole buffer. A run without whitespace is cut after
+         * {@code chunkSize * MAX_CHARS_PER_TOKEN} characters.
+         */
+        private void encode(boolean all) {
+            int from = this.encodedChars;
+            for (int i = Math.max(from + 1, this.scannedChars); i < this.buffer.length(); i++) {
+                char c = this.buffer.charAt(i);
+                boolean wordBoundary = Character.isWhitespace(c) && !Character.isWhitespace(this.buffer.charAt(i - 1));
+                if (wordBoundary || (i - from >= chunkSize * MAX_CHARS_PER_TOKEN && !Character.isLowSurrogate(c))) {
+                    addSegment(from, i);
+                    from = i;
+                }
+            }
+            this.scannedChars = this.buffer.length();
+            if (all && from < this.buffer.length()) {
+                addSegment(from, this.buffer.length());
+            }
+        }
+
+        private void addSegment(int from, int to) {
+            int tokens = encoding.countTokensOrdinary(this.buffer.substring(from, to));
+            this.segments.addLast(new Segment(to - from, tokens));
+            this.encodedTokens += tokens;
+            this.encodedChars = to;
+        }
+
+        /**
+         * Emits one chunk from the start of the buffer: the segments that fit in {@code chunkSize} tokens,
+         * cut back to the last sentence boundary past {@code minChunkSizeChars} if there are more.
+         */
+        private void emitChunk(boolean last) {
+            int cut = 0;
+            int tokens = 0;
+            boolean full = false;
+            for (Segment segment : this.segments) {
+                if (tokens + segment.tokens() > chunkSize) {
+                    full = true;
+                    break;
+                }
+                tokens += segment.tokens();
+                cut += segment.chars();
+            }
+            if (cut == 0) {
+                cut = splitSegment(this.segments.getFirst());
+            }
+
+            String text = this.buffer.substring(0, cut);
+            if (full) {
+                int lastPunctuation = Math.max(text.lastIndexOf('.'), Math.max(text.lastIndexOf('?'),
+                        Math.max(text.lastIndexOf('!'), text.lastIndexOf('\n'))));
+                if (lastPunctuation != -1 && lastPunctuation > minChunkSizeChars) {
+                    text = text.substring(0, lastPunctuation + 1);
+                }
+            }
+            consume(text.length());
+
+            String chunk = text.replace(System.lineSeparator(), " ").strip();
+            if (chunk.length() > minChunkLengthToEmbed) {
+                Map<String, Object> chunkMetadata = new HashMap<>(this.metadata);
+                chunkMetadata.put("chunkIndex", this.chunks);
+                this.chunkConsumer.accept(Document.builder()
+                        .text(chunk)
+                        .metadata(chunkMetadata)
+                        .build());
+
+                if (++this.chunks >= maxNumChunks) {
+                    this.buffer.setLength(0);
+                    throw new ChunkLimitReachedException();
+                }
+            }
+        }
+
+        /**
+         * @return the number of characters the first {@code chunkSize} tokens of a segment that is longer
+         * than that encode, at least one character
+         */
+        private int splitSegment(Segment segment) {
+            String text = this.buffer.substring(0, segment.chars());
+            IntArrayList tokens = encoding.encodeOrdinary(text);
+            IntArrayList head = new IntArrayList(chunkSize);
+            for (int i = 0; i < chunkSize; i++) {
+                head.add(tokens.get(i));
+            }
+            return Math.max(completeChars(encoding.decodeBytes(head)), Character.charCount(text.codePointAt(0)));
+        }
+
+        /**
+         * Drops the first {@code chars} characters from the buffer and its segments. A segment that was
+         * cut is tokenized again from the cut.
+         */
+        private void consume(int chars) {
+            int consumed = 0;
+            while (!this.segments.isEmpty() && consumed + this.segments.getFirst().chars() <= chars) {
+                Segment segment = this.segments.removeFirst();
+                consumed += segment.chars();
+                this.encodedTokens -= segment.tokens();
+            }
+            if (consumed < chars) {
+                Segment segment = this.segments.removeFirst();
+                this.encodedTokens -= segment.tokens();
+                int rest = consumed + segment.chars() - chars;
+                int tokens = encoding.countTokensOrdinary(this.buffer.substring(chars, chars + rest));
+                this.segments.addFirst(new Segment(rest, tokens));
+                this.encodedTokens += tokens;
+            }
+
+            this.buffer.delete(0, chars);
+            this.encodedChars -= chars;
+            this.scannedChars -= chars;
+        }
+    }
+
+    /**
+     * @return the number of characters in the longest complete prefix of the UTF-8 bytes; tokens can end
+     * inside a multi-byte character
+     */
+    static int completeChars(byte[] utf8) {
+        int chars = 0;
+        int i = 0;
+        while (i < utf8.length) {
+            int lead = utf8[i] & 0xFF;
+            int length = lead < 0x80 ? 1 : lead < 0xE0 ? 2 : lead < 0xF0 ? 3 : 4;
+            if (i + length > utf8.length) {
+                break;
+            }
+            chars += length == 4 ? 2 : 1;
+            i += length;
+        }
+        return chars;
+    }
+}
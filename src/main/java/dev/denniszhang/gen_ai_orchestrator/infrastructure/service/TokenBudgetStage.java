@@ -0,0 +1,53 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.EmbeddedDocument;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the best-ranked candidates that fit the knowledge budget. The first candidate that does not
+ * fit is cut to what is left of the budget, everything ranked below it is dropped.
+ */
+public class TokenBudgetStage implements RetrievalPipeline.Stage {
+    // A document cut shorter than this is more noise than knowledge
+    private static final int MIN_TRUNCATED_DOCUMENT_TOKENS = 64;
+
+    private final TokenCounter tokenCounter;
+    private final int maxTokens;
+
+    public TokenBudgetStage(TokenCounter tokenCounter, int maxTokens) {
+        Assert.notNull(tokenCounter, "tokenCounter cannot be null");
+        Assert.isTrue(maxTokens > 0, "maxTokens must be greater than 0");
+        this.tokenCounter = tokenCounter;
+        this.maxTokens = maxTokens;
+    }
+
+    @Override
+    public String name() {
+        return "budget";
+    }
+
+    @Override
+    public List<EmbeddedDocument> apply(String query, List<EmbeddedDocument> candidates) {
+        List<EmbeddedDocument> knowledge = new ArrayList<>(candidates.size());
+        int remaining = this.maxTokens;
+        for (EmbeddedDocument candidate : candidates) {
+            String text = candidate.document().getText();
+            int tokens = this.tokenCounter.count(text);
+            if (tokens <= remaining) {
+                knowledge.add(candidate);
+                remaining -= tokens;
+                continue;
+            }
+            if (remaining >= MIN_TRUNCATED_DOCUMENT_TOKENS) {
+                knowledge.add(new EmbeddedDocument(
+                        candidate.document().mutate().text(this.tokenCounter.truncate(text, remaining)).build(),
+                        candidate.embedding()));
+            }
+            break;
+        }
+        return knowledge;
+    }
+}
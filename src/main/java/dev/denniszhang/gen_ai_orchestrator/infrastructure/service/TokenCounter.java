@@ -0,0 +1,85 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingResult;
+import com.knuddels.jtokkit.api.EncodingType;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.util.Assert;
+
+import java.util.List;
+
+/**
+ * Counts prompt tokens with the CL100K encoding. The count of a message is cached by identity for as
+ * long as the message is reachable, so a conversation window is only tokenized once per message no
+ * matter how often it is trimmed or rendered.
+ * <p>
+ * Counts are an estimate for models with a different tokenizer, which is good enough for budgeting.
+ */
+public class TokenCounter {
+    private static final int DEFAULT_MAX_CACHED_MESSAGES = 100_000;
+    // Role and separators the chat format adds around every message
+    private static final int MESSAGE_OVERHEAD = 4;
+    private static final String TRUNCATION_MARKER = "\n[truncated]";
+
+    private final Encoding encoding = Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+    private final int truncationMarkerTokens = this.encoding.countTokensOrdinary(TRUNCATION_MARKER);
+    private final Cache<Message, Integer> messageTokens;
+
+    public TokenCounter() {
+        this(DEFAULT_MAX_CACHED_MESSAGES);
+    }
+
+    public TokenCounter(long maxCachedMessages) {
+        Assert.isTrue(maxCachedMessages > 0, "maxCachedMessages must be greater than 0");
+        this.messageTokens = Caffeine.newBuilder()
+                .weakKeys()
+                .maximumSize(maxCachedMessages)
+                .build();
+    }
+
+    public int count(String text) {
+        return text == null || text.isEmpty() ? 0 : this.encoding.countTokensOrdinary(text);
+    }
+
+    /**
+     * @return the tokens of the message text, its tool calls or tool responses, and the per-message overhead
+     */
+    public int count(Message message) {
+        return this.messageTokens.get(message, this::countUncached);
+    }
+
+    public int count(List<? extends Message> messages) {
+        return messages.stream().mapToInt(this::count).sum();
+    }
+
+    /**
+     * Cuts the text to at most {@code maxTokens} tokens, marker included. Text that fits is returned as is.
+     */
+    public String truncate(String text, int maxTokens) {
+        if (text == null || !this.encoding.encodeOrdinary(text, maxTokens).isTruncated()) {
+            return text;
+        }
+        EncodingResult head = this.encoding.encodeOrdinary(text, Math.max(maxTokens - this.truncationMarkerTokens, 0));
+        return this.encoding.decode(head.getTokens()) + TRUNCATION_MARKER;
+    }
+
+    private int countUncached(Message message) {
+        int tokens = MESSAGE_OVERHEAD + count(message.getText());
+        if (message instanceof AssistantMessage assistantMessage) {
+            for (AssistantMessage.ToolCall toolCall : assistantMessage.getToolCalls()) {
+                tokens += count(toolCall.name()) + count(toolCall.arguments());
+            }
+        }
+        if (message instanceof ToolResponseMessage toolResponseMessage) {
+            for (ToolResponseMessage.ToolResponse response : toolResponseMessage.getResponses()) {
+                tokens += count(response.name()) + count(response.responseData());
+            }
+        }
+        return tokens;
+    }
+}
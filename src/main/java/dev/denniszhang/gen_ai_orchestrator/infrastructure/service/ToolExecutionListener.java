@@ -0,0 +1,30 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+
+import java.time.Duration;
+
+/**
+ * Progress callbacks of {@link ParallelToolCallingManager}. Called from the threads running the tools,
+ * possibly concurrently. Every call ends with exactly one of finished or failed; a call that times out
+ * or is cancelled while waiting for a permit fails without having started.
+ */
+public interface ToolExecutionListener {
+    ToolExecutionListener NOOP = new ToolExecutionListener() {};
+
+    /**
+     * The calls of the turn have been handed to their threads. Running {@code cancel} interrupts the
+     * ones still running or waiting, which then fail.
+     */
+    default void onDispatched(Runnable cancel) {
+    }
+
+    default void onToolStarted(AssistantMessage.ToolCall toolCall) {
+    }
+
+    default void onToolFinished(AssistantMessage.ToolCall toolCall, String result, Duration duration) {
+    }
+
+    default void onToolFailed(AssistantMessage.ToolCall toolCall, String error, Duration duration) {
+    }
+}
@@ -1,51 +1,208 @@
 package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
 
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.ConversationWindow;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.SequencedMessage;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.AppendOnlyChatMemoryRepository;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.InMemoryAppendOnlyChatMemoryRepository;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.InMemoryToolMessageRepository;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.ToolMessageRepository;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import org.apache.commons.lang3.NotImplementedException;
-import org.springframework.ai.chat.memory.ChatMemory;
-import org.springframework.ai.chat.memory.ChatMemoryRepository;
-import org.springframework.ai.chat.memory.InMemoryChatMemoryRepository;
 import org.springframework.ai.chat.messages.*;
-import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.SearchRequest;
-import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.util.Assert;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Chat memory that keeps a bounded window of each conversation in a write-behind cache.
+ * <p>
+ * The window is bounded by message count and by tokens. A new system message is cut to
+ * {@code maxSystemTokens} and a tool response message to {@code maxToolOutputTokens}, shared among its
+ * responses. Everything but the system message must fit in {@code maxHistoryTokens}; over budget, the
+ * lowest-value history is evicted first (see {@link #evictionOrder(List)}) and handed to the
+ * {@link ChatMemoryEvictionListener}.
+ * <p>
+ * A summary of evicted history is a system message starting with {@link #SUMMARY_PREFIX}. It is kept
+ * right after the system prompt, is never evicted and survives a new system prompt.
+ * <p>
+ * Reading a window from the repositories and writing it back are observed as
+ * {@code orchestrator.memory.load} and {@code orchestrator.memory.save}.
+ */
+public class ToolMessageWindowChatMemoryImpl implements WriteBehindChatMemory, AutoCloseable {
+    public static final String SUMMARY_PREFIX = "Summary of the earlier conversation:\n";
 
-public class ToolMessageWindowChatMemoryImpl implements ChatMemory {
     private static final int DEFAULT_MAX_MESSAGES = 20;
+    private static final int DEFAULT_MAX_SYSTEM_TOKENS = 2000;
+    private static final int DEFAULT_MAX_HISTORY_TOKENS = 8000;
+    private static final int DEFAULT_MAX_TOOL_OUTPUT_TOKENS = 4000;
+    private static final int DEFAULT_MAX_CONVERSATIONS = 1000;
+    private static final Duration DEFAULT_TTL = Duration.ofMinutes(30);
+    private static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofSeconds(5);
 
-    private final ChatMemoryRepository chatMemoryRepository;
+    private final AppendOnlyChatMemoryRepository chatMemoryRepository;
 
-    private final VectorStore vectorStore;
+    private final ToolMessageRepository toolMessageRepository;
 
     private final int maxMessages;
 
-    private ToolMessageWindowChatMemoryImpl(ChatMemoryRepository chatMemoryRepository, VectorStore vectorStore, int maxMessages) {
-        Assert.notNull(vectorStore, "vectorStore cannot be null");
+    private final TokenCounter tokenCounter;
+
+    private final int maxSystemTokens;
+
+    private final int maxHistoryTokens;
+
+    private final int maxToolOutputTokens;
+
+    private final ChatMemoryEvictionListener evictionListener;
+
+    private final ObservationRegistry observationRegistry;
+
+    private final WriteBehindCache<ConversationWindow> windows;
+
+    private ToolMessageWindowChatMemoryImpl(AppendOnlyChatMemoryRepository chatMemoryRepository, ToolMessageRepository toolMessageRepository,
+                                            int maxMessages, TokenCounter tokenCounter, int maxSystemTokens, int maxHistoryTokens,
+                                            int maxToolOutputTokens, ChatMemoryEvictionListener evictionListener,
+                                            ObservationRegistry observationRegistry, int maxConversations, Duration ttl,
+                                            Duration flushInterval) {
+        Assert.notNull(toolMessageRepository, "toolMessageRepository cannot be null");
         Assert.notNull(chatMemoryRepository, "chatMemoryRepository cannot be null");
+        Assert.notNull(tokenCounter, "tokenCounter cannot be null");
+        Assert.notNull(evictionListener, "evictionListener cannot be null");
+        Assert.notNull(observationRegistry, "observationRegistry cannot be null");
         Assert.isTrue(maxMessages > 0, "maxMessages must be greater than 0");
+        Assert.isTrue(maxSystemTokens > 0, "maxSystemTokens must be greater than 0");
+        Assert.isTrue(maxHistoryTokens > 0, "maxHistoryTokens must be greater than 0");
+        Assert.isTrue(maxToolOutputTokens > 0, "maxToolOutputTokens must be greater than 0");
 
         this.chatMemoryRepository = chatMemoryRepository;
-        this.vectorStore = vectorStore;
+        this.toolMessageRepository = toolMessageRepository;
         this.maxMessages = maxMessages;
+        this.tokenCounter = tokenCounter;
+        this.maxSystemTokens = maxSystemTokens;
+        this.maxHistoryTokens = maxHistoryTokens;
+        this.maxToolOutputTokens = maxToolOutputTokens;
+        this.evictionListener = evictionListener;
+        this.observationRegistry = observationRegistry;
+        this.windows = new WriteBehindCache<>(maxConversations, ttl, flushInterval,
+                conversationId -> observation("memory.load", conversationId).observe(() -> getAll(conversationId)),
+                (conversationId, window) -> observation("memory.save", conversationId).observe(() -> saveAll(conversationId, window)),
+                ConversationWindow::afterWriteOf);
     }
 
     @Override
     public void add(String conversationId, List<Message> messages) {
+        addAndGet(conversationId, messages);
+    }
+
+    @Override
+    public List<Message> addAndGet(String conversationId, List<Message> messages) {
         Assert.hasText(conversationId, "conversationId cannot be null or empty");
         Assert.notNull(messages, "messages cannot be null");
         Assert.noNullElements(messages, "messages cannot contain null elements");
 
-        List<Message> memoryMessages = getAll(conversationId);
-        List<Message> processedMessages = process(memoryMessages, messages);
-        saveAll(conversationId, processedMessages);
+        List<Message> evicted = new ArrayList<>();
+        ConversationWindow window = this.windows.update(conversationId, current -> process(current, messages, evicted));
+        if (!evicted.isEmpty()) {
+            this.evictionListener.onEvicted(this, conversationId, List.copyOf(evicted));
+        }
+        return window.getMessages();
+    }
+
+    /**
+     * Drops the last message of the window, deleting it from the repositories on the next write if it
+     * was already written, and adds the message in its place like {@link #add(String, List)}.
+     */
+    @Override
+    public void replaceLast(String conversationId, Message message) {
+        Assert.hasText(conversationId, "conversationId cannot be null or empty");
+        Assert.notNull(message, "message cannot be null");
+
+        List<Message> evicted = new ArrayList<>();
+        this.windows.update(conversationId, current -> {
+            List<SequencedMessage> messages = current.messages();
+            ConversationWindow window = messages.isEmpty() ? current : current.next(messages.subList(0, messages.size() - 1),
+                    current.nextSeq(), List.of(messages.getLast().seq()));
+            return process(window, List.of(message), evicted);
+        });
+        if (!evicted.isEmpty()) {
+            this.evictionListener.onEvicted(this, conversationId, List.copyOf(evicted));
+        }
     }
 
     @Override
     public List<Message> get(String conversationId) {
         Assert.hasText(conversationId, "conversationId cannot be null or empty");
-        return getAll(conversationId);
+        return this.windows.get(conversationId).getMessages();
+    }
+
+    @Override
+    public void flush(String conversationId) {
+        Assert.hasText(conversationId, "conversationId cannot be null or empty");
+        this.windows.flush(conversationId);
+    }
+
+    @Override
+    public void whenFlushed(String conversationId, Runnable action) {
+        Assert.hasText(conversationId, "conversationId cannot be null or empty");
+        this.windows.whenWritten(conversationId, action);
+    }
+
+    /**
+     * Writes the conversation back if it changed and drops it from the cache, so the next access reads
+     * it from the repositories.
+     */
+    public void evict(String conversationId) {
+        Assert.hasText(conversationId, "conversationId cannot be null or empty");
+        this.windows.evict(conversationId);
+    }
+
+    /**
+     * @return the text of the conversation's summary, without {@link #SUMMARY_PREFIX}
+     */
+    public Optional<String> getSummary(String conversationId) {
+        Assert.hasText(conversationId, "conversationId cannot be null or empty");
+        return this.windows.get(conversationId).getMessages().stream()
+                .filter(ToolMessageWindowChatMemoryImpl::isSummary)
+                .map(message -> message.getText().substring(SUMMARY_PREFIX.length()))
+                .findFirst();
+    }
+
+    /**
+     * Replaces the conversation's summary, cut to {@code maxSystemTokens}.
+     */
+    public void updateSummary(String conversationId, String summary) {
+        Assert.hasText(conversationId, "conversationId cannot be null or empty");
+        Assert.hasText(summary, "summary cannot be null or empty");
+
+        Message summaryMessage = SystemMessage.builder()
+                .text(SUMMARY_PREFIX + this.tokenCounter.truncate(summary, this.maxSystemTokens))
+                .build();
+        this.windows.update(conversationId, window -> {
+            List<SequencedMessage> messages = new ArrayList<>();
+            List<Long> removedSeqs = new ArrayList<>();
+            for (SequencedMessage message : window.messages()) {
+                if (isSummary(message.message())) {
+                    removedSeqs.add(message.seq());
+                }
+                else {
+                    messages.add(message);
+                }
+            }
+            messages.add(new SequencedMessage(window.nextSeq(), summaryMessage));
+            return window.next(withSummaryFirst(messages), window.nextSeq() + 1, removedSeqs);
+        });
+    }
+
+    public static boolean isSummary(Message message) {
+        return message instanceof SystemMessage && message.getText() != null && message.getText().startsWith(SUMMARY_PREFIX);
+    }
+
+    @Override
+    public void close() {
+        this.windows.close();
     }
 
     @Override
@@ -54,161 +211,215 @@ public class ToolMessageWindowChatMemoryImpl implements ChatMemory {
         throw new NotImplementedException();
     }
 
-    private List<Message> process(List<Message> memoryMessages, List<Message> newMessages) {
-        List<Message> processedMessages = new ArrayList<>();
+    private ConversationWindow process(ConversationWindow window, List<Message> newMessages, List<Message> evicted) {
+        List<SequencedMessage> processedMessages = new ArrayList<>();
+        List<Long> removedSeqs = new ArrayList<>();
+        long nextSeq = window.nextSeq();
 
-        Set<Message> memoryMessagesSet = new HashSet<>(memoryMessages);
-        boolean hasNewSystemMessage = newMessages.stream()
+        List<Message> budgetedMessages = newMessages.stream()
+                .map(this::applyBudget)
+                .toList();
+
+        Set<Message> memoryMessagesSet = new HashSet<>(window.getMessages());
+        boolean hasNewSystemMessage = budgetedMessages.stream()
                 .filter(SystemMessage.class::isInstance)
                 .anyMatch(message -> !memoryMessagesSet.contains(message));
 
-        memoryMessages.stream()
-                .filter(message -> !(hasNewSystemMessage && message instanceof SystemMessage))
-                .forEach(processedMessages::add);
-
-        processedMessages.addAll(newMessages);
+        for (SequencedMessage memoryMessage : window.messages()) {
+            if (hasNewSystemMessage && memoryMessage.message() instanceof SystemMessage && !isSummary(memoryMessage.message())) {
+                removedSeqs.add(memoryMessage.seq());
+            }
+            else {
+                processedMessages.add(memoryMessage);
+            }
+        }
 
-        if (processedMessages.size() <= this.maxMessages) {
-            return processedMessages;
+        for (Message message : budgetedMessages) {
+            processedMessages.add(new SequencedMessage(nextSeq++, message));
         }
 
-        int messagesToRemove = processedMessages.size() - this.maxMessages;
+        int size = processedMessages.size();
+        int historyTokens = processedMessages.stream()
+                .map(SequencedMessage::message)
+                .filter(message -> !(message instanceof SystemMessage))
+                .mapToInt(this.tokenCounter::count)
+                .sum();
+        if (size <= this.maxMessages && historyTokens <= this.maxHistoryTokens) {
+            return window.next(withSummaryFirst(processedMessages), nextSeq, removedSeqs);
+        }
 
-        List<Message> trimmedMessages = new ArrayList<>();
-        int removed = 0;
-        for (Message message : processedMessages) {
-            if (message instanceof SystemMessage || removed >= messagesToRemove) {
-                trimmedMessages.add(message);
+        Set<Long> evictedSeqs = new HashSet<>();
+        for (List<SequencedMessage> unit : evictionOrder(processedMessages)) {
+            if (size <= this.maxMessages && historyTokens <= this.maxHistoryTokens) {
+                break;
             }
-            else {
-                removed++;
+            for (SequencedMessage message : unit) {
+                evictedSeqs.add(message.seq());
+                removedSeqs.add(message.seq());
+                evicted.add(message.message());
+                historyTokens -= this.tokenCounter.count(message.message());
+                size--;
             }
         }
 
-        return trimmedMessages;
+        List<SequencedMessage> trimmedMessages = processedMessages.stream()
+                .filter(message -> !evictedSeqs.contains(message.seq()))
+                .toList();
+        return window.next(withSummaryFirst(trimmedMessages), nextSeq, removedSeqs);
     }
 
-    private List<Document> getDocs(String conversationId) {
-        return this.vectorStore.similaritySearch(SearchRequest.builder()
-                    .filterExpression("conversationId == '" + conversationId + "'") // Only this chat's data
-                    .similarityThreshold(0.7d) // Lower threshold to catch exact data matches
-                    .build());
+    /**
+     * Cuts a system message or the responses of a tool response message down to their token budget.
+     */
+    private Message applyBudget(Message message) {
+        if (message instanceof SystemMessage systemMessage
+                && this.tokenCounter.count(systemMessage.getText()) > this.maxSystemTokens) {
+            return SystemMessage.builder()
+                    .text(this.tokenCounter.truncate(systemMessage.getText(), this.maxSystemTokens))
+                    .metadata(systemMessage.getMetadata())
+                    .build();
+        }
+        if (message instanceof ToolResponseMessage toolResponseMessage) {
+            return truncateToolOutput(toolResponseMessage);
+        }
+        return message;
     }
 
-    private List<Message> getAll(String conversationId) {
-        var memory = this.chatMemoryRepository.findByConversationId(conversationId);
-        var documents = getDocs(conversationId);
-
-        Integer idx = null;
-        for (var document : documents) {
-            var metadata = document.getMetadata();
-            idx = (Integer) metadata.get("index");
+    private ToolResponseMessage truncateToolOutput(ToolResponseMessage message) {
+        List<ToolResponseMessage.ToolResponse> responses = message.getResponses();
+        int[] tokens = responses.stream()
+                .mapToInt(response -> this.tokenCounter.count(response.responseData()))
+                .toArray();
+        if (Arrays.stream(tokens).sum() <= this.maxToolOutputTokens) {
+            return message;
+        }
 
-            metadata.remove("index");
-            metadata.remove("conversationId");
-            metadata.put("id", document.getId());
+        // Smaller responses are kept whole and what they leave of the budget is shared by the larger ones
+        List<Integer> bySize = IntStream.range(0, tokens.length).boxed()
+                .sorted(Comparator.comparingInt(i -> tokens[i]))
+                .toList();
+        int[] allowance = new int[tokens.length];
+        int remaining = this.maxToolOutputTokens;
+        for (int k = 0; k < bySize.size(); k++) {
+            int i = bySize.get(k);
+            allowance[i] = Math.min(tokens[i], remaining / (bySize.size() - k));
+            remaining -= allowance[i];
+        }
 
-            Message message = null;
-            if (metadata.get("messageType").equals("ASSISTANT")) {
-                var toolCalls = ((List<LinkedHashMap<String, String>>) metadata.get("toolCalls")).stream()
-                        .map(map ->
-                                new AssistantMessage.ToolCall(
-                                                                map.get("id"),
-                                                                map.get("type"),
-                                                                map.get("name"),
-                                                                map.get("arguments")
-                                                        ))
-                        .toList();
-                metadata.remove("toolCalls");
+        List<ToolResponseMessage.ToolResponse> truncated = new ArrayList<>(responses.size());
+        for (int i = 0; i < responses.size(); i++) {
+            ToolResponseMessage.ToolResponse response = responses.get(i);
+            truncated.add(tokens[i] <= allowance[i] ? response : new ToolResponseMessage.ToolResponse(response.id(),
+                    response.name(), this.tokenCounter.truncate(response.responseData(), allowance[i])));
+        }
+        return ToolResponseMessage.builder()
+                .responses(truncated)
+                .metadata(message.getMetadata())
+                .build();
+    }
 
-                message = AssistantMessage.builder()
-                        .content(document.getText())
-                        .toolCalls(toolCalls)
-                        .properties(metadata)
-                        .build();
+    /**
+     * Groups the history into units that are evicted together, lowest value first. An assistant message
+     * with tool calls and the tool responses that follow it form one unit, so a call is never kept
+     * without its result. Tool exchanges of earlier turns go first, since their results already went into
+     * an answer, then the rest of the earlier turns oldest first, then the tool exchanges of the current
+     * turn. System messages, the latest user message and the newest unit are never evicted.
+     */
+    private static List<List<SequencedMessage>> evictionOrder(List<SequencedMessage> messages) {
+        List<List<SequencedMessage>> units = new ArrayList<>();
+        int lastUserUnit = -1;
+        for (SequencedMessage sequencedMessage : messages) {
+            Message message = sequencedMessage.message();
+            if (message instanceof SystemMessage) {
+                continue;
             }
-            if (metadata.get("messageType").equals("TOOL")) {
-                var toolResponses = ((List<LinkedHashMap<String, String>>) metadata.get("toolResponses")).stream()
-                        .map(map -> new ToolResponseMessage.ToolResponse(
-                                map.get("id"),
-                                map.get("type"),
-                                map.get("responseData")
-                        ))
-                        .toList();
-                metadata.remove("toolResponses");
-
-                message = ToolResponseMessage.builder()
-                        .responses(toolResponses)
-                        .metadata(metadata)
-                        .build();
+            if (message instanceof ToolResponseMessage && !units.isEmpty() && isToolExchange(units.getLast())) {
+                units.getLast().add(sequencedMessage);
+            }
+            else {
+                units.add(new ArrayList<>(List.of(sequencedMessage)));
+                if (message instanceof UserMessage) {
+                    lastUserUnit = units.size() - 1;
+                }
             }
-
-            memory.add(idx, message);
         }
 
-        return memory;
+        int newestUnit = Math.max(units.size() - 1, 0);
+        List<List<SequencedMessage>> earlierTurns = units.subList(0, Math.max(lastUserUnit, 0));
+        List<List<SequencedMessage>> order = new ArrayList<>(units.size());
+        earlierTurns.stream().filter(ToolMessageWindowChatMemoryImpl::isToolExchange).forEach(order::add);
+        earlierTurns.stream().filter(unit -> !isToolExchange(unit)).forEach(order::add);
+        order.addAll(units.subList(Math.min(lastUserUnit + 1, newestUnit), newestUnit));
+        return order;
+    }
+
+    private static boolean isToolExchange(List<SequencedMessage> unit) {
+        Message first = unit.getFirst().message();
+        return first instanceof ToolResponseMessage
+                || (first instanceof AssistantMessage assistantMessage && assistantMessage.hasToolCalls());
+    }
+
+    private ConversationWindow getAll(String conversationId) {
+        List<SequencedMessage> memory = new ArrayList<>(this.chatMemoryRepository.findWindow(conversationId));
+        memory.addAll(this.toolMessageRepository.findByConversationId(conversationId));
+
+        memory.sort(Comparator.comparingLong(SequencedMessage::seq));
+        return ConversationWindow.of(withSummaryFirst(memory));
     }
 
-    private void saveAll(String conversationId, List<Message> messages) {
-        final String ID = "id";
-        List<Message> chatMessages = new ArrayList<>();
-        List<Document> toolMessages = new ArrayList<>();
+    /**
+     * Puts system messages first and the summary, which is written after the history it precedes, right
+     * after the system prompt.
+     */
+    private static List<SequencedMessage> withSummaryFirst(List<SequencedMessage> messages) {
+        List<SequencedMessage> ordered = new ArrayList<>(messages.size());
+        messages.stream().filter(message -> message.message() instanceof SystemMessage && !isSummary(message.message())).forEach(ordered::add);
+        messages.stream().filter(message -> isSummary(message.message())).forEach(ordered::add);
+        messages.stream().filter(message -> !(message.message() instanceof SystemMessage)).forEach(ordered::add);
+        return ordered;
+    }
+
+    private ConversationWindow saveAll(String conversationId, ConversationWindow window) {
+        List<SequencedMessage> chatMessages = new ArrayList<>();
+        List<SequencedMessage> toolMessages = new ArrayList<>();
 
-        for(int i = 0; i < messages.size(); i++) {
-            Message message = messages.get(i);
-            Map<String, Object> metadata = message.getMetadata();
+        for (SequencedMessage sequencedMessage : window.unpersisted()) {
+            Message message = sequencedMessage.message();
             switch (message.getMessageType()) {
 
                 case MessageType.SYSTEM, MessageType.USER:
-                    chatMessages.add(message);
+                    chatMessages.add(sequencedMessage);
                     break;
 
                 case MessageType.ASSISTANT:
-                    if (!message.getText().isEmpty())
-                        chatMessages.add(message);
-                    else if (!metadata.containsKey(ID)) {
-                        metadata.put("conversationId", conversationId);
-                        metadata.put("index", i);
-                        toolMessages.add(toDocument(message));
-                    }
+                    if (((AssistantMessage) message).hasToolCalls())
+                        toolMessages.add(sequencedMessage);
+                    else
+                        chatMessages.add(sequencedMessage);
                     break;
 
                 case MessageType.TOOL:
-                    if (!metadata.containsKey(ID)) {
-                        metadata.put("conversationId", conversationId);
-                        metadata.put("index", i);
-                        toolMessages.add(toDocument(message));
-                    }
+                    toolMessages.add(sequencedMessage);
                     break;
 
                 default:
                     throw new RuntimeException("Unhandled message type: " + message.getMessageType());
             }
-        };
-
-        this.chatMemoryRepository.saveAll(conversationId, chatMessages);
-        this.vectorStore.accept(toolMessages);
-    }
-
-    private Document toDocument(Message message) {
-        Map<String, Object> metadata = new HashMap<>(message.getMetadata() != null ? message.getMetadata() : new HashMap<>());
+        }
 
-        if (message instanceof AssistantMessage assistantMessage) {
-            metadata.put("toolCalls",  assistantMessage.getToolCalls());
+        for (ConversationWindow.SeqRange range : window.removedRanges()) {
+            this.chatMemoryRepository.deleteRange(conversationId, range.from(), range.to());
+            this.toolMessageRepository.deleteRange(conversationId, range.from(), range.to());
+        }
+        this.chatMemoryRepository.append(conversationId, chatMessages);
+        this.toolMessageRepository.append(conversationId, toolMessages);
 
-            return Document.builder()
-                    .text(assistantMessage.getText())
-                    .metadata(metadata)
-                    .build();
-        } else if (message instanceof ToolResponseMessage toolMessage) {
-            metadata.put("toolResponses", toolMessage.getResponses());
+        return window.markPersisted();
+    }
 
-            return Document.builder()
-                    .text(toolMessage.getText())
-                    .metadata(metadata)
-                    .build();
-        }
-        throw new RuntimeException("Unknown message type: " + message.getMessageType());
+    private Observation observation(String stage, String conversationId) {
+        return Observation.createNotStarted(ConversationStats.PREFIX + stage, this.observationRegistry)
+                .highCardinalityKeyValue(ConversationStats.CONVERSATION_ID, conversationId);
     }
 
     public static ToolMessageWindowChatMemoryImpl.Builder builder() {
@@ -217,22 +428,40 @@ public class ToolMessageWindowChatMemoryImpl implements ChatMemory {
 
     public static final class Builder {
 
-        private ChatMemoryRepository chatMemoryRepository;
+        private AppendOnlyChatMemoryRepository chatMemoryRepository;
 
         private int maxMessages = DEFAULT_MAX_MESSAGES;
 
-        private  VectorStore vectorStore;
+        private TokenCounter tokenCounter;
+
+        private int maxSystemTokens = DEFAULT_MAX_SYSTEM_TOKENS;
+
+        private int maxHistoryTokens = DEFAULT_MAX_HISTORY_TOKENS;
+
+        private int maxToolOutputTokens = DEFAULT_MAX_TOOL_OUTPUT_TOKENS;
+
+        private ChatMemoryEvictionListener evictionListener = ChatMemoryEvictionListener.NOOP;
+
+        private ObservationRegistry observationRegistry = ObservationRegistry.NOOP;
+
+        private ToolMessageRepository toolMessageRepository;
+
+        private int maxConversations = DEFAULT_MAX_CONVERSATIONS;
+
+        private Duration ttl = DEFAULT_TTL;
+
+        private Duration flushInterval = DEFAULT_FLUSH_INTERVAL;
 
         private Builder() {
         }
 
-        public ToolMessageWindowChatMemoryImpl.Builder chatMemoryRepository(ChatMemoryRepository chatMemoryRepository) {
+        public ToolMessageWindowChatMemoryImpl.Builder chatMemoryRepository(AppendOnlyChatMemoryRepository chatMemoryRepository) {
             this.chatMemoryRepository = chatMemoryRepository;
             return this;
         }
 
-        public ToolMessageWindowChatMemoryImpl.Builder vectorStore(VectorStore vectorStore) {
-            this.vectorStore = vectorStore;
+        public ToolMessageWindowChatMemoryImpl.Builder toolMessageRepository(ToolMessageRepository toolMessageRepository) {
+            this.toolMessageRepository = toolMessageRepository;
             return this;
         }
 
@@ -241,12 +470,64 @@ public class ToolMessageWindowChatMemoryImpl implements ChatMemory {
             return this;
         }
 
+        public ToolMessageWindowChatMemoryImpl.Builder tokenCounter(TokenCounter tokenCounter) {
+            this.tokenCounter = tokenCounter;
+            return this;
+        }
+
+        public ToolMessageWindowChatMemoryImpl.Builder maxSystemTokens(int maxSystemTokens) {
+            this.maxSystemTokens = maxSystemTokens;
+            return this;
+        }
+
+        public ToolMessageWindowChatMemoryImpl.Builder maxHistoryTokens(int maxHistoryTokens) {
+            this.maxHistoryTokens = maxHistoryTokens;
+            return this;
+        }
+
+        public ToolMessageWindowChatMemoryImpl.Builder maxToolOutputTokens(int maxToolOutputTokens) {
+            this.maxToolOutputTokens = maxToolOutputTokens;
+            return this;
+        }
+
+        public ToolMessageWindowChatMemoryImpl.Builder evictionListener(ChatMemoryEvictionListener evictionListener) {
+            this.evictionListener = evictionListener;
+            return this;
+        }
+
+        public ToolMessageWindowChatMemoryImpl.Builder observationRegistry(ObservationRegistry observationRegistry) {
+            this.observationRegistry = observationRegistry;
+            return this;
+        }
+
+        public ToolMessageWindowChatMemoryImpl.Builder maxConversations(int maxConversations) {
+            this.maxConversations = maxConversations;
+            return this;
+        }
+
+        public ToolMessageWindowChatMemoryImpl.Builder ttl(Duration ttl) {
+            this.ttl = ttl;
+            return this;
+        }
+
+        public ToolMessageWindowChatMemoryImpl.Builder flushInterval(Duration flushInterval) {
+            this.flushInterval = flushInterval;
+            return this;
+        }
+
         public ToolMessageWindowChatMemoryImpl build() {
             if (this.chatMemoryRepository == null) {
-                this.chatMemoryRepository = new InMemoryChatMemoryRepository();
+                this.chatMemoryRepository = new InMemoryAppendOnlyChatMemoryRepository();
+            }
+            if (this.toolMessageRepository == null) {
+                this.toolMessageRepository = new InMemoryToolMessageRepository();
+            }
+            if (this.tokenCounter == null) {
+                this.tokenCounter = new TokenCounter();
             }
-            Assert.notNull(this.vectorStore, "vectorStore must be provided");
-            return new ToolMessageWindowChatMemoryImpl(this.chatMemoryRepository, this.vectorStore, this.maxMessages);
+            return new ToolMessageWindowChatMemoryImpl(this.chatMemoryRepository, this.toolMessageRepository, this.maxMessages,
+                    this.tokenCounter, this.maxSystemTokens, this.maxHistoryTokens, this.maxToolOutputTokens,
+                    this.evictionListener, this.observationRegistry, this.maxConversations, this.ttl, this.flushInterval);
         }
     }
 }
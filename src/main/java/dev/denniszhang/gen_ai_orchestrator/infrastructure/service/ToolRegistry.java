@@ -0,0 +1,178 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.exception.UnknownToolException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+import org.springframework.util.Assert;
+import org.springframework.util.CollectionUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Snapshot of the tools the agent offers the model. Listing tools can mean a round trip to the MCP
+ * gateway and a tool definition can be rebuilt (and its JSON schema re-serialized) on every access,
+ * so callbacks and definitions are captured once and served from memory on every iteration.
+ * <p>
+ * The snapshot is taken on first use and refreshed on {@link #refreshAsync()} (wired to MCP
+ * {@code notifications/tools/list_changed}) and every {@code refreshInterval}, if set. A failed refresh
+ * is logged and the previous snapshot stays in use.
+ */
+public class ToolRegistry implements AutoCloseable {
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final Supplier<ToolCallback[]> source;
+    private final ScheduledExecutorService scheduler;
+    private volatile Snapshot snapshot;
+
+    public ToolRegistry(Supplier<ToolCallback[]> source) {
+        this(source, Duration.ZERO);
+    }
+
+    /**
+     * @param source lists the current tools
+     * @param refreshInterval how often to refresh regardless of notifications; zero to refresh on notifications only
+     */
+    public ToolRegistry(Supplier<ToolCallback[]> source, Duration refreshInterval) {
+        Assert.notNull(source, "source cannot be null");
+        Assert.isTrue(refreshInterval != null && !refreshInterval.isNegative(), "refreshInterval cannot be negative");
+
+        this.source = source;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("tool-registry-refresh").daemon().factory());
+        if (refreshInterval.isPositive()) {
+            this.scheduler.scheduleWithFixedDelay(this::refreshQuietly,
+                    refreshInterval.toMillis(), refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public List<ToolCallback> getToolCallbacks() {
+        return current().callbacks();
+    }
+
+    /**
+     * @param names the tools a request is limited to; {@code null} or empty for all
+     * @throws UnknownToolException if a name isn't one of the current tools
+     */
+    public List<ToolCallback> getToolCallbacks(Collection<String> names) {
+        if (CollectionUtils.isEmpty(names)) {
+            return getToolCallbacks();
+        }
+        Map<String, ToolCallback> byName = current().byName();
+        List<String> unknown = names.stream()
+                .filter(name -> !byName.containsKey(name))
+                .distinct()
+                .toList();
+        if (!unknown.isEmpty()) {
+            throw new UnknownToolException(unknown);
+        }
+        return names.stream()
+                .distinct()
+                .map(byName::get)
+                .toList();
+    }
+
+    public Instant getRefreshedAt() {
+        return current().refreshedAt();
+    }
+
+    /**
+     * Lists the tools again and replaces the snapshot.
+     */
+    public synchronized void refresh() {
+        Map<String, ToolCallback> byName = new LinkedHashMap<>();
+        for (ToolCallback callback : this.source.get()) {
+            SnapshotToolCallback snapshotCallback = new SnapshotToolCallback(callback);
+            byName.putIfAbsent(snapshotCallback.getToolDefinition().name(), snapshotCallback);
+        }
+        this.snapshot = new Snapshot(List.copyOf(byName.values()), Map.copyOf(byName), Instant.now());
+        logger.debug("Tool registry refreshed with {} tools", byName.size());
+    }
+
+    /**
+     * Refreshes on the registry's own thread, for callers that must not block (e.g. MCP notification handlers).
+     */
+    public void refreshAsync() {
+        this.scheduler.execute(this::refreshQuietly);
+    }
+
+    @Override
+    public void close() {
+        this.scheduler.shutdownNow();
+    }
+
+    private Snapshot current() {
+        Snapshot current = this.snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (this.snapshot == null) {
+                    refresh();
+                }
+                current = this.snapshot;
+            }
+        }
+        return current;
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to refresh the tool registry, keeping the previous tools", e);
+        }
+    }
+
+    private record Snapshot(List<ToolCallback> callbacks, Map<String, ToolCallback> byName, Instant refreshedAt) {}
+
+    /**
+     * Serves the definition captured when the snapshot was taken instead of asking the delegate each time.
+     */
+    private static final class SnapshotToolCallback implements ToolCallback {
+        private final ToolCallback delegate;
+        private final ToolDefinition definition;
+        private final ToolMetadata metadata;
+
+        private SnapshotToolCallback(ToolCallback delegate) {
+            ToolDefinition definition = delegate.getToolDefinition();
+            this.delegate = delegate;
+            this.definition = ToolDefinition.builder()
+                    .name(definition.name())
+                    .description(definition.description())
+                    .inputSchema(definition.inputSchema())
+                    .build();
+            this.metadata = delegate.getToolMetadata();
+        }
+
+        @Override
+        public ToolDefinition getToolDefinition() {
+            return this.definition;
+        }
+
+        @Override
+        public ToolMetadata getToolMetadata() {
+            return this.metadata;
+        }
+
+        @Override
+        public String call(String toolInput) {
+            return this.delegate.call(toolInput);
+        }
+
+        @Override
+        public String call(String toolInput, ToolContext toolContext) {
+            return this.delegate.call(toolInput, toolContext);
+        }
+    }
+}
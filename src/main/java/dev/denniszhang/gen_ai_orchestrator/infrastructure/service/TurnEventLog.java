@@ -0,0 +1,147 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.denniszhang.gen_ai_orchestrator.core.model.AgentEvent;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.LoggedEvent;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gives the events streamed for a conversation ids, and keeps the last {@code maxEvents} of its last
+ * turn, so a client that lost the connection can reconnect with {@code Last-Event-ID} and get the
+ * events it missed instead of running the turn again.
+ * <p>
+ * Ids are {@code <log>-<seq>}: a log is started by every turn and continued by every resume of it, and
+ * its events are numbered from 0. Logs are kept in memory, for {@code retention} after their last use
+ * and for {@code maxConversations} conversations at most; an id from a log that is gone (an earlier
+ * turn, another node, a restart) replays nothing.
+ */
+public class TurnEventLog {
+    // Seeded with the time so ids from before a restart don't name a log of this one
+    private final AtomicLong logIds = new AtomicLong(System.currentTimeMillis());
+    private final int maxEvents;
+    private final Cache<String, Log> logs;
+
+    public TurnEventLog(int maxEvents, int maxConversations, Duration retention) {
+        Assert.isTrue(maxEvents > 0, "maxEvents must be greater than 0");
+        Assert.isTrue(maxConversations > 0, "maxConversations must be greater than 0");
+        Assert.isTrue(retention != null && retention.isPositive(), "retention must be positive");
+        this.maxEvents = maxEvents;
+        this.logs = Caffeine.newBuilder()
+                .maximumSize(maxConversations)
+                .expireAfterAccess(retention)
+                .build();
+    }
+
+    /**
+     * Starts a new log for the turn and logs its events as they pass.
+     */
+    public Flux<LoggedEvent> record(String conversationId, Flux<AgentEvent> events) {
+        Assert.hasText(conversationId, "conversationId cannot be null or empty");
+        Assert.notNull(events, "events cannot be null");
+        return Flux.defer(() -> {
+            Log log = new Log(Long.toString(this.logIds.incrementAndGet(), 36), this.maxEvents);
+            this.logs.put(conversationId, log);
+            return log.append(events);
+        });
+    }
+
+    /**
+     * Replays the events logged after {@code lastEventId}, once the events being logged for the
+     * conversation have ended, then logs the {@code continuation} to the same log.
+     *
+     * @param lastEventId the last event the client got; {@code null} to replay nothing
+     */
+    public Flux<LoggedEvent> resume(String conversationId, String lastEventId, Flux<AgentEvent> continuation) {
+        Assert.hasText(conversationId, "conversationId cannot be null or empty");
+        Assert.notNull(continuation, "continuation cannot be null");
+        return Flux.defer(() -> {
+            Log log = this.logs.getIfPresent(conversationId);
+            if (log == null) {
+                return record(conversationId, continuation);
+            }
+            long after = log.sequenceOf(lastEventId);
+            return log.idle()
+                    .thenMany(Flux.defer(() -> Flux.fromIterable(log.after(after))))
+                    .concatWith(log.append(continuation));
+        });
+    }
+
+    private static final class Log {
+        private final String id;
+        private final int maxEvents;
+        private final Deque<LoggedEvent> events = new ArrayDeque<>();
+        private long nextSeq;
+        private Sinks.Empty<Void> appending;
+
+        private Log(String id, int maxEvents) {
+            this.id = id;
+            this.maxEvents = maxEvents;
+            this.appending = Sinks.empty();
+            this.appending.tryEmitEmpty();
+        }
+
+        private Flux<LoggedEvent> append(Flux<AgentEvent> events) {
+            return Flux.defer(() -> {
+                Sinks.Empty<Void> ended = Sinks.empty();
+                synchronized (this) {
+                    this.appending = ended;
+                }
+                return events.map(this::add)
+                        .doFinally(signal -> ended.tryEmitEmpty());
+            });
+        }
+
+        private synchronized LoggedEvent add(AgentEvent event) {
+            LoggedEvent logged = new LoggedEvent(this.id + "-" + this.nextSeq++, event);
+            this.events.addLast(logged);
+            if (this.events.size() > this.maxEvents) {
+                this.events.removeFirst();
+            }
+            return logged;
+        }
+
+        /**
+         * @return completes once the events being appended, if any, have ended
+         */
+        private synchronized Mono<Void> idle() {
+            return this.appending.asMono();
+        }
+
+        /**
+         * @return the sequence number of the event, {@link Long#MAX_VALUE} if it isn't one of this log
+         */
+        private long sequenceOf(String eventId) {
+            String prefix = this.id + "-";
+            if (eventId == null || !eventId.startsWith(prefix)) {
+                return Long.MAX_VALUE;
+            }
+            try {
+                return Long.parseLong(eventId.substring(prefix.length()));
+            } catch (NumberFormatException e) {
+                return Long.MAX_VALUE;
+            }
+        }
+
+        private synchronized List<LoggedEvent> after(long seq) {
+            List<LoggedEvent> after = new ArrayList<>();
+            long current = this.nextSeq - this.events.size();
+            for (LoggedEvent event : this.events) {
+                if (current++ > seq) {
+                    after.add(event);
+                }
+            }
+            return after;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.EmbeddedDocument;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.PgVectorDocumentRepository;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.util.Assert;
+
+import java.util.List;
+
+/**
+ * Nearest chunks to the embedded query in pgvector, with their stored embeddings.
+ */
+public class VectorRetriever implements RetrievalPipeline.Retriever {
+    private final PgVectorDocumentRepository documentRepository;
+    private final EmbeddingModel embeddingModel;
+    private final int topK;
+    private final double minSimilarity;
+
+    public VectorRetriever(PgVectorDocumentRepository documentRepository, EmbeddingModel embeddingModel, int topK, double minSimilarity) {
+        Assert.notNull(documentRepository, "documentRepository cannot be null");
+        Assert.notNull(embeddingModel, "embeddingModel cannot be null");
+        Assert.isTrue(topK > 0, "topK must be greater than 0");
+        Assert.isTrue(minSimilarity >= 0 && minSimilarity <= 1, "minSimilarity must be in [0, 1]");
+        this.documentRepository = documentRepository;
+        this.embeddingModel = embeddingModel;
+        this.topK = topK;
+        this.minSimilarity = minSimilarity;
+    }
+
+    @Override
+    public String name() {
+        return "vector";
+    }
+
+    @Override
+    public List<EmbeddedDocument> retrieve(String query) {
+        return this.documentRepository.similaritySearch(query, this.embeddingModel.embed(query), this.topK, this.minSimilarity);
+    }
+}
@@ -0,0 +1,44 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.EmbeddedDocument;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.util.Assert;
+
+import java.util.List;
+
+/**
+ * Similarity search through any {@link VectorStore}. The store doesn't return embeddings, so the
+ * candidates have none.
+ */
+public class VectorStoreRetriever implements RetrievalPipeline.Retriever {
+    private final VectorStore vectorStore;
+    private final int topK;
+    private final double similarityThreshold;
+
+    public VectorStoreRetriever(VectorStore vectorStore, int topK, double similarityThreshold) {
+        Assert.notNull(vectorStore, "vectorStore cannot be null");
+        this.vectorStore = vectorStore;
+        this.topK = topK;
+        this.similarityThreshold = similarityThreshold;
+    }
+
+    @Override
+    public String name() {
+        return "vector";
+    }
+
+    @Override
+    public List<EmbeddedDocument> retrieve(String query) {
+        List<Document> documents = this.vectorStore.similaritySearch(
+                SearchRequest.builder()
+                        .similarityThreshold(this.similarityThreshold)
+                        .topK(this.topK)
+                        .query(query)
+                        .build());
+        return documents == null
+                ? List.of()
+                : documents.stream().map(document -> new EmbeddedDocument(document, null)).toList();
+    }
+}
@@ -0,0 +1,348 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Bounded, size- and TTL-evicted cache that serves reads from memory and writes changed values back
+ * to the backing store asynchronously.
+ * <p>
+ * Durability: a value updated through {@link #update} is written by the first of
+ * <ul>
+ *     <li>an explicit {@link #flush(String)} (the orchestrator flushes before a stream completes),</li>
+ *     <li>the periodic flush every {@code flushInterval},</li>
+ *     <li>its eviction from the cache, on the flush thread (a failed write is retried by the periodic flush),</li>
+ *     <li>{@link #close()} on shutdown.</li>
+ * </ul>
+ * A {@code flushInterval} of zero writes through on every update. Updates made within the last
+ * {@code flushInterval} can be lost if the process dies before any of the above happens.
+ * <p>
+ * Loads and writes run outside the cache's map, so a slow backing store only holds up callers of the
+ * same key. Updates of one key are applied one at a time and writes of one key run one at a time; a
+ * write persists a snapshot of the value, and updates made while it runs stay dirty for the next write.
+ * An evicted value that isn't written yet is kept aside, and served again if its key is read meanwhile.
+ * <p>
+ * {@link #whenWritten} defers an action, such as a record that refers to the value, until the value as
+ * it is now has been written, without forcing the write.
+ */
+public class WriteBehindCache<V> implements AutoCloseable {
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final Cache<String, Entry<V>> cache;
+    private final Map<String, Entry<V>> evicted = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final Function<String, V> loader;
+    private final BiFunction<String, V, V> writer;
+    private final BinaryOperator<V> rebase;
+    private final boolean writeThrough;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * For values that are written whole, so a value updated during a write is simply written again.
+     *
+     * @param loader reads a value from the backing store on a cache miss
+     * @param writer persists a dirty value and returns the value to keep cached afterwards
+     */
+    public WriteBehindCache(long maximumSize, Duration ttl, Duration flushInterval,
+                            Function<String, V> loader, BiFunction<String, V, V> writer) {
+        this(maximumSize, ttl, flushInterval, loader, writer, (current, written) -> current);
+    }
+
+    /**
+     * @param loader reads a value from the backing store on a cache miss
+     * @param writer persists a dirty value and returns the value to keep cached afterwards
+     * @param rebase given the value updated while a write ran and the value that write persisted, returns
+     *               the updated value as it is to be kept cached afterwards
+     */
+    public WriteBehindCache(long maximumSize, Duration ttl, Duration flushInterval,
+                            Function<String, V> loader, BiFunction<String, V, V> writer, BinaryOperator<V> rebase) {
+        Assert.isTrue(maximumSize > 0, "maximumSize must be greater than 0");
+        Assert.isTrue(ttl != null && ttl.isPositive(), "ttl must be positive");
+        Assert.isTrue(flushInterval != null && !flushInterval.isNegative(), "flushInterval cannot be negative");
+        Assert.notNull(loader, "loader cannot be null");
+        Assert.notNull(writer, "writer cannot be null");
+        Assert.notNull(rebase, "rebase cannot be null");
+
+        this.loader = loader;
+        this.writer = writer;
+        this.rebase = rebase;
+        this.writeThrough = flushInterval.isZero();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("write-behind-flush").daemon().factory());
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(ttl)
+                .<String, Entry<V>>evictionListener((key, entry, cause) -> {
+                    if (key != null && entry != null && cause.wasEvicted()) {
+                        retire(key, entry);
+                    }
+                })
+                .build();
+
+        if (!this.writeThrough) {
+            this.scheduler.scheduleWithFixedDelay(this::flushAll,
+                    flushInterval.toMillis(), flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public V get(String key) {
+        while (true) {
+            Entry<V> entry = loaded(key);
+            synchronized (entry.lock) {
+                if (!entry.retired) {
+                    return entry.value;
+                }
+            }
+        }
+    }
+
+    public V update(String key, UnaryOperator<V> function) {
+        while (true) {
+            Entry<V> entry = loaded(key);
+            V updated;
+            synchronized (entry.lock) {
+                if (entry.retired) {
+                    continue;
+                }
+                updated = function.apply(entry.value);
+                entry.value = updated;
+                entry.version++;
+                this.dirty.add(key);
+            }
+            if (this.writeThrough) {
+                write(key, entry);
+            }
+            return updated;
+        }
+    }
+
+    public void flush(String key) {
+        if (!this.dirty.contains(key)) {
+            return;
+        }
+        Entry<V> entry = this.cache.getIfPresent(key);
+        if (entry != null) {
+            write(key, entry);
+            return;
+        }
+        entry = this.evicted.get(key);
+        if (entry != null) {
+            writeEvicted(key, entry);
+        }
+    }
+
+    public void flushAll() {
+        this.dirty.forEach(this::flush);
+    }
+
+    /**
+     * Writes the value back if it is dirty and removes it. A value whose write fails stays cached.
+     */
+    public void evict(String key) {
+        Entry<V> entry = this.cache.getIfPresent(key);
+        if (entry == null) {
+            return;
+        }
+        if (write(key, entry)) {
+            this.cache.asMap().computeIfPresent(key, (k, current) -> {
+                if (current != entry) {
+                    return current;
+                }
+                retire(k, current);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Runs the action once the value of the key is written: right away if it has no unwritten update,
+     * otherwise after the write that covers it, on the thread doing it. An action still waiting for the
+     * same key is replaced. Failures of the action are logged.
+     */
+    public void whenWritten(String key, Runnable action) {
+        Assert.notNull(action, "action cannot be null");
+        Entry<V> entry = this.cache.getIfPresent(key);
+        if (entry == null) {
+            entry = this.evicted.get(key);
+        }
+        if (entry != null) {
+            synchronized (entry.lock) {
+                if (!entry.retired && entry.isDirty()) {
+                    entry.afterWrite = action;
+                    entry.afterWriteVersion = entry.version;
+                    return;
+                }
+            }
+        }
+        runAfterWrite(key, action);
+    }
+
+    public void invalidate(String key) {
+        discard(this.cache.asMap().remove(key));
+        discard(this.evicted.remove(key));
+        this.dirty.remove(key);
+    }
+
+    @Override
+    public void close() {
+        this.scheduler.shutdown();
+        flushAll();
+    }
+
+    /**
+     * The cached entry of the key, or the evicted one still waiting for its write, loaded.
+     */
+    private Entry<V> loaded(String key) {
+        Entry<V> entry = this.cache.get(key, k -> {
+            Entry<V> waiting = this.evicted.remove(k);
+            return waiting != null ? waiting : new Entry<>();
+        });
+        if (!entry.loaded) {
+            entry.loadLock.lock();
+            try {
+                if (!entry.loaded) {
+                    V value = this.loader.apply(key);
+                    synchronized (entry.lock) {
+                        entry.value = value;
+                        entry.loaded = true;
+                    }
+                }
+            } finally {
+                entry.loadLock.unlock();
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Takes an entry out of the cache: a dirty one waits aside for its write on the flush thread, a
+     * clean one is done. Runs within the cache's removal of the entry, so a read of the key in between
+     * finds it in one place or the other; it only takes the entry's own lock and does no I/O.
+     */
+    private void retire(String key, Entry<V> entry) {
+        synchronized (entry.lock) {
+            if (!entry.isDirty()) {
+                entry.retired = true;
+                return;
+            }
+            this.evicted.put(key, entry);
+        }
+        try {
+            this.scheduler.execute(() -> writeEvicted(key, entry));
+        } catch (RuntimeException e) {
+            // Shutting down: close() writes it
+        }
+    }
+
+    private void discard(Entry<V> entry) {
+        if (entry != null) {
+            synchronized (entry.lock) {
+                entry.retired = true;
+                entry.afterWrite = null;
+            }
+        }
+    }
+
+    private void writeEvicted(String key, Entry<V> entry) {
+        write(key, entry);
+        synchronized (entry.lock) {
+            if (!entry.isDirty() && this.evicted.remove(key, entry)) {
+                entry.retired = true;
+            }
+        }
+    }
+
+    /**
+     * Writes a snapshot of the entry if it is dirty, outside its lock.
+     *
+     * @return whether the entry is clean afterwards
+     */
+    private boolean write(String key, Entry<V> entry) {
+        entry.writeLock.lock();
+        try {
+            V snapshot;
+            long version;
+            synchronized (entry.lock) {
+                if (!entry.loaded || !entry.isDirty()) {
+                    return true;
+                }
+                snapshot = entry.value;
+                version = entry.version;
+            }
+
+            V written;
+            try {
+                written = this.writer.apply(key, snapshot);
+            } catch (RuntimeException e) {
+                logger.error("Write-behind flush failed for key {}", key, e);
+                return false;
+            }
+
+            Runnable action = null;
+            boolean clean;
+            synchronized (entry.lock) {
+                entry.value = entry.version == version ? written : this.rebase.apply(entry.value, snapshot);
+                entry.writtenVersion = version;
+                if (entry.afterWrite != null && entry.afterWriteVersion <= version) {
+                    action = entry.afterWrite;
+                    entry.afterWrite = null;
+                }
+                clean = !entry.isDirty();
+                if (clean) {
+                    this.dirty.remove(key);
+                }
+            }
+            if (action != null) {
+                runAfterWrite(key, action);
+            }
+            return clean;
+        } finally {
+            entry.writeLock.unlock();
+        }
+    }
+
+    private void runAfterWrite(String key, Runnable action) {
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            logger.error("Action after the write of key {} failed", key, e);
+        }
+    }
+
+    /**
+     * The value of one key. {@code lock} guards the fields and is never held while the backing store is
+     * called; {@code loadLock} and {@code writeLock} let one load and one write of the key run at a time.
+     */
+    private static final class Entry<V> {
+        private final Object lock = new Object();
+        private final ReentrantLock loadLock = new ReentrantLock();
+        private final ReentrantLock writeLock = new ReentrantLock();
+        private volatile boolean loaded;
+        private V value;
+        private long version;
+        private long writtenVersion;
+        private boolean retired;
+        private Runnable afterWrite;
+        private long afterWriteVersion;
+
+        private boolean isDirty() {
+            return this.version != this.writtenVersion;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chat memory that may hold changes in memory before writing them to storage, and can hand back the
+ * window it just updated.
+ */
+public interface WriteBehindChatMemory extends ChatMemory {
+
+    /**
+     * Adds the messages like {@link #add(String, List)} and returns the window after the update, so a
+     * caller about to build a prompt doesn't read the window again.
+     */
+    List<Message> addAndGet(String conversationId, List<Message> messages);
+
+    /**
+     * Replaces the last message of the conversation by the message, or adds it if the conversation is empty.
+     */
+    void replaceLast(String conversationId, Message message);
+
+    /**
+     * Writes the conversation's pending changes to storage.
+     */
+    void flush(String conversationId);
+
+    /**
+     * Runs the action once the conversation's changes made so far are in storage, without writing them
+     * any earlier than they would be anyway. Replaces an action still waiting for the conversation.
+     */
+    void whenFlushed(String conversationId, Runnable action);
+
+    /**
+     * Adapts a chat memory that writes every change right away.
+     */
+    static WriteBehindChatMemory writeThrough(ChatMemory chatMemory) {
+        Assert.notNull(chatMemory, "chatMemory cannot be null");
+        return new WriteBehindChatMemory() {
+            @Override
+            public List<Message> addAndGet(String conversationId, List<Message> messages) {
+                chatMemory.add(conversationId, messages);
+                return chatMemory.get(conversationId);
+            }
+
+            @Override
+            public void replaceLast(String conversationId, Message message) {
+                List<Message> messages = new ArrayList<>(chatMemory.get(conversationId));
+                if (!messages.isEmpty()) {
+                    messages.removeLast();
+                }
+                messages.add(message);
+                chatMemory.clear(conversationId);
+                chatMemory.add(conversationId, messages);
+            }
+
+            @Override
+            public void flush(String conversationId) {
+            }
+
+            @Override
+            public void whenFlushed(String conversationId, Runnable action) {
+                action.run();
+            }
+
+            @Override
+            public void add(String conversationId, List<Message> messages) {
+                chatMemory.add(conversationId, messages);
+            }
+
+            @Override
+            public List<Message> get(String conversationId) {
+                return chatMemory.get(conversationId);
+            }
+
+            @Override
+            public void clear(String conversationId) {
+                chatMemory.clear(conversationId);
+            }
+        };
+    }
+}
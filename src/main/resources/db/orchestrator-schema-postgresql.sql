@@ -0,0 +1,39 @@
+CREATE TABLE IF NOT EXISTS orchestrator_chat_memory (
+    conversation_id VARCHAR(255) NOT NULL,
+    seq             BIGINT       NOT NULL,
+    content         TEXT         NOT NULL,
+    type            VARCHAR(10)  NOT NULL CHECK (type IN ('USER', 'ASSISTANT', 'SYSTEM', 'TOOL')),
+    "timestamp"     TIMESTAMP    NOT NULL,
+    PRIMARY KEY (conversation_id, seq)
+);
+
+CREATE TABLE IF NOT EXISTS orchestrator_tool_message (
+    conversation_id VARCHAR(255) NOT NULL,
+    idx             BIGINT       NOT NULL,
+    type            VARCHAR(10)  NOT NULL CHECK (type IN ('ASSISTANT', 'TOOL')),
+    content         TEXT         NOT NULL,
+    payload         JSONB        NOT NULL,
+    metadata        JSONB        NOT NULL,
+    "timestamp"     TIMESTAMP    NOT NULL,
+    PRIMARY KEY (conversation_id, idx)
+);
+
+CREATE EXTENSION IF NOT EXISTS vector;
+
+CREATE TABLE IF NOT EXISTS orchestrator_embedding_cache (
+    model           VARCHAR(255) NOT NULL,
+    content_hash    CHAR(64)     NOT NULL,
+    embedding       vector       NOT NULL,
+    created_at      TIMESTAMP    NOT NULL DEFAULT now(),
+    PRIMARY KEY (model, content_hash)
+);
+
+CREATE TABLE IF NOT EXISTS orchestrator_turn_checkpoint (
+    conversation_id VARCHAR(255) NOT NULL PRIMARY KEY,
+    scope           VARCHAR(255),
+    tools           TEXT[],
+    iteration       INTEGER      NOT NULL,
+    completed       BOOLEAN      NOT NULL,
+    partial_answer  BOOLEAN      NOT NULL,
+    updated_at      TIMESTAMP    NOT NULL
+);
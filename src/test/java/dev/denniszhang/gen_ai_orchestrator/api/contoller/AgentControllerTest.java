@@ -1,6 +1,8 @@
 package dev.denniszhang.gen_ai_orchestrator.api.contoller;
 
-import dev.denniszhang.gen_ai_orchestrator.core.service.ContextEngine;
+import dev.denniszhang.gen_ai_orchestrator.core.model.AgentEvent;
+import dev.denniszhang.gen_ai_orchestrator.core.model.AgentRequest;
+import dev.denniszhang.gen_ai_orchestrator.core.service.IngestionPipeline;
 import dev.denniszhang.gen_ai_orchestrator.core.service.OrchestratorAgent;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.DisplayName;
@@ -16,7 +18,7 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
-import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.any;
 
 /**
  * Unit tests for {@link AgentController}.
@@ -32,7 +34,7 @@ class AgentControllerTest {
     private OrchestratorAgent orchestratorAgent;
 
     @Mock
-    private ContextEngine contextEngine;
+    private IngestionPipeline ingestionPipeline;
 
     @Test
     @DisplayName("POST /api/v1/agent/upload handles IOException")
@@ -56,20 +58,20 @@ class AgentControllerTest {
     }
 
     @Test
-    @DisplayName("POST /api/v1/agent/stream returns a Flux of messages")
+    @DisplayName("POST /api/v1/agent/stream returns server-sent events")
     void testStreamEndpoint() throws Exception {
         // Arrange
         AssistantMessage mockMessage = AssistantMessage.builder()
                 .content("Streaming response")
                 .build();
-        Mockito.when(orchestratorAgent.stream(anyString(), anyString()))
-                .thenReturn(reactor.core.publisher.Flux.just(mockMessage));
+        Mockito.when(orchestratorAgent.stream(any(AgentRequest.class)))
+                .thenReturn(reactor.core.publisher.Flux.just(new AgentEvent.MessageEvent(mockMessage)));
 
         // Act & Assert
         mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/agent/stream")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content("{\"conversationId\":\"conv-1\",\"message\":\"Start\"}"))
                 .andExpect(MockMvcResultMatchers.status().isOk())
-                .andExpect(MockMvcResultMatchers.content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON));
+                .andExpect(MockMvcResultMatchers.content().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM));
     }
 }
@@ -0,0 +1,47 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.loadtest;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit tests for {@link LoadTestChatModel}.
+ */
+class LoadTestChatModelTest {
+
+    @Test
+    @DisplayName("a turn calls tools round robin for the configured rounds and then streams the answer")
+    void testToolRoundsThenAnswer() {
+        LoadTestChatModel model = new LoadTestChatModel(Duration.ZERO, 10_000, 5, 2, 2);
+        ToolCallingChatOptions options = ToolCallingChatOptions.builder()
+                .toolCallbacks(Arrays.asList(new LoadTestToolCallbackProvider(3, Duration.ZERO, 10).getToolCallbacks()))
+                .build();
+        List<Message> messages = new ArrayList<>(List.of(UserMessage.builder().text("Where is my order?").build()));
+
+        AssistantMessage first = model.call(new Prompt(messages, options)).getResult().getOutput();
+        assert first.getToolCalls().stream().map(AssistantMessage.ToolCall::name).toList().equals(List.of("tool_0", "tool_1"));
+
+        messages.add(first);
+        AssistantMessage second = model.call(new Prompt(messages, options)).getResult().getOutput();
+        assert second.getToolCalls().stream().map(AssistantMessage.ToolCall::name).toList().equals(List.of("tool_2", "tool_0"));
+
+        messages.add(second);
+        List<ChatResponse> answer = model.stream(new Prompt(messages, options)).collectList().block();
+        assert answer.size() == 5;
+        assert answer.stream().noneMatch(chunk -> chunk.getResult().getOutput().hasToolCalls());
+
+        // A new user message starts a new turn
+        messages.add(UserMessage.builder().text("Thanks").build());
+        assert model.call(new Prompt(messages, options)).getResult().getOutput().hasToolCalls();
+    }
+}
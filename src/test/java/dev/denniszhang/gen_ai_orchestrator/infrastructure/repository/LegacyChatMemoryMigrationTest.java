@@ -0,0 +1,45 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.repository;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.List;
+
+/**
+ * Unit tests for {@link LegacyChatMemoryMigration}.
+ */
+class LegacyChatMemoryMigrationTest {
+
+    @Test
+    @DisplayName("tool calls and tool responses that don't answer each other are dropped, matched pairs are kept")
+    void testDropUnmatchedToolMessages() {
+        Message question = new UserMessage("Where is my order?");
+        AssistantMessage answeredCall = call("call-1");
+        ToolResponseMessage answer = response("call-1");
+        AssistantMessage danglingCall = call("call-2");
+        ToolResponseMessage orphanResponse = response("call-3");
+        Message reply = AssistantMessage.builder().content("It shipped.").build();
+
+        List<Message> matched = LegacyChatMemoryMigration.dropUnmatchedToolMessages(
+                List.of(question, answeredCall, answer, danglingCall, orphanResponse, reply));
+
+        assert matched.equals(List.of(question, answeredCall, answer, reply));
+    }
+
+    private static AssistantMessage call(String id) {
+        return AssistantMessage.builder()
+                .content("")
+                .toolCalls(List.of(new AssistantMessage.ToolCall(id, "function", "track_order", "{}")))
+                .build();
+    }
+
+    private static ToolResponseMessage response(String id) {
+        return ToolResponseMessage.builder()
+                .responses(List.of(new ToolResponseMessage.ToolResponse(id, "track_order", "in transit")))
+                .build();
+    }
+}
@@ -0,0 +1,110 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.exception.AdmissionRejectedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Unit tests for {@link AdmissionControl}.
+ */
+class AdmissionControlTest {
+
+    @Test
+    @DisplayName("a tenant over its request limit is rejected with the time until its bucket refills")
+    void testRejectWithRetryAfter() {
+        AtomicLong now = new AtomicLong();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AdmissionControl admission = AdmissionControl.builder()
+                .tokenCounter(new TokenCounter())
+                .maxWait(Duration.ZERO)
+                .tenantLimit(new AdmissionControl.Limit(2, 0))
+                .meterRegistry(meterRegistry)
+                .nanoTime(now::get)
+                .build();
+
+        admission.admitRequest("tenant-a", "Hi").block();
+        admission.admitRequest("tenant-a", "Hi").block();
+        AdmissionRejectedException rejected = null;
+        try {
+            admission.admitRequest("tenant-a", "Hi").block();
+        } catch (AdmissionRejectedException e) {
+            rejected = e;
+        }
+        assert rejected != null;
+        // Two requests per minute: one more after 30 seconds
+        assert rejected.getRetryAfterSeconds() == 30;
+        assert meterRegistry.get("orchestrator.admission.rejected").tag("limiter", "tenant").counter().count() == 1;
+
+        // Other tenants have buckets of their own
+        admission.admitRequest("tenant-b", "Hi").block();
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(31));
+        admission.admitRequest("tenant-a", "Hi").block();
+    }
+
+    @Test
+    @DisplayName("a caller cancelled while it waits gives its permits back")
+    void testCancelledWaitReleasesPermits() {
+        AtomicLong now = new AtomicLong();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AdmissionControl admission = AdmissionControl.builder()
+                .tokenCounter(new TokenCounter())
+                .maxWait(Duration.ofSeconds(90))
+                .tenantLimit(new AdmissionControl.Limit(1, 0))
+                .meterRegistry(meterRegistry)
+                .nanoTime(now::get)
+                .build();
+
+        admission.admitRequest("tenant-a", "Hi").block();
+        // Waits a minute for the refill, then gives up
+        Disposable waiting = admission.admitRequest("tenant-a", "Hi").subscribe();
+        assert meterRegistry.get("orchestrator.admission.queue").tag("limiter", "tenant").gauge().value() == 1;
+        waiting.dispose();
+        assert meterRegistry.get("orchestrator.admission.queue").tag("limiter", "tenant").gauge().value() == 0;
+
+        // Still a minute rather than two, which would be over max-wait
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        admission.admitRequest("tenant-a", "Hi").subscribe(admitted -> {}, error::set).dispose();
+        assert error.get() == null;
+    }
+
+    @Test
+    @DisplayName("a call over its upstream's token limit waits for the refill within max-wait")
+    void testWaitForRefill() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AdmissionControl admission = AdmissionControl.builder()
+                .tokenCounter(new TokenCounter())
+                .maxWait(Duration.ofSeconds(1))
+                // 6000 tokens a minute: 100 tokens every second, 10 every 100 ms
+                .upstreamLimits(Map.of(AdmissionControl.MODEL, new AdmissionControl.Limit(0, 6000)))
+                .meterRegistry(meterRegistry)
+                .build();
+
+        admission.admitUpstream(AdmissionControl.MODEL, 1, 6000).block();
+        long start = System.nanoTime();
+        admission.admitUpstream(AdmissionControl.MODEL, 1, 10).block();
+        assert System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(90);
+
+        assert meterRegistry.get("orchestrator.admission.wait").tag("limiter", "model").timer().count() == 2;
+        assert meterRegistry.get("orchestrator.admission.queue").tag("limiter", "model").gauge().value() == 0;
+
+        // Waiting longer than max-wait is rejected right away
+        try {
+            admission.admitUpstream(AdmissionControl.MODEL, 1, 6000).block();
+            assert false;
+        } catch (AdmissionRejectedException e) {
+            assert e.getLimiter().equals(AdmissionControl.MODEL);
+        }
+
+        // Upstreams without a limit are not limited
+        admission.admitUpstream(AdmissionControl.TOOLS, 1_000_000, 0).block();
+    }
+}
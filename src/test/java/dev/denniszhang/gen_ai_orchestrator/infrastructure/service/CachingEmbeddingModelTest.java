@@ -0,0 +1,106 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.EmbeddingCacheRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+
+/**
+ * Unit tests for {@link CachingEmbeddingModel}.
+ */
+class CachingEmbeddingModelTest {
+
+    @Test
+    @DisplayName("repeated texts are embedded once and served from memory afterwards")
+    void testMemoryHit() {
+        EmbeddingModel delegate = lengthEmbeddingModel();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        CachingEmbeddingModel model = CachingEmbeddingModel.builder()
+                .delegate(delegate)
+                .model("test-model")
+                .meterRegistry(registry)
+                .build();
+
+        List<float[]> first = model.embed(List.of("hello", "hi", "hello"));
+        List<float[]> second = model.embed(List.of("hi", "hello"));
+
+        ArgumentCaptor<EmbeddingRequest> captor = ArgumentCaptor.forClass(EmbeddingRequest.class);
+        Mockito.verify(delegate, Mockito.times(1)).call(captor.capture());
+        assert captor.getValue().getInstructions().equals(List.of("hello", "hi"));
+
+        assert Arrays.equals(first.get(0), new float[] {5f});
+        assert Arrays.equals(first.get(2), new float[] {5f});
+        assert Arrays.equals(second.get(0), new float[] {2f});
+        assert registry.counter("orchestrator.embedding.cache", "tier", "memory", "result", "hit").count() == 2;
+        assert registry.counter("orchestrator.embedding.cache", "tier", "none", "result", "miss").count() == 3;
+    }
+
+    @Test
+    @DisplayName("misses are looked up in the persistent tier before calling the delegate")
+    void testPersistentTier() {
+        EmbeddingModel delegate = lengthEmbeddingModel();
+        EmbeddingCacheRepository repository = Mockito.mock(EmbeddingCacheRepository.class);
+        Mockito.when(repository.findAll(eq("test-model"), anyCollection()))
+                .thenReturn(Map.of(ContentHashes.sha256("stored"), new float[] {42f}));
+        CachingEmbeddingModel model = CachingEmbeddingModel.builder()
+                .delegate(delegate)
+                .model("test-model")
+                .repository(repository)
+                .meterRegistry(new SimpleMeterRegistry())
+                .build();
+
+        List<float[]> embeddings = model.embed(List.of("stored", "new"));
+
+        assert Arrays.equals(embeddings.get(0), new float[] {42f});
+        assert Arrays.equals(embeddings.get(1), new float[] {3f});
+        Mockito.verify(repository).saveAll(eq("test-model"), Mockito.argThat(saved ->
+                saved.size() == 1 && saved.containsKey(ContentHashes.sha256("new"))));
+    }
+
+    @Test
+    @DisplayName("a failing persistent tier falls back to the delegate")
+    void testPersistentTierFailure() {
+        EmbeddingModel delegate = lengthEmbeddingModel();
+        EmbeddingCacheRepository repository = Mockito.mock(EmbeddingCacheRepository.class);
+        Mockito.when(repository.findAll(any(), anyCollection())).thenThrow(new IllegalStateException("database unavailable"));
+        CachingEmbeddingModel model = CachingEmbeddingModel.builder()
+                .delegate(delegate)
+                .model("test-model")
+                .repository(repository)
+                .meterRegistry(new SimpleMeterRegistry())
+                .build();
+
+        assert Arrays.equals(model.embed("text"), new float[] {4f});
+    }
+
+    /**
+     * Embeds every text as a one-dimensional vector holding its length.
+     */
+    private static EmbeddingModel lengthEmbeddingModel() {
+        EmbeddingModel delegate = Mockito.mock(EmbeddingModel.class);
+        Mockito.when(delegate.call(any(EmbeddingRequest.class))).thenAnswer(invocation -> {
+            List<String> texts = invocation.<EmbeddingRequest>getArgument(0).getInstructions();
+            List<Embedding> embeddings = new ArrayList<>();
+            for (int i = 0; i < texts.size(); i++) {
+                embeddings.add(new Embedding(new float[] {texts.get(i).length()}, i));
+            }
+            return new EmbeddingResponse(embeddings);
+        });
+        return delegate;
+    }
+}
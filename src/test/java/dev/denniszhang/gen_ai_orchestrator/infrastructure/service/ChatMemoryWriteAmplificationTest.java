@@ -0,0 +1,87 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.SequencedMessage;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.InMemoryAppendOnlyChatMemoryRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.*;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Unit tests of the rows {@link ToolMessageWindowChatMemoryImpl} writes to an append-only repository
+ * over a long conversation.
+ */
+class ChatMemoryWriteAmplificationTest {
+    private static final int TURNS = 50;
+    private static final int MAX_MESSAGES = 20;
+
+    @Test
+    @DisplayName("append-only persistence writes a constant number of rows per turn")
+    void testRowsWrittenPerTurn() {
+        CountingRepository repository = new CountingRepository();
+        ToolMessageWindowChatMemoryImpl memory = ToolMessageWindowChatMemoryImpl.builder()
+                .chatMemoryRepository(repository)
+                .maxMessages(MAX_MESSAGES)
+                .flushInterval(Duration.ZERO)
+                .build();
+
+        memory.add("conv-1", SystemMessage.builder().text("system").build());
+        long maxRowsPerTurn = 0;
+        for (int turn = 0; turn < TURNS; turn++) {
+            long before = repository.rowsAppended + repository.rowsDeleted;
+            turn(turn).forEach(message -> memory.add("conv-1", message));
+            maxRowsPerTurn = Math.max(maxRowsPerTurn, repository.rowsAppended + repository.rowsDeleted - before);
+        }
+        memory.close();
+
+        // Every chat message is inserted once: the system message, a question and an answer per turn
+        assert repository.rowsAppended == 1 + 2L * TURNS;
+        // and deleted once when it leaves the window, so exactly the window is left
+        assert repository.rowsDeleted == repository.rowsAppended - repository.findWindow("conv-1").size();
+        // Two chat rows enter and at most two leave the window per turn, however long the conversation
+        assert maxRowsPerTurn <= 4;
+        assert repository.fullRewrites == 0;
+        assert repository.findWindow("conv-1").size() <= MAX_MESSAGES;
+    }
+
+    private static List<Message> turn(int turn) {
+        return List.of(
+                UserMessage.builder().text("question " + turn).build(),
+                AssistantMessage.builder()
+                        .content("")
+                        .toolCalls(List.of(new AssistantMessage.ToolCall("call-" + turn, "function", "clock", "{}")))
+                        .build(),
+                ToolResponseMessage.builder()
+                        .responses(List.of(new ToolResponseMessage.ToolResponse("call-" + turn, "clock", "12:00")))
+                        .build(),
+                AssistantMessage.builder().content("answer " + turn).build());
+    }
+
+    private static class CountingRepository extends InMemoryAppendOnlyChatMemoryRepository {
+        private long rowsAppended;
+        private long rowsDeleted;
+        private long fullRewrites;
+
+        @Override
+        public void saveAll(String conversationId, List<Message> messages) {
+            this.fullRewrites++;
+            super.saveAll(conversationId, messages);
+        }
+
+        @Override
+        public void append(String conversationId, List<SequencedMessage> messages) {
+            this.rowsAppended += messages.size();
+            super.append(conversationId, messages);
+        }
+
+        @Override
+        public void deleteRange(String conversationId, long fromSeq, long toSeq) {
+            this.rowsDeleted += findWindow(conversationId).stream()
+                    .filter(message -> message.seq() >= fromSeq && message.seq() <= toSeq)
+                    .count();
+            super.deleteRange(conversationId, fromSeq, toSeq);
+        }
+    }
+}
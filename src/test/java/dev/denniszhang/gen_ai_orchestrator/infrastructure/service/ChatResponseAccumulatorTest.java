@@ -0,0 +1,95 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for {@link ChatResponseAccumulator}.
+ */
+class ChatResponseAccumulatorTest {
+
+    @Test
+    @DisplayName("content and reasoning deltas are concatenated")
+    void testTextDeltas() {
+        ChatResponseAccumulator accumulator = new ChatResponseAccumulator();
+        accumulator.accept(chunk("Hel", "thinking ", List.of()));
+        accumulator.accept(chunk("lo", "done", List.of()));
+
+        AssistantMessage message = accumulator.toChatResponse().getResult().getOutput();
+
+        assert message.getText().equals("Hello");
+        assert message.getMetadata().get("reasoningContent").equals("thinking done");
+        assert !message.hasToolCalls();
+    }
+
+    @Test
+    @DisplayName("tool-call argument deltas are merged by id, in first-seen order")
+    void testToolCallDeltas() {
+        ChatResponseAccumulator accumulator = new ChatResponseAccumulator();
+        accumulator.accept(chunk("", "", List.of(new AssistantMessage.ToolCall("call-1", "function", "search", "{\"q\":"))));
+        accumulator.accept(chunk("", "", List.of(new AssistantMessage.ToolCall("", "", "", "\"fox\"}"))));
+        accumulator.accept(chunk("", "", List.of(new AssistantMessage.ToolCall("call-2", "function", "clock", ""))));
+        accumulator.accept(chunk("", "", List.of(new AssistantMessage.ToolCall("call-2", "", "", "{}"))));
+
+        List<AssistantMessage.ToolCall> toolCalls = accumulator.toChatResponse().getResult().getOutput().getToolCalls();
+
+        assert toolCalls.equals(List.of(
+                new AssistantMessage.ToolCall("call-1", "function", "search", "{\"q\":\"fox\"}"),
+                new AssistantMessage.ToolCall("call-2", "function", "clock", "{}")));
+    }
+
+    @Test
+    @DisplayName("a tool call without an id that names a tool is a new call")
+    void testToolCallsWithoutIds() {
+        ChatResponseAccumulator accumulator = new ChatResponseAccumulator();
+        accumulator.accept(chunk("", "", List.of(
+                new AssistantMessage.ToolCall("", "function", "search", "{\"q\":\"fox\"}"),
+                new AssistantMessage.ToolCall("", "function", "clock", "{}"))));
+        accumulator.accept(chunk("", "", List.of(new AssistantMessage.ToolCall("", "function", "weather", "{\"city\":"))));
+        accumulator.accept(chunk("", "", List.of(new AssistantMessage.ToolCall("", "", "", "\"Paris\"}"))));
+
+        List<AssistantMessage.ToolCall> toolCalls = accumulator.toChatResponse().getResult().getOutput().getToolCalls();
+
+        assert toolCalls.equals(List.of(
+                new AssistantMessage.ToolCall("", "function", "search", "{\"q\":\"fox\"}"),
+                new AssistantMessage.ToolCall("", "function", "clock", "{}"),
+                new AssistantMessage.ToolCall("", "function", "weather", "{\"city\":\"Paris\"}"))) : toolCalls;
+    }
+
+    @Test
+    @DisplayName("content before a tool call without reasoning is kept as reasoning")
+    void testContentBecomesReasoningForToolCalls() {
+        ChatResponseAccumulator accumulator = new ChatResponseAccumulator();
+        accumulator.accept(chunk("Let me check.", "", List.of(new AssistantMessage.ToolCall("call-1", "function", "clock", "{}"))));
+
+        AssistantMessage message = accumulator.toChatResponse().getResult().getOutput();
+
+        assert message.getText().isEmpty();
+        assert message.getMetadata().get("reasoningContent").equals("Let me check.");
+    }
+
+    @Test
+    @DisplayName("an empty stream aggregates to nothing")
+    void testEmptyStream() {
+        ChatResponseAccumulator accumulator = new ChatResponseAccumulator();
+
+        assert accumulator.isEmpty();
+        assert accumulator.toChatResponse() == null;
+    }
+
+    private static ChatResponse chunk(String content, String reasoning, List<AssistantMessage.ToolCall> toolCalls) {
+        return ChatResponse.builder()
+                .generations(List.of(new Generation(AssistantMessage.builder()
+                        .content(content)
+                        .properties(Map.of("reasoningContent", reasoning))
+                        .toolCalls(toolCalls)
+                        .build())))
+                .build();
+    }
+}
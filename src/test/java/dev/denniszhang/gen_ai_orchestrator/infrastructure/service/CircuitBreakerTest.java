@@ -0,0 +1,55 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unit tests for {@link CircuitBreaker}.
+ */
+class CircuitBreakerTest {
+
+    @Test
+    @DisplayName("opens after consecutive failures and lets one trial call through after the open duration")
+    void testOpenAndHalfOpen() {
+        AtomicLong now = new AtomicLong();
+        CircuitBreaker breaker = new CircuitBreaker(2, Duration.ofSeconds(10), now::get);
+
+        assert breaker.tryAcquire();
+        breaker.onFailure();
+        assert breaker.tryAcquire();
+        breaker.onFailure();
+        assert breaker.state() == CircuitBreaker.State.OPEN;
+        assert !breaker.tryAcquire();
+        assert breaker.remainingOpen().equals(Duration.ofSeconds(10));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assert breaker.state() == CircuitBreaker.State.HALF_OPEN;
+        assert breaker.tryAcquire();
+        assert !breaker.tryAcquire();
+
+        // A failed trial opens it again, a successful one closes it
+        breaker.onFailure();
+        assert breaker.state() == CircuitBreaker.State.OPEN;
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assert breaker.tryAcquire();
+        breaker.onSuccess();
+        assert breaker.state() == CircuitBreaker.State.CLOSED;
+    }
+
+    @Test
+    @DisplayName("an abandoned trial call lets the next one through")
+    void testRelease() {
+        AtomicLong now = new AtomicLong();
+        CircuitBreaker breaker = new CircuitBreaker(1, Duration.ZERO, now::get);
+
+        breaker.onFailure();
+        assert breaker.tryAcquire();
+        assert !breaker.isCallPermitted();
+        breaker.release();
+        assert breaker.tryAcquire();
+    }
+}
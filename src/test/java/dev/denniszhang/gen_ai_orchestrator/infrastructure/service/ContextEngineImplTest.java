@@ -1,6 +1,7 @@
 package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
 
 import dev.denniszhang.gen_ai_orchestrator.core.service.MessageFactory;
+import io.micrometer.observation.ObservationRegistry;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
@@ -10,11 +11,14 @@ import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.SystemMessage;
 import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
-import org.springframework.core.io.Resource;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
@@ -30,48 +34,50 @@ class ContextEngineImplTest {
         ChatMemory chatMemory = Mockito.mock(ChatMemory.class);
         VectorStore vectorStore = Mockito.mock(VectorStore.class);
         MessageFactory messageFactory = Mockito.mock(MessageFactory.class);
-        ContextEngineImpl engine = new ContextEngineImpl(chatMemory, vectorStore, messageFactory);
-
-        List<Message> storedMessages = List.of(
-                AssistantMessage.builder().content("prev").build(),
-                UserMessage.builder().text("user").build()
-        );
-        Mockito.when(chatMemory.get("conv-1")).thenReturn(storedMessages);
-
-        List<Message> messages = engine.getMessages("conv-1");
-
-        Mockito.verify(chatMemory).get("conv-1");
-        assert messages != null;
-        assert messages.equals(storedMessages);
+        try (ContextEngineImpl engine = engine(chatMemory, vectorStore, messageFactory, new TokenCounter(), 3000)) {
+            List<Message> storedMessages = List.of(
+                    AssistantMessage.builder().content("prev").build(),
+                    UserMessage.builder().text("user").build()
+            );
+            Mockito.when(chatMemory.get("conv-1")).thenReturn(storedMessages);
+
+            List<Message> messages = engine.getMessages("conv-1");
+
+            Mockito.verify(chatMemory).get("conv-1");
+            assert messages != null;
+            assert messages.equals(storedMessages);
+        }
     }
 
     @Test
     @DisplayName("appendUserMessage adds system message when conversation is new, then adds user message")
+    @SuppressWarnings("unchecked")
     void testAddUserMessage_NewConversation() {
         ChatMemory chatMemory = Mockito.mock(ChatMemory.class);
         VectorStore vectorStore = Mockito.mock(VectorStore.class);
         MessageFactory messageFactory = Mockito.mock(MessageFactory.class);
-        ContextEngineImpl engine = new ContextEngineImpl(chatMemory, vectorStore, messageFactory);
-
-        // Simulate empty history for new conversation
-        Mockito.when(chatMemory.get("new-conv")).thenReturn(Collections.emptyList());
-
-        SystemMessage sysMsg = SystemMessage.builder().text("system").build();
-        UserMessage userMsg = UserMessage.builder().text("hello").build();
-        Mockito.when(messageFactory.createSystem("orchestratorAgent")).thenReturn(sysMsg);
-        Mockito.when(messageFactory.createUser(eq("hello"), any())).thenReturn(userMsg);
-        // getKnowledge returns empty list (vectorStore not used in this test)
-        Mockito.when(vectorStore.similaritySearch((String) any())).thenReturn(Collections.<org.springframework.ai.document.Document>emptyList());
-
-        engine.addUserMessage("new-conv", "hello");
-
-        // Verify that system and user messages were added in order
-        ArgumentCaptor<Message> captor = ArgumentCaptor.forClass(Message.class);
-        Mockito.verify(chatMemory, Mockito.times(2)).add(eq("new-conv"), captor.capture());
-
-        List<Message> added = captor.getAllValues();
-        assert added.get(0) == sysMsg;
-        assert added.get(1) == userMsg;
+        try (ContextEngineImpl engine = engine(chatMemory, vectorStore, messageFactory, new TokenCounter(), 3000)) {
+            // Simulate empty history for new conversation
+            Mockito.when(chatMemory.get("new-conv")).thenReturn(Collections.emptyList());
+
+            SystemMessage sysMsg = SystemMessage.builder().text("system").build();
+            UserMessage userMsg = UserMessage.builder().text("hello").build();
+            Mockito.when(messageFactory.createSystem("orchestratorAgent")).thenReturn(sysMsg);
+            Mockito.when(messageFactory.createUser(eq("hello"), any())).thenReturn(userMsg);
+            // getKnowledge returns empty list (vectorStore not used in this test)
+            Mockito.when(vectorStore.similaritySearch((String) any())).thenReturn(Collections.<org.springframework.ai.document.Document>emptyList());
+
+            engine.addUserMessage("new-conv", "hello");
+
+            // Verify that system and user messages were added in order, in one update
+            ArgumentCaptor<List<Message>> captor = ArgumentCaptor.forClass(List.class);
+            Mockito.verify(chatMemory).add(eq("new-conv"), captor.capture());
+
+            List<Message> added = captor.getValue();
+            assert added.size() == 2;
+            assert added.get(0) == sysMsg;
+            assert added.get(1) == userMsg;
+        }
     }
 
     @Test
@@ -80,25 +86,74 @@ class ContextEngineImplTest {
         ChatMemory chatMemory = Mockito.mock(ChatMemory.class);
         VectorStore vectorStore = Mockito.mock(VectorStore.class);
         MessageFactory messageFactory = Mockito.mock(MessageFactory.class);
-        ContextEngineImpl engine = new ContextEngineImpl(chatMemory, vectorStore, messageFactory);
+        try (ContextEngineImpl engine = engine(chatMemory, vectorStore, messageFactory, new TokenCounter(), 3000)) {
+            AssistantMessage msg = AssistantMessage.builder().content("reply").build();
+            engine.addMessage("conv-2", msg);
+
+            Mockito.verify(chatMemory).add("conv-2", List.of(msg));
+        }
+    }
+
+    @Test
+    @DisplayName("addUserMessage keeps only the best-ranked documents that fit the knowledge budget")
+    @SuppressWarnings("unchecked")
+    void testAddUserMessage_KnowledgeBudget() {
+        ChatMemory chatMemory = Mockito.mock(ChatMemory.class);
+        VectorStore vectorStore = Mockito.mock(VectorStore.class);
+        MessageFactory messageFactory = Mockito.mock(MessageFactory.class);
+        TokenCounter tokenCounter = new TokenCounter();
+
+        List<Document> documents = List.of(document("first"), document("second"), document("third"));
+        int documentTokens = tokenCounter.count(documents.getFirst().getText());
+        try (ContextEngineImpl engine = engine(chatMemory, vectorStore, messageFactory, tokenCounter,
+                2 * documentTokens + 10)) {
+            Mockito.when(chatMemory.get("conv-3")).thenReturn(List.of(SystemMessage.builder().text("system").build()));
+            Mockito.when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(documents);
 
-        AssistantMessage msg = AssistantMessage.builder().content("reply").build();
-        engine.addMessage("conv-2", msg);
+            engine.addUserMessage("conv-3", "hello");
 
-        Mockito.verify(chatMemory).add("conv-2", msg);
+            ArgumentCaptor<List<Document>> captor = ArgumentCaptor.forClass(List.class);
+            Mockito.verify(messageFactory).createUser(eq("hello"), captor.capture());
+            assert captor.getValue().equals(documents.subList(0, 2));
+        }
     }
 
     @Test
-    @DisplayName("addResource does nothing when given an empty array")
-    void testAddResource_Empty() {
+    @DisplayName("addUserMessage retrieves knowledge while the history loads")
+    void testAddUserMessage_RetrievesWhileLoadingHistory() {
         ChatMemory chatMemory = Mockito.mock(ChatMemory.class);
         VectorStore vectorStore = Mockito.mock(VectorStore.class);
         MessageFactory messageFactory = Mockito.mock(MessageFactory.class);
-        ContextEngineImpl engine = new ContextEngineImpl(chatMemory, vectorStore, messageFactory);
+        try (ContextEngineImpl engine = engine(chatMemory, vectorStore, messageFactory, new TokenCounter(), 3000)) {
+            // Loading the history only finishes once the search has started, which deadlocks if they run in sequence
+            CountDownLatch searching = new CountDownLatch(1);
+            List<Message> history = List.of(SystemMessage.builder().text("system").build());
+            Mockito.when(chatMemory.get("conv-4")).thenAnswer(invocation -> {
+                assert searching.await(5, TimeUnit.SECONDS);
+                return history;
+            });
+            Mockito.when(vectorStore.similaritySearch(any(SearchRequest.class))).thenAnswer(invocation -> {
+                searching.countDown();
+                return List.of();
+            });
+
+            engine.addUserMessage("conv-4", "hello");
+
+            assert searching.getCount() == 0;
+        }
+    }
 
-        engine.addResource(new Resource[0]);
+    private static ContextEngineImpl engine(ChatMemory chatMemory, VectorStore vectorStore, MessageFactory messageFactory,
+                                            TokenCounter tokenCounter, int maxKnowledgeTokens) {
+        RetrievalPipeline retrievalPipeline = RetrievalPipeline.builder()
+                .retriever(new VectorStoreRetriever(vectorStore, 5, 0.8))
+                .stage(new TokenBudgetStage(tokenCounter, maxKnowledgeTokens))
+                .build();
+        return new ContextEngineImpl(WriteBehindChatMemory.writeThrough(chatMemory), messageFactory, retrievalPipeline,
+                ObservationRegistry.NOOP);
+    }
 
-        // No interaction with vectorStore should occur
-        Mockito.verifyNoInteractions(vectorStore);
+    private static Document document(String name) {
+        return Document.builder().id(name).text((name + " fact. ").repeat(50)).build();
     }
 }
@@ -0,0 +1,56 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.ConversationSummary;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Unit tests for {@link ConversationStats}.
+ */
+class ConversationStatsTest {
+
+    @Test
+    @DisplayName("observations are summed per conversation: requests, iterations, tokens and stages")
+    void testSummarizesObservationsOfAConversation() {
+        ConversationStats stats = new ConversationStats(100, Duration.ofMinutes(1));
+        ObservationRegistry registry = ObservationRegistry.create();
+        registry.observationConfig().observationHandler(stats);
+
+        Observation request = observation(ConversationStats.REQUEST, registry, "conv-1").start();
+        for (int iteration = 0; iteration < 2; iteration++) {
+            observation(ConversationStats.MODEL, registry, "conv-1")
+                    .lowCardinalityKeyValue(ConversationStats.ITERATION, String.valueOf(iteration))
+                    .highCardinalityKeyValue(ConversationStats.INPUT_TOKENS, "100")
+                    .highCardinalityKeyValue(ConversationStats.OUTPUT_TOKENS, "20")
+                    .observe(() -> {});
+        }
+        observation(ConversationStats.PREFIX + "agent.tool", registry, "conv-1")
+                .lowCardinalityKeyValue(ConversationStats.TOOL, "search")
+                .observe(() -> {});
+        observation(ConversationStats.MODEL, registry, "conv-2").observe(() -> {});
+        // Not ours
+        observation("http.server.requests", registry, "conv-1").observe(() -> {});
+        request.stop();
+
+        ConversationSummary summary = stats.get("conv-1").orElseThrow();
+        assert summary.requests() == 1;
+        assert summary.iterations() == 2;
+        assert summary.inputTokens() == 200;
+        assert summary.outputTokens() == 40;
+        assert summary.stages().keySet().equals(Set.of("agent.request", "agent.model", "agent.tool.search"));
+        assert summary.stages().get("agent.model").count() == 2;
+
+        assert stats.get("conv-2").orElseThrow().iterations() == 1;
+        assert stats.get("conv-3").isEmpty();
+    }
+
+    private static Observation observation(String name, ObservationRegistry registry, String conversationId) {
+        return Observation.createNotStarted(name, registry)
+                .highCardinalityKeyValue(ConversationStats.CONVERSATION_ID, conversationId);
+    }
+}
@@ -0,0 +1,86 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.exception.ConversationBusyException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Unit tests for {@link ConversationTurns}.
+ */
+class ConversationTurnsTest {
+
+    @Test
+    @DisplayName("a second turn of a busy conversation waits while other conversations run")
+    void testQueue() {
+        ConversationTurns turns = new ConversationTurns(ConversationTurns.BusyPolicy.QUEUE);
+        Sinks.Many<String> first = Sinks.many().unicast().onBackpressureBuffer();
+        List<String> events = new CopyOnWriteArrayList<>();
+
+        turns.serialize("conv-1", first.asFlux()).subscribe(events::add);
+        turns.serialize("conv-1", Flux.just("second")).subscribe(events::add);
+        turns.serialize("conv-2", Flux.just("other")).subscribe(events::add);
+        assert events.equals(List.of("other"));
+
+        first.tryEmitNext("first");
+        first.tryEmitComplete();
+        assert events.equals(List.of("other", "first", "second"));
+    }
+
+    @Test
+    @DisplayName("a waiting turn that is cancelled still holds the next one back until the running turn ends")
+    void testCancelledWaitingTurn() {
+        ConversationTurns turns = new ConversationTurns(ConversationTurns.BusyPolicy.QUEUE);
+        Sinks.Many<String> first = Sinks.many().unicast().onBackpressureBuffer();
+        List<String> events = new CopyOnWriteArrayList<>();
+
+        turns.serialize("conv-1", first.asFlux()).subscribe(events::add);
+        Disposable second = turns.serialize("conv-1", Flux.just("second")).subscribe(events::add);
+        second.dispose();
+        turns.serialize("conv-1", Flux.just("third")).subscribe(events::add);
+        assert events.isEmpty();
+
+        first.tryEmitNext("first");
+        first.tryEmitComplete();
+        assert events.equals(List.of("first", "third"));
+    }
+
+    @Test
+    @DisplayName("the reject policy fails a second turn of a busy conversation")
+    void testReject() {
+        ConversationTurns turns = new ConversationTurns(ConversationTurns.BusyPolicy.REJECT);
+        Sinks.Many<String> first = Sinks.many().unicast().onBackpressureBuffer();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+
+        turns.serialize("conv-1", first.asFlux()).subscribe();
+        turns.serialize("conv-1", Flux.just("second")).subscribe(event -> {}, error::set);
+        assert error.get() instanceof ConversationBusyException;
+
+        // Free again once the first turn ended
+        first.tryEmitComplete();
+        assert turns.serialize("conv-1", Flux.just("third")).blockLast().equals("third");
+    }
+
+    @Test
+    @DisplayName("the cancel policy ends the turn in flight and runs the new one")
+    void testCancel() {
+        ConversationTurns turns = new ConversationTurns(ConversationTurns.BusyPolicy.CANCEL);
+        Sinks.Many<String> first = Sinks.many().unicast().onBackpressureBuffer();
+        List<String> events = new CopyOnWriteArrayList<>();
+        AtomicReference<Boolean> firstCompleted = new AtomicReference<>(false);
+
+        turns.serialize("conv-1", first.asFlux()).subscribe(events::add, error -> {}, () -> firstCompleted.set(true));
+        first.tryEmitNext("first");
+        turns.serialize("conv-1", Flux.just("second")).subscribe(events::add);
+
+        assert firstCompleted.get();
+        assert first.currentSubscriberCount() == 0;
+        assert events.equals(List.of("first", "second"));
+    }
+}
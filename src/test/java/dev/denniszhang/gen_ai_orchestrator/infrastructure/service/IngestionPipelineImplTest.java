@@ -0,0 +1,95 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import dev.denniszhang.gen_ai_orchestrator.core.model.IngestionJobStatus;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.config.IngestionProperties;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.EmbeddedDocument;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.PgVectorDocumentRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+
+/**
+ * Unit tests for {@link IngestionPipelineImpl}.
+ */
+class IngestionPipelineImplTest {
+
+    @Test
+    @DisplayName("submit returns immediately and the job completes in the background")
+    void testSubmitCompletesInBackground() {
+        EmbeddingModel embeddingModel = Mockito.mock(EmbeddingModel.class);
+        Mockito.when(embeddingModel.embed(anyList())).thenAnswer(invocation ->
+                ((List<?>) invocation.getArgument(0)).stream().map(text -> new float[] {1f}).toList());
+        PgVectorDocumentRepository documentRepository = Mockito.mock(PgVectorDocumentRepository.class);
+        IngestionProperties properties = new IngestionProperties(4, 1, 1, 1, 16, 8, Duration.ofMinutes(1));
+
+        try (IngestionPipelineImpl pipeline = new IngestionPipelineImpl(embeddingModel, documentRepository, new StreamingDocumentReader(), properties)) {
+            IngestionJobStatus submitted = pipeline.submit(List.of(fox()));
+            assert submitted.files().size() == 1;
+
+            IngestionJobStatus status = awaitCompletion(pipeline, submitted);
+
+            assert status.state().equals("COMPLETED");
+            assert status.files().getFirst().filename().equals("fox.txt");
+            assert status.chunksStored() == status.files().getFirst().chunks();
+
+            @SuppressWarnings("unchecked")
+            ArgumentCaptor<List<EmbeddedDocument>> captor = ArgumentCaptor.forClass(List.class);
+            Mockito.verify(documentRepository, Mockito.atLeastOnce()).saveAll(captor.capture());
+            assert captor.getAllValues().stream().mapToLong(List::size).sum() == status.chunksStored();
+        }
+    }
+
+    @Test
+    @DisplayName("chunks whose text is already indexed are not embedded again")
+    void testIndexedChunksAreSkipped() {
+        EmbeddingModel embeddingModel = Mockito.mock(EmbeddingModel.class);
+        PgVectorDocumentRepository documentRepository = Mockito.mock(PgVectorDocumentRepository.class);
+        Mockito.when(documentRepository.findIndexedHashes(anyCollection())).thenAnswer(invocation -> Set.copyOf(invocation.getArgument(0)));
+        IngestionProperties properties = new IngestionProperties(4, 1, 1, 1, 16, 8, Duration.ofMinutes(1));
+
+        try (IngestionPipelineImpl pipeline = new IngestionPipelineImpl(embeddingModel, documentRepository, new StreamingDocumentReader(), properties)) {
+            IngestionJobStatus status = awaitCompletion(pipeline, pipeline.submit(List.of(fox())));
+
+            assert status.state().equals("COMPLETED");
+            assert status.files().getFirst().chunksSkipped() == status.files().getFirst().chunks();
+            Mockito.verifyNoInteractions(embeddingModel);
+            Mockito.verify(documentRepository, Mockito.never()).saveAll(anyList());
+        }
+    }
+
+    @Test
+    @DisplayName("getStatus returns empty for an unknown job")
+    void testUnknownJob() {
+        IngestionProperties properties = new IngestionProperties(4, 1, 1, 1, 16, 8, Duration.ofMinutes(1));
+        try (IngestionPipelineImpl pipeline = new IngestionPipelineImpl(Mockito.mock(EmbeddingModel.class),
+                Mockito.mock(PgVectorDocumentRepository.class), new StreamingDocumentReader(), properties)) {
+            assert pipeline.getStatus("missing").isEmpty();
+        }
+    }
+
+    private static IngestionJobStatus awaitCompletion(IngestionPipelineImpl pipeline, IngestionJobStatus submitted) {
+        return await().atMost(Duration.ofSeconds(10))
+                .until(() -> pipeline.getStatus(submitted.jobId()).orElseThrow(), status -> status.completedAt() != null);
+    }
+
+    private static ByteArrayResource fox() {
+        return new ByteArrayResource("The quick brown fox jumps over the lazy dog.".getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public String getFilename() {
+                return "fox.txt";
+            }
+        };
+    }
+}
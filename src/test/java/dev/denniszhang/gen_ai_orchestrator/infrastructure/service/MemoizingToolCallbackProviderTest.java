@@ -0,0 +1,87 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for {@link MemoizingToolCallbackProvider} and {@link MemoizingToolCallback}.
+ */
+class MemoizingToolCallbackProviderTest {
+
+    @Test
+    @DisplayName("opted-in tools are called once per canonical argument set")
+    void testResultsAreMemoizedByCanonicalArguments() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        CountingTool search = new CountingTool("search");
+        CountingTool clock = new CountingTool("clock");
+        MemoizingToolCallbackProvider provider = new MemoizingToolCallbackProvider(
+                () -> new ToolCallback[] {search, clock},
+                Map.of("search", new MemoizingToolCallbackProvider.Policy(Duration.ofMinutes(1), 100)),
+                meterRegistry);
+
+        // Callbacks are recreated per call, the cache is not
+        assert provider.getToolCallbacks()[0].call("{\"query\": \"fox\", \"limit\": 5}").equals("search #1");
+        assert provider.getToolCallbacks()[0].call("{\"limit\":5,\"query\":\"fox\"}").equals("search #1");
+        assert provider.getToolCallbacks()[0].call("{\"query\":\"dog\",\"limit\":5}").equals("search #2");
+        assert search.calls.get() == 2;
+
+        provider.getToolCallbacks()[1].call("{}");
+        provider.getToolCallbacks()[1].call("{}");
+        assert clock.calls.get() == 2;
+
+        assert meterRegistry.get("orchestrator.tool.cache").tag("tool", "search").tag("result", "hit").counter().count() == 1;
+        assert meterRegistry.get("orchestrator.tool.cache").tag("tool", "search").tag("result", "miss").counter().count() == 2;
+    }
+
+    @Test
+    @DisplayName("a failed call is not cached")
+    void testFailuresAreNotCached() {
+        CountingTool flaky = new CountingTool("flaky") {
+            @Override
+            public String call(String toolInput) {
+                if (this.calls.incrementAndGet() == 1) {
+                    throw new IllegalStateException("gateway unavailable");
+                }
+                return "ok";
+            }
+        };
+        MemoizingToolCallbackProvider provider = new MemoizingToolCallbackProvider(() -> new ToolCallback[] {flaky},
+                Map.of("flaky", new MemoizingToolCallbackProvider.Policy(Duration.ofMinutes(1), 100)), new SimpleMeterRegistry());
+
+        try {
+            provider.getToolCallbacks()[0].call("{}");
+            assert false;
+        } catch (IllegalStateException expected) {
+            // the gateway error reaches the tool calling manager
+        }
+        assert provider.getToolCallbacks()[0].call("{}").equals("ok");
+        assert provider.getToolCallbacks()[0].call("{}").equals("ok");
+        assert flaky.calls.get() == 2;
+    }
+
+    private static class CountingTool implements ToolCallback {
+        final AtomicInteger calls = new AtomicInteger();
+        private final ToolDefinition definition;
+
+        CountingTool(String name) {
+            this.definition = ToolDefinition.builder().name(name).description(name).inputSchema("{}").build();
+        }
+
+        @Override
+        public ToolDefinition getToolDefinition() {
+            return this.definition;
+        }
+
+        @Override
+        public String call(String toolInput) {
+            return this.definition.name() + " #" + this.calls.incrementAndGet();
+        }
+    }
+}
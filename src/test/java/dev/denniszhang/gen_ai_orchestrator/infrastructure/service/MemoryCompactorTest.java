@@ -0,0 +1,60 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+
+/**
+ * Unit tests for {@link MemoryCompactor}.
+ */
+class MemoryCompactorTest {
+
+    @Test
+    @DisplayName("evicted history is summarized in the background into one summary after the system prompt")
+    void testEvictedHistoryIsSummarized() throws InterruptedException {
+        ChatModel chatModel = Mockito.mock(ChatModel.class);
+        Mockito.when(chatModel.call(any(Prompt.class))).thenReturn(response("The user asked about the weather."));
+
+        try (MemoryCompactor compactor = new MemoryCompactor(chatModel, new TokenCounter(), 1, 100, 10, Duration.ofMillis(10));
+             ToolMessageWindowChatMemoryImpl memory = ToolMessageWindowChatMemoryImpl.builder()
+                     .maxMessages(3)
+                     .evictionListener(compactor)
+                     .flushInterval(Duration.ZERO)
+                     .build()) {
+
+            SystemMessage system = SystemMessage.builder().text("system").build();
+            memory.add("conv-1", system);
+            for (int turn = 0; turn < 3; turn++) {
+                memory.add("conv-1", UserMessage.builder().text("question " + turn).build());
+                memory.add("conv-1", AssistantMessage.builder().content("answer " + turn).build());
+            }
+
+            for (int i = 0; i < 500 && memory.getSummary("conv-1").isEmpty(); i++) {
+                Thread.sleep(10);
+            }
+
+            List<Message> messages = memory.get("conv-1");
+            assert memory.getSummary("conv-1").orElseThrow().equals("The user asked about the weather.");
+            assert messages.get(0) == system;
+            assert ToolMessageWindowChatMemoryImpl.isSummary(messages.get(1));
+            assert messages.subList(2, messages.size()).stream().noneMatch(SystemMessage.class::isInstance);
+        }
+    }
+
+    private static ChatResponse response(String text) {
+        return new ChatResponse(List.of(new Generation(AssistantMessage.builder().content(text).build())));
+    }
+}
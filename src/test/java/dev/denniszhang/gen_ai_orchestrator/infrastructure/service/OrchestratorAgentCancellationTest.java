@@ -0,0 +1,101 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import dev.denniszhang.gen_ai_orchestrator.core.service.ContextEngine;
+import dev.denniszhang.gen_ai_orchestrator.core.service.MessageFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.DefaultToolDefinition;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+
+/**
+ * Cancellation of a turn of {@link OrchestratorAgentImpl} while its tools are running.
+ */
+class OrchestratorAgentCancellationTest {
+
+    @Test
+    @DisplayName("cancelling a turn interrupts its tools, answers them as cancelled and calls the model no more")
+    void testCancelWhileToolsRun() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        AtomicInteger modelCalls = new AtomicInteger();
+        ChatModel chatModel = new ChatModel() {
+            @Override
+            public ChatResponse call(Prompt prompt) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Flux<ChatResponse> stream(Prompt prompt) {
+                modelCalls.incrementAndGet();
+                var toolCall = new AssistantMessage.ToolCall("call-0", "function", "stuck", "{}");
+                return Flux.just(new ChatResponse(List.of(new Generation(
+                        AssistantMessage.builder().content("").toolCalls(List.of(toolCall)).build()))));
+            }
+        };
+        ContextEngine contextEngine = Mockito.mock(ContextEngine.class);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        try (ParallelToolCallingManager toolCallingManager = ParallelToolCallingManager.builder().build()) {
+            OrchestratorAgentImpl agent = new OrchestratorAgentImpl(chatModel, contextEngine, Mockito.mock(MessageFactory.class),
+                    new ToolRegistry(() -> new ToolCallback[]{stuckTool(started, interrupted)}), toolCallingManager,
+                    Schedulers.boundedElastic(), new ConversationTurns(ConversationTurns.BusyPolicy.QUEUE),
+                    Optional.empty(), Optional.empty(), Optional.empty(), meterRegistry, ObservationRegistry.NOOP, new TokenCounter());
+
+            Disposable turn = agent.stream("conv-1", "Start").subscribe();
+            assert started.await(5, TimeUnit.SECONDS);
+            turn.dispose();
+
+            assert interrupted.await(5, TimeUnit.SECONDS);
+            Mockito.verify(contextEngine, Mockito.timeout(5_000)).addMessage(eq("conv-1"), argThat(message -> message instanceof ToolResponseMessage toolResponse
+                    && toolResponse.getResponses().getFirst().responseData().contains("cancelled")));
+            assert meterRegistry.get("orchestrator.agent.cancelled").tag("work", "tool-call").counter().count() == 1;
+
+            // The turn is flushed once its cancellation went through, without a further iteration
+            Mockito.verify(contextEngine, Mockito.timeout(5_000)).flush("conv-1");
+            assert modelCalls.get() == 1;
+        }
+    }
+
+    private static ToolCallback stuckTool(CountDownLatch started, CountDownLatch interrupted) {
+        return new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return DefaultToolDefinition.builder().name("stuck").description("stuck").inputSchema("{}").build();
+            }
+
+            @Override
+            public String call(String toolInput) {
+                started.countDown();
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    Thread.currentThread().interrupt();
+                }
+                return "done";
+            }
+        };
+    }
+}
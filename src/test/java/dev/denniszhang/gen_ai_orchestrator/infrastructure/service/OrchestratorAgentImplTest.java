@@ -1,7 +1,10 @@
 package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
 
+import dev.denniszhang.gen_ai_orchestrator.core.model.AgentEvent;
 import dev.denniszhang.gen_ai_orchestrator.core.service.ContextEngine;
 import dev.denniszhang.gen_ai_orchestrator.core.service.MessageFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -13,13 +16,16 @@ import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.model.Generation;
 import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.DefaultToolCallingManager;
 import org.springframework.ai.tool.ToolCallback;
 import org.springframework.ai.tool.ToolCallbackProvider;
 import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
 import reactor.test.StepVerifier;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -65,9 +71,20 @@ class OrchestratorAgentImplTest {
                 chatModel,
                 contextEngine,
                 messageFactory,
-                toolProvider
+                new ToolRegistry(toolProvider::getToolCallbacks),
+                DefaultToolCallingManager.builder().build(),
+                Schedulers.immediate(),
+                new ConversationTurns(ConversationTurns.BusyPolicy.QUEUE),
+                Optional.empty(),
+                Optional.empty(),
+                Optional.empty(),
+                new SimpleMeterRegistry(),
+                ObservationRegistry.NOOP,
+                new TokenCounter()
         );
-        Flux<Message> resultFlux = service.stream("conv-1", "Start");
+        Flux<Message> resultFlux = service.stream("conv-1", "Start")
+                .ofType(AgentEvent.MessageEvent.class)
+                .map(AgentEvent.MessageEvent::message);
 
 
         // Verify that after 10 iterations the fallback message is emitted
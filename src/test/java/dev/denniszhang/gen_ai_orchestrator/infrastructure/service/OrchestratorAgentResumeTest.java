@@ -0,0 +1,267 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import dev.denniszhang.gen_ai_orchestrator.core.model.AgentEvent;
+import dev.denniszhang.gen_ai_orchestrator.core.service.ContextEngine;
+import dev.denniszhang.gen_ai_orchestrator.core.service.MessageFactory;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.TurnCheckpoint;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.InMemoryAppendOnlyChatMemoryRepository;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.InMemoryToolMessageRepository;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.repository.InMemoryTurnCheckpointRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.DefaultToolDefinition;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+
+/**
+ * Resuming interrupted turns of {@link OrchestratorAgentImpl} from their checkpoints.
+ */
+class OrchestratorAgentResumeTest {
+
+    @Test
+    @DisplayName("a turn stopped while its tools ran runs them again, then continues with the next iteration")
+    void testResumeDanglingToolCalls() {
+        AtomicInteger modelCalls = new AtomicInteger();
+        AtomicInteger toolCalls = new AtomicInteger();
+        var toolCall = new AssistantMessage.ToolCall("call-0", "function", "lookup", "{}");
+        List<Message> history = List.of(new UserMessage("Where is my order?"),
+                AssistantMessage.builder().content("").toolCalls(List.of(toolCall)).build());
+        ContextEngine contextEngine = writeBehindContextEngine();
+        Mockito.when(contextEngine.getMessages("conv-1")).thenReturn(history);
+        InMemoryTurnCheckpointRepository checkpoints = new InMemoryTurnCheckpointRepository();
+        checkpoints.save(new TurnCheckpoint("conv-1", null, null, 0, false, false, Instant.now()));
+
+        try (ParallelToolCallingManager toolCallingManager = ParallelToolCallingManager.builder().build()) {
+            OrchestratorAgentImpl agent = agent(answering("Shipped", modelCalls), contextEngine, tool(toolCalls),
+                    toolCallingManager, checkpoints);
+
+            List<AgentEvent> events = agent.resume("conv-1").collectList().block(Duration.ofSeconds(5));
+
+            assert toolCalls.get() == 1;
+            assert modelCalls.get() == 1;
+            assert events.stream().anyMatch(event -> event instanceof AgentEvent.ToolFinished);
+            assert events.getLast() instanceof AgentEvent.MessageEvent answer && answer.message().getText().equals("Shipped");
+            Mockito.verify(contextEngine).addMessage(eq("conv-1"), argThat(message -> message instanceof ToolResponseMessage));
+
+            TurnCheckpoint checkpoint = checkpoints.findByConversationId("conv-1").orElseThrow();
+            assert checkpoint.completed();
+            assert checkpoint.iteration() == 1;
+
+            // Nothing left to resume
+            assert agent.resume("conv-1").collectList().block(Duration.ofSeconds(5)).isEmpty();
+            assert modelCalls.get() == 1;
+        }
+    }
+
+    @Test
+    @DisplayName("a partial answer kept on cancellation is answered again and replaced by the new answer")
+    void testResumePartialAnswer() {
+        List<Prompt> prompts = new CopyOnWriteArrayList<>();
+        ToolMessageWindowChatMemoryImpl memory = ToolMessageWindowChatMemoryImpl.builder()
+                .chatMemoryRepository(new InMemoryAppendOnlyChatMemoryRepository())
+                .toolMessageRepository(new InMemoryToolMessageRepository())
+                .flushInterval(Duration.ofHours(1))
+                .build();
+        memory.add("conv-1", List.of(new UserMessage("Where is my order?"), new AssistantMessage("Your order")));
+        memory.flush("conv-1");
+        InMemoryTurnCheckpointRepository checkpoints = new InMemoryTurnCheckpointRepository();
+        checkpoints.save(new TurnCheckpoint("conv-1", null, null, 0, false, true, Instant.now()));
+        ChatModel chatModel = new ChatModel() {
+            @Override
+            public ChatResponse call(Prompt prompt) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Flux<ChatResponse> stream(Prompt prompt) {
+                prompts.add(prompt);
+                return Flux.just(new ChatResponse(List.of(new Generation(AssistantMessage.builder().content("Shipped").build()))));
+            }
+        };
+
+        try (memory;
+             ContextEngineImpl contextEngine = new ContextEngineImpl(memory, Mockito.mock(MessageFactory.class),
+                     Mockito.mock(RetrievalPipeline.class), ObservationRegistry.NOOP);
+             ParallelToolCallingManager toolCallingManager = ParallelToolCallingManager.builder().build()) {
+            OrchestratorAgentImpl agent = agent(chatModel, contextEngine, tool(new AtomicInteger()), toolCallingManager, checkpoints);
+
+            List<AgentEvent> events = agent.resume("conv-1").collectList().block(Duration.ofSeconds(5));
+
+            assert prompts.size() == 1;
+            assert prompts.getFirst().getInstructions().stream().map(Message::getText).toList().equals(List.of("Where is my order?"))
+                    : prompts.getFirst().getInstructions();
+            assert events.getLast() instanceof AgentEvent.MessageEvent answer && answer.message().getText().equals("Shipped");
+            TurnCheckpoint checkpoint = checkpoints.findByConversationId("conv-1").orElseThrow();
+            assert checkpoint.completed();
+            assert !checkpoint.partialAnswer();
+
+            // One answer, in memory and as written back
+            assert texts(memory.get("conv-1")).equals(List.of("Where is my order?", "Shipped")) : memory.get("conv-1");
+            memory.evict("conv-1");
+            assert texts(memory.get("conv-1")).equals(List.of("Where is my order?", "Shipped")) : memory.get("conv-1");
+        }
+    }
+
+    @Test
+    @DisplayName("a turn cancelled while answering keeps the text streamed so far as a partial answer")
+    void testCancelledAnswerIsPartial() throws InterruptedException {
+        CountDownLatch streamed = new CountDownLatch(1);
+        ContextEngine contextEngine = writeBehindContextEngine();
+        Mockito.when(contextEngine.addUserMessage("conv-1", "Hi")).thenReturn(List.of(new UserMessage("Hi")));
+        InMemoryTurnCheckpointRepository checkpoints = new InMemoryTurnCheckpointRepository();
+        ChatModel chatModel = new ChatModel() {
+            @Override
+            public ChatResponse call(Prompt prompt) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Flux<ChatResponse> stream(Prompt prompt) {
+                return Flux.just(new ChatResponse(List.of(new Generation(AssistantMessage.builder().content("Hel").build()))))
+                        .concatWith(Flux.never());
+            }
+        };
+        MessageFactory messageFactory = Mockito.mock(MessageFactory.class);
+        Mockito.when(messageFactory.createAssistant("Hel")).thenReturn(new AssistantMessage("Hel"));
+
+        try (ParallelToolCallingManager toolCallingManager = ParallelToolCallingManager.builder().build()) {
+            OrchestratorAgentImpl agent = agent(chatModel, contextEngine, messageFactory, tool(new AtomicInteger()),
+                    toolCallingManager, checkpoints);
+
+            Disposable turn = agent.stream("conv-1", "Hi").subscribe(event -> streamed.countDown());
+            assert streamed.await(5, TimeUnit.SECONDS);
+            turn.dispose();
+
+            Mockito.verify(contextEngine).addMessage(eq("conv-1"), argThat(message -> "Hel".equals(message.getText())));
+            // Saved by the flush scheduled on cancellation
+            await().atMost(Duration.ofSeconds(5)).until(() -> checkpoints.findByConversationId("conv-1")
+                    .filter(TurnCheckpoint::partialAnswer)
+                    .isPresent());
+            TurnCheckpoint checkpoint = checkpoints.findByConversationId("conv-1").orElseThrow();
+            assert !checkpoint.completed();
+            assert checkpoint.iteration() == 0;
+        }
+    }
+
+    @Test
+    @DisplayName("a turn is checkpointed as it goes and completed once answered")
+    void testCheckpointed() {
+        AtomicInteger modelCalls = new AtomicInteger();
+        ContextEngine contextEngine = writeBehindContextEngine();
+        Mockito.when(contextEngine.addUserMessage("conv-1", "Hi")).thenReturn(List.of(new UserMessage("Hi")));
+        InMemoryTurnCheckpointRepository checkpoints = new InMemoryTurnCheckpointRepository();
+
+        try (ParallelToolCallingManager toolCallingManager = ParallelToolCallingManager.builder().build()) {
+            OrchestratorAgentImpl agent = agent(answering("Hello", modelCalls), contextEngine, tool(new AtomicInteger()),
+                    toolCallingManager, checkpoints);
+
+            agent.stream("conv-1", "Hi").blockLast(Duration.ofSeconds(5));
+
+            TurnCheckpoint checkpoint = checkpoints.findByConversationId("conv-1").orElseThrow();
+            assert checkpoint.completed();
+            assert checkpoint.iteration() == 0;
+            // Checkpoints wait for the memory to be flushed, which happens once, as the turn ends
+            Mockito.verify(contextEngine).flush("conv-1");
+        }
+    }
+
+    private static List<String> texts(List<Message> messages) {
+        return messages.stream().map(Message::getText).toList();
+    }
+
+    /**
+     * A mocked context engine that, like the write-behind memory, runs the action waiting for the
+     * conversation only when it is flushed.
+     */
+    private static ContextEngine writeBehindContextEngine() {
+        ContextEngine contextEngine = Mockito.mock(ContextEngine.class);
+        AtomicReference<Runnable> waiting = new AtomicReference<>();
+        Mockito.doAnswer(invocation -> {
+            waiting.set(invocation.getArgument(1));
+            return null;
+        }).when(contextEngine).whenFlushed(eq("conv-1"), any());
+        Mockito.doAnswer(invocation -> {
+            Runnable action = waiting.getAndSet(null);
+            if (action != null) {
+                action.run();
+            }
+            return null;
+        }).when(contextEngine).flush("conv-1");
+        return contextEngine;
+    }
+
+    private static OrchestratorAgentImpl agent(ChatModel chatModel, ContextEngine contextEngine, ToolCallback tool,
+                                               ParallelToolCallingManager toolCallingManager,
+                                               InMemoryTurnCheckpointRepository checkpoints) {
+        return agent(chatModel, contextEngine, Mockito.mock(MessageFactory.class), tool, toolCallingManager, checkpoints);
+    }
+
+    private static OrchestratorAgentImpl agent(ChatModel chatModel, ContextEngine contextEngine, MessageFactory messageFactory,
+                                               ToolCallback tool, ParallelToolCallingManager toolCallingManager,
+                                               InMemoryTurnCheckpointRepository checkpoints) {
+        return new OrchestratorAgentImpl(chatModel, contextEngine, messageFactory,
+                new ToolRegistry(() -> new ToolCallback[]{tool}), toolCallingManager,
+                Schedulers.boundedElastic(), new ConversationTurns(ConversationTurns.BusyPolicy.QUEUE),
+                Optional.empty(), Optional.empty(), Optional.of(checkpoints),
+                new SimpleMeterRegistry(), ObservationRegistry.NOOP, new TokenCounter());
+    }
+
+    private static ChatModel answering(String answer, AtomicInteger calls) {
+        return new ChatModel() {
+            @Override
+            public ChatResponse call(Prompt prompt) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Flux<ChatResponse> stream(Prompt prompt) {
+                calls.incrementAndGet();
+                return Flux.just(new ChatResponse(List.of(new Generation(AssistantMessage.builder().content(answer).build()))));
+            }
+        };
+    }
+
+    private static ToolCallback tool(AtomicInteger calls) {
+        return new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return DefaultToolDefinition.builder().name("lookup").description("lookup").inputSchema("{}").build();
+            }
+
+            @Override
+            public String call(String toolInput) {
+                calls.incrementAndGet();
+                return "in transit";
+            }
+        };
+    }
+}
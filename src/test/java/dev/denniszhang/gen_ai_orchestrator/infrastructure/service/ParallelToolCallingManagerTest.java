@@ -0,0 +1,266 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.DefaultToolDefinition;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.observation.ToolCallingObservationContext;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for {@link ParallelToolCallingManager}.
+ */
+class ParallelToolCallingManagerTest {
+
+    @Test
+    @DisplayName("independent tool calls run concurrently and respond in call order")
+    void testToolCallsRunConcurrently() {
+        try (ParallelToolCallingManager manager = ParallelToolCallingManager.builder().build()) {
+            // Each tool finishes only once all three are running, which sequential execution never gets to
+            CountDownLatch running = new CountDownLatch(3);
+            Prompt prompt = prompt(rendezvousTool("slow", running), rendezvousTool("fast", running), rendezvousTool("medium", running));
+
+            ToolExecutionResult result = manager.executeToolCalls(prompt, response("slow", "fast", "medium"));
+
+            List<ToolResponseMessage.ToolResponse> responses = ((ToolResponseMessage) result.conversationHistory().getLast()).getResponses();
+            assert responses.stream().map(ToolResponseMessage.ToolResponse::name).toList().equals(List.of("slow", "fast", "medium"));
+            assert responses.stream().map(ToolResponseMessage.ToolResponse::id).toList().equals(List.of("call-0", "call-1", "call-2"));
+            assert responses.stream().map(ToolResponseMessage.ToolResponse::responseData).toList()
+                    .equals(List.of("slow done", "fast done", "medium done"));
+        }
+    }
+
+    @Test
+    @DisplayName("a tool exceeding its timeout is cancelled and answered with an error")
+    void testToolTimeout() {
+        try (ParallelToolCallingManager manager = ParallelToolCallingManager.builder()
+                .timeouts(Map.of("stuck", Duration.ofMillis(100)))
+                .build()) {
+            Prompt prompt = prompt(sleepingTool("stuck", 5_000), sleepingTool("fast", 10));
+
+            ToolExecutionResult result = manager.executeToolCalls(prompt, response("stuck", "fast"));
+
+            List<ToolResponseMessage.ToolResponse> responses = ((ToolResponseMessage) result.conversationHistory().getLast()).getResponses();
+            assert responses.get(0).responseData().contains("did not finish");
+            assert responses.get(1).responseData().equals("fast done");
+        }
+    }
+
+    @Test
+    @DisplayName("the concurrency cap limits how many tools run at once")
+    void testConcurrencyCap() {
+        try (ParallelToolCallingManager manager = ParallelToolCallingManager.builder().maxConcurrency(1).build()) {
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger maxRunning = new AtomicInteger();
+            CountDownLatch bothRunning = new CountDownLatch(2);
+            ToolCallback[] tools = new ToolCallback[2];
+            for (int i = 0; i < tools.length; i++) {
+                tools[i] = tool(String.valueOf((char) ('a' + i)), () -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    bothRunning.countDown();
+                    // Gives the other call the chance to start, which it only gets if the cap isn't applied
+                    boolean overlapped = bothRunning.await(200, TimeUnit.MILLISECONDS);
+                    running.decrementAndGet();
+                    return overlapped ? "overlapped" : "alone";
+                });
+            }
+
+            ToolExecutionResult result = manager.executeToolCalls(prompt(tools), response("a", "b"));
+
+            List<ToolResponseMessage.ToolResponse> responses = ((ToolResponseMessage) result.conversationHistory().getLast()).getResponses();
+            assert responses.getFirst().responseData().equals("alone") : responses;
+            assert maxRunning.get() == 1;
+        }
+    }
+
+    @Test
+    @DisplayName("the listener hears every tool start and exactly one outcome")
+    void testListenerEvents() {
+        try (ParallelToolCallingManager manager = ParallelToolCallingManager.builder()
+                .timeouts(Map.of("stuck", Duration.ofMillis(100)))
+                .build()) {
+            List<String> events = new CopyOnWriteArrayList<>();
+            ToolExecutionListener listener = new ToolExecutionListener() {
+                @Override
+                public void onToolStarted(AssistantMessage.ToolCall toolCall) {
+                    events.add("started " + toolCall.name());
+                }
+
+                @Override
+                public void onToolFinished(AssistantMessage.ToolCall toolCall, String result, Duration duration) {
+                    events.add("finished " + toolCall.name());
+                }
+
+                @Override
+                public void onToolFailed(AssistantMessage.ToolCall toolCall, String error, Duration duration) {
+                    events.add("failed " + toolCall.name());
+                }
+            };
+
+            manager.executeToolCalls(prompt(sleepingTool("stuck", 5_000), sleepingTool("fast", 10)), response("stuck", "fast"), listener);
+
+            assert events.size() == 4 : events;
+            assert events.containsAll(List.of("started stuck", "failed stuck", "started fast", "finished fast"));
+        }
+    }
+
+    @Test
+    @DisplayName("cancelling the dispatched calls interrupts them and answers them as cancelled")
+    void testCancel() {
+        try (ParallelToolCallingManager manager = ParallelToolCallingManager.builder().defaultTimeout(Duration.ofSeconds(10)).build()) {
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch interrupted = new CountDownLatch(1);
+            ToolCallback stuck = tool("stuck", () -> {
+                started.countDown();
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw e;
+                }
+                return "stuck done";
+            });
+            ToolExecutionListener listener = new ToolExecutionListener() {
+                @Override
+                public void onDispatched(Runnable cancel) {
+                    Thread.ofVirtual().start(() -> {
+                        try {
+                            started.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        cancel.run();
+                    });
+                }
+            };
+
+            ToolExecutionResult result = manager.executeToolCalls(prompt(stuck), response("stuck"), listener);
+
+            List<ToolResponseMessage.ToolResponse> responses = ((ToolResponseMessage) result.conversationHistory().getLast()).getResponses();
+            assert responses.getFirst().responseData().contains("was cancelled") : responses;
+            assert awaitQuietly(interrupted);
+        }
+    }
+
+    @Test
+    @DisplayName("every tool call is observed with its arguments and result")
+    void testToolCallsAreObserved() {
+        List<ToolCallingObservationContext> observed = new CopyOnWriteArrayList<>();
+        ObservationRegistry observationRegistry = ObservationRegistry.create();
+        observationRegistry.observationConfig().observationHandler(new ObservationHandler<>() {
+            @Override
+            public void onStop(Observation.Context context) {
+                observed.add((ToolCallingObservationContext) context);
+            }
+
+            @Override
+            public boolean supportsContext(Observation.Context context) {
+                return context instanceof ToolCallingObservationContext;
+            }
+        });
+
+        try (ParallelToolCallingManager manager = ParallelToolCallingManager.builder().observationRegistry(observationRegistry).build()) {
+            manager.executeToolCalls(prompt(tool("a", () -> "a done"), tool("b", () -> "b done")), response("a", "b"));
+        }
+
+        assert observed.size() == 2 : observed;
+        assert observed.stream().map(context -> context.getToolDefinition().name()).sorted().toList().equals(List.of("a", "b"));
+        assert observed.stream().allMatch(context -> context.getToolCallArguments().equals("{}"));
+        assert observed.stream().map(ToolCallingObservationContext::getToolCallResult).sorted().toList().equals(List.of("a done", "b done"));
+    }
+
+    private static Prompt prompt(ToolCallback... tools) {
+        return Prompt.builder()
+                .messages(List.of(UserMessage.builder().text("go").build()))
+                .chatOptions(ToolCallingChatOptions.builder().toolCallbacks(tools).internalToolExecutionEnabled(false).build())
+                .build();
+    }
+
+    private static ChatResponse response(String... toolNames) {
+        List<AssistantMessage.ToolCall> toolCalls = new ArrayList<>();
+        for (int i = 0; i < toolNames.length; i++) {
+            toolCalls.add(new AssistantMessage.ToolCall("call-" + i, "function", toolNames[i], "{}"));
+        }
+        return ChatResponse.builder()
+                .generations(List.of(new Generation(AssistantMessage.builder().content("").toolCalls(toolCalls).build())))
+                .build();
+    }
+
+    private static ToolCallback rendezvousTool(String name, CountDownLatch running) {
+        return tool(name, () -> {
+            running.countDown();
+            return running.await(5, TimeUnit.SECONDS) ? name + " done" : name + " ran alone";
+        });
+    }
+
+    private static ToolCallback tool(String name, Callable<String> body) {
+        return new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return DefaultToolDefinition.builder().name(name).description(name).inputSchema("{}").build();
+            }
+
+            @Override
+            public String call(String toolInput) {
+                try {
+                    return body.call();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return name + " interrupted";
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+    }
+
+    private static boolean awaitQuietly(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static ToolCallback sleepingTool(String name, long millis) {
+        return new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return DefaultToolDefinition.builder().name(name).description(name).inputSchema("{}").build();
+            }
+
+            @Override
+            public String call(String toolInput) {
+                try {
+                    Thread.sleep(millis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return name + " interrupted";
+                }
+                return name + " done";
+            }
+        };
+    }
+}
@@ -0,0 +1,150 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.exception.ModelUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * Unit tests for {@link ResilientChatModel}.
+ */
+class ResilientChatModelTest {
+    private static final Prompt PROMPT = new Prompt("Where is my order?");
+
+    @Test
+    @DisplayName("a stream stalled before its first chunk times out and is retried")
+    void testFirstTokenTimeoutAndRetry() {
+        FakeModel primary = new FakeModel(attempt -> attempt == 0 ? Flux.never() : answer("primary"));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ResilientChatModel model = ResilientChatModel.builder()
+                .primary(primary)
+                .firstTokenTimeout(Duration.ofMillis(100))
+                .backoff(Duration.ofMillis(10), Duration.ofMillis(20))
+                .meterRegistry(meterRegistry)
+                .build();
+
+        assert text(model.stream(PROMPT)).equals("primary");
+        assert primary.calls.get() == 2;
+        assert meterRegistry.get("orchestrator.model.retries").counter().count() == 1;
+    }
+
+    @Test
+    @DisplayName("a failure after the first chunk is not retried")
+    void testNoRetryAfterFirstChunk() {
+        FakeModel primary = new FakeModel(attempt -> answer("partial").concatWith(Flux.error(new IllegalStateException("reset"))));
+        ResilientChatModel model = ResilientChatModel.builder()
+                .primary(primary)
+                .backoff(Duration.ofMillis(10), Duration.ofMillis(20))
+                .build();
+
+        try {
+            model.stream(PROMPT).blockLast();
+            assert false;
+        } catch (IllegalStateException e) {
+            assert primary.calls.get() == 1;
+        }
+    }
+
+    @Test
+    @DisplayName("calls fail over to the secondary while the primary's circuit is open")
+    void testFailover() {
+        FakeModel primary = new FakeModel(attempt -> Flux.error(new IllegalStateException("429")));
+        FakeModel secondary = new FakeModel(attempt -> answer("secondary"));
+        ResilientChatModel model = ResilientChatModel.builder()
+                .primary(primary)
+                .secondary(secondary)
+                .maxAttempts(2)
+                .backoff(Duration.ofMillis(10), Duration.ofMillis(20))
+                .circuitBreaker(1, Duration.ofMinutes(1))
+                .build();
+
+        assert text(model.stream(PROMPT)).equals("secondary");
+        assert model.call(PROMPT).getResult().getOutput().getText().equals("secondary");
+        assert primary.calls.get() == 1;
+    }
+
+    @Test
+    @DisplayName("without a backend taking calls, a call fails with the time until one does")
+    void testUnavailable() {
+        FakeModel primary = new FakeModel(attempt -> Flux.error(new IllegalStateException("500")));
+        ResilientChatModel model = ResilientChatModel.builder()
+                .primary(primary)
+                .maxAttempts(2)
+                .backoff(Duration.ofMillis(10), Duration.ofMillis(20))
+                .circuitBreaker(1, Duration.ofMinutes(1))
+                .build();
+
+        try {
+            model.stream(PROMPT).blockLast();
+            assert false;
+        } catch (ModelUnavailableException e) {
+            assert e.getRetryAfterSeconds() > 0;
+        }
+    }
+
+    @Test
+    @DisplayName("a slow stream is hedged to the secondary and the first to start wins")
+    void testHedge() {
+        AtomicBoolean primaryCancelled = new AtomicBoolean();
+        FakeModel primary = new FakeModel(attempt -> answer("primary")
+                .delaySubscription(Duration.ofSeconds(5))
+                .doOnCancel(() -> primaryCancelled.set(true)));
+        FakeModel secondary = new FakeModel(attempt -> answer("secondary"));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ResilientChatModel model = ResilientChatModel.builder()
+                .primary(primary)
+                .secondary(secondary)
+                .hedge(0.95, Duration.ofMillis(50))
+                .meterRegistry(meterRegistry)
+                .build();
+
+        assert text(model.stream(PROMPT)).equals("secondary");
+        assert primaryCancelled.get();
+        assert meterRegistry.get("orchestrator.model.hedges").counter().count() == 1;
+    }
+
+    private static Flux<ChatResponse> answer(String text) {
+        return Flux.just(new ChatResponse(List.of(new Generation(AssistantMessage.builder().content(text).build()))));
+    }
+
+    private static String text(Flux<ChatResponse> responses) {
+        return responses.map(response -> response.getResult().getOutput().getText())
+                .collectList()
+                .map(texts -> String.join("", texts))
+                .block(Duration.ofSeconds(5));
+    }
+
+    /**
+     * A local stand-in for a backend, answering each attempt as told.
+     */
+    private static final class FakeModel implements ChatModel {
+        private final IntFunction<Flux<ChatResponse>> responses;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private FakeModel(IntFunction<Flux<ChatResponse>> responses) {
+            this.responses = responses;
+        }
+
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            return stream(prompt).blockLast();
+        }
+
+        @Override
+        public Flux<ChatResponse> stream(Prompt prompt) {
+            return this.responses.apply(this.calls.getAndIncrement());
+        }
+    }
+}
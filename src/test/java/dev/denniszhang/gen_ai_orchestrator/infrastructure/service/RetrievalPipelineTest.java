@@ -0,0 +1,124 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.EmbeddedDocument;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for {@link RetrievalPipeline} and its stages.
+ */
+class RetrievalPipelineTest {
+
+    @Test
+    @DisplayName("rankings are fused by rank, duplicates dropped and every stage timed")
+    void testHybridRetrieval() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        EmbeddedDocument shared = candidate("shared", "Refunds are paid within 14 days.", 1, 0);
+        EmbeddedDocument copy = candidate("copy", "refunds are paid   within 14 days.", 1, 0);
+        RetrievalPipeline pipeline = RetrievalPipeline.builder()
+                .retriever(retriever("vector", List.of(candidate("vector-only", "Shipping takes a week.", 0, 1), shared, copy)))
+                .retriever(retriever("full-text", List.of(shared, candidate("text-only", "Order ids start with ORD-.", 0, 1))))
+                .stage(new DeduplicationStage())
+                .stage(new TokenBudgetStage(new TokenCounter(), 1000))
+                .meterRegistry(meterRegistry)
+                .build();
+
+        List<String> ids = pipeline.retrieve("refund").stream().map(Document::getId).toList();
+
+        // Found by both retrievers, so ahead of the first hit of each single one
+        assert ids.equals(List.of("shared", "vector-only", "text-only"));
+        for (String stage : List.of("vector", "full-text", "fusion", "dedup", "budget")) {
+            assert meterRegistry.get("orchestrator.retrieval.stage").tag("stage", stage).timer().count() == 1;
+        }
+        assert meterRegistry.get("orchestrator.retrieval").timer().count() == 1;
+    }
+
+    @Test
+    @DisplayName("a failing or slow retriever is left out instead of failing retrieval, and the slow one is interrupted")
+    void testFailingRetrieversAreSkipped() throws InterruptedException {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        try (RetrievalPipeline pipeline = RetrievalPipeline.builder()
+                .retriever(retriever("vector", List.of(candidate("a", "alpha", 1, 0))))
+                .retriever(new RetrievalPipeline.Retriever() {
+                    @Override
+                    public String name() {
+                        return "broken";
+                    }
+
+                    @Override
+                    public List<EmbeddedDocument> retrieve(String query) {
+                        throw new IllegalStateException("database unavailable");
+                    }
+                })
+                .retriever(new RetrievalPipeline.Retriever() {
+                    @Override
+                    public String name() {
+                        return "slow";
+                    }
+
+                    @Override
+                    public List<EmbeddedDocument> retrieve(String query) {
+                        try {
+                            Thread.sleep(10_000);
+                        } catch (InterruptedException e) {
+                            interrupted.countDown();
+                            Thread.currentThread().interrupt();
+                        }
+                        return List.of(candidate("b", "beta", 0, 1));
+                    }
+                })
+                .timeout(Duration.ofMillis(100))
+                .meterRegistry(new SimpleMeterRegistry())
+                .build()) {
+
+            assert pipeline.retrieve("alpha").stream().map(Document::getId).toList().equals(List.of("a"));
+            assert interrupted.await(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    @DisplayName("MMR prefers a less relevant chunk over a near copy of one already picked")
+    void testMaximalMarginalRelevance() {
+        List<EmbeddedDocument> candidates = List.of(
+                scored(candidate("best", "best", 1, 0), 1.0),
+                scored(candidate("near-copy", "near copy", 0.99f, 0.01f), 0.95),
+                scored(candidate("different", "different", 0, 1), 0.8));
+
+        List<String> ids = new MaximalMarginalRelevanceStage(0.5, 2).apply("query", candidates).stream()
+                .map(candidate -> candidate.document().getId())
+                .toList();
+
+        assert ids.equals(List.of("best", "different"));
+        assert new MaximalMarginalRelevanceStage(1.0, 2).apply("query", candidates).get(1).document().getId().equals("near-copy");
+    }
+
+    private static RetrievalPipeline.Retriever retriever(String name, List<EmbeddedDocument> ranking) {
+        return new RetrievalPipeline.Retriever() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public List<EmbeddedDocument> retrieve(String query) {
+                return ranking;
+            }
+        };
+    }
+
+    private static EmbeddedDocument candidate(String id, String text, float x, float y) {
+        return new EmbeddedDocument(Document.builder().id(id).text(text).metadata(Map.of()).build(), new float[] {x, y});
+    }
+
+    private static EmbeddedDocument scored(EmbeddedDocument candidate, double score) {
+        return new EmbeddedDocument(candidate.document().mutate().score(score).build(), candidate.embedding());
+    }
+}
@@ -0,0 +1,105 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.embedding.EmbeddingModel;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Unit tests for {@link SemanticResponseCache}.
+ */
+class SemanticResponseCacheTest {
+
+    @Test
+    @DisplayName("a similar question in the same scope is answered from the cache")
+    void testSimilarQuestionHits() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SemanticResponseCache cache = cache(meterRegistry, Set.of());
+
+        SemanticResponseCache.Lookup miss = cache.lookup("tenant-a", "What time is it?");
+        assert miss.answer().isEmpty();
+        SemanticResponseCache.Recording recording = cache.record(miss);
+        AssistantMessage answer = AssistantMessage.builder().content("It is noon.").build();
+        recording.onResponse(new Prompt(UserMessage.builder().text("What time is it?").build()), response(answer));
+        recording.onAnswer(answer);
+
+        assert cache.lookup("tenant-a", "what time is it").answer().orElseThrow().equals("It is noon.");
+        assert cache.lookup("tenant-b", "What time is it?").answer().isEmpty();
+        assert cache.lookup("tenant-a", "Book a flight").answer().isEmpty();
+
+        assert meterRegistry.get("orchestrator.response.cache").tag("result", "hit").counter().count() == 1;
+        assert meterRegistry.get("orchestrator.response.cache").tag("result", "miss").counter().count() == 3;
+        assert meterRegistry.get("orchestrator.response.cache.saved.tokens").counter().count() > 0;
+    }
+
+    @Test
+    @DisplayName("an answer that needed a side-effecting tool is not cached")
+    void testSideEffectsBypassTheCache() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SemanticResponseCache cache = cache(meterRegistry, Set.of("clock"));
+
+        SemanticResponseCache.Recording readOnly = cache.record(cache.lookup("tenant-a", "What time is it?"));
+        readOnly.onToolCalls(toolCall("clock"));
+        readOnly.onAnswer(AssistantMessage.builder().content("It is noon.").build());
+
+        SemanticResponseCache.Recording sideEffect = cache.record(cache.lookup("tenant-a", "Book a flight"));
+        sideEffect.onToolCalls(toolCall("book_flight"));
+        sideEffect.onAnswer(AssistantMessage.builder().content("Your flight is booked.").build());
+
+        assert cache.lookup("tenant-a", "What time is it?").answer().isPresent();
+        assert cache.lookup("tenant-a", "Book a flight").answer().isEmpty();
+        assert meterRegistry.get("orchestrator.response.cache.bypassed").counter().count() == 1;
+    }
+
+    @Test
+    @DisplayName("a change of knowledge drops cached answers and those being recorded")
+    void testKnowledgeChangeInvalidates() {
+        SemanticResponseCache cache = cache(new SimpleMeterRegistry(), Set.of());
+        AssistantMessage answer = AssistantMessage.builder().content("It is noon.").build();
+
+        cache.record(cache.lookup("tenant-a", "What time is it?")).onAnswer(answer);
+        SemanticResponseCache.Recording inFlight = cache.record(cache.lookup("tenant-a", "Book a flight"));
+        cache.knowledgeChanged();
+        inFlight.onAnswer(AssistantMessage.builder().content("Flights are listed in the travel policy.").build());
+
+        assert cache.lookup("tenant-a", "What time is it?").answer().isEmpty();
+        assert cache.lookup("tenant-a", "Book a flight").answer().isEmpty();
+
+        cache.record(cache.lookup("tenant-a", "What time is it?")).onAnswer(answer);
+        assert cache.lookup("tenant-a", "What time is it?").answer().isPresent();
+    }
+
+    private static SemanticResponseCache cache(SimpleMeterRegistry meterRegistry, Set<String> readOnlyTools) {
+        EmbeddingModel embeddingModel = Mockito.mock(EmbeddingModel.class);
+        Mockito.when(embeddingModel.embed(Mockito.anyString())).thenAnswer(invocation ->
+                invocation.<String>getArgument(0).toLowerCase().contains("time")
+                        ? new float[] {1f, 0.01f, 0f}
+                        : new float[] {0f, 0f, 1f});
+        return SemanticResponseCache.builder()
+                .embeddingModel(embeddingModel)
+                .similarityThreshold(0.95)
+                .readOnlyTools(readOnlyTools)
+                .meterRegistry(meterRegistry)
+                .build();
+    }
+
+    private static ChatResponse response(AssistantMessage message) {
+        return ChatResponse.builder().generations(List.of(new Generation(message))).build();
+    }
+
+    private static AssistantMessage toolCall(String name) {
+        return AssistantMessage.builder()
+                .content("")
+                .toolCalls(List.of(new AssistantMessage.ToolCall("call-0", "function", name, "{}")))
+                .build();
+    }
+}
@@ -0,0 +1,97 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit tests for {@link StreamingDocumentReader}.
+ */
+class StreamingDocumentReaderTest {
+
+    @Test
+    @DisplayName("a large document is emitted as several chunks in order")
+    void testReadEmitsChunksIncrementally() {
+        StreamingDocumentReader reader = new StreamingDocumentReader(50, 20, 5, 10000);
+        List<Document> chunks = new ArrayList<>();
+
+        int count = reader.read(resource("notes.txt", sentences(200)), chunks::add);
+
+        assert count == chunks.size();
+        assert chunks.size() > 10;
+        assert chunks.getFirst().getText().startsWith("Sentence 0 ");
+        assert chunks.getLast().getText().contains("Sentence 199 ");
+        assert chunks.getFirst().getMetadata().get("source").equals("notes.txt");
+        assert chunks.get(3).getMetadata().get("chunkIndex").equals(3);
+    }
+
+    @Test
+    @DisplayName("reading stops once maxNumChunks is reached")
+    void testReadHonoursMaxNumChunks() {
+        StreamingDocumentReader reader = new StreamingDocumentReader(50, 20, 5, 3);
+        List<Document> chunks = new ArrayList<>();
+
+        int count = reader.read(resource("notes.txt", sentences(200)), chunks::add);
+
+        assert count == 3;
+        assert chunks.size() == 3;
+    }
+
+    @Test
+    @DisplayName("text without word boundaries is cut between characters, never inside one")
+    void testReadCutsMultiByteText() {
+        StreamingDocumentReader reader = new StreamingDocumentReader(50, 20, 0, 10000);
+        List<Document> chunks = new ArrayList<>();
+        String text = "東京の天気は晴れです🌤️".repeat(300);
+
+        reader.read(resource("notes.txt", text), chunks::add);
+
+        assert chunks.size() > 10;
+        assert String.join("", chunks.stream().map(Document::getText).toList()).equals(text);
+    }
+
+    @Test
+    @DisplayName("the last chunks can reach maxNumChunks")
+    void testReadHonoursMaxNumChunksAtTheEnd() {
+        StreamingDocumentReader reader = new StreamingDocumentReader(50, 20, 5, 2);
+        List<Document> chunks = new ArrayList<>();
+
+        int count = reader.read(resource("notes.txt", sentences(5)), chunks::add);
+
+        assert count == 2;
+        assert chunks.size() == 2;
+    }
+
+    @Test
+    @DisplayName("completeChars stops before a character whose bytes are cut off")
+    void testCompleteChars() {
+        byte[] utf8 = "aé🌤".getBytes(StandardCharsets.UTF_8);
+
+        assert StreamingDocumentReader.completeChars(utf8) == 4;
+        assert StreamingDocumentReader.completeChars(Arrays.copyOf(utf8, utf8.length - 1)) == 2;
+        assert StreamingDocumentReader.completeChars(Arrays.copyOf(utf8, 2)) == 1;
+    }
+
+    private static String sentences(int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append("Sentence ").append(i).append(" describes the quick brown fox jumping over the lazy dog. ");
+        }
+        return text.toString();
+    }
+
+    private static ByteArrayResource resource(String filename, String text) {
+        return new ByteArrayResource(text.getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public String getFilename() {
+                return filename;
+            }
+        };
+    }
+}
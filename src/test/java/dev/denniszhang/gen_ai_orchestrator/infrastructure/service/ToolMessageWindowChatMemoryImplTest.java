@@ -0,0 +1,95 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Unit tests for the token budgets and window updates of {@link ToolMessageWindowChatMemoryImpl}.
+ */
+class ToolMessageWindowChatMemoryImplTest {
+
+    private final TokenCounter tokenCounter = new TokenCounter();
+
+    @Test
+    @DisplayName("an oversized tool response is truncated while small responses are kept whole")
+    void testToolOutputIsTruncated() {
+        ToolMessageWindowChatMemoryImpl memory = ToolMessageWindowChatMemoryImpl.builder()
+                .tokenCounter(this.tokenCounter)
+                .maxToolOutputTokens(50)
+                .flushInterval(Duration.ZERO)
+                .build();
+
+        memory.add("conv-1", toolResponse("call-0", "clock", "12:00"));
+        memory.add("conv-1", ToolResponseMessage.builder()
+                .responses(List.of(
+                        new ToolResponseMessage.ToolResponse("call-1", "clock", "12:00"),
+                        new ToolResponseMessage.ToolResponse("call-2", "search", "result ".repeat(500))))
+                .build());
+
+        List<ToolResponseMessage.ToolResponse> responses = ((ToolResponseMessage) memory.get("conv-1").getLast()).getResponses();
+        assert responses.get(0).responseData().equals("12:00");
+        assert responses.get(1).responseData().endsWith("[truncated]");
+        assert this.tokenCounter.count(responses.get(0).responseData()) + this.tokenCounter.count(responses.get(1).responseData()) <= 50;
+        memory.close();
+    }
+
+    @Test
+    @DisplayName("over the history budget, past tool exchanges are evicted before the conversation itself")
+    void testHistoryEvictsToolExchangesFirst() {
+        SystemMessage system = SystemMessage.builder().text("system").build();
+        UserMessage question = UserMessage.builder().text("What time is it?").build();
+        AssistantMessage toolCall = AssistantMessage.builder()
+                .content("")
+                .toolCalls(List.of(new AssistantMessage.ToolCall("call-0", "function", "clock", "{}")))
+                .build();
+        ToolResponseMessage toolResponse = toolResponse("call-0", "clock", "The current time is twelve o'clock. ".repeat(10));
+        AssistantMessage answer = AssistantMessage.builder().content("It is noon.").build();
+        UserMessage followUp = UserMessage.builder().text("Thanks!").build();
+
+        // Room for the conversation, but not for the tool exchange as well
+        int budget = this.tokenCounter.count(List.of(question, answer, followUp)) + 5;
+        ToolMessageWindowChatMemoryImpl memory = ToolMessageWindowChatMemoryImpl.builder()
+                .tokenCounter(this.tokenCounter)
+                .maxHistoryTokens(budget)
+                .flushInterval(Duration.ZERO)
+                .build();
+
+        for (Message message : List.of(system, question, toolCall, toolResponse, answer, followUp)) {
+            memory.add("conv-1", message);
+        }
+
+        assert memory.get("conv-1").equals(List.of(system, question, answer, followUp));
+        memory.close();
+    }
+
+    @Test
+    @DisplayName("replacing the last message drops it from the window and from what was written")
+    void testReplaceLast() {
+        ToolMessageWindowChatMemoryImpl memory = ToolMessageWindowChatMemoryImpl.builder()
+                .flushInterval(Duration.ZERO)
+                .build();
+
+        memory.add("conv-1", List.of(UserMessage.builder().text("Where is my order?").build(),
+                AssistantMessage.builder().content("Your order").build()));
+        memory.replaceLast("conv-1", AssistantMessage.builder().content("Your order has shipped.").build());
+
+        assert memory.get("conv-1").stream().map(Message::getText).toList().equals(List.of("Where is my order?", "Your order has shipped."));
+        memory.evict("conv-1");
+        assert memory.get("conv-1").stream().map(Message::getText).toList().equals(List.of("Where is my order?", "Your order has shipped."));
+        memory.close();
+    }
+
+    private static ToolResponseMessage toolResponse(String id, String name, String data) {
+        return ToolResponseMessage.builder()
+                .responses(List.of(new ToolResponseMessage.ToolResponse(id, name, data)))
+                .build();
+    }
+}
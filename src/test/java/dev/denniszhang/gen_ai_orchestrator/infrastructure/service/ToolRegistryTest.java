@@ -0,0 +1,79 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.exception.UnknownToolException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Unit tests for {@link ToolRegistry}.
+ */
+class ToolRegistryTest {
+
+    @Test
+    @DisplayName("tools and their definitions are listed once until the registry is refreshed")
+    void testSnapshotIsReusedUntilRefresh() {
+        AtomicInteger listings = new AtomicInteger();
+        AtomicReference<ToolCallback[]> tools = new AtomicReference<>(new ToolCallback[] {new NamedTool("search")});
+        try (ToolRegistry registry = new ToolRegistry(() -> {
+            listings.incrementAndGet();
+            return tools.get();
+        })) {
+            ToolDefinition definition = registry.getToolCallbacks().getFirst().getToolDefinition();
+            registry.getToolCallbacks();
+            assert listings.get() == 1;
+            assert registry.getToolCallbacks().getFirst().getToolDefinition() == definition;
+            assert registry.getToolCallbacks().getFirst().call("{}").equals("search");
+
+            tools.set(new ToolCallback[] {new NamedTool("search"), new NamedTool("clock")});
+            registry.refresh();
+            assert listings.get() == 2;
+            assert registry.getToolCallbacks().size() == 2;
+        }
+    }
+
+    @Test
+    @DisplayName("a request can narrow the tools to the ones it names")
+    void testToolsAreNarrowedByName() {
+        try (ToolRegistry registry = new ToolRegistry(() -> new ToolCallback[] {
+                new NamedTool("search"), new NamedTool("clock"), new NamedTool("fetch")})) {
+            List<String> narrowed = registry.getToolCallbacks(List.of("fetch", "search", "fetch")).stream()
+                    .map(tool -> tool.getToolDefinition().name())
+                    .toList();
+
+            assert narrowed.equals(List.of("fetch", "search"));
+            assert registry.getToolCallbacks(List.of()).size() == 3;
+            assert registry.getToolCallbacks(null).size() == 3;
+        }
+    }
+
+    @Test
+    @DisplayName("a request naming a tool that doesn't exist is rejected")
+    void testUnknownToolsAreRejected() {
+        try (ToolRegistry registry = new ToolRegistry(() -> new ToolCallback[] {new NamedTool("search")})) {
+            try {
+                registry.getToolCallbacks(List.of("search", "unknown", "unknown"));
+                assert false;
+            } catch (UnknownToolException e) {
+                assert e.getToolNames().equals(List.of("unknown"));
+            }
+        }
+    }
+
+    private record NamedTool(String name) implements ToolCallback {
+        @Override
+        public ToolDefinition getToolDefinition() {
+            return ToolDefinition.builder().name(this.name).description(this.name).inputSchema("{}").build();
+        }
+
+        @Override
+        public String call(String toolInput) {
+            return this.name;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import dev.denniszhang.gen_ai_orchestrator.core.model.AgentEvent;
+import dev.denniszhang.gen_ai_orchestrator.infrastructure.model.LoggedEvent;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Unit tests for {@link TurnEventLog}.
+ */
+class TurnEventLogTest {
+
+    @Test
+    @DisplayName("an id from an earlier turn of the conversation replays nothing")
+    void testEarlierTurn() {
+        TurnEventLog log = new TurnEventLog(100, 100, Duration.ofMinutes(1));
+        List<LoggedEvent> first = log.record("conv-1", Flux.just(event("a"), event("b"))).collectList().block();
+        log.record("conv-1", Flux.just(event("c"))).blockLast();
+
+        assert log.resume("conv-1", first.getFirst().id(), Flux.empty()).collectList().block().isEmpty();
+    }
+
+    @Test
+    @DisplayName("a reconnect gets the events it missed and the continuation, with ids continuing the log")
+    void testResume() {
+        TurnEventLog log = new TurnEventLog(100, 100, Duration.ofMinutes(1));
+        List<LoggedEvent> streamed = log.record("conv-1", Flux.just(event("a"), event("b"), event("c"))).collectList().block();
+
+        List<LoggedEvent> resumed = log.resume("conv-1", streamed.getFirst().id(), Flux.just(event("d"))).collectList().block();
+
+        assert texts(resumed).equals(List.of("b", "c", "d"));
+        assert resumed.get(0).id().equals(streamed.get(1).id());
+        String logId = streamed.getFirst().id().substring(0, streamed.getFirst().id().indexOf('-'));
+        assert resumed.get(2).id().equals(logId + "-3");
+
+        // Unknown ids replay nothing, only the continuation
+        assert texts(log.resume("conv-1", "unknown-0", Flux.just(event("e"))).collectList().block()).equals(List.of("e"));
+        assert texts(log.resume("conv-2", null, Flux.just(event("f"))).collectList().block()).equals(List.of("f"));
+    }
+
+    @Test
+    @DisplayName("a reconnect while the events are still being logged waits for them to end")
+    void testResumeWaitsForRunningTurn() {
+        TurnEventLog log = new TurnEventLog(100, 100, Duration.ofMinutes(1));
+        Sinks.Many<AgentEvent> turn = Sinks.many().unicast().onBackpressureBuffer();
+        List<String> received = new CopyOnWriteArrayList<>();
+        log.record("conv-1", turn.asFlux()).subscribe(logged -> received.add(logged.id()));
+        turn.tryEmitNext(event("a"));
+
+        var resumed = log.resume("conv-1", received.getFirst(), Flux.empty()).collectList().toFuture();
+        turn.tryEmitNext(event("b"));
+        assert !resumed.isDone();
+        turn.tryEmitComplete();
+
+        assert texts(resumed.join()).equals(List.of("b"));
+    }
+
+    private static AgentEvent event(String text) {
+        return new AgentEvent.MessageEvent(AssistantMessage.builder().content(text).build());
+    }
+
+    private static List<String> texts(List<LoggedEvent> events) {
+        return events.stream()
+                .map(logged -> ((AgentEvent.MessageEvent) logged.event()).message().getText())
+                .toList();
+    }
+}
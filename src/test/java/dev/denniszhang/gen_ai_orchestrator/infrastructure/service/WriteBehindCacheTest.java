@@ -0,0 +1,188 @@
+package dev.denniszhang.gen_ai_orchestrator.infrastructure.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Unit tests for {@link WriteBehindCache}.
+ */
+class WriteBehindCacheTest {
+
+    @Test
+    @DisplayName("get loads once and then serves from memory")
+    void testGetLoadsOnce() {
+        AtomicInteger loads = new AtomicInteger();
+        try (WriteBehindCache<String> cache = new WriteBehindCache<>(10, Duration.ofMinutes(1), Duration.ofHours(1),
+                key -> key + "-" + loads.incrementAndGet(), (key, value) -> value)) {
+
+            assert cache.get("conv-1").equals("conv-1-1");
+            assert cache.get("conv-1").equals("conv-1-1");
+            assert loads.get() == 1;
+        }
+    }
+
+    @Test
+    @DisplayName("updates are written only on flush and coalesced into one write")
+    void testFlushCoalescesUpdates() {
+        List<String> writes = new ArrayList<>();
+        try (WriteBehindCache<String> cache = new WriteBehindCache<>(10, Duration.ofMinutes(1), Duration.ofHours(1),
+                key -> "", (key, value) -> { writes.add(value); return value; })) {
+
+            cache.update("conv-1", value -> value + "a");
+            cache.update("conv-1", value -> value + "b");
+            assert writes.isEmpty();
+
+            cache.flush("conv-1");
+            cache.flush("conv-1");
+
+            assert writes.equals(List.of("ab"));
+        }
+    }
+
+    @Test
+    @DisplayName("evict writes a dirty value back and the next get loads it again")
+    void testEvictWritesAndReloads() {
+        AtomicInteger loads = new AtomicInteger();
+        List<String> writes = new ArrayList<>();
+        try (WriteBehindCache<String> cache = new WriteBehindCache<>(10, Duration.ofMinutes(1), Duration.ofHours(1),
+                key -> "load" + loads.incrementAndGet(), (key, value) -> { writes.add(value); return value; })) {
+
+            cache.update("conv-1", value -> value + "a");
+            cache.evict("conv-1");
+            cache.evict("conv-1");
+
+            assert writes.equals(List.of("load1a"));
+            assert cache.get("conv-1").equals("load2");
+        }
+    }
+
+    @Test
+    @DisplayName("a slow write holds up neither other keys nor updates of its own key, which stay dirty")
+    void testSlowWriteBlocksOnlyItsKey() throws InterruptedException {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> writes = new CopyOnWriteArrayList<>();
+        try (WriteBehindCache<String> cache = new WriteBehindCache<>(10, Duration.ofMinutes(1), Duration.ofHours(1),
+                key -> "", (key, value) -> {
+                    if (value.equals("a")) {
+                        writing.countDown();
+                        try {
+                            release.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    writes.add(key + "=" + value);
+                    return value;
+                })) {
+
+            cache.update("conv-1", value -> value + "a");
+            Thread flushing = Thread.ofVirtual().start(() -> cache.flush("conv-1"));
+            assert writing.await(5, TimeUnit.SECONDS);
+
+            assert cache.update("conv-2", value -> value + "x").equals("x");
+            cache.flush("conv-2");
+            assert cache.update("conv-1", value -> value + "b").equals("ab");
+
+            release.countDown();
+            flushing.join(Duration.ofSeconds(5));
+            cache.flush("conv-1");
+
+            assert writes.equals(List.of("conv-2=x", "conv-1=a", "conv-1=ab")) : writes;
+        }
+    }
+
+    @Test
+    @DisplayName("a dirty value evicted for size is written on the flush thread")
+    void testSizeEvictionWritesOnFlushThread() {
+        Map<String, String> writers = new ConcurrentHashMap<>();
+        try (WriteBehindCache<String> cache = new WriteBehindCache<>(1, Duration.ofMinutes(1), Duration.ofHours(1),
+                key -> "", (key, value) -> { writers.put(key, Thread.currentThread().getName()); return value; })) {
+
+            cache.update("conv-1", value -> "one");
+            cache.update("conv-2", value -> "two");
+
+            await().atMost(Duration.ofSeconds(5)).until(() -> !writers.isEmpty());
+            assert writers.values().stream().allMatch("write-behind-flush"::equals) : writers;
+        }
+    }
+
+    @Test
+    @DisplayName("a zero flush interval writes through on every update")
+    void testWriteThrough() {
+        List<String> writes = new ArrayList<>();
+        try (WriteBehindCache<String> cache = new WriteBehindCache<>(10, Duration.ofMinutes(1), Duration.ZERO,
+                key -> "", (key, value) -> { writes.add(value); return value; })) {
+
+            cache.update("conv-1", value -> value + "a");
+            cache.update("conv-1", value -> value + "b");
+
+            assert writes.equals(List.of("a", "ab"));
+        }
+    }
+
+    @Test
+    @DisplayName("an action waits for the write of the update before it and runs right away without one")
+    void testWhenWritten() {
+        List<String> log = new ArrayList<>();
+        try (WriteBehindCache<String> cache = new WriteBehindCache<>(10, Duration.ofMinutes(1), Duration.ofHours(1),
+                key -> "", (key, value) -> { log.add("write " + value); return value; })) {
+
+            cache.update("conv-1", value -> value + "a");
+            cache.whenWritten("conv-1", () -> log.add("first"));
+            cache.whenWritten("conv-1", () -> log.add("second"));
+            assert log.isEmpty();
+
+            cache.flush("conv-1");
+            cache.whenWritten("conv-1", () -> log.add("third"));
+
+            assert log.equals(List.of("write a", "second", "third")) : log;
+        }
+    }
+
+    @Test
+    @DisplayName("close writes every dirty value")
+    void testCloseFlushesDirtyValues() {
+        Map<String, String> store = new ConcurrentHashMap<>();
+        WriteBehindCache<String> cache = new WriteBehindCache<>(10, Duration.ofMinutes(1), Duration.ofHours(1),
+                key -> "", (key, value) -> { store.put(key, value); return value; });
+
+        cache.update("conv-1", value -> "one");
+        cache.update("conv-2", value -> "two");
+        cache.close();
+
+        assert store.equals(Map.of("conv-1", "one", "conv-2", "two"));
+    }
+
+    @Test
+    @DisplayName("a failed write keeps the value dirty for the next flush")
+    void testFailedWriteIsRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+        try (WriteBehindCache<String> cache = new WriteBehindCache<>(10, Duration.ofMinutes(1), Duration.ofHours(1),
+                key -> "", (key, value) -> {
+                    if (attempts.incrementAndGet() == 1) {
+                        throw new IllegalStateException("database unavailable");
+                    }
+                    return value;
+                })) {
+
+            cache.update("conv-1", value -> "a");
+            cache.flush("conv-1");
+            cache.flush("conv-1");
+
+            assert attempts.get() == 2;
+        }
+    }
+}